@@ -0,0 +1,147 @@
+package matrix.flow.sdk;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.nftco.flow.sdk.FlowAccessApi;
+import com.nftco.flow.sdk.FlowAccountKey;
+import com.nftco.flow.sdk.FlowAddress;
+
+import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.AccountKeyCacheStats;
+import matrix.flow.sdk.model.FlowClientException;
+
+/**
+ * Keys of user accounts for local signature verification. Entries expire {@code ttlMillis} after
+ * they were read from chain, so a revoked key is accepted at most that long. A failed verification
+ * may refresh the keys early to pick up newly added keys.
+ */
+@Log4j2
+public class AccountKeyCache {
+
+    static final long DEFAULT_TTL_MILLIS = 60000L;
+    static final long DEFAULT_MAX_SIZE = 10000L;
+    static final long MIN_REFRESH_INTERVAL_MILLIS = 1000L;
+
+    private final Function<FlowAddress, List<FlowAccountKey>> fetchKeys;
+    private final Cache<String, CachedKeys> cache;
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+
+    /**
+     * @param fetchKeys reads the keys of an account from chain
+     * @param ttlMillis time an entry is served after it was read
+     * @param maxSize number of accounts kept, the least recently used are evicted first
+     */
+    public AccountKeyCache(final Function<FlowAddress, List<FlowAccountKey>> fetchKeys,
+            final long ttlMillis, final long maxSize) {
+        this.fetchKeys = fetchKeys;
+        this.cache = CacheBuilder.newBuilder().expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .maximumSize(maxSize).recordStats().build();
+    }
+
+    static AccountKeyCache forAccessApi(final FlowAccessApi accessAPI, final long ttlMillis,
+            final long maxSize) {
+        return new AccountKeyCache(address -> accessAPI.getAccountAtLatestBlock(address).getKeys(),
+                ttlMillis, maxSize);
+    }
+
+    /**
+     * @param address account address
+     *
+     * @return cached keys of the account, read from chain on a miss
+     */
+    public List<FlowAccountKey> getKeys(final FlowAddress address) {
+        try {
+            return this.cache.get(address.getBase16Value(), () -> this.fetch(address)).keys;
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new FlowClientException(e.getCause().toString());
+        }
+    }
+
+    /**
+     * Read the keys of an account from chain again, unless they were read within the last second
+     *
+     * @param address account address
+     *
+     * @return true if the keys on chain differ from the cached ones
+     */
+    public boolean refresh(final FlowAddress address) {
+        final String key = address.getBase16Value();
+        final CachedKeys cached = this.cache.getIfPresent(key);
+        if (cached != null
+                && System.currentTimeMillis() - cached.fetchedAt < MIN_REFRESH_INTERVAL_MILLIS) {
+            return false;
+        }
+        final CachedKeys fetched = this.fetch(address);
+        this.cache.put(key, fetched);
+        this.refreshCount.incrementAndGet();
+        if (cached == null || !sameKeys(cached.keys, fetched.keys)) {
+            this.staleCount.incrementAndGet();
+            log.info(String.format("Keys of account %s changed on chain", key));
+            return true;
+        }
+        return false;
+    }
+
+    public void invalidate(final FlowAddress address) {
+        this.cache.invalidate(address.getBase16Value());
+    }
+
+    /**
+     * @return hit rate and evictions of the cache, refreshes after failed verifications and how
+     *         many of them found changed keys
+     */
+    public AccountKeyCacheStats getStats() {
+        final CacheStats stats = this.cache.stats();
+        return AccountKeyCacheStats.builder().hitCount(stats.hitCount())
+                .missCount(stats.missCount()).hitRate(stats.hitRate())
+                .evictionCount(stats.evictionCount()).refreshCount(this.refreshCount.get())
+                .staleCount(this.staleCount.get()).size(this.cache.size()).build();
+    }
+
+    private CachedKeys fetch(final FlowAddress address) {
+        return new CachedKeys(this.fetchKeys.apply(address), System.currentTimeMillis());
+    }
+
+    private static boolean sameKeys(final List<FlowAccountKey> cached,
+            final List<FlowAccountKey> fetched) {
+        if (cached.size() != fetched.size()) {
+            return false;
+        }
+        for (int i = 0; i < cached.size(); i++) {
+            final FlowAccountKey a = cached.get(i);
+            final FlowAccountKey b = fetched.get(i);
+            // Sequence numbers advance with every transaction and do not matter for signatures
+            if (a.getRevoked() != b.getRevoked() || a.getWeight() != b.getWeight()
+                    || a.getSignAlgo() != b.getSignAlgo() || a.getHashAlgo() != b.getHashAlgo()
+                    || !Objects.equals(a.getPublicKey().getBase16Value(),
+                            b.getPublicKey().getBase16Value())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class CachedKeys {
+        private final List<FlowAccountKey> keys;
+        private final long fetchedAt;
+
+        private CachedKeys(final List<FlowAccountKey> keys, final long fetchedAt) {
+            this.keys = keys;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+}
@@ -0,0 +1,284 @@
+package matrix.flow.sdk;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nftco.flow.sdk.FlowId;
+import com.nftco.flow.sdk.FlowTransaction;
+import com.nftco.flow.sdk.FlowTransactionResult;
+
+import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.PaymentType;
+import matrix.flow.sdk.model.PaymentVerification;
+import matrix.flow.sdk.model.TransactionStages;
+import matrix.flow.sdk.model.TransferEvent;
+import matrix.flow.sdk.model.VoucherClientConfig;
+import matrix.flow.sdk.model.VoucherMetadataModel;
+
+/**
+ * Non-blocking front end of a {@link VoucherMinterClientPool}. Transactions are built, signed and
+ * sent on a bounded executor, sealing is followed by the pool's {@link SealTracker} so no thread
+ * waits for a seal and keys are reused while earlier transactions are still sealing. Mints are
+ * recorded in the pool's {@link MintJournal} like the mints of the pool itself.
+ */
+@Log4j2
+public class AsyncVoucherClient {
+
+    static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private final VoucherMinterClientPool pool;
+    private final SealTracker sealTracker;
+    private final MintJournal journal;
+    private final PaymentCache paymentCache;
+    private final VoucherClientConfig clientConfig;
+    private final ThreadPoolExecutor submitExecutor;
+
+    public AsyncVoucherClient(final VoucherMinterClientPool pool, final int submitThreads) {
+        this(pool, submitThreads, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param pool pool providing the proposal keys
+     * @param submitThreads threads building and sending transactions, there is no use in more
+     *        threads than keys in the pool
+     * @param queueCapacity submissions waiting for a thread before new ones are rejected
+     */
+    public AsyncVoucherClient(final VoucherMinterClientPool pool, final int submitThreads,
+            final int queueCapacity) {
+        this.pool = pool;
+        this.sealTracker = pool.getSealTracker();
+        this.journal = pool.getJournal();
+        this.paymentCache = pool.getPaymentCache();
+        this.clientConfig = pool.getClientConfig();
+        this.submitExecutor = new ThreadPoolExecutor(submitThreads, submitThreads, 60,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("voucher-async-submit-%d").build());
+        this.submitExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Mint a Voucher NFT
+     *
+     * @param recipientAddressString recipient account address
+     * @param landInfoHashString flow type landInfoHashString in hex
+     *
+     * @return stages of the mint transaction, sealed with the minted Voucher
+     */
+    public TransactionStages<VoucherMetadataModel> mintVoucher(final String recipientAddressString,
+            final String landInfoHashString) {
+        return this.submit(Collections.singletonList(recipientAddressString),
+                Collections.singletonList(landInfoHashString),
+                (client, signed) -> client.submitMintVoucher(recipientAddressString,
+                        landInfoHashString, signed),
+                result -> VoucherClient.resolveMintedVoucher(this.clientConfig, result));
+    }
+
+    /**
+     * Mint a batch of Vouchers
+     *
+     * @param recipientAddressStringList list of recipient account address
+     * @param landInfoHashStringList list of landInfoHash
+     *
+     * @return stages of the mint transaction, sealed with the minted Vouchers
+     */
+    public TransactionStages<List<VoucherMetadataModel>> batchMintVoucher(
+            final List<String> recipientAddressStringList,
+            final List<String> landInfoHashStringList) {
+        return this.submit(recipientAddressStringList, landInfoHashStringList,
+                (client, signed) -> client.submitBatchMintVoucher(recipientAddressStringList,
+                        landInfoHashStringList, this.clientConfig.getBatchMintComputationLimit(),
+                        signed),
+                result -> VoucherClient.decodeMintedVouchers(this.clientConfig, result));
+    }
+
+    public CompletableFuture<List<VoucherMetadataModel>> resolveBatchMintVoucherTransaction(
+            final String transactionId) {
+        return this.sealTracker.track(new FlowId(transactionId))
+                .thenApply(result -> VoucherClient.decodeMintedVouchers(this.clientConfig, result));
+    }
+
+    /**
+     * Resolve a transferEvent by transactionId
+     *
+     * @param transactionId flow transactionId
+     * @param paymentType FLOW or FUSD
+     *
+     * @return future of the TransferEvent
+     */
+    public CompletableFuture<TransferEvent> resolveTransferEventFromTransactionId(
+            final String transactionId, final PaymentType paymentType) {
+        try {
+            VoucherClient.checkPaymentType(paymentType);
+        } catch (final FlowClientException e) {
+            return failed(e);
+        }
+        return this.paymentTransfers(transactionId)
+                .thenApply(transfers -> VoucherClient.resolveTransferEvent(this.clientConfig,
+                        transfers, transactionId, paymentType));
+    }
+
+    /**
+     * Verify a FUSD or FLOW transaction
+     *
+     * @param payerAddress payer account address
+     * @param targetAmount expected amount to be received
+     * @param transactionId flow transactionId
+     * @param paymentType FLOW or FUSD
+     *
+     * @return future completed exceptionally with the reason of a failed verification
+     */
+    public CompletableFuture<Void> verifyPaymentTransaction(final String payerAddress,
+            final BigDecimal targetAmount, final String transactionId,
+            final PaymentType paymentType) {
+        try {
+            VoucherClient.checkPaymentType(paymentType);
+            VoucherClient.checkPaymentAmountScale(targetAmount);
+        } catch (final FlowClientException e) {
+            return failed(e);
+        }
+        return this.paymentTransfers(transactionId)
+                .thenAccept(transfers -> VoucherClient.verifyPayment(this.clientConfig, transfers,
+                        payerAddress, targetAmount, paymentType));
+    }
+
+    /**
+     * @return token transfers of a sealed transaction, tracking the seal on a cache miss only
+     */
+    private CompletableFuture<List<PaymentCache.Transfer>> paymentTransfers(
+            final String transactionId) {
+        final List<PaymentCache.Transfer> cached = this.paymentCache.getIfPresent(transactionId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return this.sealTracker.track(new FlowId(transactionId))
+                .thenApply(result -> this.paymentCache.put(transactionId,
+                        EventDecoder.forConfig(this.clientConfig), result));
+    }
+
+    /**
+     * Resolve the transferEvent of a FUSD or FLOW transaction and verify it, tracking the seal once
+     *
+     * @param payerAddress payer account address
+     * @param targetAmount expected amount to be received
+     * @param transactionId flow transactionId
+     * @param paymentType FLOW or FUSD
+     *
+     * @return future of the resolved transfer, verdict and amounts
+     */
+    public CompletableFuture<PaymentVerification> resolveAndVerifyPaymentTransaction(
+            final String payerAddress, final BigDecimal targetAmount, final String transactionId,
+            final PaymentType paymentType) {
+        try {
+            VoucherClient.checkPaymentType(paymentType);
+            VoucherClient.checkPaymentAmountScale(targetAmount);
+        } catch (final FlowClientException e) {
+            return failed(e);
+        }
+        return this.paymentTransfers(transactionId)
+                .thenApply(transfers -> VoucherClient.evaluatePayment(this.clientConfig, transfers,
+                        transactionId, payerAddress, targetAmount, paymentType));
+    }
+
+    /**
+     * Stop accepting submissions, the pool is left open
+     */
+    public void close() {
+        this.submitExecutor.shutdown();
+    }
+
+    private <T> TransactionStages<T> submit(final List<String> recipients,
+            final List<String> landHashes,
+            final BiFunction<VoucherClient, Consumer<FlowTransaction>, VoucherClient.Submission> send,
+            final Function<FlowTransactionResult, T> resolve) {
+        final TransactionStages<T> stages = new TransactionStages<>(
+                new CompletableFuture<String>(), new CompletableFuture<FlowTransactionResult>(),
+                new CompletableFuture<T>());
+        try {
+            this.submitExecutor.execute(
+                    () -> this.send(stages, recipients, landHashes, send, resolve));
+        } catch (final RejectedExecutionException e) {
+            log.warn("[AsyncVoucherClient.submit] rejected, too many pending submissions");
+            failAll(stages, new FlowClientException("Too many pending submissions"));
+        }
+        return stages;
+    }
+
+    private <T> void send(final TransactionStages<T> stages, final List<String> recipients,
+            final List<String> landHashes,
+            final BiFunction<VoucherClient, Consumer<FlowTransaction>, VoucherClient.Submission> send,
+            final Function<FlowTransactionResult, T> resolve) {
+        VoucherClient client = null;
+        MintJournal.Mint mint = null;
+        FlowId txID = null;
+        try {
+            mint = this.journal.begin(recipients, landHashes);
+            client = this.pool.borrowClient();
+            final VoucherClient sender = client;
+            final VoucherClient.Submission submission =
+                    this.pool.sendJournaled(mint, signed -> send.apply(sender, signed));
+            txID = submission.getTransactionId();
+            log.info(String.format("[AsyncVoucherClient.send] key index %d sent transaction %s",
+                    client.getAccountKeyIndex(), txID.getBase16Value()));
+
+            // The key takes the next transaction while this one is sealing
+            this.pool.releaseAfterSubmit(client, submission);
+            client = null;
+            stages.getSubmitted().complete(txID.getBase16Value());
+            this.sealTracker.trackExecuted(txID).whenComplete((result, e) -> {
+                if (e != null) {
+                    stages.getExecuted().completeExceptionally(e);
+                } else {
+                    stages.getExecuted().complete(result);
+                }
+            });
+            final MintJournal.Mint sent = mint;
+            submission.getSettled().whenComplete((result, e) -> {
+                sent.resolved(result, e, false);
+                if (e != null) {
+                    stages.getSealed().completeExceptionally(e);
+                    return;
+                }
+                try {
+                    stages.getSealed().complete(resolve.apply(result));
+                } catch (final RuntimeException resolveError) {
+                    stages.getSealed().completeExceptionally(resolveError);
+                }
+            });
+        } catch (final Exception e) {
+            log.error("[AsyncVoucherClient.send] failed with", e);
+            if (mint != null && txID == null) {
+                mint.sendFailed(this.sealTracker);
+            }
+            failAll(stages, e);
+        } finally {
+            if (client != null) {
+                this.pool.returnClient(client);
+            }
+        }
+    }
+
+    private static void failAll(final TransactionStages<?> stages, final Throwable e) {
+        stages.getSubmitted().completeExceptionally(e);
+        stages.getExecuted().completeExceptionally(e);
+        stages.getSealed().completeExceptionally(e);
+    }
+
+    private static <T> CompletableFuture<T> failed(final Throwable e) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+}
@@ -0,0 +1,570 @@
+package matrix.flow.sdk;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nftco.flow.sdk.Flow;
+import com.nftco.flow.sdk.FlowAccessApi;
+import com.nftco.flow.sdk.FlowId;
+import com.nftco.flow.sdk.impl.FlowAccessApiImpl;
+
+import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.AccessNode;
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+/**
+ * Spreads the calls of one {@link FlowAccessApi} over several access nodes. Each call goes to the
+ * node with the lowest median latency weighted by its calls in progress and its error rate, reads
+ * the node failed to answer are retried once on the next best node, and point reads slower than
+ * the p99 latency of their node are hedged on the next best node, the first answer wins. Only
+ * transport errors, unavailable nodes and exceeded deadlines count as failures of a node, any
+ * other error is the answer of the node. A node failing {@value #EJECT_AFTER_FAILURES} calls in a
+ * row, or too many calls of a window, is ejected and readmitted once it answers a ping after the
+ * eject interval. Transactions are sent once only, retrying them is left to the caller, and their
+ * results are read from the node that accepted them while it is admitted.
+ */
+@Log4j2
+public class BalancedFlowAccessApi implements InvocationHandler {
+
+    static final long DEFAULT_REFRESH_MILLIS = 1000L;
+    static final long WINDOW_MILLIS = 10000L;
+    static final int MIN_SAMPLES = 20;
+    static final int EJECT_AFTER_FAILURES = 5;
+
+    /**
+     * Reads of a single value, cheap enough to send twice
+     */
+    static final Set<String> HEDGED = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "getTransactionResultById", "executeScriptAtLatestBlock", "getAccountAtLatestBlock",
+            "getLatestBlockHeader", "getLatestBlock")));
+
+    /**
+     * Calls changing state, sent to one node only
+     */
+    static final Set<String> WRITES = Collections.singleton("sendTransaction");
+
+    /**
+     * Other nodes may not know a transaction yet, they would answer that it is not found
+     */
+    static final long PIN_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    static final long PIN_MAX_SIZE = 100000L;
+
+    private final List<Endpoint> endpoints;
+    private final boolean hedgeReads;
+    private final long hedgeMinNanos;
+    private final long ejectNanos;
+    private final double maxErrorRate;
+    private final MetricsRegistry.Counter hedges;
+    private final MetricsRegistry.Counter failovers;
+    private final ThreadPoolExecutor hedgeExecutor;
+    private final ScheduledThreadPoolExecutor checker;
+    private final AtomicInteger rotation = new AtomicInteger();
+    private final Cache<String, Endpoint> acceptedBy = CacheBuilder.newBuilder()
+            .expireAfterWrite(PIN_MILLIS, TimeUnit.MILLISECONDS).maximumSize(PIN_MAX_SIZE).build();
+    private final FlowAccessApi api = (FlowAccessApi) Proxy.newProxyInstance(
+            FlowAccessApi.class.getClassLoader(), new Class<?>[] {FlowAccessApi.class}, this);
+
+    /**
+     * @param names names of the access nodes in logs and meters, e.g. host and port
+     * @param channels connections to each access node in the order of the names, calls to a node
+     *        take turns on its connections
+     * @param config hedging, ejection and error rate settings
+     * @param refreshMillis interval of latency updates and readmission pings, 0 to only update on
+     *        {@link #refresh}
+     * @param metrics receives the latencies and errors per access node, see {@link VoucherMetrics}
+     */
+    BalancedFlowAccessApi(final List<String> names, final List<List<FlowAccessApi>> channels,
+            final VoucherClientConfig config, final long refreshMillis,
+            final MetricsRegistry metrics) {
+        if (channels.isEmpty()) {
+            throw new FlowClientException("No access node to connect to");
+        }
+        final List<Endpoint> endpoints = new ArrayList<>(channels.size());
+        for (int i = 0; i < channels.size(); i++) {
+            endpoints.add(new Endpoint(names.get(i), channels.get(i), metrics));
+        }
+        this.endpoints = Collections.unmodifiableList(endpoints);
+        this.hedgeReads = config.isHedgeReads();
+        this.hedgeMinNanos = TimeUnit.MILLISECONDS.toNanos(config.getAccessNodeHedgeMinMillis());
+        this.ejectNanos = TimeUnit.MILLISECONDS.toNanos(config.getAccessNodeEjectMillis());
+        this.maxErrorRate = config.getAccessNodeMaxErrorRate();
+        this.hedges = metrics.counter(VoucherMetrics.ACCESS_NODE_HEDGE);
+        this.failovers = metrics.counter(VoucherMetrics.ACCESS_NODE_FAILOVER);
+        this.hedgeExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("flow-access-hedge-%d").build());
+        if (refreshMillis > 0) {
+            this.checker = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                    .setDaemon(true).setNameFormat("flow-access-check-%d").build());
+            this.checker.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.checker = null;
+        }
+    }
+
+    /**
+     * Connect to the access nodes of the config, or to its host and port only
+     *
+     * @return connection balancing over the access nodes, a plain connection for a single node
+     */
+    public static FlowAccessApi connect(final VoucherClientConfig config,
+            final MetricsRegistry metrics) {
+        final List<AccessNode> accessNodes = config.getAccessNodes();
+        if (accessNodes == null || accessNodes.isEmpty()) {
+            return Flow.newAccessApi(config.getHost(), config.getPort());
+        }
+        if (accessNodes.size() == 1) {
+            return Flow.newAccessApi(accessNodes.get(0).getHost(), accessNodes.get(0).getPort());
+        }
+        return connectChannels(config, metrics, 1).get(0);
+    }
+
+    /**
+     * Connect {@code accessApiChannels} times to the host and port of the config, or once
+     * balancing over {@code accessApiChannels} connections to each of its access nodes, so the
+     * latencies and ejections of a node are shared by all its connections
+     *
+     * @return connections to multiplex calls over
+     */
+    static List<FlowAccessApi> connectChannels(final VoucherClientConfig config,
+            final MetricsRegistry metrics) {
+        return connectChannels(config, metrics, Math.max(1, config.getAccessApiChannels()));
+    }
+
+    private static List<FlowAccessApi> connectChannels(final VoucherClientConfig config,
+            final MetricsRegistry metrics, final int channelsPerNode) {
+        final List<AccessNode> accessNodes = config.getAccessNodes();
+        if (accessNodes == null || accessNodes.size() < 2) {
+            final String host = accessNodes == null || accessNodes.isEmpty() ? config.getHost()
+                    : accessNodes.get(0).getHost();
+            final int port = accessNodes == null || accessNodes.isEmpty() ? config.getPort()
+                    : accessNodes.get(0).getPort();
+            final List<FlowAccessApi> apis = new ArrayList<>(channelsPerNode);
+            for (int i = 0; i < channelsPerNode; i++) {
+                apis.add(Flow.newAccessApi(host, port));
+            }
+            return apis;
+        }
+        final List<String> names = new ArrayList<>(accessNodes.size());
+        final List<List<FlowAccessApi>> channels = new ArrayList<>(accessNodes.size());
+        for (final AccessNode accessNode : accessNodes) {
+            names.add(String.format("%s:%d", accessNode.getHost(), accessNode.getPort()));
+            final List<FlowAccessApi> apis = new ArrayList<>(channelsPerNode);
+            for (int i = 0; i < channelsPerNode; i++) {
+                apis.add(Flow.newAccessApi(accessNode.getHost(), accessNode.getPort()));
+            }
+            channels.add(apis);
+        }
+        return Collections.singletonList(new BalancedFlowAccessApi(names, channels, config,
+                DEFAULT_REFRESH_MILLIS, metrics).api());
+    }
+
+    public static FlowAccessApi connect(final VoucherClientConfig config) {
+        return connect(config, MetricsRegistry.NOOP);
+    }
+
+    /**
+     * Close a connection returned by {@link #connect}
+     */
+    public static void close(final FlowAccessApi accessAPI) {
+        if (Proxy.isProxyClass(accessAPI.getClass())
+                && Proxy.getInvocationHandler(accessAPI) instanceof BalancedFlowAccessApi) {
+            ((BalancedFlowAccessApi) Proxy.getInvocationHandler(accessAPI)).close();
+        } else if (accessAPI instanceof FlowAccessApiImpl) {
+            ((FlowAccessApiImpl) accessAPI).close();
+        }
+    }
+
+    FlowAccessApi api() {
+        return this.api;
+    }
+
+    List<Endpoint> getEndpoints() {
+        return this.endpoints;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "BalancedFlowAccessApi" + this.endpoints;
+            }
+        }
+        final int offset = this.rotation.getAndIncrement();
+        final Endpoint pinned = this.pinned(method, args);
+        final Endpoint primary = pinned != null ? pinned : this.select(null, offset);
+        if (WRITES.contains(method.getName())) {
+            final Object result = primary.call(method, args);
+            if (result instanceof FlowId) {
+                this.acceptedBy.put(((FlowId) result).getBase16Value(), primary);
+            }
+            return result;
+        }
+        final Endpoint secondary = this.select(primary, offset);
+        if (secondary == null) {
+            return primary.call(method, args);
+        }
+        if (this.hedgeReads && pinned == null && HEDGED.contains(method.getName())) {
+            return this.hedge(method, args, primary, secondary);
+        }
+        try {
+            return primary.call(method, args);
+        } catch (final Exception e) {
+            if (!isNodeFailure(e)) {
+                throw e;
+            }
+            log.warn(String.format("Retry %s on %s after %s failed with %s", method.getName(),
+                    secondary, primary, e));
+            this.failovers.increment();
+            return secondary.call(method, args);
+        }
+    }
+
+    /**
+     * @return the admitted node that accepted the transaction whose result is read, or null
+     */
+    private Endpoint pinned(final Method method, final Object[] args) {
+        if (!"getTransactionResultById".equals(method.getName())
+                || !(args[0] instanceof FlowId)) {
+            return null;
+        }
+        final Endpoint endpoint = this.acceptedBy.getIfPresent(((FlowId) args[0]).getBase16Value());
+        return endpoint == null || endpoint.ejected ? null : endpoint;
+    }
+
+    /**
+     * @return true if the node could not answer, e.g. its connection failed, it is unavailable or
+     *         it did not answer in time, rather than answering with an error
+     */
+    static boolean isNodeFailure(final Throwable failure) {
+        for (Throwable e = failure; e != null; e = e.getCause() == e ? null : e.getCause()) {
+            if (e instanceof IOException) {
+                return true;
+            }
+            final String message = e.getMessage();
+            if (message != null && (message.startsWith("UNAVAILABLE")
+                    || message.startsWith("DEADLINE_EXCEEDED"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Call the primary node and the secondary node too if the primary is slower than its p99 or
+     * fails, the first answer wins and the other call is cancelled
+     */
+    private Object hedge(final Method method, final Object[] args, final Endpoint primary,
+            final Endpoint secondary) throws Exception {
+        final CompletionService<Object> calls =
+                new ExecutorCompletionService<>(this.hedgeExecutor, new LinkedBlockingQueue<>());
+        final List<Future<Object>> futures = new ArrayList<>(2);
+        futures.add(calls.submit(() -> primary.call(method, args)));
+        try {
+            Future<Object> done = calls.poll(Math.max(this.hedgeMinNanos, primary.p99Nanos),
+                    TimeUnit.NANOSECONDS);
+            if (done == null) {
+                this.hedges.increment();
+                futures.add(calls.submit(() -> secondary.call(method, args)));
+            }
+            Exception failure = null;
+            while (true) {
+                if (done == null) {
+                    done = calls.take();
+                }
+                try {
+                    return done.get();
+                } catch (final ExecutionException e) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                // An error the node answered with is the answer of the read
+                if (!isNodeFailure(failure)) {
+                    throw failure;
+                }
+                if (futures.size() == 1) {
+                    log.warn(String.format("Retry %s on %s after %s failed with %s",
+                            method.getName(), secondary, primary, failure));
+                    this.failovers.increment();
+                    futures.add(calls.submit(() -> secondary.call(method, args)));
+                } else if (futures.stream().allMatch(Future::isDone)) {
+                    throw failure;
+                }
+                done = null;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FlowClientException(e.toString());
+        } finally {
+            for (final Future<Object> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Pick the admitted node with the lowest score, all nodes if every node is ejected
+     *
+     * @param excluded node not to pick, or null
+     * @param offset node to start the scan at, so equally good nodes take turns
+     *
+     * @return best node or null if there is no other node
+     */
+    private Endpoint select(final Endpoint excluded, final int offset) {
+        Endpoint best = this.select(excluded, false, offset);
+        if (best == null) {
+            best = this.select(excluded, true, offset);
+        }
+        return best;
+    }
+
+    private Endpoint select(final Endpoint excluded, final boolean includeEjected,
+            final int offset) {
+        final int start = Math.floorMod(offset, this.endpoints.size());
+        Endpoint best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < this.endpoints.size(); i++) {
+            final Endpoint endpoint = this.endpoints.get((start + i) % this.endpoints.size());
+            if (endpoint == excluded || (endpoint.ejected && !includeEjected)) {
+                continue;
+            }
+            final double score = endpoint.score();
+            if (score < bestScore) {
+                best = endpoint;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Update the latencies and error rates of the nodes whose window is full or old, eject nodes
+     * failing too often and readmit ejected nodes answering a ping
+     */
+    void refresh() {
+        final long now = System.nanoTime();
+        for (final Endpoint endpoint : this.endpoints) {
+            final Window window = endpoint.window;
+            final long calls = window.calls.sum();
+            if (calls >= MIN_SAMPLES
+                    || now - window.startNanos >= TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS)) {
+                endpoint.window = new Window(now);
+                if (calls > 0) {
+                    endpoint.p50Nanos = window.latencies.percentileNanos(0.5);
+                    endpoint.p99Nanos = window.latencies.percentileNanos(0.99);
+                    endpoint.errorRate = (double) window.errors.sum() / calls;
+                }
+                if (calls >= MIN_SAMPLES && endpoint.errorRate >= this.maxErrorRate) {
+                    this.eject(endpoint, String.format("%.0f%% of %d calls failed",
+                            endpoint.errorRate * 100, calls));
+                }
+            }
+            if (endpoint.ejected && now - endpoint.ejectedNanos >= this.ejectNanos) {
+                try {
+                    endpoint.channel().ping();
+                    endpoint.readmit();
+                } catch (final RuntimeException e) {
+                    log.warn(String.format("Access node %s still fails with %s", endpoint, e));
+                    endpoint.ejectedNanos = now;
+                }
+            }
+        }
+    }
+
+    /**
+     * Eject a node unless it is the last admitted one
+     */
+    private synchronized void eject(final Endpoint endpoint, final String reason) {
+        if (endpoint.ejected) {
+            return;
+        }
+        for (final Endpoint other : this.endpoints) {
+            if (other != endpoint && !other.ejected) {
+                log.warn(String.format("Eject access node %s, %s", endpoint, reason));
+                endpoint.ejectedNanos = System.nanoTime();
+                endpoint.ejected = true;
+                return;
+            }
+        }
+    }
+
+    public void close() {
+        if (this.checker != null) {
+            this.checker.shutdownNow();
+        }
+        this.hedgeExecutor.shutdownNow();
+        for (final Endpoint endpoint : this.endpoints) {
+            for (final FlowAccessApi channel : endpoint.channels) {
+                close(channel);
+            }
+        }
+    }
+
+    /**
+     * Calls, latencies and errors of one node since the window started
+     */
+    private static final class Window {
+        private final long startNanos;
+        private final InMemoryMetricsRegistry.InMemoryTimer latencies =
+                new InMemoryMetricsRegistry.InMemoryTimer();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        private Window(final long startNanos) {
+            this.startNanos = startNanos;
+        }
+    }
+
+    /**
+     * One access node and its latencies of the last full window
+     */
+    final class Endpoint {
+        private final String name;
+        private final List<FlowAccessApi> channels;
+        private final AtomicInteger nextChannel = new AtomicInteger();
+        private final AtomicInteger inProgress = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final MetricsRegistry.Timer callTimer;
+        private final MetricsRegistry.Counter errorCounter;
+        private volatile Window window = new Window(System.nanoTime());
+        private volatile long p50Nanos;
+        private volatile long p99Nanos;
+        private volatile double errorRate;
+        private volatile boolean ejected;
+        private volatile long ejectedNanos;
+
+        private Endpoint(final String name, final List<FlowAccessApi> channels,
+                final MetricsRegistry metrics) {
+            this.name = name;
+            this.channels = channels;
+            this.callTimer = metrics.timer(VoucherMetrics.ACCESS_NODE_CALL,
+                    VoucherMetrics.TAG_ENDPOINT, name);
+            this.errorCounter = metrics.counter(VoucherMetrics.ACCESS_NODE_ERROR,
+                    VoucherMetrics.TAG_ENDPOINT, name);
+            metrics.gauge(VoucherMetrics.ACCESS_NODE_EJECTED, () -> this.ejected ? 1L : 0L,
+                    VoucherMetrics.TAG_ENDPOINT, name);
+        }
+
+        /**
+         * Call the node and record the latency, a call cancelled by a faster hedge is not
+         * recorded. An error the node answered with counts as an answer, not a failure.
+         */
+        Object call(final Method method, final Object[] args) throws Exception {
+            this.inProgress.incrementAndGet();
+            final long start = System.nanoTime();
+            try {
+                final Object result = method.invoke(this.channel(), args);
+                this.record(System.nanoTime() - start, false);
+                this.consecutiveFailures.set(0);
+                return result;
+            } catch (final InvocationTargetException e) {
+                if (!isNodeFailure(e.getCause())) {
+                    this.record(System.nanoTime() - start, false);
+                    this.consecutiveFailures.set(0);
+                } else if (!Thread.currentThread().isInterrupted()) {
+                    this.record(System.nanoTime() - start, true);
+                    if (this.consecutiveFailures.incrementAndGet() >= EJECT_AFTER_FAILURES) {
+                        BalancedFlowAccessApi.this.eject(this, String.format(
+                                "%d calls in a row failed", this.consecutiveFailures.get()));
+                    }
+                }
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw (Error) e.getCause();
+            } finally {
+                this.inProgress.decrementAndGet();
+            }
+        }
+
+        /**
+         * @return connection of the next call, the connections take turns
+         */
+        private FlowAccessApi channel() {
+            return this.channels.get(
+                    Math.floorMod(this.nextChannel.getAndIncrement(), this.channels.size()));
+        }
+
+        /**
+         * @return median latency times the calls in progress, inflated by the error rate
+         */
+        double score() {
+            return (double) (this.p50Nanos + 1) * (this.inProgress.get() + 1)
+                    / (1.0 - Math.min(this.errorRate, 0.9));
+        }
+
+        private void record(final long nanos, final boolean failed) {
+            final Window window = this.window;
+            window.latencies.record(nanos);
+            window.calls.increment();
+            this.callTimer.record(nanos);
+            if (failed) {
+                window.errors.increment();
+                this.errorCounter.increment();
+            }
+        }
+
+        private void readmit() {
+            log.info(String.format("Readmit access node %s", this));
+            this.consecutiveFailures.set(0);
+            this.errorRate = 0.0;
+            this.ejected = false;
+        }
+
+        List<FlowAccessApi> getChannels() {
+            return this.channels;
+        }
+
+        long getP50Nanos() {
+            return this.p50Nanos;
+        }
+
+        long getP99Nanos() {
+            return this.p99Nanos;
+        }
+
+        double getErrorRate() {
+            return this.errorRate;
+        }
+
+        boolean isEjected() {
+            return this.ejected;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+}
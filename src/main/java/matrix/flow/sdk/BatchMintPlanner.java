@@ -0,0 +1,98 @@
+package matrix.flow.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.nftco.flow.sdk.FlowTransactionResult;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Sizes batch mint transactions. The access node reports no computation used in 0.6, so the
+ * largest batch fitting the computation limit is found by additive increase after every full batch
+ * that sealed and multiplicative decrease after every batch that ran out of computation.
+ */
+@Log4j2
+final class BatchMintPlanner {
+
+    static final long MIN_COMPUTATION_LIMIT = 100L;
+    static final double COMPUTATION_HEADROOM = 1.5;
+
+    private static final String COMPUTATION_LIMIT_ERROR_CODE = "Error Code: 1110";
+    private static final String COMPUTATION_LIMIT_ERROR = "computation exceeds limit";
+
+    private final long maxComputationLimit;
+    private final int maxBatchSizeCap;
+    private int maxBatchSize;
+
+    /**
+     * @param maxComputationLimit computation limit of a full batch
+     * @param initialBatchSize mints per batch until the first batch sealed
+     * @param maxBatchSizeCap mints per batch never exceeded, whatever the computation
+     */
+    BatchMintPlanner(final long maxComputationLimit, final int initialBatchSize,
+            final int maxBatchSizeCap) {
+        this.maxComputationLimit = maxComputationLimit;
+        this.maxBatchSizeCap = Math.max(1, maxBatchSizeCap);
+        this.maxBatchSize = Math.max(1, Math.min(initialBatchSize, this.maxBatchSizeCap));
+    }
+
+    synchronized int getMaxBatchSize() {
+        return this.maxBatchSize;
+    }
+
+    /**
+     * Split a mint request into evenly sized batches
+     *
+     * @param size number of mints
+     *
+     * @return size of each batch in input order
+     */
+    synchronized List<Integer> plan(final int size) {
+        final List<Integer> batches = new ArrayList<>();
+        if (size <= 0) {
+            return batches;
+        }
+        final int count = (size + this.maxBatchSize - 1) / this.maxBatchSize;
+        for (int i = 0; i < count; i++) {
+            batches.add(size / count + (i < size % count ? 1 : 0));
+        }
+        return batches;
+    }
+
+    /**
+     * @param items mints in the batch
+     *
+     * @return computation limit to send the batch with
+     */
+    synchronized long computationLimit(final int items) {
+        final double itemComputation = (double) this.maxComputationLimit / this.maxBatchSize;
+        final long limit = (long) Math.ceil(items * itemComputation * COMPUTATION_HEADROOM);
+        return Math.min(this.maxComputationLimit, Math.max(MIN_COMPUTATION_LIMIT, limit));
+    }
+
+    /**
+     * Learn from a batch that was sent with {@link #computationLimit}
+     *
+     * @param items mints in the batch
+     * @param result sealed result of the batch
+     */
+    synchronized void sealed(final int items, final FlowTransactionResult result) {
+        if (isComputationLimitExceeded(result)) {
+            final int reduced = Math.max(1, this.maxBatchSize / 2);
+            log.info(String.format("Batch of %d mints exceeded its computation limit, shrink to %d",
+                    items, reduced));
+            this.maxBatchSize = reduced;
+        } else if (result.getErrorMessage().isEmpty() && items >= this.maxBatchSize
+                && this.maxBatchSize < this.maxBatchSizeCap) {
+            this.maxBatchSize++;
+        }
+    }
+
+    static boolean isComputationLimitExceeded(final FlowTransactionResult result) {
+        final String errorMessage = result.getErrorMessage();
+        return errorMessage.contains(COMPUTATION_LIMIT_ERROR_CODE)
+                || errorMessage.toLowerCase().contains(COMPUTATION_LIMIT_ERROR);
+    }
+
+}
@@ -0,0 +1,173 @@
+package matrix.flow.sdk;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.nftco.flow.sdk.FlowScript;
+
+import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+/**
+ * Resolves every bundled {@code .cdc.temp} template into a ready-to-send {@link FlowScript} once
+ * per set of contract addresses, so transactions and scripts no longer re-read the classpath and
+ * re-run regex replacements per call.
+ */
+@Log4j2
+public final class CadenceTemplateRegistry {
+
+    public static final String MINT_VOUCHER = "mint_voucher.cdc.temp";
+    public static final String BATCH_MINT_VOUCHER = "batch_mint_voucher.cdc.temp";
+    public static final String TRANSFER_FUSD = "transfer_fusd.cdc.temp";
+    public static final String TRANSFER_FLOW_TOKEN = "transfer_flow_token.cdc.temp";
+    public static final String VERIFY_SIG = "verify_sig_script.cdc.temp";
+    public static final String VERIFY_COMP_SIG = "verify_comp_sig_script.cdc.temp";
+    public static final String BATCH_VERIFY_SIG = "batch_verify_sig_script.cdc.temp";
+    public static final String GENERATE_LAND_HASH = "generate_land_hash.cdc.temp";
+
+    static final List<String> TEMPLATE_NAMES = Collections.unmodifiableList(
+            Arrays.asList(MINT_VOUCHER, BATCH_MINT_VOUCHER, TRANSFER_FUSD, TRANSFER_FLOW_TOKEN,
+                    VERIFY_SIG, VERIFY_COMP_SIG, BATCH_VERIFY_SIG, GENERATE_LAND_HASH));
+
+    static final String FUNGIBLE_TOKEN_ADDRESS_TEMP = "FUNGIBLE_TOKEN_ADDRESS";
+    static final String FUSD_ADDRESS_TEMP = "FUSD_ADDRESS";
+    static final String FLOW_TOKEN_ADDRESS_TEMP = "FLOW_TOKEN_ADDRESS";
+    static final String NON_FUNGIBLE_TOKEN_ADDRESS_TEMP = "NON_FUNGIBLE_TOKEN_ADDRESS";
+    static final String VOUCHER_ADDRESS_TEMP = "VOUCHER_ADDRESS";
+
+    static final Set<String> KNOWN_PLACEHOLDERS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList(FUNGIBLE_TOKEN_ADDRESS_TEMP, FUSD_ADDRESS_TEMP,
+                    FLOW_TOKEN_ADDRESS_TEMP, NON_FUNGIBLE_TOKEN_ADDRESS_TEMP,
+                    VOUCHER_ADDRESS_TEMP)));
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("%([A-Z_]+)");
+
+    private static final ConcurrentMap<Map<String, String>, CadenceTemplateRegistry> REGISTRIES =
+            new ConcurrentHashMap<>();
+
+    private final Map<String, FlowScript> scripts = new HashMap<>();
+    private final Map<String, String> unresolved = new HashMap<>();
+
+    CadenceTemplateRegistry(final Map<String, String> sources,
+            final Map<String, String> bindings) {
+        for (final Map.Entry<String, String> source : sources.entrySet()) {
+            final String missing = this.resolve(source.getKey(), source.getValue(), bindings);
+            if (missing != null) {
+                this.unresolved.put(source.getKey(), missing);
+            }
+        }
+    }
+
+    /**
+     * Registry for the contract addresses of a client config. Configs that only differ by key
+     * index or credentials share one instance.
+     *
+     * @param clientConfig client config providing the contract addresses
+     *
+     * @return shared registry for the addresses of the config
+     *
+     * @throws FlowClientException if a bundled template uses an unknown placeholder
+     */
+    public static CadenceTemplateRegistry forConfig(final VoucherClientConfig clientConfig) {
+        final Map<String, String> bindings = new HashMap<>();
+        bindings.put(FUNGIBLE_TOKEN_ADDRESS_TEMP, clientConfig.getFungibleTokenAddress());
+        bindings.put(FUSD_ADDRESS_TEMP, clientConfig.getFusdAddress());
+        bindings.put(FLOW_TOKEN_ADDRESS_TEMP, clientConfig.getFlowTokenAddress());
+        bindings.put(NON_FUNGIBLE_TOKEN_ADDRESS_TEMP, clientConfig.getNonFungibleTokenAddress());
+        bindings.put(VOUCHER_ADDRESS_TEMP, clientConfig.getVoucherAddress());
+        return forBindings(bindings);
+    }
+
+    /**
+     * Registry without any contract address, only the placeholder free scripts are resolvable.
+     *
+     * @return shared registry
+     */
+    public static CadenceTemplateRegistry plain() {
+        return forBindings(Collections.<String, String>emptyMap());
+    }
+
+    private static CadenceTemplateRegistry forBindings(final Map<String, String> bindings) {
+        return REGISTRIES.computeIfAbsent(Collections.unmodifiableMap(new HashMap<>(bindings)),
+                key -> new CadenceTemplateRegistry(loadSources(), key));
+    }
+
+    static Map<String, String> loadSources() {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        for (final String name : TEMPLATE_NAMES) {
+            sources.put(name, FlowSimpleClient.readScript(name));
+        }
+        return sources;
+    }
+
+    /**
+     * Get the resolved script of a bundled template
+     *
+     * @param name template file name, e.g. {@link #MINT_VOUCHER}
+     *
+     * @return ready-to-send script
+     *
+     * @throws FlowClientException if the template is unknown or the config misses an address it
+     *         requires
+     */
+    public FlowScript getScript(final String name) {
+        final FlowScript script = this.scripts.get(name);
+        if (script != null) {
+            return script;
+        }
+        final String missing = this.unresolved.get(name);
+        if (missing != null) {
+            throw new FlowClientException(String.format(
+                    "Template %s requires a config value for %%%s", name, missing));
+        }
+        throw new FlowClientException(String.format("Unknown template %s", name));
+    }
+
+    /**
+     * Substitute all placeholders in a single pass.
+     *
+     * @return the first placeholder without a bound value, or null once the script is registered
+     */
+    private String resolve(final String name, final String template,
+            final Map<String, String> bindings) {
+        final Matcher matcher = PLACEHOLDER.matcher(template);
+        final StringBuilder resolved = new StringBuilder(template.length());
+        String missing = null;
+        int last = 0;
+        while (matcher.find()) {
+            final String placeholder = matcher.group(1);
+            if (!KNOWN_PLACEHOLDERS.contains(placeholder)) {
+                throw new FlowClientException(
+                        String.format("Unknown placeholder %%%s in %s", placeholder, name));
+            }
+            final String value = bindings.get(placeholder);
+            if (value == null) {
+                if (missing == null) {
+                    missing = placeholder;
+                }
+                continue;
+            }
+            resolved.append(template, last, matcher.start()).append(value);
+            last = matcher.end();
+        }
+        if (missing != null) {
+            log.debug(String.format("Template %s left unresolved, missing %s", name, missing));
+            return missing;
+        }
+        resolved.append(template, last, template.length());
+        this.scripts.put(name, new FlowScript(resolved.toString().getBytes()));
+        return null;
+    }
+
+}
@@ -0,0 +1,163 @@
+package matrix.flow.sdk;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.nftco.flow.sdk.FlowEvent;
+import com.nftco.flow.sdk.cadence.AddressField;
+import com.nftco.flow.sdk.cadence.CompositeAttribute;
+import com.nftco.flow.sdk.cadence.Field;
+import com.nftco.flow.sdk.cadence.StringField;
+import com.nftco.flow.sdk.cadence.UFix64NumberField;
+import com.nftco.flow.sdk.cadence.UInt64NumberField;
+
+import matrix.flow.sdk.model.PaymentType;
+import matrix.flow.sdk.model.VoucherClientConfig;
+import matrix.flow.sdk.model.VoucherMetadataModel;
+
+/**
+ * Decodes the events of the voucher and payment contracts. Event types are matched by one lookup
+ * of their exact type ids, built once per set of contract addresses, and fields are read by their
+ * declared position. A field found at another position, e.g. after a contract upgrade, is looked
+ * up by name instead.
+ */
+public final class EventDecoder {
+
+    /**
+     * Events the decoder knows, payment events of both tokens share a kind
+     */
+    public enum Kind {
+        MINTED, TOKENS_WITHDRAWN, TOKENS_DEPOSITED
+    }
+
+    static final String[] MINTED_FIELDS =
+            {"id", "name", "description", "animationUrl", "hash", "type"};
+    static final int AMOUNT_POSITION = 0;
+    static final int ADDRESS_POSITION = 1;
+
+    private static final ConcurrentMap<List<String>, EventDecoder> DECODERS =
+            new ConcurrentHashMap<>();
+
+    private final Map<String, Kind> kinds = new HashMap<>();
+    private final Map<String, PaymentType> paymentTypes = new HashMap<>();
+
+    EventDecoder(final String voucherAddress, final String fusdAddress,
+            final String flowTokenAddress) {
+        this.kinds.put("A." + voucherAddress + ".MatrixWorldVoucher.Minted", Kind.MINTED);
+        this.register("A." + fusdAddress + ".FUSD", PaymentType.FUSD);
+        this.register("A." + flowTokenAddress + ".FlowToken", PaymentType.FLOW);
+    }
+
+    public static EventDecoder forConfig(final VoucherClientConfig clientConfig) {
+        final List<String> addresses = Arrays.asList(clientConfig.getVoucherAddress(),
+                clientConfig.getFusdAddress(), clientConfig.getFlowTokenAddress());
+        return DECODERS.computeIfAbsent(addresses,
+                key -> new EventDecoder(key.get(0), key.get(1), key.get(2)));
+    }
+
+    /**
+     * @return kind of the event or null for events of other contracts
+     */
+    public Kind kindOf(final FlowEvent event) {
+        return this.kinds.get(event.getType());
+    }
+
+    /**
+     * @return token of a payment event or null for other events
+     */
+    public PaymentType paymentTypeOf(final FlowEvent event) {
+        return this.paymentTypes.get(event.getType());
+    }
+
+    /**
+     * @return Minted events of the list in order
+     */
+    public List<VoucherMetadataModel> decodeMinted(final List<FlowEvent> events) {
+        final List<VoucherMetadataModel> mintedTokens = new ArrayList<>(events.size());
+        for (final FlowEvent event : events) {
+            if (this.kindOf(event) == Kind.MINTED) {
+                mintedTokens.add(decodeMinted(event));
+            }
+        }
+        return mintedTokens;
+    }
+
+    /**
+     * @param event a {@link Kind#MINTED} event
+     */
+    public static VoucherMetadataModel decodeMinted(final FlowEvent event) {
+        final CompositeAttribute[] fields = event.getEvent().getValue().getFields();
+        final VoucherMetadataModel mintedToken = new VoucherMetadataModel();
+        mintedToken.setId(((UInt64NumberField) field(fields, 0, MINTED_FIELDS[0])).toInt());
+        mintedToken.setName(((StringField) field(fields, 1, MINTED_FIELDS[1])).getValue());
+        mintedToken.setDescription(((StringField) field(fields, 2, MINTED_FIELDS[2])).getValue());
+        mintedToken.setAnimationUrl(((StringField) field(fields, 3, MINTED_FIELDS[3])).getValue());
+        mintedToken.setHash(((StringField) field(fields, 4, MINTED_FIELDS[4])).getValue());
+        mintedToken.setType(((StringField) field(fields, 5, MINTED_FIELDS[5])).getValue());
+        return mintedToken;
+    }
+
+    /**
+     * @param event a {@link Kind#TOKENS_WITHDRAWN} or {@link Kind#TOKENS_DEPOSITED} event
+     */
+    public static BigDecimal amount(final FlowEvent event) {
+        final CompositeAttribute[] fields = event.getEvent().getValue().getFields();
+        return ((UFix64NumberField) field(fields, AMOUNT_POSITION, "amount")).toBigDecimal();
+    }
+
+    /**
+     * @param event a {@link Kind#TOKENS_WITHDRAWN} or {@link Kind#TOKENS_DEPOSITED} event
+     *
+     * @return {@code from} of a withdrawal or {@code to} of a deposit without 0x, null if nil
+     */
+    public static String address(final FlowEvent event) {
+        final CompositeAttribute[] fields = event.getEvent().getValue().getFields();
+        Field<?> address = null;
+        if (fields.length > ADDRESS_POSITION && isAddressName(fields[ADDRESS_POSITION].getName())) {
+            address = fields[ADDRESS_POSITION].getValue();
+        } else {
+            for (final CompositeAttribute attribute : fields) {
+                if (isAddressName(attribute.getName())) {
+                    address = attribute.getValue();
+                }
+            }
+        }
+        // Address? wraps the address in an optional
+        final Object value = address == null ? null : address.getValue();
+        if (!(value instanceof AddressField)) {
+            return null;
+        }
+        return ((AddressField) value).getValue().substring(2);
+    }
+
+    private void register(final String tokenPrefix, final PaymentType paymentType) {
+        this.kinds.put(tokenPrefix + ".TokensWithdrawn", Kind.TOKENS_WITHDRAWN);
+        this.kinds.put(tokenPrefix + ".TokensDeposited", Kind.TOKENS_DEPOSITED);
+        this.paymentTypes.put(tokenPrefix + ".TokensWithdrawn", paymentType);
+        this.paymentTypes.put(tokenPrefix + ".TokensDeposited", paymentType);
+    }
+
+    private static boolean isAddressName(final String name) {
+        return "from".equals(name) || "to".equals(name);
+    }
+
+    private static Field<?> field(final CompositeAttribute[] fields, final int position,
+            final String name) {
+        if (position < fields.length && name.equals(fields[position].getName())) {
+            return fields[position].getValue();
+        }
+        for (final CompositeAttribute attribute : fields) {
+            if (name.equals(attribute.getName())) {
+                return attribute.getValue();
+            }
+        }
+        return null;
+    }
+
+}
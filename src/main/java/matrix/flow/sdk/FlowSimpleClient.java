@@ -7,9 +7,9 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
-import com.google.common.primitives.Bytes;
-import com.google.common.primitives.Longs;
+import com.google.protobuf.ByteString;
 import com.nftco.flow.sdk.Flow;
 import com.nftco.flow.sdk.FlowAccessApi;
 import com.nftco.flow.sdk.FlowAccount;
@@ -21,34 +21,104 @@ import com.nftco.flow.sdk.FlowScript;
 import com.nftco.flow.sdk.FlowScriptResponse;
 import com.nftco.flow.sdk.FlowTransactionResult;
 import com.nftco.flow.sdk.FlowTransactionStatus;
-import com.nftco.flow.sdk.HashAlgorithm;
 import com.nftco.flow.sdk.cadence.AddressField;
 import com.nftco.flow.sdk.cadence.ArrayField;
+import com.nftco.flow.sdk.cadence.Field;
 import com.nftco.flow.sdk.cadence.IntNumberField;
 import com.nftco.flow.sdk.cadence.StringField;
 import com.nftco.flow.sdk.cadence.UFix64NumberField;
 import com.nftco.flow.sdk.cadence.UInt64NumberField;
-import com.nftco.flow.sdk.crypto.HasherImpl;
 
 import org.apache.commons.io.IOUtils;
 
 import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.AccessNode;
+import matrix.flow.sdk.model.AccountKeyCacheStats;
 import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.SignatureVerificationRequest;
+import matrix.flow.sdk.model.VoucherClientConfig;
 
 @Log4j2
 public class FlowSimpleClient {
 
     protected final FlowAccessApi accessAPI;
     protected final int waitForSealTries;
-    protected final HasherImpl hasher;
+    protected final CadenceTemplateRegistry templates;
+    protected final SealTracker sealTracker;
+    protected final ReferenceBlockProvider referenceBlocks;
+    protected final boolean verifySignaturesOnChain;
+    protected final AccountKeyCache accountKeys;
+    protected final MetricsRegistry metrics;
+    private final MetricsRegistry.Timer scriptTimer;
+    private final MetricsRegistry.Timer keyFetchTimer;
 
     static final int DAYS_IN_WEEK = 7;
 
     public FlowSimpleClient(final String host, final int port, final int waitForSealTries) {
+        this(host, port, waitForSealTries, false);
+    }
+
+    /**
+     * @param verifySignaturesOnChain verify user signatures with the Cadence scripts instead of
+     *        locally
+     */
+    public FlowSimpleClient(final String host, final int port, final int waitForSealTries,
+            final boolean verifySignaturesOnChain) {
+        this(Flow.newAccessApi(host, port), waitForSealTries, CadenceTemplateRegistry.plain(),
+                null, null, null, verifySignaturesOnChain);
+    }
 
-        this.accessAPI = Flow.newAccessApi(host, port);
+    /**
+     * @param accessNodes access nodes to balance over, calls go to the fastest admitted node
+     */
+    public FlowSimpleClient(final List<AccessNode> accessNodes, final int waitForSealTries,
+            final boolean verifySignaturesOnChain) {
+        this(BalancedFlowAccessApi.connect(
+                VoucherClientConfig.builder().accessNodes(accessNodes).build()), waitForSealTries,
+                CadenceTemplateRegistry.plain(), null, null, null, verifySignaturesOnChain);
+    }
+
+    /**
+     * @param accessAPI connection to the access node, possibly shared with other clients
+     * @param sealTracker tracker shared with other clients, or null to track on this client's own
+     *        connection
+     * @param referenceBlocks reference block shared with other clients, or null to fetch it on
+     *        this client's own connection once it is older than a minute
+     * @param accountKeys account keys shared with other clients, or null to cache them per client
+     */
+    protected FlowSimpleClient(final FlowAccessApi accessAPI, final int waitForSealTries,
+            final CadenceTemplateRegistry templates, final SealTracker sealTracker,
+            final ReferenceBlockProvider referenceBlocks, final AccountKeyCache accountKeys,
+            final boolean verifySignaturesOnChain) {
+        this(accessAPI, waitForSealTries, templates, sealTracker, referenceBlocks, accountKeys,
+                verifySignaturesOnChain, MetricsRegistry.NOOP);
+    }
+
+    /**
+     * @param metrics receives the latencies of script executions and key reads, and of sealing
+     *        when the client tracks on its own connection
+     */
+    protected FlowSimpleClient(final FlowAccessApi accessAPI, final int waitForSealTries,
+            final CadenceTemplateRegistry templates, final SealTracker sealTracker,
+            final ReferenceBlockProvider referenceBlocks, final AccountKeyCache accountKeys,
+            final boolean verifySignaturesOnChain, final MetricsRegistry metrics) {
+
+        this.accessAPI = accessAPI;
+        this.metrics = metrics;
+        this.scriptTimer = metrics.timer(VoucherMetrics.SCRIPT_EXECUTE);
+        this.keyFetchTimer = metrics.timer(VoucherMetrics.KEY_FETCH);
+        this.verifySignaturesOnChain = verifySignaturesOnChain;
         this.waitForSealTries = waitForSealTries;
-        this.hasher = new HasherImpl(HashAlgorithm.SHA3_256);
+        this.templates = templates;
+        this.sealTracker = sealTracker != null ? sealTracker
+                : new SealTracker(this.accessAPI, waitForSealTries, metrics);
+        this.referenceBlocks = referenceBlocks != null ? referenceBlocks
+                : new ReferenceBlockProvider(() -> this.accessAPI.getLatestBlockHeader().getId(),
+                        ReferenceBlockProvider.DEFAULT_REFRESH_MILLIS,
+                        ReferenceBlockProvider.DEFAULT_MAX_AGE_MILLIS);
+        this.accountKeys = accountKeys != null ? accountKeys
+                : AccountKeyCache.forAccessApi(this.accessAPI, AccountKeyCache.DEFAULT_TTL_MILLIS,
+                        AccountKeyCache.DEFAULT_MAX_SIZE);
     }
 
     /**
@@ -68,9 +138,12 @@ public class FlowSimpleClient {
     public boolean verifyUserSignature(final String message, final String[] publicKeysHex,
             final double[] weights, final int[] signAlgos, final int[] hashAlogs,
             final String[] signatures) {
+        if (!this.verifySignaturesOnChain) {
+            return UserSignatureVerifier.verifyKeyList(message, publicKeysHex, weights, signAlgos,
+                    hashAlogs, signatures);
+        }
 
-        final FlowScript script =
-                new FlowScript(readScript("verify_sig_script.cdc.temp").getBytes());
+        final FlowScript script = this.templates.getScript(CadenceTemplateRegistry.VERIFY_SIG);
         final List<StringField> publicKeyHexC = new ArrayList<>();
         final List<UFix64NumberField> weightsC = new ArrayList<>();
         final List<UInt64NumberField> signAlgosC = new ArrayList<>();
@@ -85,7 +158,7 @@ public class FlowSimpleClient {
             signaturesC.add(new StringField(signatures[i]));
         }
 
-        final FlowScriptResponse result = this.accessAPI.executeScriptAtLatestBlock(script,
+        final FlowScriptResponse result = this.executeScript(script,
                 Arrays.asList(new FlowArgument(new StringField(message)).getByteStringValue(),
                         new FlowArgument(new ArrayField(publicKeyHexC)).getByteStringValue(),
                         new FlowArgument(new ArrayField(weightsC)).getByteStringValue(),
@@ -96,10 +169,103 @@ public class FlowSimpleClient {
         return result.getJsonCadence().getValue().toString().equals("true");
     }
 
+    /**
+     * Verify many user signatures at once, in parallel on local cores or in a single script
+     * execution when signatures are verified on chain
+     *
+     * @param requests arguments of each {@link #verifyUserSignature} call
+     *
+     * @return verification results in input order
+     */
+    public boolean[] verifyUserSignatures(final List<SignatureVerificationRequest> requests) {
+        final boolean[] results = new boolean[requests.size()];
+        if (requests.isEmpty()) {
+            return results;
+        }
+        if (!this.verifySignaturesOnChain) {
+            final List<SignatureVerificationRequest> indexed = new ArrayList<>(requests);
+            IntStream.range(0, indexed.size()).parallel().forEach(i -> {
+                final SignatureVerificationRequest request = indexed.get(i);
+                results[i] = UserSignatureVerifier.verifyKeyList(request.getMessage(),
+                        request.getPublicKeysHex(), request.getWeights(), request.getSignAlgos(),
+                        request.getHashAlgos(), request.getSignatures());
+            });
+            return results;
+        }
+
+        final FlowScript script =
+                this.templates.getScript(CadenceTemplateRegistry.BATCH_VERIFY_SIG);
+        final List<StringField> messagesC = new ArrayList<>();
+        final List<ArrayField> publicKeyHexC = new ArrayList<>();
+        final List<ArrayField> weightsC = new ArrayList<>();
+        final List<ArrayField> signAlgosC = new ArrayList<>();
+        final List<ArrayField> hashAlogsC = new ArrayList<>();
+        final List<ArrayField> signaturesC = new ArrayList<>();
+        for (final SignatureVerificationRequest request : requests) {
+            final List<StringField> publicKeys = new ArrayList<>();
+            final List<UFix64NumberField> weights = new ArrayList<>();
+            final List<UInt64NumberField> signAlgos = new ArrayList<>();
+            final List<UInt64NumberField> hashAlgos = new ArrayList<>();
+            for (int i = 0; i < request.getPublicKeysHex().length; ++i) {
+                publicKeys.add(new StringField(request.getPublicKeysHex()[i]));
+                weights.add(new UFix64NumberField(Double.toString(request.getWeights()[i])));
+                signAlgos.add(new UInt64NumberField(Integer.toString(request.getSignAlgos()[i])));
+                hashAlgos.add(new UInt64NumberField(Integer.toString(request.getHashAlgos()[i])));
+            }
+            final List<StringField> signatures = new ArrayList<>();
+            for (final String signature : request.getSignatures()) {
+                signatures.add(new StringField(signature));
+            }
+            messagesC.add(new StringField(request.getMessage()));
+            publicKeyHexC.add(new ArrayField(publicKeys));
+            weightsC.add(new ArrayField(weights));
+            signAlgosC.add(new ArrayField(signAlgos));
+            hashAlogsC.add(new ArrayField(hashAlgos));
+            signaturesC.add(new ArrayField(signatures));
+        }
+
+        final FlowScriptResponse result = this.executeScript(script,
+                Arrays.asList(new FlowArgument(new ArrayField(messagesC)).getByteStringValue(),
+                        new FlowArgument(new ArrayField(publicKeyHexC)).getByteStringValue(),
+                        new FlowArgument(new ArrayField(weightsC)).getByteStringValue(),
+                        new FlowArgument(new ArrayField(signAlgosC)).getByteStringValue(),
+                        new FlowArgument(new ArrayField(hashAlogsC)).getByteStringValue(),
+                        new FlowArgument(new ArrayField(signaturesC)).getByteStringValue()));
+        final Field<?>[] verified = ((ArrayField) result.getJsonCadence()).getValue();
+        for (int i = 0; i < results.length; ++i) {
+            results[i] = Boolean.TRUE.equals(verified[i].getValue());
+        }
+        return results;
+    }
+
+    /**
+     * Verify user signatures against the keys of a Flow account
+     *
+     * @param message singed raw message in Hex string
+     * @param accountAddress account address
+     * @param keyIds keys ids corresponding to signatures
+     * @param signatures signed using above keys
+     *
+     * @return true means verified successfully
+     */
     public boolean verifyUserSignatureCadence(final String message, final String accountAddress,
             final List<Integer> keyIds, final List<String> signatures) {
+        if (!this.verifySignaturesOnChain) {
+            // Cadence addresses are accepted with their 0x prefix
+            final FlowAddress address = new FlowAddress(
+                    accountAddress.startsWith("0x") ? accountAddress.substring(2) : accountAddress);
+            if (UserSignatureVerifier.verifyAccountKeys(message,
+                    this.accountKeys.getKeys(address), keyIds, signatures)) {
+                return true;
+            }
+            // The user may sign with a key added after the keys were cached
+            return this.accountKeys.refresh(address) && UserSignatureVerifier
+                    .verifyAccountKeys(message, this.accountKeys.getKeys(address), keyIds,
+                            signatures);
+        }
+
         final FlowScript script =
-                new FlowScript(readScript("verify_comp_sig_script.cdc.temp").getBytes());
+                this.templates.getScript(CadenceTemplateRegistry.VERIFY_COMP_SIG);
         final List<IntNumberField> keyIdsC = new ArrayList<>();
         final List<StringField> signaturesC = new ArrayList<>();
         for (int i = 0; i < keyIds.size(); ++i) {
@@ -107,7 +273,7 @@ public class FlowSimpleClient {
             signaturesC.add(new StringField(signatures.get(i)));
         }
 
-        final FlowScriptResponse result = this.accessAPI.executeScriptAtLatestBlock(script,
+        final FlowScriptResponse result = this.executeScript(script,
                 Arrays.asList(new FlowArgument(new StringField(message)).getByteStringValue(),
                         new FlowArgument(new AddressField(accountAddress)).getByteStringValue(),
                         new FlowArgument(new ArrayField(keyIdsC)).getByteStringValue(),
@@ -129,21 +295,30 @@ public class FlowSimpleClient {
      */
     public String generateLandInfoHash(final Integer topLeftX, final Integer topLeftY,
             final Integer height, final Integer width) {
-        final byte[] topLeftXB = Longs.toByteArray(Integer.toUnsignedLong(topLeftX));
-        final byte[] topLeftYB = Longs.toByteArray(Integer.toUnsignedLong(topLeftY));
-        final byte[] heightB = Longs.toByteArray(Integer.toUnsignedLong(height));
-        final byte[] widthB = Longs.toByteArray(Integer.toUnsignedLong(width));
+        return LandHasher.generateLandInfoHash(topLeftX, topLeftY, height, width);
+    }
 
-        return hasher.hashAsHexString(Bytes.concat(topLeftXB, topLeftYB, heightB, widthB));
+    /**
+     * Generate cadence compatible LandInfoHashes of many squares of Lands in parallel
+     *
+     * @param topLeftX UInt64 topLeftX coordinates
+     * @param topLeftY UInt64 topLeftY coordinates
+     * @param height UInt64 heights of square lands
+     * @param width UInt64 widths of square lands
+     * @param out receives the 32 byte hash of the i-th square at offset {@code i * 32}
+     */
+    public void generateLandInfoHashes(final int[] topLeftX, final int[] topLeftY,
+            final int[] height, final int[] width, final byte[] out) {
+        LandHasher.generateLandInfoHashes(topLeftX, topLeftY, height, width, out);
     }
 
     public String generateLandInfoHashCadence(final Integer topLeftX, final Integer topLeftY,
             final Integer height, final Integer width) {
 
         final FlowScript script =
-                new FlowScript(readScript("generate_land_hash.cdc.temp").getBytes());
+                this.templates.getScript(CadenceTemplateRegistry.GENERATE_LAND_HASH);
 
-        final FlowScriptResponse result = this.accessAPI.executeScriptAtLatestBlock(script,
+        final FlowScriptResponse result = this.executeScript(script,
                 Arrays.asList(
                         new FlowArgument(new UInt64NumberField(topLeftX.toString()))
                                 .getByteStringValue(),
@@ -157,6 +332,13 @@ public class FlowSimpleClient {
         return result.getJsonCadence().getValue().toString();
     }
 
+    /**
+     * @return hit rate, evictions and staleness of the cached account keys
+     */
+    public AccountKeyCacheStats getAccountKeyCacheStats() {
+        return this.accountKeys.getStats();
+    }
+
     public FlowAccount getAccount(final FlowAddress address) {
         return this.accessAPI.getAccountAtLatestBlock(address);
     }
@@ -167,39 +349,31 @@ public class FlowSimpleClient {
     }
 
     protected FlowId getLatestBlockID() {
-        return this.accessAPI.getLatestBlockHeader().getId();
+        return this.referenceBlocks.getReferenceBlockId();
     }
 
     protected FlowAccountKey getAccountKey(final FlowAddress address, final int keyIndex) {
-        final FlowAccount account = this.getAccount(address);
-        return account.getKeys().get(keyIndex);
+        final long start = System.nanoTime();
+        try {
+            final FlowAccount account = this.getAccount(address);
+            return account.getKeys().get(keyIndex);
+        } finally {
+            this.keyFetchTimer.record(System.nanoTime() - start);
+        }
     }
 
-    private FlowTransactionResult getTransactionResult(final FlowId txID) {
-        return this.accessAPI.getTransactionResultById(txID);
+    protected FlowScriptResponse executeScript(final FlowScript script,
+            final Iterable<ByteString> arguments) {
+        final long start = System.nanoTime();
+        try {
+            return this.accessAPI.executeScriptAtLatestBlock(script, arguments);
+        } finally {
+            this.scriptTimer.record(System.nanoTime() - start);
+        }
     }
 
     protected FlowTransactionResult waitForSeal(final FlowId txID) {
-        FlowTransactionResult txResult;
-        int countDown = this.waitForSealTries;
-
-        while (countDown > 0) {
-            txResult = this.getTransactionResult(txID);
-            countDown--;
-            if (txResult.getStatus().equals(FlowTransactionStatus.SEALED)) {
-                return txResult;
-            }
-
-            try {
-                Thread.sleep(1000L);
-            } catch (final Exception e) {
-                FlowSimpleClient.log.error("Interrupted with " + e.toString());
-                e.printStackTrace();
-                Thread.currentThread().interrupt();
-                throw new FlowClientException(e.toString());
-            }
-        }
-        throw new FlowClientException("Timed out waiting for sealed transaction");
+        return this.sealTracker.awaitSealed(txID);
     }
 
     private FlowAddress getAccountCreatedAddress(final FlowTransactionResult txResult) {
@@ -0,0 +1,198 @@
+package matrix.flow.sdk;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the meters in memory for tests, benchmarks and services without a metrics library.
+ * Timers count into log-linear buckets, four per power of two, so a percentile is reported within
+ * 25% of the recorded latency without keeping the samples.
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+    private final ConcurrentMap<String, InMemoryTimer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, InMemoryCounter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final long createdNanos = System.nanoTime();
+
+    @Override
+    public InMemoryTimer timer(final String name, final String... tags) {
+        return this.timers.computeIfAbsent(id(name, tags), key -> new InMemoryTimer());
+    }
+
+    @Override
+    public InMemoryCounter counter(final String name, final String... tags) {
+        return this.counters.computeIfAbsent(id(name, tags), key -> new InMemoryCounter());
+    }
+
+    @Override
+    public void gauge(final String name, final LongSupplier value, final String... tags) {
+        this.gauges.put(id(name, tags), value);
+    }
+
+    /**
+     * @return recorded timer or null if nothing registered it
+     */
+    public InMemoryTimer getTimer(final String name, final String... tags) {
+        return this.timers.get(id(name, tags));
+    }
+
+    /**
+     * @return count of the counter, 0 if nothing registered it
+     */
+    public long getCount(final String name, final String... tags) {
+        final InMemoryCounter counter = this.counters.get(id(name, tags));
+        return counter == null ? 0L : counter.count();
+    }
+
+    /**
+     * @return current value of the gauge or null if nothing registered it
+     */
+    public Long getGauge(final String name, final String... tags) {
+        final LongSupplier gauge = this.gauges.get(id(name, tags));
+        return gauge == null ? null : gauge.getAsLong();
+    }
+
+    /**
+     * @return operations per second of the timer since the registry was created
+     */
+    public double getRate(final String name, final String... tags) {
+        final InMemoryTimer timer = this.getTimer(name, tags);
+        final double seconds = (System.nanoTime() - this.createdNanos) / 1e9;
+        return timer == null || seconds <= 0 ? 0.0 : timer.count() / seconds;
+    }
+
+    /**
+     * @return one line per meter in name order, for logging
+     */
+    public String report() {
+        final Map<String, String> lines = new TreeMap<>();
+        this.timers.forEach((id, timer) -> lines.put(id, String.format(
+                "%s count=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms", id, timer.count(),
+                timer.meanNanos() / 1e6, timer.percentileNanos(0.5) / 1e6,
+                timer.percentileNanos(0.99) / 1e6, timer.maxNanos() / 1e6)));
+        this.counters.forEach((id, counter) -> lines.put(id,
+                String.format("%s count=%d", id, counter.count())));
+        this.gauges.forEach((id, gauge) -> lines.put(id,
+                String.format("%s value=%d", id, gauge.getAsLong())));
+        return String.join(System.lineSeparator(), lines.values());
+    }
+
+    /**
+     * @return name followed by the tags in braces, e.g. {@code voucher.pool.key.active{keyIndex=3}}
+     */
+    static String id(final String name, final String... tags) {
+        if (tags.length == 0) {
+            return name;
+        }
+        final StringBuilder id = new StringBuilder(name).append('{');
+        for (int i = 0; i + 1 < tags.length; i += 2) {
+            if (i > 0) {
+                id.append(',');
+            }
+            id.append(tags[i]).append('=').append(tags[i + 1]);
+        }
+        return id.append('}').toString();
+    }
+
+    public static final class InMemoryTimer implements Timer {
+        static final int SUB_BUCKETS = 4;
+        static final int BUCKETS = 256;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+        @Override
+        public void record(final long nanos) {
+            final long value = Math.max(0L, nanos);
+            this.buckets.incrementAndGet(bucket(value));
+            this.count.increment();
+            this.totalNanos.add(value);
+            this.maxNanos.accumulate(value);
+        }
+
+        public long count() {
+            return this.count.sum();
+        }
+
+        public long totalNanos() {
+            return this.totalNanos.sum();
+        }
+
+        public long maxNanos() {
+            return this.maxNanos.get();
+        }
+
+        public double meanNanos() {
+            final long count = this.count();
+            return count == 0 ? 0.0 : (double) this.totalNanos() / count;
+        }
+
+        /**
+         * @param quantile between 0 and 1, e.g. 0.99
+         *
+         * @return upper bound of the bucket holding the quantile, at most the largest latency
+         */
+        public long percentileNanos(final double quantile) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += this.buckets.get(i);
+            }
+            if (total == 0) {
+                return 0L;
+            }
+            final long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += this.buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), this.maxNanos());
+                }
+            }
+            return this.maxNanos();
+        }
+
+        static int bucket(final long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            final int exponent = 63 - Long.numberOfLeadingZeros(value);
+            final int sub = (int) (value >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+            return SUB_BUCKETS + (exponent - 2) * SUB_BUCKETS + sub;
+        }
+
+        static long upperBound(final int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            final int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+            final int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+            if (exponent == 62 && sub == SUB_BUCKETS - 1) {
+                return Long.MAX_VALUE;
+            }
+            return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+        }
+    }
+
+    public static final class InMemoryCounter implements Counter {
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public void increment(final long amount) {
+            this.count.add(amount);
+        }
+
+        public long count() {
+            return this.count.sum();
+        }
+    }
+
+}
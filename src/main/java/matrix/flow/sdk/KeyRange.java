@@ -0,0 +1,47 @@
+package matrix.flow.sdk;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import matrix.flow.sdk.model.FlowClientException;
+
+/**
+ * Contiguous range of account key indexes
+ */
+@Data
+@AllArgsConstructor
+public final class KeyRange {
+
+    private final int start;
+    private final int capacity;
+
+    /**
+     * Split a range into {@code parts} contiguous ranges differing in size by at most one key, the
+     * first ranges taking the remainder. Every part computes the same split, so replicas given
+     * their id and count lease disjoint keys without coordinating.
+     *
+     * @param start first key index of the range to split
+     * @param capacity keys in the range to split
+     * @param part 0 based index of the part
+     * @param parts number of parts
+     *
+     * @return range of the part, empty if there are fewer keys than parts
+     *
+     * @throws FlowClientException if the part is not one of the parts
+     */
+    public static KeyRange partition(final int start, final int capacity, final int part,
+            final int parts) {
+        if (parts <= 0 || part < 0 || part >= parts) {
+            throw new FlowClientException(
+                    String.format("Part %d out of range of %d parts", part, parts));
+        }
+        final int base = capacity / parts;
+        final int remainder = capacity % parts;
+        return new KeyRange(start + part * base + Math.min(part, remainder),
+                base + (part < remainder ? 1 : 0));
+    }
+
+    public boolean isEmpty() {
+        return this.capacity == 0;
+    }
+
+}
@@ -0,0 +1,264 @@
+package matrix.flow.sdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.FlowClientException;
+
+/**
+ * Leases proposal keys to concurrent senders. Idle keys sit in lock-free queues striped by key, so
+ * borrowers and returners rarely touch the same queue head, and a semaphore counts them so a
+ * borrower only parks when every key is leased. Keys whose transactions all sealed are leased
+ * before keys returned with transactions still in flight, the latter from one queue oldest first
+ * until {@link #promote} moves them over. Health is checked on a background thread instead of on
+ * every lease, a key failing the check is held back until it passes again.
+ *
+ * @param <T> the key, e.g. a client signing with it
+ */
+@Log4j2
+public class KeyScheduler<T> {
+
+    private final List<Lease<T>> leases;
+    private final Queue<Lease<T>>[] settled;
+    private final Queue<Lease<T>> inFlight = new ConcurrentLinkedQueue<>();
+    private final int stripeMask;
+    private final Semaphore available = new Semaphore(0);
+    private final Predicate<T> healthCheck;
+    private final ScheduledThreadPoolExecutor checker;
+    private volatile boolean closed;
+
+    /**
+     * @param keys keys to lease, all idle and assumed healthy
+     * @param healthCheck true if a key can send, e.g. its access node answers a ping
+     * @param healthCheckMillis interval of the health checks, 0 to never check
+     */
+    @SuppressWarnings("unchecked")
+    public KeyScheduler(final List<T> keys, final Predicate<T> healthCheck,
+            final long healthCheckMillis) {
+        final List<Lease<T>> leases = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            leases.add(new Lease<>(keys.get(i), i));
+        }
+        this.leases = Collections.unmodifiableList(leases);
+        int stripes = 1;
+        while (stripes < Math.min(keys.size(), Runtime.getRuntime().availableProcessors())) {
+            stripes <<= 1;
+        }
+        this.stripeMask = stripes - 1;
+        this.settled = new Queue[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.settled[i] = new ConcurrentLinkedQueue<>();
+        }
+        for (final Lease<T> lease : this.leases) {
+            this.settled[lease.index & this.stripeMask].offer(lease);
+        }
+        this.available.release(this.leases.size());
+
+        this.healthCheck = healthCheck;
+        if (healthCheckMillis > 0) {
+            this.checker = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                    .setDaemon(true).setNameFormat("flow-key-health-%d").build());
+            this.checker.scheduleWithFixedDelay(this::checkHealth, healthCheckMillis,
+                    healthCheckMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.checker = null;
+        }
+    }
+
+    /**
+     * Lease an idle key without waiting
+     *
+     * @return leased key or null if every key is leased or unhealthy
+     */
+    public Lease<T> tryAcquire() {
+        return this.tryAcquire(0L, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lease an idle key, waiting up to the timeout for one to be released
+     *
+     * @return leased key or null if none was released in time
+     *
+     * @throws FlowClientException if the scheduler is closed or the thread interrupted
+     */
+    public Lease<T> tryAcquire(final long timeout, final TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            if (this.closed) {
+                throw new FlowClientException("Key scheduler closed");
+            }
+            try {
+                if (!this.available.tryAcquire(Math.max(0L, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS)) {
+                    return null;
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FlowClientException(e.toString());
+            }
+            // The permit guarantees a queued lease, it may still be in flight of being offered
+            Lease<T> lease;
+            while ((lease = this.poll()) == null) {
+                Thread.yield();
+            }
+            if (lease.healthy) {
+                lease.leased.set(true);
+                return lease;
+            }
+            // Held back until the health check passes, its permit is consumed
+            lease.quarantined = true;
+            log.warn(String.format("Hold back unhealthy key %d", lease.index));
+        }
+    }
+
+    /**
+     * Return a leased key, a key that is not leased is ignored so it is never queued twice
+     *
+     * @param settled true if all transactions of the key sealed, the key is then preferred
+     */
+    public void release(final Lease<T> lease, final boolean settled) {
+        if (!lease.leased.compareAndSet(true, false)) {
+            log.warn(String.format("Ignore release of key %d, it is not leased", lease.index));
+            return;
+        }
+        if (!lease.healthy) {
+            lease.quarantined = true;
+            return;
+        }
+        if (settled) {
+            this.settled[lease.index & this.stripeMask].offer(lease);
+        } else {
+            this.inFlight.offer(lease);
+        }
+        this.available.release();
+    }
+
+    /**
+     * Move a key released with transactions in flight to the settled keys once they all sealed,
+     * nothing happens if the key is leased or already settled
+     */
+    public void promote(final Lease<T> lease) {
+        // Only one of this and a borrower polling the key removes it, its permit stays counted
+        if (this.inFlight.remove(lease)) {
+            this.settled[lease.index & this.stripeMask].offer(lease);
+        }
+    }
+
+    /**
+     * @return leases of all keys in key order
+     */
+    public List<Lease<T>> getLeases() {
+        return this.leases;
+    }
+
+    /**
+     * @return keys waiting to be leased
+     */
+    public int getIdleCount() {
+        return this.available.availablePermits();
+    }
+
+    /**
+     * @return keys leased right now
+     */
+    public int getActiveCount() {
+        int active = 0;
+        for (final Lease<T> lease : this.leases) {
+            if (lease.leased.get()) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Stop health checks, leasing fails from now on
+     */
+    public void close() {
+        this.closed = true;
+        if (this.checker != null) {
+            this.checker.shutdownNow();
+        }
+    }
+
+    /**
+     * Check every key once and readmit held back keys that passed
+     */
+    void checkHealth() {
+        for (final Lease<T> lease : this.leases) {
+            boolean healthy;
+            try {
+                healthy = this.healthCheck.test(lease.key);
+            } catch (final RuntimeException e) {
+                log.warn(String.format("Health check of key %d failed with %s", lease.index, e));
+                healthy = false;
+            }
+            lease.healthy = healthy;
+            if (healthy && lease.quarantined) {
+                lease.quarantined = false;
+                log.info(String.format("Readmit key %d", lease.index));
+                this.settled[lease.index & this.stripeMask].offer(lease);
+                this.available.release();
+            }
+        }
+    }
+
+    /**
+     * Take a settled key if any, starting at a random stripe so borrowers spread over the queues,
+     * else the key longest in flight
+     */
+    private Lease<T> poll() {
+        final int home = ThreadLocalRandom.current().nextInt() & this.stripeMask;
+        for (int i = 0; i <= this.stripeMask; i++) {
+            final Lease<T> lease = this.settled[(home + i) & this.stripeMask].poll();
+            if (lease != null) {
+                return lease;
+            }
+        }
+        return this.inFlight.poll();
+    }
+
+    /**
+     * A key and its state, handed out by {@link #tryAcquire}
+     */
+    public static final class Lease<T> {
+        private final T key;
+        private final int index;
+        private volatile boolean healthy = true;
+        private volatile boolean quarantined;
+        private final AtomicBoolean leased = new AtomicBoolean();
+
+        private Lease(final T key, final int index) {
+            this.key = key;
+            this.index = index;
+        }
+
+        public T getKey() {
+            return this.key;
+        }
+
+        /**
+         * @return position of the key in the list the scheduler was created with
+         */
+        public int getIndex() {
+            return this.index;
+        }
+
+        public boolean isHealthy() {
+            return this.healthy;
+        }
+    }
+
+}
@@ -0,0 +1,488 @@
+package matrix.flow.sdk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+
+import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.LandInfo;
+
+/**
+ * Memory-mapped index from land info hash to the square of lands it was generated from. The file
+ * is an open addressing hash table of 48 byte records, the 32 byte hash followed by topLeftX,
+ * topLeftY, height and width, so reopening it only maps the file. The table doubles into a new
+ * file once it is 70% full; a single mapping limits it to 2^25 slots, about 23.5 million squares.
+ * Range scans go through the slots sorted by top left corner, kept in memory and sorted again on
+ * the first scan after a put.
+ */
+@Log4j2
+public class LandHashIndex implements Closeable {
+
+    static final int MAGIC = 0x4C484958;
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 64;
+    static final int RECORD_LENGTH = 48;
+    static final int DEFAULT_CAPACITY = 1 << 16;
+    static final double MAX_LOAD = 0.7;
+    static final int MAX_CAPACITY = 1 << 25;
+
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+
+    private final Path path;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+    // Packed top left corners in ascending order and the slot of each, null after a put
+    private long[] corners;
+    private int[] cornerSlots;
+
+    private LandHashIndex(final Path path, final FileChannel channel,
+            final MappedByteBuffer buffer) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = buffer.getInt(CAPACITY_OFFSET);
+        this.count = buffer.getInt(COUNT_OFFSET);
+    }
+
+    public static LandHashIndex open(final Path path) {
+        return open(path, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Open an index file, creating it if it does not exist
+     *
+     * @param path index file
+     * @param initialCapacity slots of a new file, rounded up to a power of two
+     *
+     * @return opened index
+     *
+     * @throws FlowClientException if the file is no land hash index or cannot be mapped
+     */
+    public static LandHashIndex open(final Path path, final int initialCapacity) {
+        try {
+            if (!Files.exists(path) || Files.size(path) == 0) {
+                final FileChannel channel = create(path, tableSize(initialCapacity));
+                return new LandHashIndex(path, channel, map(channel));
+            }
+            if (Files.size(path) < HEADER_LENGTH) {
+                throw new FlowClientException(
+                        String.format("%s is too short for a land hash index", path));
+            }
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            final MappedByteBuffer buffer = map(channel);
+            final int capacity = buffer.getInt(CAPACITY_OFFSET);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.capacity() != HEADER_LENGTH + (long) capacity * RECORD_LENGTH) {
+                channel.close();
+                throw new FlowClientException(
+                        String.format("%s is no land hash index of version %d", path, VERSION));
+            }
+            return new LandHashIndex(path, channel, buffer);
+        } catch (final IOException e) {
+            throw new FlowClientException(e.toString());
+        }
+    }
+
+    /**
+     * Hash a square of lands and record it
+     *
+     * @return LandInfoHashHexString of the square
+     */
+    public String put(final int topLeftX, final int topLeftY, final int height, final int width) {
+        final byte[] hash = new byte[LandHasher.HASH_LENGTH];
+        LandHasher.generateLandInfoHash(topLeftX, topLeftY, height, width, hash, 0);
+        this.put(hash, 0, topLeftX, topLeftY, height, width);
+        return Hex.encodeHexString(hash);
+    }
+
+    /**
+     * Hash many squares of lands in parallel and record them
+     *
+     * @param out receives the 32 byte hash of the i-th square at offset {@code i * 32}
+     */
+    public void putAll(final int[] topLeftX, final int[] topLeftY, final int[] height,
+            final int[] width, final byte[] out) {
+        LandHasher.generateLandInfoHashes(topLeftX, topLeftY, height, width, out);
+        this.lock.writeLock().lock();
+        try {
+            for (int i = 0; i < topLeftX.length; i++) {
+                this.insert(out, i * LandHasher.HASH_LENGTH, topLeftX[i], topLeftY[i], height[i],
+                        width[i]);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Record the square of lands a hash was generated from
+     *
+     * @param hash array holding the 32 byte hash at {@code offset}
+     */
+    public void put(final byte[] hash, final int offset, final int topLeftX, final int topLeftY,
+            final int height, final int width) {
+        this.lock.writeLock().lock();
+        try {
+            this.insert(hash, offset, topLeftX, topLeftY, height, width);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param hash LandInfoHashHexString, e.g. {@code VoucherMetadataModel.hash}
+     *
+     * @return square of lands of the hash, or null if it was never recorded
+     */
+    public LandInfo get(final String hash) {
+        final byte[] key;
+        try {
+            key = Hex.decodeHex(hash);
+        } catch (final DecoderException e) {
+            return null;
+        }
+        if (key.length != LandHasher.HASH_LENGTH) {
+            return null;
+        }
+        this.lock.readLock().lock();
+        try {
+            final long slot = this.find(key, 0);
+            return slot < 0 || this.isEmpty(slot) ? null : this.read(slot);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visit every recorded square whose top left corner lies within the given inclusive bounds,
+     * ordered by x then y. The scan seeks to the corners of each column within the bounds.
+     */
+    public void scan(final int minX, final int maxX, final int minY, final int maxY,
+            final Consumer<LandInfo> consumer) {
+        while (true) {
+            this.lock.readLock().lock();
+            if (this.corners != null) {
+                break;
+            }
+            this.lock.readLock().unlock();
+            this.lock.writeLock().lock();
+            try {
+                if (this.corners == null) {
+                    this.sortCorners();
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+        try {
+            int i = this.lowerBound(corner(minX, minY));
+            while (i < this.corners.length) {
+                final long corner = this.corners[i];
+                final int x = (int) (corner >> 32);
+                final int y = cornerY(corner);
+                if (x > maxX) {
+                    break;
+                }
+                if (y < minY) {
+                    i = this.lowerBound(corner(x, minY));
+                } else if (y > maxY) {
+                    if (x == maxX) {
+                        break;
+                    }
+                    i = this.lowerBound(corner(x + 1, minY));
+                } else {
+                    consumer.accept(this.read(this.cornerSlots[i]));
+                    i++;
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.count;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write recorded squares through to the file
+     */
+    public void flush() {
+        this.lock.writeLock().lock();
+        try {
+            this.buffer.force();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.lock.writeLock().lock();
+        try {
+            this.buffer.force();
+            this.channel.close();
+        } catch (final IOException e) {
+            throw new FlowClientException(e.toString());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(final byte[] hash, final int offset, final int topLeftX,
+            final int topLeftY, final int height, final int width) {
+        if (isZero(hash, offset)) {
+            throw new FlowClientException("The zero hash marks empty slots and cannot be indexed");
+        }
+        if (this.count + 1 > this.capacity * MAX_LOAD) {
+            this.grow();
+        }
+        final long slot = this.find(hash, offset);
+        final int position = recordPosition(slot);
+        if (this.isEmpty(slot)) {
+            for (int i = 0; i < LandHasher.HASH_LENGTH; i++) {
+                this.buffer.put(position + i, hash[offset + i]);
+            }
+            this.count++;
+            this.buffer.putInt(COUNT_OFFSET, this.count);
+        }
+        this.buffer.putInt(position + LandHasher.HASH_LENGTH, topLeftX);
+        this.buffer.putInt(position + LandHasher.HASH_LENGTH + 4, topLeftY);
+        this.buffer.putInt(position + LandHasher.HASH_LENGTH + 8, height);
+        this.buffer.putInt(position + LandHasher.HASH_LENGTH + 12, width);
+        this.corners = null;
+        this.cornerSlots = null;
+    }
+
+    /**
+     * Collect the occupied slots and sort them by top left corner
+     */
+    private void sortCorners() {
+        final long[] sorted = new long[this.count];
+        final int[] slots = new int[this.count];
+        int n = 0;
+        for (int slot = 0; slot < this.capacity; slot++) {
+            if (!this.isEmpty(slot)) {
+                final int position = recordPosition(slot);
+                sorted[n] = corner(this.buffer.getInt(position + LandHasher.HASH_LENGTH),
+                        this.buffer.getInt(position + LandHasher.HASH_LENGTH + 4));
+                slots[n] = slot;
+                n++;
+            }
+        }
+        sort(sorted, slots, new long[n], new int[n], 0, n);
+        this.corners = sorted;
+        this.cornerSlots = slots;
+    }
+
+    /**
+     * @return position of the first corner not less than the given one
+     */
+    private int lowerBound(final long corner) {
+        int low = 0;
+        int high = this.corners.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (this.corners[middle] < corner) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Linear probing from the slot picked by the first bytes of the hash
+     *
+     * @return slot holding the hash or the empty slot it belongs into
+     */
+    private long find(final byte[] hash, final int offset) {
+        long slot = (readLong(hash, offset) & Long.MAX_VALUE) & (this.capacity - 1);
+        while (true) {
+            if (this.isEmpty(slot) || this.matches(slot, hash, offset)) {
+                return slot;
+            }
+            slot = (slot + 1) & (this.capacity - 1);
+        }
+    }
+
+    private void grow() {
+        final int grown = this.capacity * 2;
+        if (grown > MAX_CAPACITY) {
+            throw new FlowClientException(
+                    String.format("Land hash index %s is full at %d squares", this.path, this.count));
+        }
+        log.info(String.format("Grow land hash index %s to %d slots", this.path, grown));
+        final Path grownPath = this.path.resolveSibling(this.path.getFileName() + ".grow");
+        try {
+            final FileChannel grownChannel = create(grownPath, grown);
+            final LandHashIndex grownIndex =
+                    new LandHashIndex(grownPath, grownChannel, map(grownChannel));
+            final byte[] hash = new byte[LandHasher.HASH_LENGTH];
+            for (long slot = 0; slot < this.capacity; slot++) {
+                if (this.isEmpty(slot)) {
+                    continue;
+                }
+                final int position = recordPosition(slot);
+                for (int i = 0; i < LandHasher.HASH_LENGTH; i++) {
+                    hash[i] = this.buffer.get(position + i);
+                }
+                grownIndex.insert(hash, 0,
+                        this.buffer.getInt(position + LandHasher.HASH_LENGTH),
+                        this.buffer.getInt(position + LandHasher.HASH_LENGTH + 4),
+                        this.buffer.getInt(position + LandHasher.HASH_LENGTH + 8),
+                        this.buffer.getInt(position + LandHasher.HASH_LENGTH + 12));
+            }
+            grownIndex.buffer.force();
+            Files.move(grownPath, this.path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            this.channel.close();
+            this.channel = grownChannel;
+            this.buffer = grownIndex.buffer;
+            this.capacity = grown;
+        } catch (final IOException e) {
+            throw new FlowClientException(e.toString());
+        }
+    }
+
+    private boolean isEmpty(final long slot) {
+        final int position = recordPosition(slot);
+        for (int i = 0; i < LandHasher.HASH_LENGTH; i += 8) {
+            if (this.buffer.getLong(position + i) != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(final long slot, final byte[] hash, final int offset) {
+        final int position = recordPosition(slot);
+        for (int i = 0; i < LandHasher.HASH_LENGTH; i += 8) {
+            if (this.buffer.getLong(position + i) != readLong(hash, offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private LandInfo read(final long slot) {
+        final int position = recordPosition(slot);
+        final byte[] hash = new byte[LandHasher.HASH_LENGTH];
+        for (int i = 0; i < LandHasher.HASH_LENGTH; i++) {
+            hash[i] = this.buffer.get(position + i);
+        }
+        return LandInfo.builder().hash(Hex.encodeHexString(hash))
+                .topLeftX(this.buffer.getInt(position + LandHasher.HASH_LENGTH))
+                .topLeftY(this.buffer.getInt(position + LandHasher.HASH_LENGTH + 4))
+                .height(this.buffer.getInt(position + LandHasher.HASH_LENGTH + 8))
+                .width(this.buffer.getInt(position + LandHasher.HASH_LENGTH + 12)).build();
+    }
+
+    /**
+     * @return corner packed so that corners order by x then y as longs
+     */
+    static long corner(final int x, final int y) {
+        return ((long) x << 32) | ((y ^ Integer.MIN_VALUE) & 0xffffffffL);
+    }
+
+    static int cornerY(final long corner) {
+        return (int) corner ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * Merge sort of corners and their slots in {@code [from, to)}
+     */
+    private static void sort(final long[] corners, final int[] slots, final long[] cornerBuffer,
+            final int[] slotBuffer, final int from, final int to) {
+        if (to - from < 2) {
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        sort(corners, slots, cornerBuffer, slotBuffer, from, middle);
+        sort(corners, slots, cornerBuffer, slotBuffer, middle, to);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || left < middle && corners[left] <= corners[right]) {
+                cornerBuffer[i] = corners[left];
+                slotBuffer[i] = slots[left++];
+            } else {
+                cornerBuffer[i] = corners[right];
+                slotBuffer[i] = slots[right++];
+            }
+        }
+        System.arraycopy(cornerBuffer, from, corners, from, to - from);
+        System.arraycopy(slotBuffer, from, slots, from, to - from);
+    }
+
+    private static int recordPosition(final long slot) {
+        return (int) (HEADER_LENGTH + slot * RECORD_LENGTH);
+    }
+
+    private static FileChannel create(final Path path, final int capacity) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_LENGTH + (long) capacity * RECORD_LENGTH);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(CAPACITY_OFFSET, capacity);
+        header.putInt(COUNT_OFFSET, 0);
+        header.force();
+        return channel;
+    }
+
+    private static MappedByteBuffer map(final FileChannel channel) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+    }
+
+    private static int tableSize(final int initialCapacity) {
+        int capacity = 16;
+        while (capacity < initialCapacity && capacity < MAX_CAPACITY) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static boolean isZero(final byte[] hash, final int offset) {
+        for (int i = 0; i < LandHasher.HASH_LENGTH; i++) {
+            if (hash[offset + i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long readLong(final byte[] bytes, final int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xffL);
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,104 @@
+package matrix.flow.sdk;
+
+import java.util.stream.IntStream;
+
+import org.bouncycastle.crypto.digests.SHA3Digest;
+
+import matrix.flow.sdk.model.FlowClientException;
+
+/**
+ * SHA3-256 land info hashes as computed by {@code generate_land_hash.cdc.temp}: the digest of the
+ * four coordinates as big-endian UInt64. Every thread hashes with its own digest and input buffer,
+ * so hashing allocates nothing beyond the caller's output.
+ */
+public final class LandHasher {
+
+    public static final int HASH_LENGTH = 32;
+
+    static final int INPUT_LENGTH = 32;
+    static final int PARALLEL_CHUNK = 4096;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<LandHasher> HASHERS = ThreadLocal.withInitial(LandHasher::new);
+
+    private final SHA3Digest digest = new SHA3Digest(256);
+    private final byte[] input = new byte[INPUT_LENGTH];
+    private final byte[] hash = new byte[HASH_LENGTH];
+
+    private LandHasher() {
+    }
+
+    /**
+     * Hash a square of lands into {@code out}
+     *
+     * @param out receives the 32 byte hash at {@code offset}
+     */
+    public static void generateLandInfoHash(final int topLeftX, final int topLeftY,
+            final int height, final int width, final byte[] out, final int offset) {
+        HASHERS.get().hash(topLeftX, topLeftY, height, width, out, offset);
+    }
+
+    /**
+     * @return hash of a square of lands in lower case hex
+     */
+    public static String generateLandInfoHash(final int topLeftX, final int topLeftY,
+            final int height, final int width) {
+        final LandHasher hasher = HASHERS.get();
+        hasher.hash(topLeftX, topLeftY, height, width, hasher.hash, 0);
+        final char[] hex = new char[HASH_LENGTH * 2];
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            hex[i * 2] = HEX_DIGITS[(hasher.hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[hasher.hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Hash many squares of lands in parallel, the i-th hash is written to
+     * {@code out[i * 32, i * 32 + 32)}
+     *
+     * @param out caller supplied output of at least {@code 32 * topLeftX.length} bytes
+     *
+     * @throws FlowClientException if the inputs differ in length or the output is too small
+     */
+    public static void generateLandInfoHashes(final int[] topLeftX, final int[] topLeftY,
+            final int[] height, final int[] width, final byte[] out) {
+        final int count = topLeftX.length;
+        if (topLeftY.length != count || height.length != count || width.length != count) {
+            throw new FlowClientException("Land coordinate arrays differ in length");
+        }
+        if (out.length < (long) count * HASH_LENGTH) {
+            throw new FlowClientException(String.format(
+                    "Output of %d bytes cannot hold %d land hashes", out.length, count));
+        }
+        final int chunks = (count + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            final LandHasher hasher = HASHERS.get();
+            final int end = Math.min(count, (chunk + 1) * PARALLEL_CHUNK);
+            for (int i = chunk * PARALLEL_CHUNK; i < end; i++) {
+                hasher.hash(topLeftX[i], topLeftY[i], height[i], width[i], out,
+                        i * HASH_LENGTH);
+            }
+        });
+    }
+
+    private void hash(final int topLeftX, final int topLeftY, final int height, final int width,
+            final byte[] out, final int offset) {
+        // The upper four bytes of every UInt64 stay zero
+        writeInt(this.input, 4, topLeftX);
+        writeInt(this.input, 12, topLeftY);
+        writeInt(this.input, 20, height);
+        writeInt(this.input, 28, width);
+        this.digest.update(this.input, 0, INPUT_LENGTH);
+        this.digest.doFinal(out, offset);
+    }
+
+    private static void writeInt(final byte[] buffer, final int offset, final int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+}
@@ -0,0 +1,67 @@
+package matrix.flow.sdk;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Receives the latencies, counts and gauges of the clients. Meters are looked up once by name and
+ * tags, given as alternating keys and values, and kept by the instrumented class, so a disabled
+ * registry costs one call to an empty method per measurement. Adapt Micrometer or another metrics
+ * library by implementing this interface, names are listed in {@link VoucherMetrics}.
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Records nothing, the default of every client
+     */
+    MetricsRegistry NOOP = new MetricsRegistry() {
+        @Override
+        public Timer timer(final String name, final String... tags) {
+            return Timer.NOOP;
+        }
+
+        @Override
+        public Counter counter(final String name, final String... tags) {
+            return Counter.NOOP;
+        }
+
+        @Override
+        public void gauge(final String name, final LongSupplier value, final String... tags) {
+            // Nothing to sample
+        }
+    };
+
+    /**
+     * @return timer of the name and tags, the same timer on every call
+     */
+    Timer timer(String name, String... tags);
+
+    /**
+     * @return counter of the name and tags, the same counter on every call
+     */
+    Counter counter(String name, String... tags);
+
+    /**
+     * Register a value sampled whenever the registry is read, registering a name and tags again
+     * replaces the value
+     */
+    void gauge(String name, LongSupplier value, String... tags);
+
+    interface Timer {
+        Timer NOOP = nanos -> {
+        };
+
+        void record(long nanos);
+    }
+
+    interface Counter {
+        Counter NOOP = amount -> {
+        };
+
+        void increment(long amount);
+
+        default void increment() {
+            this.increment(1L);
+        }
+    }
+
+}
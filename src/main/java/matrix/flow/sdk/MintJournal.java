@@ -0,0 +1,623 @@
+package matrix.flow.sdk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import com.nftco.flow.sdk.FlowId;
+import com.nftco.flow.sdk.FlowTransactionResult;
+
+import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.BatchMintVoucherResult;
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+/**
+ * Append-only journal of the mints of a pool, so a restart resolves the transactions a crash left
+ * unresolved and no land is minted twice to the same recipient. Every mint records its intent and
+ * the id of its signed transaction before the transaction is sent, then its submission and its
+ * seal. Records waited for are forced to disk together with all records appended meanwhile, so
+ * concurrent mints share one fsync. A record torn by a crash is skipped on load, and the file is
+ * compacted to the records of live mints when it holds twice as many. Pools configured with the
+ * same file share one journal, so a land is claimed once across all of them and their mints are
+ * recovered once.
+ */
+@Log4j2
+public class MintJournal implements Closeable {
+
+    /**
+     * Flow drops a transaction whose reference block is 600 blocks old, about ten minutes, the
+     * rest is a margin for slower blocks and clocks
+     */
+    static final long TRANSACTION_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    static final String INTENT = "INTENT";
+    static final String SIGNED = "SIGNED";
+    static final String SUBMITTED = "SUBMITTED";
+    static final String SEALED = "SEALED";
+    static final String FAILED = "FAILED";
+    static final String ABORTED = "ABORTED";
+
+    private static final String SEPARATOR = "\t";
+    private static final String END = ".";
+    private static final Map<Path, MintJournal> SHARED = new HashMap<>();
+
+    private final Path file;
+    private final ConcurrentMap<Long, Entry> mints = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> claims = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final Object lock = new Object();
+    private FileChannel channel;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appended;
+    private long durable;
+    private boolean flushing;
+    private IOException failure;
+    private int references;
+    private CompletableFuture<List<BatchMintVoucherResult>> recovered;
+
+    /**
+     * @param file journal file, created if missing, or null to mint without journal
+     */
+    public MintJournal(final Path file) {
+        this.file = file;
+        if (file == null) {
+            return;
+        }
+        final long lines = this.load();
+        // Mints cut off before they were signed were never sent
+        final List<Entry> unsigned = new ArrayList<>();
+        for (final Entry entry : this.mints.values()) {
+            if (entry.transactionId == null) {
+                unsigned.add(entry);
+            }
+        }
+        unsigned.forEach(this::release);
+        final boolean compacted = lines > 2 * this.liveRecords() && this.compact();
+        try {
+            final boolean torn = endsTorn(file);
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (torn) {
+                this.channel.write(ByteBuffer.wrap(new byte[] {'\n'}));
+            }
+        } catch (final IOException e) {
+            throw new FlowClientException(e.toString());
+        }
+        if (!compacted) {
+            for (final Entry entry : unsigned) {
+                this.append(false, ABORTED, Long.toString(entry.id));
+            }
+        }
+    }
+
+    /**
+     * @return the journal of the configured file shared by every caller in the process, or a
+     *         journal without file. Each caller closes the journal once.
+     */
+    static MintJournal forConfig(final VoucherClientConfig clientConfig) {
+        final String file = clientConfig.getMintJournalFile();
+        if (file == null) {
+            return new MintJournal(null);
+        }
+        synchronized (SHARED) {
+            final MintJournal journal = SHARED.computeIfAbsent(
+                    Paths.get(file).toAbsolutePath().normalize(), MintJournal::new);
+            journal.references++;
+            return journal;
+        }
+    }
+
+    /**
+     * Record the intent to mint, durably before returning
+     *
+     * @return mint to record the stages of its transaction with
+     *
+     * @throws FlowClientException if a land is minted or being minted to the same recipient
+     */
+    public Mint begin(final List<String> recipients, final List<String> landHashes) {
+        if (this.file == null) {
+            return new Mint(null, null);
+        }
+        final Entry entry = new Entry(this.nextId.getAndIncrement(), recipients, landHashes);
+        for (int i = 0; i < recipients.size(); i++) {
+            final Long claimed = this.claims.putIfAbsent(claim(recipients.get(i),
+                    landHashes.get(i)), entry.id);
+            if (claimed != null) {
+                for (int j = 0; j < i; j++) {
+                    this.claims.remove(claim(recipients.get(j), landHashes.get(j)), entry.id);
+                }
+                throw new FlowClientException(String.format(
+                        "Land %s is already minted to %s by mint %d", landHashes.get(i),
+                        recipients.get(i), claimed));
+            }
+        }
+        this.mints.put(entry.id, entry);
+        final List<String> fields = new ArrayList<>(recipients.size() + 2);
+        fields.add(INTENT);
+        fields.add(Long.toString(entry.id));
+        for (int i = 0; i < recipients.size(); i++) {
+            fields.add(recipients.get(i) + ',' + landHashes.get(i));
+        }
+        try {
+            this.append(true, fields.toArray(new String[0]));
+        } catch (final RuntimeException e) {
+            this.release(entry);
+            throw e;
+        }
+        return new Mint(this, entry);
+    }
+
+    /**
+     * Resolve the transactions of all mints a previous run left unresolved, once for all callers
+     * sharing the journal
+     *
+     * @return completes once every transaction sealed, expired or failed to resolve, with its id
+     *         and the minted tokens, or null tokens if nothing was minted or it is unresolved. Every
+     *         call returns the future of the first.
+     */
+    public synchronized CompletableFuture<List<BatchMintVoucherResult>> recover(
+            final SealTracker sealTracker, final VoucherClientConfig clientConfig) {
+        if (this.recovered == null) {
+            this.recovered = this.resolveUnsealed(sealTracker, clientConfig);
+        }
+        return this.recovered;
+    }
+
+    private CompletableFuture<List<BatchMintVoucherResult>> resolveUnsealed(
+            final SealTracker sealTracker, final VoucherClientConfig clientConfig) {
+        final List<CompletableFuture<BatchMintVoucherResult>> results = new ArrayList<>();
+        for (final Entry entry : this.mints.values()) {
+            if (entry.sealed || entry.transactionId == null) {
+                continue;
+            }
+            log.info(String.format("Recover mint %d with transaction %s", entry.id,
+                    entry.transactionId));
+            final Mint mint = new Mint(this, entry);
+            results.add(sealTracker.track(new FlowId(entry.transactionId)).handle((result, e) -> {
+                final boolean minted = mint.resolved(result, e, true);
+                return BatchMintVoucherResult.builder().transactionId(entry.transactionId)
+                        .transactionIds(Collections.singletonList(entry.transactionId))
+                        .tokens(minted ? VoucherClient.decodeMintedVouchers(clientConfig, result)
+                                : null)
+                        .build();
+            }));
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> results.stream().map(CompletableFuture::join)
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * @return mints whose transaction is not sealed yet
+     */
+    public int getPendingCount() {
+        int pending = 0;
+        for (final Entry entry : this.mints.values()) {
+            if (!entry.sealed) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * @return true if the land is minted or being minted to the recipient
+     */
+    public boolean isClaimed(final String recipient, final String landHash) {
+        return this.claims.containsKey(claim(recipient, landHash));
+    }
+
+    /**
+     * Force the records appended so far to disk and stop journaling, a journal shared through
+     * {@link #forConfig} once its last caller closed it
+     */
+    @Override
+    public void close() {
+        if (this.file == null) {
+            return;
+        }
+        synchronized (SHARED) {
+            if (this.references > 0 && --this.references > 0) {
+                return;
+            }
+            SHARED.remove(this.file, this);
+        }
+        final long last;
+        synchronized (this.lock) {
+            last = this.appended;
+        }
+        try {
+            this.sync(last);
+        } finally {
+            synchronized (this.lock) {
+                try {
+                    if (this.channel != null) {
+                        this.channel.close();
+                    }
+                } catch (final IOException e) {
+                    throw new FlowClientException(e.toString());
+                } finally {
+                    this.channel = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Append a record, and wait until it is on disk if durable
+     */
+    private void append(final boolean durable, final String... fields) {
+        final byte[] line = (String.join(SEPARATOR, fields) + SEPARATOR + END + '\n')
+                .getBytes(StandardCharsets.UTF_8);
+        final long sequence;
+        synchronized (this.lock) {
+            if (this.failure != null) {
+                throw new FlowClientException(this.failure.toString());
+            }
+            if (this.channel == null) {
+                throw new FlowClientException("Mint journal closed");
+            }
+            this.pending.write(line, 0, line.length);
+            sequence = ++this.appended;
+        }
+        if (durable) {
+            this.sync(sequence);
+        }
+    }
+
+    /**
+     * Wait until the record is on disk. The first waiter writes and forces everything appended so
+     * far, the others wait for it, so a single fsync covers all concurrent records.
+     */
+    private void sync(final long sequence) {
+        while (true) {
+            final byte[] batch;
+            final long last;
+            final FileChannel channel;
+            synchronized (this.lock) {
+                while (this.flushing && this.durable < sequence && this.failure == null) {
+                    try {
+                        this.lock.wait();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new FlowClientException(e.toString());
+                    }
+                }
+                if (this.failure != null) {
+                    throw new FlowClientException(this.failure.toString());
+                }
+                if (this.durable >= sequence) {
+                    return;
+                }
+                this.flushing = true;
+                batch = this.pending.toByteArray();
+                this.pending = new ByteArrayOutputStream(Math.max(32, batch.length));
+                last = this.appended;
+                channel = this.channel;
+            }
+            IOException failure = null;
+            try {
+                final ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (final IOException e) {
+                failure = e;
+            }
+            synchronized (this.lock) {
+                this.flushing = false;
+                if (failure == null) {
+                    this.durable = last;
+                } else {
+                    // Records may be lost, minting on would break the exactly-once promise
+                    log.error(String.format("Write mint journal %s failed", this.file), failure);
+                    this.failure = failure;
+                }
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    private void release(final Entry entry) {
+        this.mints.remove(entry.id, entry);
+        for (int i = 0; i < entry.recipients.size(); i++) {
+            this.claims.remove(claim(entry.recipients.get(i), entry.landHashes.get(i)), entry.id);
+        }
+    }
+
+    /**
+     * Read back the mints not failed or aborted
+     *
+     * @return lines read
+     */
+    private long load() {
+        if (!Files.exists(this.file)) {
+            return 0L;
+        }
+        long lines = 0;
+        long maxId = -1;
+        try (BufferedReader reader = Files.newBufferedReader(this.file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                try {
+                    final String[] parts = line.split(SEPARATOR, -1);
+                    if (!END.equals(parts[parts.length - 1])) {
+                        throw new IllegalArgumentException("Incomplete line");
+                    }
+                    final long id = Long.parseLong(parts[1]);
+                    maxId = Math.max(maxId, id);
+                    this.apply(id, parts);
+                } catch (final RuntimeException e) {
+                    // A line torn by a crash while writing
+                    log.warn(String.format("Skip unreadable mint line %d of %s", lines,
+                            this.file));
+                }
+            }
+        } catch (final IOException e) {
+            throw new FlowClientException(e.toString());
+        }
+        this.nextId.set(maxId + 1);
+        for (final Entry entry : this.mints.values()) {
+            for (int i = 0; i < entry.recipients.size(); i++) {
+                this.claims.put(claim(entry.recipients.get(i), entry.landHashes.get(i)),
+                        entry.id);
+            }
+        }
+        log.info(String.format("Loaded %d mints, %d unsealed, from %s", this.mints.size(),
+                this.getPendingCount(), this.file));
+        return lines;
+    }
+
+    private void apply(final long id, final String[] parts) {
+        if (INTENT.equals(parts[0])) {
+            final List<String> recipients = new ArrayList<>(parts.length - 3);
+            final List<String> landHashes = new ArrayList<>(parts.length - 3);
+            for (int i = 2; i < parts.length - 1; i++) {
+                final int comma = parts[i].indexOf(',');
+                recipients.add(parts[i].substring(0, comma));
+                landHashes.add(parts[i].substring(comma + 1));
+            }
+            this.mints.put(id, new Entry(id, recipients, landHashes));
+            return;
+        }
+        final Entry entry = this.mints.get(id);
+        if (entry == null) {
+            return;
+        }
+        switch (parts[0]) {
+            case SIGNED:
+                entry.transactionId = parts[2];
+                entry.signedMillis = Long.parseLong(parts[3]);
+                break;
+            case SUBMITTED:
+                entry.transactionId = parts[2];
+                entry.submitted = true;
+                break;
+            case SEALED:
+                entry.sealed = true;
+                break;
+            case FAILED:
+            case ABORTED:
+                this.mints.remove(id);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown record " + parts[0]);
+        }
+    }
+
+    private long liveRecords() {
+        long records = 0;
+        for (final Entry entry : this.mints.values()) {
+            records += entry.sealed ? 3 : 2 + (entry.submitted ? 1 : 0);
+        }
+        return records;
+    }
+
+    /**
+     * Rewrite the file with the records of the live mints
+     *
+     * @return true if the file was rewritten
+     */
+    private boolean compact() {
+        final Path compacted = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (final Entry entry : this.mints.values()) {
+                final String id = Long.toString(entry.id);
+                final StringBuilder intent = new StringBuilder(INTENT).append(SEPARATOR).append(id);
+                for (int i = 0; i < entry.recipients.size(); i++) {
+                    intent.append(SEPARATOR).append(entry.recipients.get(i)).append(',')
+                            .append(entry.landHashes.get(i));
+                }
+                out.write(intent.append(SEPARATOR).append(END).toString());
+                out.newLine();
+                if (!entry.sealed) {
+                    out.write(String.join(SEPARATOR, SIGNED, id, entry.transactionId,
+                            Long.toString(entry.signedMillis), END));
+                    out.newLine();
+                }
+                if (entry.submitted || entry.sealed) {
+                    out.write(String.join(SEPARATOR, SUBMITTED, id, entry.transactionId, END));
+                    out.newLine();
+                }
+                if (entry.sealed) {
+                    out.write(String.join(SEPARATOR, SEALED, id, entry.transactionId, END));
+                    out.newLine();
+                }
+            }
+        } catch (final IOException e) {
+            log.warn(String.format("Compact %s failed with %s", this.file, e));
+            return false;
+        }
+        // The compacted file has to be on disk before it replaces the journal
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.WRITE)) {
+            out.force(true);
+            Files.move(compacted, this.file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new FlowClientException(e.toString());
+        }
+        log.info(String.format("Compacted %s to %d mints", this.file, this.mints.size()));
+        return true;
+    }
+
+    private static String claim(final String recipient, final String landHash) {
+        return recipient + SEPARATOR + landHash;
+    }
+
+    private static boolean endsTorn(final Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return false;
+        }
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            final ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1).read(last);
+            return last.get(0) != '\n';
+        }
+    }
+
+    /**
+     * Recipients, land hashes and transaction of one mint
+     */
+    private static final class Entry {
+        private final long id;
+        private final List<String> recipients;
+        private final List<String> landHashes;
+        private volatile String transactionId;
+        private volatile long signedMillis;
+        private volatile boolean submitted;
+        private volatile boolean sealed;
+
+        private Entry(final long id, final List<String> recipients,
+                final List<String> landHashes) {
+            this.id = id;
+            this.recipients = recipients;
+            this.landHashes = landHashes;
+        }
+    }
+
+    /**
+     * Records the stages of one mint, does nothing without journal file
+     */
+    public static final class Mint {
+        private final MintJournal journal;
+        private final Entry entry;
+
+        private Mint(final MintJournal journal, final Entry entry) {
+            this.journal = journal;
+            this.entry = entry;
+        }
+
+        /**
+         * @return id of the signed transaction or null before signing
+         */
+        public String getTransactionId() {
+            return this.entry == null ? null : this.entry.transactionId;
+        }
+
+        /**
+         * Record the id of the signed transaction, durably before it is sent, all recovery needs
+         * to resolve it
+         */
+        void signed(final String transactionId) {
+            if (this.journal == null) {
+                return;
+            }
+            this.entry.transactionId = transactionId;
+            this.entry.signedMillis = System.currentTimeMillis();
+            this.journal.append(true, SIGNED, Long.toString(this.entry.id), transactionId,
+                    Long.toString(this.entry.signedMillis));
+        }
+
+        /**
+         * Record that the access node accepted the transaction, the signed record already
+         * identifies it, so this is not waited for
+         */
+        void submitted(final FlowId txID) {
+            if (this.journal == null) {
+                return;
+            }
+            this.entry.submitted = true;
+            this.journal.append(false, SUBMITTED, Long.toString(this.entry.id),
+                    txID.getBase16Value());
+        }
+
+        /**
+         * Sending failed, a mint never signed is aborted and its lands can be minted again,
+         * otherwise the transaction may still execute and is resolved by tracking it
+         */
+        void sendFailed(final SealTracker sealTracker) {
+            if (this.journal == null) {
+                return;
+            }
+            if (this.entry.transactionId == null) {
+                this.journal.release(this.entry);
+                this.journal.append(false, ABORTED, Long.toString(this.entry.id));
+                return;
+            }
+            sealTracker.track(new FlowId(this.entry.transactionId))
+                    .whenComplete((result, e) -> this.resolved(result, e, false));
+        }
+
+        /**
+         * Record the outcome of the transaction. A transaction sealed with an error or expired
+         * minted nothing and its lands can be minted again. A transaction that could not be
+         * resolved stays unsealed for the next recovery, unless recovering a transaction the access
+         * node never acknowledged which can no longer execute.
+         *
+         * @return true if the transaction sealed without error
+         */
+        boolean resolved(final FlowTransactionResult result, final Throwable e,
+                final boolean recovering) {
+            if (this.journal == null) {
+                return e == null && (result.getErrorMessage() == null
+                        || result.getErrorMessage().isEmpty());
+            }
+            final String id = Long.toString(this.entry.id);
+            if (e == null && (result.getErrorMessage() == null
+                    || result.getErrorMessage().isEmpty())) {
+                this.entry.sealed = true;
+                this.journal.append(false, SEALED, id, this.entry.transactionId);
+                return true;
+            }
+            final boolean neverExecuted = e != null && recovering && !this.entry.submitted
+                    && System.currentTimeMillis() - this.entry.signedMillis
+                            > TRANSACTION_EXPIRY_MILLIS;
+            if (e == null || SealTracker.isExpired(e) || neverExecuted) {
+                log.warn(String.format("Mint %d with transaction %s minted nothing",
+                        this.entry.id, this.entry.transactionId));
+                this.journal.release(this.entry);
+                this.journal.append(false, FAILED, id, this.entry.transactionId);
+                return false;
+            }
+            log.warn(String.format("Mint %d with transaction %s stays unresolved after %s",
+                    this.entry.id, this.entry.transactionId, e));
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,322 @@
+package matrix.flow.sdk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.nftco.flow.sdk.FlowEvent;
+import com.nftco.flow.sdk.FlowId;
+import com.nftco.flow.sdk.FlowTransactionResult;
+import com.nftco.flow.sdk.FlowTransactionStatus;
+
+import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.PaymentType;
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+/**
+ * Token transfers of sealed transactions by transaction id. A sealed result never changes, so
+ * repeated payment resolutions and verifications of a transaction are answered without calling the
+ * access node. With a file every decoded transaction is appended as one line and read back on the
+ * next start, a line torn by a crash is skipped. The file is compacted when it holds twice as many
+ * lines as the cache.
+ */
+@Log4j2
+public class PaymentCache implements Closeable {
+
+    static final long DEFAULT_MAX_SIZE = 100000L;
+
+    private static final String SEPARATOR = "\t";
+    private static final String NIL = "-";
+    private static final String END = ".";
+
+    // Caches of a file are shared, separate writers would interleave and compact over each other
+    private static final Map<Path, PaymentCache> SHARED = new HashMap<>();
+
+    private final Cache<String, List<Transfer>> cache;
+    private final Path file;
+    private BufferedWriter writer;
+    private int references;
+
+    public PaymentCache(final long maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * @param maxSize number of transactions kept, the least recently used are evicted first
+     * @param file file persisting the cache across restarts, or null to keep it in memory
+     */
+    public PaymentCache(final long maxSize, final Path file) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+        this.file = file;
+        if (file != null) {
+            this.load(maxSize);
+        }
+    }
+
+    /**
+     * @return the cache of the configured file shared by every caller in the process, or a new
+     *         cache in memory without a file. Each caller closes the cache once.
+     */
+    static PaymentCache forConfig(final VoucherClientConfig clientConfig) {
+        final String file = clientConfig.getPaymentCacheFile();
+        if (file == null) {
+            return new PaymentCache(clientConfig.getPaymentCacheMaxSize());
+        }
+        synchronized (SHARED) {
+            final PaymentCache cache = SHARED.computeIfAbsent(
+                    Paths.get(file).toAbsolutePath().normalize(),
+                    path -> new PaymentCache(clientConfig.getPaymentCacheMaxSize(), path));
+            cache.references++;
+            return cache;
+        }
+    }
+
+    public long size() {
+        return this.cache.size();
+    }
+
+    public long hitCount() {
+        return this.cache.stats().hitCount();
+    }
+
+    /**
+     * Close the file, a cache shared through {@link #forConfig} once its last caller closed it
+     */
+    @Override
+    public void close() {
+        synchronized (SHARED) {
+            if (this.references > 0 && --this.references > 0) {
+                return;
+            }
+            SHARED.remove(this.file, this);
+        }
+        synchronized (this) {
+            if (this.writer == null) {
+                return;
+            }
+            try {
+                this.writer.close();
+            } catch (final IOException e) {
+                throw new FlowClientException(e.toString());
+            } finally {
+                this.writer = null;
+            }
+        }
+    }
+
+    /**
+     * @param sealedResult waits for the sealed result of the transaction, called on a miss only
+     *
+     * @return token transfers of the transaction in event order
+     */
+    List<Transfer> get(final String transactionId, final EventDecoder decoder,
+            final Supplier<FlowTransactionResult> sealedResult) {
+        final String key = key(transactionId);
+        try {
+            return this.cache.get(key, () -> this.decodeAndPersist(key, decoder, sealedResult.get()));
+        } catch (final ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new FlowClientException(e.getCause().toString());
+        }
+    }
+
+    /**
+     * @return cached transfers of the transaction or null
+     */
+    List<Transfer> getIfPresent(final String transactionId) {
+        return this.cache.getIfPresent(key(transactionId));
+    }
+
+    /**
+     * Decode a result, sealed results are cached
+     *
+     * @return token transfers of the transaction in event order
+     */
+    List<Transfer> put(final String transactionId, final EventDecoder decoder,
+            final FlowTransactionResult result) {
+        final String key = key(transactionId);
+        if (result.getStatus() != FlowTransactionStatus.SEALED) {
+            return decode(decoder, result);
+        }
+        final List<Transfer> transfers = this.decodeAndPersist(key, decoder, result);
+        this.cache.put(key, transfers);
+        return transfers;
+    }
+
+    /**
+     * @return token transfers of a result in event order
+     */
+    static List<Transfer> decode(final EventDecoder decoder, final FlowTransactionResult result) {
+        final List<Transfer> transfers = new ArrayList<>();
+        for (final FlowEvent event : result.getEvents()) {
+            final PaymentType paymentType = decoder.paymentTypeOf(event);
+            if (paymentType != null) {
+                transfers.add(new Transfer(decoder.kindOf(event), paymentType,
+                        EventDecoder.address(event), EventDecoder.amount(event)));
+            }
+        }
+        return Collections.unmodifiableList(transfers);
+    }
+
+    private List<Transfer> decodeAndPersist(final String key, final EventDecoder decoder,
+            final FlowTransactionResult result) {
+        if (result.getStatus() != FlowTransactionStatus.SEALED) {
+            throw new FlowClientException("There is something wrong with the transaction");
+        }
+        final List<Transfer> transfers = decode(decoder, result);
+        if (this.file != null) {
+            this.append(key, transfers);
+        }
+        return transfers;
+    }
+
+    private synchronized void append(final String key, final List<Transfer> transfers) {
+        try {
+            if (this.writer == null) {
+                final boolean torn = endsTorn(this.file);
+                this.writer = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                if (torn) {
+                    this.writer.newLine();
+                }
+            }
+            this.writer.write(format(key, transfers));
+            this.writer.newLine();
+            this.writer.flush();
+        } catch (final IOException e) {
+            // The cache stays correct in memory, the transaction is fetched again after a restart
+            log.warn(String.format("Persist payment of transaction %s failed with %s", key, e));
+        }
+    }
+
+    private void load(final long maxSize) {
+        if (!Files.exists(this.file)) {
+            return;
+        }
+        long lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(this.file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                try {
+                    final String[] parts = line.split(SEPARATOR, -1);
+                    if (!END.equals(parts[parts.length - 1])) {
+                        throw new IllegalArgumentException("Incomplete line");
+                    }
+                    final List<Transfer> transfers = new ArrayList<>();
+                    for (int i = 1; i < parts.length - 1; i++) {
+                        transfers.add(Transfer.parse(parts[i]));
+                    }
+                    this.cache.put(parts[0], Collections.unmodifiableList(transfers));
+                } catch (final RuntimeException e) {
+                    // A line torn by a crash while writing
+                    log.warn(String.format("Skip unreadable payment line %d of %s", lines,
+                            this.file));
+                }
+            }
+        } catch (final IOException e) {
+            throw new FlowClientException(e.toString());
+        }
+        log.info(String.format("Loaded %d payments from %s", this.cache.size(), this.file));
+        if (lines > 2 * maxSize) {
+            this.compact();
+        }
+    }
+
+    private void compact() {
+        final Path compacted = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (final Map.Entry<String, List<Transfer>> entry : this.cache.asMap().entrySet()) {
+                out.write(format(entry.getKey(), entry.getValue()));
+                out.newLine();
+            }
+        } catch (final IOException e) {
+            log.warn(String.format("Compact %s failed with %s", this.file, e));
+            return;
+        }
+        try {
+            Files.move(compacted, this.file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new FlowClientException(e.toString());
+        }
+    }
+
+    private static boolean endsTorn(final Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return false;
+        }
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            final ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1).read(last);
+            return last.get(0) != '\n';
+        }
+    }
+
+    private static String format(final String key, final List<Transfer> transfers) {
+        final StringBuilder line = new StringBuilder(key);
+        for (final Transfer transfer : transfers) {
+            line.append(SEPARATOR).append(transfer.kind.name()).append(',')
+                    .append(transfer.paymentType.name()).append(',')
+                    .append(transfer.address == null ? NIL : transfer.address).append(',')
+                    .append(transfer.amount.toPlainString());
+        }
+        return line.append(SEPARATOR).append(END).toString();
+    }
+
+    private static String key(final String transactionId) {
+        return new FlowId(transactionId).getBase16Value();
+    }
+
+    /**
+     * A TokensWithdrawn or TokensDeposited event of a payment token
+     */
+    static final class Transfer {
+        final EventDecoder.Kind kind;
+        final PaymentType paymentType;
+        /**
+         * {@code from} of a withdrawal or {@code to} of a deposit without 0x, null if nil
+         */
+        final String address;
+        final BigDecimal amount;
+
+        Transfer(final EventDecoder.Kind kind, final PaymentType paymentType,
+                final String address, final BigDecimal amount) {
+            this.kind = kind;
+            this.paymentType = paymentType;
+            this.address = address;
+            this.amount = amount;
+        }
+
+        private static Transfer parse(final String value) {
+            final String[] fields = value.split(",");
+            return new Transfer(EventDecoder.Kind.valueOf(fields[0]),
+                    PaymentType.valueOf(fields[1]), NIL.equals(fields[2]) ? null : fields[2],
+                    new BigDecimal(fields[3]));
+        }
+    }
+
+}
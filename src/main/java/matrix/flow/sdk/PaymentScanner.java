@@ -0,0 +1,261 @@
+package matrix.flow.sdk;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nftco.flow.sdk.FlowAccessApi;
+import com.nftco.flow.sdk.FlowAddress;
+import com.nftco.flow.sdk.FlowEvent;
+import com.nftco.flow.sdk.FlowEventResult;
+
+import kotlin.ranges.LongRange;
+import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.PaymentType;
+import matrix.flow.sdk.model.TransferEvent;
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+/**
+ * Scans sealed blocks for FUSD and FLOW payments to the admin account. Height ranges are fetched
+ * in chunks of at most {@link #MAX_CHUNK_HEIGHTS} blocks on parallel threads but handed to the
+ * consumer in height order, one {@link TransferEvent} per payment transaction and token. The last
+ * height handed over is written to the checkpoint file after every chunk, a scan that failed or
+ * was stopped resumes there and may hand over the transfers of the last chunk again.
+ */
+@Log4j2
+public class PaymentScanner {
+
+    /**
+     * Largest height range the access node serves in one request
+     */
+    public static final int MAX_CHUNK_HEIGHTS = 250;
+
+    static final int DEFAULT_THREADS = 4;
+    static final PaymentType[] PAYMENT_TYPES = {PaymentType.FUSD, PaymentType.FLOW};
+
+    private final FlowAccessApi accessAPI;
+    private final VoucherClientConfig clientConfig;
+    private final EventDecoder decoder;
+    private final String adminAddress;
+    private final Path checkpoint;
+    private final int chunkHeights;
+    private final int threads;
+
+    /**
+     * @param accessAPI access node to fetch events from
+     * @param clientConfig contract and admin account addresses
+     * @param checkpoint file holding the last scanned height, created on the first scan
+     * @param chunkHeights heights per request, at most {@link #MAX_CHUNK_HEIGHTS}
+     * @param threads concurrent requests
+     */
+    public PaymentScanner(final FlowAccessApi accessAPI, final VoucherClientConfig clientConfig,
+            final Path checkpoint, final int chunkHeights, final int threads) {
+        this.accessAPI = accessAPI;
+        this.clientConfig = clientConfig;
+        this.decoder = EventDecoder.forConfig(clientConfig);
+        this.adminAddress = new FlowAddress(clientConfig.getAdminAccountAddress()).getBase16Value();
+        this.checkpoint = checkpoint;
+        this.chunkHeights = Math.max(1, Math.min(MAX_CHUNK_HEIGHTS, chunkHeights));
+        this.threads = Math.max(1, threads);
+    }
+
+    public PaymentScanner(final FlowAccessApi accessAPI, final VoucherClientConfig clientConfig,
+            final Path checkpoint) {
+        this(accessAPI, clientConfig, checkpoint, MAX_CHUNK_HEIGHTS, DEFAULT_THREADS);
+    }
+
+    /**
+     * @return last scanned height or -1 if nothing was scanned yet
+     */
+    public long getCheckpoint() {
+        if (!Files.exists(this.checkpoint)) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(
+                    new String(Files.readAllBytes(this.checkpoint), StandardCharsets.UTF_8).trim());
+        } catch (final IOException | NumberFormatException e) {
+            throw new FlowClientException(
+                    String.format("Unreadable checkpoint %s: %s", this.checkpoint, e));
+        }
+    }
+
+    /**
+     * Scan from the checkpoint, or {@code startHeight} if it is further, to the latest sealed block
+     *
+     * @return last scanned height
+     */
+    public long resume(final long startHeight, final Consumer<TransferEvent> consumer) {
+        return this.resume(startHeight, this.accessAPI.getLatestBlock(true).getHeight(),
+                consumer);
+    }
+
+    /**
+     * Scan from the checkpoint, or {@code startHeight} if it is further, to {@code endHeight}
+     *
+     * @return last scanned height
+     */
+    public long resume(final long startHeight, final long endHeight,
+            final Consumer<TransferEvent> consumer) {
+        return this.scan(Math.max(startHeight, this.getCheckpoint() + 1), endHeight, consumer);
+    }
+
+    /**
+     * Scan an inclusive height range
+     *
+     * @param consumer receives the payments in height order on the calling thread
+     *
+     * @return last scanned height, {@code startHeight - 1} for an empty range
+     *
+     * @throws FlowClientException if a request failed, the checkpoint holds the last height before
+     *         the failed chunk
+     */
+    public long scan(final long startHeight, final long endHeight,
+            final Consumer<TransferEvent> consumer) {
+        long scanned = startHeight - 1;
+        if (endHeight < startHeight) {
+            return scanned;
+        }
+        log.info(String.format("Scan payments of heights %d to %d", startHeight, endHeight));
+        if (endHeight - startHeight < this.chunkHeights) {
+            // A follower scanning the latest blocks needs no threads
+            final List<TransferEvent> transfers;
+            try {
+                transfers = this.fetch(startHeight, endHeight);
+            } catch (final RuntimeException e) {
+                throw new FlowClientException(
+                        String.format("Scan failed after height %d: %s", scanned, e));
+            }
+            transfers.forEach(consumer);
+            this.writeCheckpoint(endHeight);
+            return endHeight;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(this.threads,
+                new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("flow-payment-scanner-%d").build());
+        final Deque<Future<List<TransferEvent>>> chunks = new ArrayDeque<>();
+        try {
+            long next = startHeight;
+            while (next <= endHeight || !chunks.isEmpty()) {
+                // Keep every thread busy and one chunk ready for the consumer
+                while (next <= endHeight && chunks.size() <= this.threads) {
+                    final long from = next;
+                    final long to = Math.min(endHeight, from + this.chunkHeights - 1);
+                    chunks.add(executor.submit(() -> this.fetch(from, to)));
+                    next = to + 1;
+                }
+                for (final TransferEvent transfer : chunks.poll().get()) {
+                    consumer.accept(transfer);
+                }
+                scanned = Math.min(endHeight, scanned + this.chunkHeights);
+                this.writeCheckpoint(scanned);
+            }
+            return scanned;
+        } catch (final ExecutionException e) {
+            throw new FlowClientException(String.format("Scan failed after height %d: %s",
+                    scanned, e.getCause()));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FlowClientException(
+                    String.format("Scan interrupted after height %d", scanned));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Payments to the admin account within an inclusive height range, in height order
+     */
+    List<TransferEvent> fetch(final long fromHeight, final long toHeight) {
+        final List<TransferEvent> transfers = new ArrayList<>();
+        final Map<String, Long> heights = new HashMap<>();
+        final LongRange range = new LongRange(fromHeight, toHeight);
+        for (final PaymentType paymentType : PAYMENT_TYPES) {
+            final String prefix = VoucherClient.paymentTokenPrefix(this.clientConfig, paymentType);
+            final List<FlowEventResult> deposits =
+                    this.accessAPI.getEventsForHeightRange(prefix + ".TokensDeposited", range);
+            final Map<String, TransferEvent> payments = this.payments(deposits, paymentType, heights);
+            if (payments.isEmpty()) {
+                continue;
+            }
+            // Payers only show in the withdrawals of the same transactions
+            final List<FlowEventResult> withdrawals =
+                    this.accessAPI.getEventsForHeightRange(prefix + ".TokensWithdrawn", range);
+            for (final FlowEventResult block : withdrawals) {
+                for (final FlowEvent event : block.getEvents()) {
+                    final TransferEvent payment =
+                            payments.get(event.getTransactionId().getBase16Value());
+                    if (payment == null) {
+                        continue;
+                    }
+                    final String payer = EventDecoder.address(event);
+                    if (payment.getFrom() == null) {
+                        payment.setFrom(payer);
+                    }
+                    if (payment.getFrom() != null && payment.getFrom().equals(payer)) {
+                        payment.setAmountFrom(payment.getAmountFrom().add(EventDecoder.amount(event)));
+                    }
+                }
+            }
+            transfers.addAll(payments.values());
+        }
+        if (transfers.size() > 1) {
+            // Both tokens were fetched separately
+            Collections.sort(transfers, (a, b) -> Long.compare(heights.get(a.getTransactionId()),
+                    heights.get(b.getTransactionId())));
+        }
+        return transfers;
+    }
+
+    private Map<String, TransferEvent> payments(final List<FlowEventResult> deposits,
+            final PaymentType paymentType, final Map<String, Long> heights) {
+        final Map<String, TransferEvent> payments = new LinkedHashMap<>();
+        for (final FlowEventResult block : deposits) {
+            for (final FlowEvent event : block.getEvents()) {
+                if (this.decoder.paymentTypeOf(event) != paymentType
+                        || !this.adminAddress.equals(EventDecoder.address(event))) {
+                    continue;
+                }
+                final String transactionId = event.getTransactionId().getBase16Value();
+                final TransferEvent payment = payments.computeIfAbsent(transactionId,
+                        id -> TransferEvent.builder().to(this.adminAddress).transactionId(id)
+                                .paymentType(paymentType).amountFrom(BigDecimal.ZERO)
+                                .amountTo(BigDecimal.ZERO).build());
+                heights.put(transactionId, block.getBlockHeight());
+                payment.setAmountTo(payment.getAmountTo().add(EventDecoder.amount(event)));
+            }
+        }
+        return payments;
+    }
+
+    private void writeCheckpoint(final long height) {
+        final Path written = this.checkpoint.resolveSibling(this.checkpoint.getFileName() + ".tmp");
+        try {
+            Files.write(written, Long.toString(height).getBytes(StandardCharsets.UTF_8));
+            Files.move(written, this.checkpoint, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new FlowClientException(
+                    String.format("Write checkpoint %s failed: %s", this.checkpoint, e));
+        }
+    }
+
+}
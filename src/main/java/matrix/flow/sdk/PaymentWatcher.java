@@ -0,0 +1,132 @@
+package matrix.flow.sdk;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.TransferEvent;
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+/**
+ * Follows sealed blocks and pushes FUSD and FLOW payments to the admin account to the registered
+ * listeners. The cursor file holds the last height whose payments every listener accepted; a
+ * listener that throws, or a restart, hands the payments after the cursor over again, so listeners
+ * have to tolerate duplicates.
+ */
+@Log4j2
+public class PaymentWatcher implements Closeable {
+
+    static final long DEFAULT_POLL_MILLIS = 1000L;
+
+    /**
+     * Receives payments to the admin account in height order on the watcher thread
+     */
+    public interface Listener {
+        void onPayment(TransferEvent transfer);
+    }
+
+    private final FlowSimpleClient client;
+    private final PaymentScanner scanner;
+    private final long startHeight;
+    private final long pollMillis;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * @param client client whose access node is followed
+     * @param clientConfig contract and admin account addresses
+     * @param cursor file holding the last delivered height
+     * @param startHeight height to start from without cursor, or a negative value for the latest
+     *        sealed block at the first poll
+     * @param pollMillis delay between polls for new blocks
+     */
+    public PaymentWatcher(final FlowSimpleClient client, final VoucherClientConfig clientConfig,
+            final Path cursor, final long startHeight, final long pollMillis) {
+        this.client = client;
+        this.scanner = new PaymentScanner(client.accessAPI, clientConfig, cursor);
+        this.startHeight = startHeight;
+        this.pollMillis = pollMillis;
+    }
+
+    public PaymentWatcher(final FlowSimpleClient client, final VoucherClientConfig clientConfig,
+            final Path cursor) {
+        this(client, clientConfig, cursor, -1L, DEFAULT_POLL_MILLIS);
+    }
+
+    public void addListener(final Listener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(final Listener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * @return last height whose payments were delivered, -1 before the first poll
+     */
+    public long getCursor() {
+        return this.scanner.getCheckpoint();
+    }
+
+    /**
+     * Poll every {@code pollMillis} on a background thread
+     */
+    public synchronized void start() {
+        if (this.scheduler != null) {
+            return;
+        }
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setDaemon(true).setNameFormat("flow-payment-watcher-%d").build());
+        this.scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                this.poll();
+            } catch (final Exception e) {
+                log.warn("Watch payments failed with", e);
+            }
+        }, 0L, this.pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop polling, the cursor keeps the last delivered height
+     */
+    @Override
+    public synchronized void close() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * Deliver the payments of the blocks sealed since the last poll. The latest header may be
+     * finalized but not sealed yet, so the height comes from the latest sealed block.
+     *
+     * @return height delivered up to
+     */
+    long poll() {
+        final long latestHeight = this.client.accessAPI.getLatestBlock(true).getHeight();
+        final long cursor = this.scanner.getCheckpoint();
+        final long from;
+        if (cursor >= 0) {
+            from = cursor + 1;
+        } else {
+            from = this.startHeight >= 0 ? this.startHeight : latestHeight;
+        }
+        return this.scanner.scan(from, latestHeight, this::deliver);
+    }
+
+    private void deliver(final TransferEvent transfer) {
+        log.info(String.format("Payment %s of %s %s from %s", transfer.getTransactionId(),
+                transfer.getAmountTo(), transfer.getPaymentType(), transfer.getFrom()));
+        for (final Listener listener : this.listeners) {
+            listener.onPayment(transfer);
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package matrix.flow.sdk;
+
+import java.util.function.Supplier;
+
+import com.nftco.flow.sdk.FlowAccountKey;
+import com.nftco.flow.sdk.HashAlgorithm;
+
+import matrix.flow.sdk.model.FlowClientException;
+
+/**
+ * Locally tracked sequence number of one proposal key. The key is read from chain once and after
+ * every invalidation, each accepted submission advances the local sequence number by one. An
+ * invalidated key is read again only once its unsealed transactions settled, the chain would not
+ * count their sequence numbers yet and they would be handed out twice.
+ */
+final class ProposalKeySequence {
+
+    private FlowAccountKey accountKey;
+    private long nextSequenceNumber;
+    private int inFlight;
+    // Counts invalidations, a key read before the latest one is stale
+    private long generation;
+
+    /**
+     * Reserve the sequence number of the next transaction, waiting for the unsealed transactions
+     * of an invalidated key to settle. The key is read from chain without holding the lock, so
+     * seals settle meanwhile, and a read started before an invalidation is read again.
+     *
+     * @param fetch reads the key from chain when the local state is stale
+     *
+     * @return key id, sequence number and hash algorithm to sign with
+     *
+     * @throws FlowClientException if interrupted while waiting
+     */
+    Reservation reserve(final Supplier<FlowAccountKey> fetch) {
+        while (true) {
+            final long fetchGeneration;
+            synchronized (this) {
+                while (this.accountKey == null && this.inFlight > 0) {
+                    try {
+                        this.wait();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new FlowClientException(e.toString());
+                    }
+                }
+                if (this.accountKey != null) {
+                    return new Reservation(this.accountKey.getId(), this.nextSequenceNumber,
+                            this.accountKey.getHashAlgo());
+                }
+                fetchGeneration = this.generation;
+            }
+            final FlowAccountKey fetched = fetch.get();
+            synchronized (this) {
+                // Another reserver may have installed a key already and advanced past it
+                if (this.accountKey == null && this.generation == fetchGeneration) {
+                    this.nextSequenceNumber = fetched.getSequenceNumber();
+                    this.accountKey = fetched;
+                }
+            }
+        }
+    }
+
+    /**
+     * The access node accepted a transaction proposed with the reserved sequence number, it is
+     * unsealed until {@link #settled}
+     */
+    synchronized void submitted(final long sequenceNumber) {
+        this.inFlight++;
+        if (this.accountKey != null && this.nextSequenceNumber == sequenceNumber) {
+            this.nextSequenceNumber++;
+        }
+    }
+
+    /**
+     * Read the key from chain again before the next transaction
+     */
+    synchronized void invalidate() {
+        this.accountKey = null;
+        this.generation++;
+    }
+
+    /**
+     * A submitted transaction sealed, expired or timed out
+     */
+    synchronized void settled() {
+        this.inFlight--;
+        if (this.inFlight == 0) {
+            this.notifyAll();
+        }
+    }
+
+    synchronized boolean isSynced() {
+        return this.accountKey != null;
+    }
+
+    static final class Reservation {
+        private final int keyId;
+        private final long sequenceNumber;
+        private final HashAlgorithm hashAlgo;
+
+        Reservation(final int keyId, final long sequenceNumber, final HashAlgorithm hashAlgo) {
+            this.keyId = keyId;
+            this.sequenceNumber = sequenceNumber;
+            this.hashAlgo = hashAlgo;
+        }
+
+        static Reservation of(final FlowAccountKey accountKey) {
+            return new Reservation(accountKey.getId(), accountKey.getSequenceNumber(),
+                    accountKey.getHashAlgo());
+        }
+
+        int getKeyId() {
+            return this.keyId;
+        }
+
+        long getSequenceNumber() {
+            return this.sequenceNumber;
+        }
+
+        HashAlgorithm getHashAlgo() {
+            return this.hashAlgo;
+        }
+    }
+
+}
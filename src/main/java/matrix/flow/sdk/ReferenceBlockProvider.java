@@ -0,0 +1,100 @@
+package matrix.flow.sdk;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nftco.flow.sdk.FlowId;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Reference block shared by every transaction of a pool. Flow accepts any reference block within
+ * the expiry window of about 600 blocks, so the latest block id is refreshed in the background and
+ * read without locking. A block older than {@code maxAgeMillis} is refreshed on the caller thread.
+ */
+@Log4j2
+public class ReferenceBlockProvider {
+
+    static final long DEFAULT_REFRESH_MILLIS = 5000L;
+    static final long DEFAULT_MAX_AGE_MILLIS = 60000L;
+
+    private final Supplier<FlowId> latestBlockId;
+    private final long refreshMillis;
+    private final long maxAgeMillis;
+    private ScheduledThreadPoolExecutor scheduler;
+
+    private volatile ReferenceBlock referenceBlock;
+
+    /**
+     * @param latestBlockId fetches the id of the latest block from the access node
+     * @param refreshMillis interval of the background refresh
+     * @param maxAgeMillis age after which a reference block is no longer handed out
+     */
+    public ReferenceBlockProvider(final Supplier<FlowId> latestBlockId, final long refreshMillis,
+            final long maxAgeMillis) {
+        this.latestBlockId = latestBlockId;
+        this.refreshMillis = refreshMillis;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * @return id of a recent block to reference in a new transaction
+     */
+    public FlowId getReferenceBlockId() {
+        final ReferenceBlock block = this.referenceBlock;
+        if (block != null && System.currentTimeMillis() - block.fetchedAt <= this.maxAgeMillis) {
+            return block.id;
+        }
+        return this.refreshIfOlderThan(this.maxAgeMillis).id;
+    }
+
+    /**
+     * Refresh every {@code refreshMillis} on a background thread
+     */
+    public synchronized void start() {
+        if (this.scheduler != null) {
+            return;
+        }
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setDaemon(true).setNameFormat("flow-reference-block-%d").build());
+        this.scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                this.refreshIfOlderThan(0L);
+            } catch (final Exception e) {
+                log.warn("Refresh reference block failed with", e);
+            }
+        }, 0L, this.refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void close() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+            this.scheduler = null;
+        }
+    }
+
+    private synchronized ReferenceBlock refreshIfOlderThan(final long ageMillis) {
+        final ReferenceBlock block = this.referenceBlock;
+        // Another caller may have refreshed while this one waited for the lock
+        if (block != null && System.currentTimeMillis() - block.fetchedAt <= ageMillis) {
+            return block;
+        }
+        final ReferenceBlock refreshed =
+                new ReferenceBlock(this.latestBlockId.get(), System.currentTimeMillis());
+        this.referenceBlock = refreshed;
+        return refreshed;
+    }
+
+    private static final class ReferenceBlock {
+        private final FlowId id;
+        private final long fetchedAt;
+
+        private ReferenceBlock(final FlowId id, final long fetchedAt) {
+            this.id = id;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+}
@@ -0,0 +1,338 @@
+package matrix.flow.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nftco.flow.sdk.FlowAccessApi;
+import com.nftco.flow.sdk.FlowId;
+import com.nftco.flow.sdk.FlowTransactionResult;
+import com.nftco.flow.sdk.FlowTransactionStatus;
+
+import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.FlowClientException;
+
+/**
+ * Tracks pending transactions until they are sealed. All transactions are multiplexed onto a
+ * single scheduler thread that hands due polls to a few poller threads, each transaction backs off
+ * from {@code minPollMillis} to {@code maxPollMillis} while its status does not change.
+ */
+@Log4j2
+public class SealTracker {
+
+    static final long DEFAULT_MIN_POLL_MILLIS = 250L;
+    static final long DEFAULT_MAX_POLL_MILLIS = 2000L;
+    static final int DEFAULT_POLLER_THREADS = 4;
+    static final double BACKOFF_FACTOR = 1.5;
+    static final String EXPIRED_MESSAGE = "Transaction expired";
+
+    private final FlowAccessApi accessAPI;
+    private final long sealTimeoutMillis;
+    private final long minPollMillis;
+    private final long maxPollMillis;
+    private final MetricsRegistry.Timer sealWait;
+    private final MetricsRegistry.Counter sealed;
+    private final MetricsRegistry.Counter failed;
+    private final MetricsRegistry.Counter expired;
+    private final MetricsRegistry.Counter sequenceMismatches;
+
+    private final ConcurrentMap<String, PendingTransaction> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean ticking = new AtomicBoolean(false);
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ThreadPoolExecutor pollers;
+
+    public SealTracker(final FlowAccessApi accessAPI, final int waitForSealTries) {
+        this(accessAPI, waitForSealTries, MetricsRegistry.NOOP);
+    }
+
+    public SealTracker(final FlowAccessApi accessAPI, final int waitForSealTries,
+            final MetricsRegistry metrics) {
+        this(accessAPI, waitForSealTries * 1000L, DEFAULT_MIN_POLL_MILLIS, DEFAULT_MAX_POLL_MILLIS,
+                DEFAULT_POLLER_THREADS, metrics);
+    }
+
+    public SealTracker(final FlowAccessApi accessAPI, final long sealTimeoutMillis,
+            final long minPollMillis, final long maxPollMillis, final int pollerThreads) {
+        this(accessAPI, sealTimeoutMillis, minPollMillis, maxPollMillis, pollerThreads,
+                MetricsRegistry.NOOP);
+    }
+
+    /**
+     * @param metrics receives the seal wait and the count of sealed, failed and expired
+     *        transactions
+     */
+    public SealTracker(final FlowAccessApi accessAPI, final long sealTimeoutMillis,
+            final long minPollMillis, final long maxPollMillis, final int pollerThreads,
+            final MetricsRegistry metrics) {
+        this.accessAPI = accessAPI;
+        this.sealTimeoutMillis = sealTimeoutMillis;
+        this.minPollMillis = minPollMillis;
+        this.maxPollMillis = Math.max(minPollMillis, maxPollMillis);
+        this.sealWait = metrics.timer(VoucherMetrics.TRANSACTION_SEAL_WAIT);
+        this.sealed = metrics.counter(VoucherMetrics.TRANSACTION_SEALED);
+        this.failed = metrics.counter(VoucherMetrics.TRANSACTION_FAILED);
+        this.expired = metrics.counter(VoucherMetrics.TRANSACTION_EXPIRED);
+        this.sequenceMismatches = metrics.counter(VoucherMetrics.TRANSACTION_SEQUENCE_MISMATCH);
+
+        // Idle threads time out so that trackers of standalone clients do not pin threads
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setDaemon(true).setNameFormat("flow-seal-tracker-%d").build());
+        this.scheduler.setKeepAliveTime(30, TimeUnit.SECONDS);
+        this.scheduler.allowCoreThreadTimeOut(true);
+        this.pollers = new ThreadPoolExecutor(pollerThreads, pollerThreads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("flow-seal-poller-%d").build());
+        this.pollers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Track a submitted transaction. Tracking the same transaction twice shares one poll.
+     *
+     * @param txID flow transactionId
+     *
+     * @return future completed with the sealed result, or exceptionally with a
+     *         {@link FlowClientException} once the transaction expired or timed out
+     */
+    public CompletableFuture<FlowTransactionResult> track(final FlowId txID) {
+        return this.pendingTransaction(txID, null).sealed;
+    }
+
+    /**
+     * Track a submitted transaction and record each poll as a {@link VoucherSpans#SEAL_POLL} event
+     * of a span, the span is ended by the caller
+     *
+     * @param txID flow transactionId
+     * @param span span of the seal wait
+     *
+     * @return future of {@link #track}
+     */
+    public CompletableFuture<FlowTransactionResult> track(final FlowId txID,
+            final Tracer.Span span) {
+        return this.pendingTransaction(txID, span).sealed;
+    }
+
+    /**
+     * Track a submitted transaction until it is executed, it shares the poll of {@link #track}.
+     *
+     * @param txID flow transactionId
+     *
+     * @return future completed with the first executed or sealed result
+     */
+    public CompletableFuture<FlowTransactionResult> trackExecuted(final FlowId txID) {
+        return this.pendingTransaction(txID, null).executed;
+    }
+
+    /**
+     * Block until a submitted transaction is sealed
+     *
+     * @param txID flow transactionId
+     *
+     * @return sealed result
+     *
+     * @throws FlowClientException once the transaction expired or timed out
+     */
+    public FlowTransactionResult awaitSealed(final FlowId txID) {
+        return await(this.track(txID));
+    }
+
+    static FlowTransactionResult await(final CompletableFuture<FlowTransactionResult> sealed) {
+        try {
+            return sealed.get();
+        } catch (final InterruptedException e) {
+            log.error("Interrupted with " + e.toString());
+            Thread.currentThread().interrupt();
+            throw new FlowClientException(e.toString());
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof FlowClientException) {
+                throw (FlowClientException) e.getCause();
+            }
+            throw new FlowClientException(e.getCause().toString());
+        }
+    }
+
+    /**
+     * @return number of transactions waiting to be sealed
+     */
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * Stop polling and fail every pending transaction
+     */
+    public void close() {
+        this.scheduler.shutdownNow();
+        this.pollers.shutdownNow();
+        final List<PendingTransaction> remaining = new ArrayList<>(this.pending.values());
+        this.pending.clear();
+        for (final PendingTransaction tx : remaining) {
+            final FlowClientException e = new FlowClientException("Seal tracker closed");
+            tx.executed.completeExceptionally(e);
+            tx.sealed.completeExceptionally(e);
+        }
+    }
+
+    private PendingTransaction pendingTransaction(final FlowId txID, final Tracer.Span span) {
+        final PendingTransaction tx = this.pending.computeIfAbsent(txID.getBase16Value(),
+                key -> new PendingTransaction(txID, System.currentTimeMillis()));
+        if (span != null && span != Tracer.Span.NOOP) {
+            tx.spans.add(span);
+        }
+        this.ensureTicking();
+        return tx;
+    }
+
+    private void ensureTicking() {
+        if (this.ticking.compareAndSet(false, true)) {
+            this.scheduler.schedule(this::tick, 0L, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void tick() {
+        final long now = System.currentTimeMillis();
+        for (final PendingTransaction tx : this.pending.values()) {
+            if (now >= tx.nextPollAt && tx.polling.compareAndSet(false, true)) {
+                this.pollers.execute(() -> this.poll(tx));
+            }
+        }
+
+        if (!this.pending.isEmpty()) {
+            this.scheduler.schedule(this::tick, this.minPollMillis, TimeUnit.MILLISECONDS);
+            return;
+        }
+        this.ticking.set(false);
+        // A transaction may have been tracked after the emptiness check
+        if (!this.pending.isEmpty()) {
+            this.ensureTicking();
+        }
+    }
+
+    private void poll(final PendingTransaction tx) {
+        try {
+            final FlowTransactionResult result =
+                    this.accessAPI.getTransactionResultById(tx.txID);
+            final FlowTransactionStatus status = result.getStatus();
+            for (final Tracer.Span span : tx.spans) {
+                span.addEvent(VoucherSpans.SEAL_POLL, VoucherSpans.TRANSACTION_STATUS,
+                        status.name());
+            }
+            if (status == FlowTransactionStatus.SEALED) {
+                this.complete(tx, result);
+                return;
+            }
+            if (status == FlowTransactionStatus.EXPIRED) {
+                this.expired.increment();
+                this.fail(tx, EXPIRED_MESSAGE);
+                return;
+            }
+            if (status == FlowTransactionStatus.EXECUTED) {
+                tx.executed.complete(result);
+            }
+            tx.backoff(status != tx.lastStatus);
+            tx.lastStatus = status;
+        } catch (final Exception e) {
+            log.warn(String.format("Polling transaction %s failed with %s",
+                    tx.txID.getBase16Value(), e.toString()));
+            for (final Tracer.Span span : tx.spans) {
+                span.addEvent(VoucherSpans.SEAL_POLL, VoucherSpans.ERROR, e.toString());
+            }
+            tx.backoff(false);
+        } finally {
+            tx.polling.set(false);
+        }
+
+        if (System.currentTimeMillis() - tx.trackedAt > this.sealTimeoutMillis
+                && this.pending.containsKey(tx.txID.getBase16Value())) {
+            this.failed.increment();
+            this.fail(tx, "Timed out waiting for sealed transaction");
+        }
+    }
+
+    private void complete(final PendingTransaction tx, final FlowTransactionResult result) {
+        this.pending.remove(tx.txID.getBase16Value(), tx);
+        this.sealWait.record(System.nanoTime() - tx.trackedNanos);
+        final String errorMessage = result.getErrorMessage();
+        if (errorMessage == null || errorMessage.isEmpty()) {
+            this.sealed.increment();
+        } else {
+            this.failed.increment();
+            if (isSequenceMismatch(errorMessage)) {
+                this.sequenceMismatches.increment();
+            }
+        }
+        tx.executed.complete(result);
+        tx.sealed.complete(result);
+    }
+
+    private void fail(final PendingTransaction tx, final String reason) {
+        this.pending.remove(tx.txID.getBase16Value(), tx);
+        this.sealWait.record(System.nanoTime() - tx.trackedNanos);
+        final FlowClientException e = new FlowClientException(reason);
+        tx.executed.completeExceptionally(e);
+        tx.sealed.completeExceptionally(e);
+    }
+
+    /**
+     * @return true if the failure of a tracked transaction is its expiry, it was never executed
+     */
+    static boolean isExpired(final Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FlowClientException
+                    && EXPIRED_MESSAGE.equals(cause.getMessage())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true for the error of a transaction proposed with a stale sequence number
+     */
+    static boolean isSequenceMismatch(final String errorMessage) {
+        return errorMessage != null && errorMessage.contains("sequence number");
+    }
+
+    private final class PendingTransaction {
+        private final FlowId txID;
+        private final long trackedAt;
+        private final long trackedNanos = System.nanoTime();
+        private final CompletableFuture<FlowTransactionResult> executed = new CompletableFuture<>();
+        private final CompletableFuture<FlowTransactionResult> sealed = new CompletableFuture<>();
+        private final AtomicBoolean polling = new AtomicBoolean(false);
+        private final List<Tracer.Span> spans = new CopyOnWriteArrayList<>();
+        private volatile long nextPollAt;
+        private volatile long pollInterval;
+        private volatile FlowTransactionStatus lastStatus;
+
+        private PendingTransaction(final FlowId txID, final long trackedAt) {
+            this.txID = txID;
+            this.trackedAt = trackedAt;
+            this.pollInterval = SealTracker.this.minPollMillis;
+            this.nextPollAt = trackedAt;
+        }
+
+        /**
+         * Poll again soon after the status advanced, otherwise slow down
+         */
+        private void backoff(final boolean advanced) {
+            if (advanced) {
+                this.pollInterval = SealTracker.this.minPollMillis;
+            } else {
+                this.pollInterval = Math.min(SealTracker.this.maxPollMillis,
+                        (long) (this.pollInterval * BACKOFF_FACTOR));
+            }
+            this.nextPollAt = System.currentTimeMillis() + this.pollInterval;
+        }
+    }
+
+}
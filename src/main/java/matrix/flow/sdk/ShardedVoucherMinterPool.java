@@ -0,0 +1,180 @@
+package matrix.flow.sdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.AccessNode;
+import matrix.flow.sdk.model.BatchMintVoucherResult;
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.MinterAccount;
+import matrix.flow.sdk.model.SignatureVerificationRequest;
+import matrix.flow.sdk.model.VoucherClientConfig;
+import matrix.flow.sdk.model.VoucherMetadataModel;
+
+/**
+ * Mints over the keys of several admin accounts through several access nodes. Every replica of a
+ * service takes a disjoint share of the keys of each account computed from its replica id and the
+ * replica count, and spreads its share over the access nodes, one {@link VoucherMinterClientPool}
+ * per account and access node. Each call goes to the shard with the fewest leased keys and
+ * unsealed transactions per key, which leases its least loaded key.
+ */
+@Log4j2
+public class ShardedVoucherMinterPool {
+
+    private final List<VoucherMinterClientPool> shards;
+    private final AtomicInteger rotation = new AtomicInteger();
+
+    /**
+     * @param baseConfig contract addresses and tuning shared by all shards
+     * @param accounts admin accounts and their keys, the same list on every replica
+     * @param accessNodes access nodes to spread the keys over
+     * @param replicaId 0 based index of this replica
+     * @param replicaCount number of replicas sharing the keys
+     */
+    public ShardedVoucherMinterPool(final VoucherClientConfig baseConfig,
+            final List<MinterAccount> accounts, final List<AccessNode> accessNodes,
+            final int replicaId, final int replicaCount) {
+        this(baseConfig, accounts, accessNodes, replicaId, replicaCount, MetricsRegistry.NOOP,
+                Tracer.NOOP);
+    }
+
+    /**
+     * @param metrics receives the meters of all shards
+     * @param tracer opens the spans of all shards
+     */
+    public ShardedVoucherMinterPool(final VoucherClientConfig baseConfig,
+            final List<MinterAccount> accounts, final List<AccessNode> accessNodes,
+            final int replicaId, final int replicaCount, final MetricsRegistry metrics,
+            final Tracer tracer) {
+        if (accessNodes.isEmpty()) {
+            throw new FlowClientException("No access node to mint through");
+        }
+        final List<VoucherMinterClientPool> shards = new ArrayList<>();
+        try {
+            for (final MinterAccount account : accounts) {
+                final KeyRange replicaKeys = KeyRange.partition(account.getKeyStartIndex(),
+                        account.getKeyCount(), replicaId, replicaCount);
+                for (int i = 0; i < accessNodes.size(); i++) {
+                    final KeyRange keys = KeyRange.partition(replicaKeys.getStart(),
+                            replicaKeys.getCapacity(), i, accessNodes.size());
+                    if (keys.isEmpty()) {
+                        continue;
+                    }
+                    final AccessNode accessNode = accessNodes.get(i);
+                    log.info(String.format(
+                            "Replica %d of %d mints with keys %d to %d of %s via %s:%d", replicaId,
+                            replicaCount, keys.getStart(), keys.getStart() + keys.getCapacity() - 1,
+                            account.getAdminAccountAddress(), accessNode.getHost(),
+                            accessNode.getPort()));
+                    shards.add(new VoucherMinterClientPool(keys.getStart(), keys.getCapacity(),
+                            baseConfig.toBuilder().host(accessNode.getHost())
+                                    .port(accessNode.getPort()).accessNodes(null)
+                                    .adminAccountAddress(account.getAdminAccountAddress())
+                                    .privateKeyHex(account.getPrivateKeyHex()).build(),
+                            metrics, tracer));
+                }
+            }
+        } catch (final RuntimeException e) {
+            shards.forEach(VoucherMinterClientPool::close);
+            throw e;
+        }
+        if (shards.isEmpty()) {
+            throw new FlowClientException(String.format(
+                    "No keys left for replica %d of %d", replicaId, replicaCount));
+        }
+        this.shards = Collections.unmodifiableList(shards);
+    }
+
+    public boolean verifyUserSignatureCadence(final String message, final String accountAddress,
+            final List<Integer> keyIds, final List<String> signatures) {
+        return this.select().verifyUserSignatureCadence(message, accountAddress, keyIds,
+                signatures);
+    }
+
+    public boolean[] verifyUserSignatures(final List<SignatureVerificationRequest> requests) {
+        return this.select().verifyUserSignatures(requests);
+    }
+
+    public BatchMintVoucherResult batchMintAndResolveVoucher(final List<String> recipientList,
+            final List<String> landInfoHashStringList) {
+        return this.select().batchMintAndResolveVoucher(recipientList, landInfoHashStringList);
+    }
+
+    public String batchMintVoucher(final List<String> recipientList,
+            final List<String> landInfoHashStringList) {
+        return this.select().batchMintVoucher(recipientList, landInfoHashStringList);
+    }
+
+    /**
+     * Resolve a batch minted by any shard, all shards read the same chain
+     */
+    public List<VoucherMetadataModel> resolveBatchMintVoucher(final String transactionId) {
+        return this.select().resolveBatchMintVoucher(transactionId);
+    }
+
+    public VoucherMetadataModel mintVoucher(final String recipient,
+            final String landInfoHashString) {
+        return this.select().mintVoucher(recipient, landInfoHashString);
+    }
+
+    /**
+     * @return mints per batch the shards can all take
+     */
+    public int getMaxBatchSize() {
+        int maxBatchSize = Integer.MAX_VALUE;
+        for (final VoucherMinterClientPool shard : this.shards) {
+            maxBatchSize = Math.min(maxBatchSize, shard.getMaxBatchSize());
+        }
+        return maxBatchSize;
+    }
+
+    /**
+     * @return completes once the mints a previous run left unresolved in the journal are resolved,
+     *         the shards share the journal of the configured file and recover it once
+     */
+    public CompletableFuture<List<BatchMintVoucherResult>> getRecoveredMints() {
+        return this.shards.get(0).getRecoveredMints();
+    }
+
+    /**
+     * @return one pool per admin account and access node holding keys of this replica
+     */
+    List<VoucherMinterClientPool> getShards() {
+        return this.shards;
+    }
+
+    public void close() {
+        this.shards.forEach(VoucherMinterClientPool::close);
+    }
+
+    private VoucherMinterClientPool select() {
+        return leastLoaded(this.shards, VoucherMinterClientPool::getLoad,
+                this.rotation.getAndIncrement());
+    }
+
+    /**
+     * Pick the shard with the lowest load, scanning from a rotating offset so equally loaded shards
+     * take turns
+     */
+    static <T> T leastLoaded(final List<T> shards, final ToDoubleFunction<T> load,
+            final int offset) {
+        final int start = Math.floorMod(offset, shards.size());
+        T best = null;
+        double bestLoad = Double.MAX_VALUE;
+        for (int i = 0; i < shards.size(); i++) {
+            final T shard = shards.get((start + i) % shards.size());
+            final double shardLoad = load.applyAsDouble(shard);
+            if (shardLoad < bestLoad) {
+                best = shard;
+                bestLoad = shardLoad;
+            }
+        }
+        return best;
+    }
+
+}
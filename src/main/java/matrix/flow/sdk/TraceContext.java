@@ -0,0 +1,38 @@
+package matrix.flow.sdk;
+
+/**
+ * Span of the pool operation running on the current thread, the parent of the spans a borrowed
+ * client opens for it
+ */
+final class TraceContext {
+
+    private static final ThreadLocal<Tracer.Span> CURRENT = new ThreadLocal<>();
+
+    private TraceContext() {
+    }
+
+    /**
+     * @return current span or null
+     */
+    static Tracer.Span current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return span current before, to be restored with {@link #restore}
+     */
+    static Tracer.Span attach(final Tracer.Span span) {
+        final Tracer.Span previous = CURRENT.get();
+        CURRENT.set(span);
+        return previous;
+    }
+
+    static void restore(final Tracer.Span previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+}
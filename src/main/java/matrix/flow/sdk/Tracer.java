@@ -0,0 +1,66 @@
+package matrix.flow.sdk;
+
+/**
+ * Opens the spans of the mint lifecycle. Spans name their parent explicitly since a transaction
+ * is sent on one thread and its seal polled on another, so an adapter maps them one to one onto
+ * OpenTelemetry or another tracing library without this SDK depending on it. Names and attributes
+ * are listed in {@link VoucherSpans}.
+ */
+public interface Tracer {
+
+    /**
+     * Traces nothing, the default of every client
+     */
+    Tracer NOOP = (name, parent) -> Span.NOOP;
+
+    /**
+     * @param name stage of the span
+     * @param parent enclosing span, or null to start a trace
+     *
+     * @return started span, ended by the caller
+     */
+    Span startSpan(String name, Span parent);
+
+    interface Span {
+        Span NOOP = new Span() {
+            @Override
+            public Span setAttribute(final String key, final String value) {
+                return this;
+            }
+
+            @Override
+            public Span setAttribute(final String key, final long value) {
+                return this;
+            }
+
+            @Override
+            public void addEvent(final String name, final String... attributes) {
+                // Nothing to record
+            }
+
+            @Override
+            public void recordException(final Throwable exception) {
+                // Nothing to record
+            }
+
+            @Override
+            public void end() {
+                // Nothing to end
+            }
+        };
+
+        Span setAttribute(String key, String value);
+
+        Span setAttribute(String key, long value);
+
+        /**
+         * @param attributes alternating keys and values
+         */
+        void addEvent(String name, String... attributes);
+
+        void recordException(Throwable exception);
+
+        void end();
+    }
+
+}
@@ -0,0 +1,212 @@
+package matrix.flow.sdk;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import com.nftco.flow.sdk.FlowAccountKey;
+import com.nftco.flow.sdk.HashAlgorithm;
+import com.nftco.flow.sdk.SignatureAlgorithm;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.Digest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.digests.SHA3Digest;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.crypto.params.ECDomainParameters;
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.crypto.signers.ECDSASigner;
+
+/**
+ * Verifies user signatures locally with the same rules as the Cadence verification scripts: the
+ * message is prefixed with the {@code FLOW-V0.0-user} domain tag padded to 32 bytes, hashed with
+ * the key's hash algorithm and checked as a raw {@code r || s} ECDSA signature.
+ */
+public final class UserSignatureVerifier {
+
+    public static final String USER_DOMAIN_TAG = "FLOW-V0.0-user";
+
+    /**
+     * Weight a {@code Crypto.KeyList} requires from its valid signatures
+     */
+    public static final double KEY_LIST_WEIGHT_THRESHOLD = 1.0;
+
+    /**
+     * Decimal places of a Cadence {@code UFix64}
+     */
+    static final int UFIX64_SCALE = 8;
+
+    static final int DOMAIN_TAG_LENGTH = 32;
+    static final int SIGNATURE_LENGTH = 64;
+
+    /**
+     * Codes of {@code verify_sig_script.cdc.temp}, every other code selects the other algorithm
+     */
+    static final int ECDSA_P256_CODE = 2;
+    static final int SHA2_256_CODE = 2;
+
+    private static final byte[] USER_DOMAIN_TAG_BYTES =
+            Arrays.copyOf(USER_DOMAIN_TAG.getBytes(StandardCharsets.UTF_8), DOMAIN_TAG_LENGTH);
+
+    private static final ECDomainParameters P256 = domain("secp256r1");
+    private static final ECDomainParameters SECP256K1 = domain("secp256k1");
+
+    private UserSignatureVerifier() {
+    }
+
+    /**
+     * Verify one user signature
+     *
+     * @param publicKey raw public key, 64 bytes of {@code x || y}
+     * @param signAlgo curve of the key
+     * @param hashAlgo hash algorithm the message was signed with
+     * @param message signed raw message
+     * @param signature raw {@code r || s} signature
+     *
+     * @return true if the signature is valid, false for invalid input or unsupported algorithms
+     */
+    public static boolean verify(final byte[] publicKey, final SignatureAlgorithm signAlgo,
+            final HashAlgorithm hashAlgo, final byte[] message, final byte[] signature) {
+        final ECDomainParameters domain = domainOf(signAlgo);
+        final Digest digest = digestOf(hashAlgo);
+        if (domain == null || digest == null || signature.length != SIGNATURE_LENGTH) {
+            return false;
+        }
+
+        final ECPublicKeyParameters key;
+        try {
+            final byte[] encoded = new byte[publicKey.length + 1];
+            encoded[0] = 0x04;
+            System.arraycopy(publicKey, 0, encoded, 1, publicKey.length);
+            key = new ECPublicKeyParameters(domain.getCurve().decodePoint(encoded), domain);
+        } catch (final IllegalArgumentException e) {
+            return false;
+        }
+
+        digest.update(USER_DOMAIN_TAG_BYTES, 0, USER_DOMAIN_TAG_BYTES.length);
+        digest.update(message, 0, message.length);
+        final byte[] hash = new byte[digest.getDigestSize()];
+        digest.doFinal(hash, 0);
+
+        final ECDSASigner signer = new ECDSASigner();
+        signer.init(false, key);
+        return signer.verifySignature(hash,
+                new BigInteger(1, Arrays.copyOfRange(signature, 0, SIGNATURE_LENGTH / 2)),
+                new BigInteger(1, Arrays.copyOfRange(signature, SIGNATURE_LENGTH / 2,
+                        SIGNATURE_LENGTH)));
+    }
+
+    /**
+     * Local equivalent of {@code verify_sig_script.cdc.temp}, the i-th signature belongs to the
+     * i-th key. Every signature has to be valid and their weights have to sum up to
+     * {@link #KEY_LIST_WEIGHT_THRESHOLD}. The weights are summed as {@code UFix64} like in Cadence,
+     * so 0.7 + 0.2 + 0.1 reaches the threshold.
+     *
+     * @return true if verified or false
+     */
+    public static boolean verifyKeyList(final String message, final String[] publicKeysHex,
+            final double[] weights, final int[] signAlgos, final int[] hashAlgos,
+            final String[] signatures) {
+        try {
+            final byte[] signedData = Hex.decodeHex(message);
+            long validWeights = 0L;
+            for (int i = 0; i < signatures.length; i++) {
+                if (i >= publicKeysHex.length) {
+                    return false;
+                }
+                final SignatureAlgorithm signAlgo = signAlgos[i] == ECDSA_P256_CODE
+                        ? SignatureAlgorithm.ECDSA_P256 : SignatureAlgorithm.ECDSA_SECP256k1;
+                final HashAlgorithm hashAlgo = hashAlgos[i] == SHA2_256_CODE
+                        ? HashAlgorithm.SHA2_256 : HashAlgorithm.SHA3_256;
+                if (!verify(Hex.decodeHex(publicKeysHex[i]), signAlgo, hashAlgo, signedData,
+                        Hex.decodeHex(signatures[i]))) {
+                    return false;
+                }
+                validWeights = Math.addExact(validWeights, toUFix64(weights[i]));
+            }
+            return validWeights >= toUFix64(KEY_LIST_WEIGHT_THRESHOLD);
+        } catch (final DecoderException | ArithmeticException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Local equivalent of {@code verify_comp_sig_script.cdc.temp}, every signature has to be valid
+     * for the account key of the same position in {@code keyIds}. Unlike the script, signatures
+     * of revoked keys are rejected.
+     *
+     * @param message signed raw message in hex
+     * @param accountKeys keys of the account, indexed by key id
+     * @param keyIds ids of the signing keys
+     * @param signatures signatures in hex
+     *
+     * @return true if verified or false
+     */
+    public static boolean verifyAccountKeys(final String message,
+            final List<FlowAccountKey> accountKeys, final List<Integer> keyIds,
+            final List<String> signatures) {
+        try {
+            final byte[] signedData = Hex.decodeHex(message);
+            for (int i = 0; i < keyIds.size(); i++) {
+                final int keyId = keyIds.get(i);
+                if (keyId < 0 || keyId >= accountKeys.size() || i >= signatures.size()) {
+                    return false;
+                }
+                final FlowAccountKey key = accountKeys.get(keyId);
+                if (key.getRevoked() || !verify(key.getPublicKey().getBytes(), key.getSignAlgo(),
+                        key.getHashAlgo(), signedData, Hex.decodeHex(signatures.get(i)))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (final DecoderException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return weight in units of 1e-8 as the script receives it, see {@code Double.toString} in
+     *         {@link FlowSimpleClient#verifyUserSignature}
+     *
+     * @throws ArithmeticException for a weight a {@code UFix64} cannot hold
+     */
+    static long toUFix64(final double weight) {
+        if (weight < 0 || Double.isNaN(weight) || Double.isInfinite(weight)) {
+            throw new ArithmeticException("Invalid weight " + weight);
+        }
+        return BigDecimal.valueOf(weight).setScale(UFIX64_SCALE, RoundingMode.DOWN)
+                .unscaledValue().longValueExact();
+    }
+
+    private static ECDomainParameters domain(final String curveName) {
+        final X9ECParameters curve = CustomNamedCurves.getByName(curveName);
+        return new ECDomainParameters(curve.getCurve(), curve.getG(), curve.getN(),
+                curve.getH());
+    }
+
+    private static ECDomainParameters domainOf(final SignatureAlgorithm signAlgo) {
+        if (signAlgo == SignatureAlgorithm.ECDSA_P256) {
+            return P256;
+        }
+        if (signAlgo == SignatureAlgorithm.ECDSA_SECP256k1) {
+            return SECP256K1;
+        }
+        return null;
+    }
+
+    private static Digest digestOf(final HashAlgorithm hashAlgo) {
+        if (hashAlgo == HashAlgorithm.SHA2_256) {
+            return new SHA256Digest();
+        }
+        if (hashAlgo == HashAlgorithm.SHA3_256) {
+            return new SHA3Digest(256);
+        }
+        return null;
+    }
+
+}
@@ -4,11 +4,13 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
-import com.nftco.flow.sdk.FlowAccountKey;
+import com.nftco.flow.sdk.FlowAccessApi;
 import com.nftco.flow.sdk.FlowAddress;
 import com.nftco.flow.sdk.FlowArgument;
-import com.nftco.flow.sdk.FlowEvent;
 import com.nftco.flow.sdk.FlowId;
 import com.nftco.flow.sdk.FlowScript;
 import com.nftco.flow.sdk.FlowTransaction;
@@ -20,13 +22,13 @@ import com.nftco.flow.sdk.cadence.AddressField;
 import com.nftco.flow.sdk.cadence.ArrayField;
 import com.nftco.flow.sdk.cadence.StringField;
 import com.nftco.flow.sdk.cadence.UFix64NumberField;
-import com.nftco.flow.sdk.cadence.UInt64NumberField;
 import com.nftco.flow.sdk.crypto.Crypto;
 import com.nftco.flow.sdk.crypto.PrivateKey;
 
 import lombok.extern.log4j.Log4j2;
 import matrix.flow.sdk.model.FlowClientException;
 import matrix.flow.sdk.model.PaymentType;
+import matrix.flow.sdk.model.PaymentVerification;
 import matrix.flow.sdk.model.TransferEvent;
 import matrix.flow.sdk.model.VoucherClientConfig;
 import matrix.flow.sdk.model.VoucherMetadataModel;
@@ -37,19 +39,78 @@ public final class VoucherClient extends FlowSimpleClient {
     private final FlowAddress accountAddress;
     private final PrivateKey privateKey;
     private final VoucherClientConfig clientConfig;
+    private final ProposalKeySequence keySequence = new ProposalKeySequence();
+    private final PaymentCache paymentCache;
+    private final MetricsRegistry.Timer sendTimer;
+    private final Tracer tracer;
+    // Created through the public constructor, the client owns its connection, seals and payments
+    private final boolean standalone;
 
     static final int DAYS_IN_WEEK = 7;
-    static final String FUNGIBLE_TOKEN_ADDRESS_TEMP = "%FUNGIBLE_TOKEN_ADDRESS";
-    static final String FUSD_ADDRESS_TEMP = "%FUSD_ADDRESS";
-    static final String FLOW_TOKEN_ADDRESS_TEMP = "%FLOW_TOKEN_ADDRESS";
-    static final String NON_FUNGIBLE_TOKEN_ADDRESS_TEMP = "%NON_FUNGIBLE_TOKEN_ADDRESS";
-    static final String VOUCHER_ADDRESS = "%VOUCHER_ADDRESS";
+
+    private static final Consumer<FlowTransaction> NOT_JOURNALED = tx -> {
+    };
 
     public VoucherClient(final VoucherClientConfig clientConfig) {
-        super(clientConfig.getHost(), clientConfig.getPort(), clientConfig.getWaitForSealTries());
+        this(clientConfig, BalancedFlowAccessApi.connect(clientConfig));
+    }
+
+    /**
+     * The reference block of a lone client is not refreshed in the background, it is fetched on
+     * the caller thread once older than {@code referenceBlockMaxAgeMillis}
+     */
+    private VoucherClient(final VoucherClientConfig clientConfig, final FlowAccessApi accessAPI) {
+        this(clientConfig, accessAPI, null,
+                new ReferenceBlockProvider(() -> accessAPI.getLatestBlockHeader().getId(),
+                        clientConfig.getReferenceBlockRefreshMillis(),
+                        clientConfig.getReferenceBlockMaxAgeMillis()),
+                AccountKeyCache.forAccessApi(accessAPI, clientConfig.getAccountKeyCacheTtlMillis(),
+                        clientConfig.getAccountKeyCacheMaxSize()),
+                PaymentCache.forConfig(clientConfig), MetricsRegistry.NOOP, Tracer.NOOP, true);
+    }
+
+    VoucherClient(final VoucherClientConfig clientConfig, final FlowAccessApi accessAPI,
+            final SealTracker sealTracker, final ReferenceBlockProvider referenceBlocks,
+            final AccountKeyCache accountKeys, final PaymentCache paymentCache) {
+        this(clientConfig, accessAPI, sealTracker, referenceBlocks, accountKeys, paymentCache,
+                MetricsRegistry.NOOP);
+    }
+
+    VoucherClient(final VoucherClientConfig clientConfig, final FlowAccessApi accessAPI,
+            final SealTracker sealTracker, final ReferenceBlockProvider referenceBlocks,
+            final AccountKeyCache accountKeys, final PaymentCache paymentCache,
+            final MetricsRegistry metrics) {
+        this(clientConfig, accessAPI, sealTracker, referenceBlocks, accountKeys, paymentCache,
+                metrics, Tracer.NOOP);
+    }
+
+    /**
+     * @param metrics receives the latencies of this client
+     * @param tracer opens a span per stage of each transaction, children of the span of the pool
+     *        operation the client was borrowed for
+     */
+    VoucherClient(final VoucherClientConfig clientConfig, final FlowAccessApi accessAPI,
+            final SealTracker sealTracker, final ReferenceBlockProvider referenceBlocks,
+            final AccountKeyCache accountKeys, final PaymentCache paymentCache,
+            final MetricsRegistry metrics, final Tracer tracer) {
+        this(clientConfig, accessAPI, sealTracker, referenceBlocks, accountKeys, paymentCache,
+                metrics, tracer, false);
+    }
+
+    private VoucherClient(final VoucherClientConfig clientConfig, final FlowAccessApi accessAPI,
+            final SealTracker sealTracker, final ReferenceBlockProvider referenceBlocks,
+            final AccountKeyCache accountKeys, final PaymentCache paymentCache,
+            final MetricsRegistry metrics, final Tracer tracer, final boolean standalone) {
+        super(accessAPI, clientConfig.getWaitForSealTries(),
+                CadenceTemplateRegistry.forConfig(clientConfig), sealTracker, referenceBlocks,
+                accountKeys, clientConfig.isVerifySignaturesOnChain(), metrics);
         this.clientConfig = clientConfig;
         this.privateKey = Crypto.decodePrivateKey(clientConfig.getPrivateKeyHex());
         this.accountAddress = new FlowAddress(clientConfig.getAdminAccountAddress());
+        this.paymentCache = paymentCache;
+        this.sendTimer = metrics.timer(VoucherMetrics.TRANSACTION_SEND);
+        this.tracer = tracer;
+        this.standalone = standalone;
     }
 
     /**
@@ -64,69 +125,50 @@ public final class VoucherClient extends FlowSimpleClient {
      */
     public VoucherMetadataModel mintVoucher(final String recipientAddressString, final String landInfoHashString)
             throws FlowClientException {
+        final FlowId txID = this.sendMintVoucher(recipientAddressString, landInfoHashString);
+        return resolveMintedVoucher(this.clientConfig, this.waitForSeal(txID));
+    }
+
+    /**
+     * Send a Voucher NFT mint transaction without waiting for it to be sealed
+     *
+     * @param recipientAddressString recipient account address
+     * @param landInfoHashString     flow type landInfoHashString in hex
+     *
+     * @return flow transactionId
+     *
+     * @throws FlowClientException runtime exception
+     */
+    public FlowId sendMintVoucher(final String recipientAddressString, final String landInfoHashString)
+            throws FlowClientException {
+        return this.submitMintVoucher(recipientAddressString, landInfoHashString, NOT_JOURNALED)
+                .getTransactionId();
+    }
+
+    /**
+     * Send a Voucher NFT mint transaction, see {@link Submission#getSettled}
+     *
+     * @param signed receives the signed transaction before it is sent
+     */
+    Submission submitMintVoucher(final String recipientAddressString,
+            final String landInfoHashString, final Consumer<FlowTransaction> signed)
+            throws FlowClientException {
 
         // Setup cadence script
-        final FlowAccountKey senderAccountKey = this.getAccountKey(this.accountAddress,
-                this.clientConfig.getKeyIndex());
-        String cadenceScript = readScript("mint_voucher.cdc.temp");
-        cadenceScript = cadenceScript.replaceAll(VoucherClient.NON_FUNGIBLE_TOKEN_ADDRESS_TEMP,
-                this.clientConfig.getNonFungibleTokenAddress());
-        cadenceScript = cadenceScript.replaceAll(VoucherClient.VOUCHER_ADDRESS, this.clientConfig.getVoucherAddress());
+        final FlowScript cadenceScript = this.templates.getScript(CadenceTemplateRegistry.MINT_VOUCHER);
 
         // NFT metadata
         final VoucherMetadataModel metadata = VoucherMetadataModel.builder().hash(landInfoHashString).build();
 
         // Build flow transaction
-        FlowTransaction tx = new FlowTransaction(new FlowScript(cadenceScript.getBytes()),
+        return this.sendTransaction(this.accountAddress, cadenceScript,
                 Arrays.asList(new FlowArgument(new AddressField(recipientAddressString)),
                         new FlowArgument(new StringField(metadata.getName())),
                         new FlowArgument(new StringField(metadata.getDescription())),
                         new FlowArgument(new StringField(metadata.getAnimationUrl())),
                         new FlowArgument(new StringField(metadata.getHash())),
                         new FlowArgument(new StringField(metadata.getType()))),
-                this.getLatestBlockID(), 100L,
-                new FlowTransactionProposalKey(this.accountAddress, senderAccountKey.getId(),
-                        senderAccountKey.getSequenceNumber()),
-                this.accountAddress, Arrays.asList(this.accountAddress), new ArrayList<>(), new ArrayList<>());
-
-        final Signer signer = Crypto.getSigner(this.privateKey, senderAccountKey.getHashAlgo());
-        tx = tx.addEnvelopeSignature(this.accountAddress, senderAccountKey.getId(), signer);
-
-        final FlowId txID = this.accessAPI.sendTransaction(tx);
-        final FlowTransactionResult result = this.waitForSeal(txID);
-        if (result.getStatus() != FlowTransactionStatus.SEALED) {
-            throw new FlowClientException("There is something wrong with the transaction");
-        }
-        if (!result.getErrorMessage().isEmpty()) {
-            throw new FlowClientException(result.getErrorMessage());
-        }
-
-        final VoucherMetadataModel mintedToken = new VoucherMetadataModel();
-        int tokenCount = 0;
-        for (final FlowEvent event : result.getEvents()) {
-            if (event.getType().contains(this.clientConfig.getVoucherAddress() + ".MatrixWorldVoucher.Minted")) {
-                final UInt64NumberField id = (UInt64NumberField) event.getField("id");
-                mintedToken.setId(id.toInt());
-                final StringField name = (StringField) event.getField("name");
-                mintedToken.setName(name.getValue());
-                final StringField description = (StringField) event.getField("description");
-                mintedToken.setDescription(description.getValue());
-                final StringField animationUrl = (StringField) event.getField("animationUrl");
-                mintedToken.setAnimationUrl(animationUrl.getValue());
-                final StringField hash = (StringField) event.getField("hash");
-                mintedToken.setHash(hash.getValue());
-                final StringField type = (StringField) event.getField("type");
-                mintedToken.setType(type.getValue());
-                tokenCount++;
-                break;
-            }
-        }
-
-        if (tokenCount != 1) {
-            throw new FlowClientException("Number of mintedTokens not match with input size");
-        }
-
-        return mintedToken;
+                100L, signed);
     }
 
     /**
@@ -141,6 +183,36 @@ public final class VoucherClient extends FlowSimpleClient {
      */
     public String batchMintVoucher(final List<String> recipientAddressStringList,
             final List<String> landInfoHashStringList) throws FlowClientException {
+        return this.batchMintVoucher(recipientAddressStringList, landInfoHashStringList,
+                this.clientConfig.getBatchMintComputationLimit());
+    }
+
+    /**
+     * Mint a batch of Vouchers with a computation limit sized to the batch
+     *
+     * @param recipientAddressStringList list of recipient account address
+     * @param landInfoHashStringList     list of landInfoHash
+     * @param computationLimit           computation limit of the transaction
+     *
+     * @return flow transactionId
+     *
+     * @throws FlowClientException runtime exception
+     */
+    public String batchMintVoucher(final List<String> recipientAddressStringList,
+            final List<String> landInfoHashStringList, final long computationLimit)
+            throws FlowClientException {
+        return this.submitBatchMintVoucher(recipientAddressStringList, landInfoHashStringList,
+                computationLimit, NOT_JOURNALED).getTransactionId().getBase16Value();
+    }
+
+    /**
+     * Send a batch mint transaction, see {@link Submission#getSettled}
+     *
+     * @param signed receives the signed transaction before it is sent
+     */
+    Submission submitBatchMintVoucher(final List<String> recipientAddressStringList,
+            final List<String> landInfoHashStringList, final long computationLimit,
+            final Consumer<FlowTransaction> signed) throws FlowClientException {
 
         final List<AddressField> recipientAddressListC = new ArrayList<>();
         final List<StringField> landInfoHashStringListC = new ArrayList<>();
@@ -161,63 +233,18 @@ public final class VoucherClient extends FlowSimpleClient {
         }
 
         // Setup cadence script
-        final FlowAccountKey senderAccountKey = this.getAccountKey(this.accountAddress,
-                this.clientConfig.getKeyIndex());
-        String cadenceScript = readScript("batch_mint_voucher.cdc.temp");
-        cadenceScript = cadenceScript.replaceAll(VoucherClient.NON_FUNGIBLE_TOKEN_ADDRESS_TEMP,
-                this.clientConfig.getNonFungibleTokenAddress());
-        cadenceScript = cadenceScript.replaceAll(VoucherClient.VOUCHER_ADDRESS, this.clientConfig.getVoucherAddress());
+        final FlowScript cadenceScript = this.templates.getScript(CadenceTemplateRegistry.BATCH_MINT_VOUCHER);
 
         // Build flow transaction
-        FlowTransaction tx = new FlowTransaction(new FlowScript(cadenceScript.getBytes()), Arrays.asList(
+        return this.sendTransaction(this.accountAddress, cadenceScript, Arrays.asList(
                 new FlowArgument(new ArrayField(recipientAddressListC)), new FlowArgument(new ArrayField(namesC)),
                 new FlowArgument(new ArrayField(descriptionsC)), new FlowArgument(new ArrayField(animationUrlsC)),
                 new FlowArgument(new ArrayField(landInfoHashStringListC)), new FlowArgument(new ArrayField(typesC))),
-                this.getLatestBlockID(), 9999L,
-                new FlowTransactionProposalKey(this.accountAddress, senderAccountKey.getId(),
-                        senderAccountKey.getSequenceNumber()),
-                this.accountAddress, Arrays.asList(this.accountAddress), new ArrayList<>(), new ArrayList<>());
-
-        final Signer signer = Crypto.getSigner(this.privateKey, senderAccountKey.getHashAlgo());
-        tx = tx.addEnvelopeSignature(this.accountAddress, senderAccountKey.getId(), signer);
-
-        final FlowId txID = this.accessAPI.sendTransaction(tx);
-
-        return txID.getBase16Value();
-
+                computationLimit, signed);
     }
 
     public List<VoucherMetadataModel> resolveBatchMintVoucherTransaction(final String transactionId) throws FlowClientException {
-        final FlowTransactionResult result = this.waitForSeal(new FlowId(transactionId));
-        if (result.getStatus() != FlowTransactionStatus.SEALED) {
-            throw new FlowClientException("There is something wrong with the transaction");
-        }
-        if (!result.getErrorMessage().isEmpty()) {
-            throw new FlowClientException(result.getErrorMessage());
-        }
-
-        // TokenList
-        final List<VoucherMetadataModel> mintedTokens = new ArrayList<>();
-        for (final FlowEvent event : result.getEvents()) {
-            if (event.getType().contains(this.clientConfig.getVoucherAddress() + ".MatrixWorldVoucher.Minted")) {
-                final VoucherMetadataModel mintedToken = new VoucherMetadataModel();
-                final UInt64NumberField id = (UInt64NumberField) event.getField("id");
-                mintedToken.setId(id.toInt());
-                final StringField name = (StringField) event.getField("name");
-                mintedToken.setName(name.getValue());
-                final StringField description = (StringField) event.getField("description");
-                mintedToken.setDescription(description.getValue());
-                final StringField animationUrl = (StringField) event.getField("animationUrl");
-                mintedToken.setAnimationUrl(animationUrl.getValue());
-                final StringField hash = (StringField) event.getField("hash");
-                mintedToken.setHash(hash.getValue());
-                final StringField type = (StringField) event.getField("type");
-                mintedToken.setType(type.getValue());
-                mintedTokens.add(mintedToken);
-            }
-        }
-        return mintedTokens;
-
+        return decodeMintedVouchers(this.clientConfig, this.waitForSeal(new FlowId(transactionId)));
     }
 
     /**
@@ -232,100 +259,186 @@ public final class VoucherClient extends FlowSimpleClient {
      */
     public TransferEvent resolveTransferEventFromTransactionId(final String transactionId,
             final PaymentType paymentType) throws FlowClientException {
-        String paymentTokenAddress;
-        String paymentTokenName;
-        if (paymentType == PaymentType.FUSD) {
-            paymentTokenAddress = this.clientConfig.getFusdAddress();
-            paymentTokenName = "FUSD";
-        } else if (paymentType == PaymentType.FLOW) {
-            paymentTokenAddress = this.clientConfig.getFlowTokenAddress();
-            paymentTokenName = "FlowToken";
-        } else {
-            throw new FlowClientException("Unknown payment type");
+        checkPaymentType(paymentType);
+        return resolveTransferEvent(this.clientConfig, this.paymentTransfers(transactionId),
+                transactionId, paymentType);
+    }
+
+    /**
+     * Verify a FUSD or FLOW transaction
+     *
+     * @param payerAddress  payer account address
+     * @param targetAmount  expected amount to be received
+     * @param transactionId flow transactionId
+     *
+     * @throws Exception with reason of unexpected error
+     */
+    public void verifyPaymentTransaction(final String payerAddress, final BigDecimal targetAmount,
+            final String transactionId, final PaymentType paymentType) throws FlowClientException {
+        checkPaymentType(paymentType);
+        checkPaymentAmountScale(targetAmount);
+
+        verifyPayment(this.clientConfig, this.paymentTransfers(transactionId), payerAddress,
+                targetAmount, paymentType);
+    }
+
+    /**
+     * Resolve the transferEvent of a FUSD or FLOW transaction and verify it, waiting for the seal
+     * once
+     *
+     * @param payerAddress  payer account address
+     * @param targetAmount  expected amount to be received
+     * @param transactionId flow transactionId
+     * @param paymentType   FLOW or FUSD
+     *
+     * @return resolved transfer, verdict and amounts; a failed verification is reported in the
+     *         result instead of thrown
+     *
+     * @throws FlowClientException if the transaction did not seal or the arguments are invalid
+     */
+    public PaymentVerification resolveAndVerifyPaymentTransaction(final String payerAddress,
+            final BigDecimal targetAmount, final String transactionId,
+            final PaymentType paymentType) throws FlowClientException {
+        checkPaymentType(paymentType);
+        checkPaymentAmountScale(targetAmount);
+
+        return evaluatePayment(this.clientConfig, this.paymentTransfers(transactionId), transactionId,
+                payerAddress, targetAmount, paymentType);
+    }
+
+    /**
+     * @return token transfers of a sealed transaction, waiting for the seal on a cache miss only
+     */
+    private List<PaymentCache.Transfer> paymentTransfers(final String transactionId) {
+        return this.paymentCache.get(transactionId, EventDecoder.forConfig(this.clientConfig),
+                () -> this.waitForSeal(new FlowId(transactionId)));
+    }
+
+    public int getAccountKeyIndex() {
+        return this.clientConfig.getKeyIndex();
+    }
+
+    /**
+     * @return false while the proposal key waits to be read from chain again
+     */
+    boolean isSequenceSynced() {
+        return this.keySequence.isSynced();
+    }
+
+    PaymentCache getPaymentCache() {
+        return this.paymentCache;
+    }
+
+    VoucherClientConfig getClientConfig() {
+        return this.clientConfig;
+    }
+
+    static List<VoucherMetadataModel> decodeMintedVouchers(final VoucherClientConfig clientConfig,
+            final FlowTransactionResult result) throws FlowClientException {
+        if (result.getStatus() != FlowTransactionStatus.SEALED) {
+            throw new FlowClientException("There is something wrong with the transaction");
+        }
+        if (!result.getErrorMessage().isEmpty()) {
+            throw new FlowClientException(result.getErrorMessage());
+        }
+        return EventDecoder.forConfig(clientConfig).decodeMinted(result.getEvents());
+    }
+
+    static VoucherMetadataModel resolveMintedVoucher(final VoucherClientConfig clientConfig,
+            final FlowTransactionResult result) throws FlowClientException {
+        final List<VoucherMetadataModel> mintedTokens = decodeMintedVouchers(clientConfig, result);
+        if (mintedTokens.isEmpty()) {
+            throw new FlowClientException("Number of mintedTokens not match with input size");
         }
+        return mintedTokens.get(0);
+    }
 
-        final FlowTransactionResult txResult = this.waitForSeal((new FlowId(transactionId)));
-        final List<FlowEvent> events = txResult.getEvents();
+    static TransferEvent resolveTransferEvent(final VoucherClientConfig clientConfig,
+            final FlowTransactionResult txResult, final String transactionId, final PaymentType paymentType)
+            throws FlowClientException {
+        return resolveTransferEvent(clientConfig,
+                PaymentCache.decode(EventDecoder.forConfig(clientConfig), txResult), transactionId, paymentType);
+    }
 
-        FlowEvent withdrawnEvent = null;
-        FlowEvent depositedEvent = null;
+    static TransferEvent resolveTransferEvent(final VoucherClientConfig clientConfig,
+            final List<PaymentCache.Transfer> transfers, final String transactionId,
+            final PaymentType paymentType) throws FlowClientException {
+        checkPaymentType(paymentType);
+
+        PaymentCache.Transfer withdrawn = null;
+        PaymentCache.Transfer deposited = null;
 
-        for (FlowEvent flowEvent : events) {
-            if (flowEvent.getType().equals("A." + paymentTokenAddress + "." + paymentTokenName + ".TokensWithdrawn")) {
-                if (withdrawnEvent == null) withdrawnEvent = flowEvent;
-            } else if (flowEvent.getType()
-                    .equals("A." + paymentTokenAddress + "." + paymentTokenName + ".TokensDeposited")) {
-                if (depositedEvent == null) depositedEvent = flowEvent;
+        for (final PaymentCache.Transfer transfer : transfers) {
+            if (transfer.paymentType != paymentType) {
+                continue;
+            }
+            if (transfer.kind == EventDecoder.Kind.TOKENS_WITHDRAWN) {
+                if (withdrawn == null) withdrawn = transfer;
+            } else if (deposited == null) {
+                deposited = transfer;
             }
         }
 
-        if (withdrawnEvent == null || depositedEvent == null) {
+        if (withdrawn == null || deposited == null) {
             log.error(String.format("Abnormal payment transaction with id: %s", transactionId));
             throw new FlowClientException("Abnormal payment transaction");
         }
 
-        final UFix64NumberField amountFrom = (UFix64NumberField) withdrawnEvent.getField("amount");
-        final AddressField from = (AddressField) withdrawnEvent.getField("from").getValue();
-        final UFix64NumberField amountTo = (UFix64NumberField) depositedEvent.getField("amount");
-        final AddressField to = (AddressField) depositedEvent.getField("to").getValue();
-
-        final TransferEvent resolvedTransferEvent = TransferEvent.builder().from(from.getValue().substring(2))
-                .amountFrom(amountFrom.toBigDecimal()).to(to.getValue().substring(2)).amountTo(amountTo.toBigDecimal())
+        final TransferEvent resolvedTransferEvent = TransferEvent.builder().from(withdrawn.address)
+                .amountFrom(withdrawn.amount).to(deposited.address).amountTo(deposited.amount)
                 .transactionId(transactionId).paymentType(paymentType).build();
         log.info(String.format("resolved transfer %s", resolvedTransferEvent.toString()));
 
         return resolvedTransferEvent;
     }
 
-    /**
-     * Verify a FUSD or FLOW transaction
-     *
-     * @param payerAddress  payer account address
-     * @param targetAmount  expected amount to be received
-     * @param transactionId flow transactionId
-     *
-     * @throws Exception with reason of unexpected error
-     */
-    public void verifyPaymentTransaction(final String payerAddress, final BigDecimal targetAmount,
-            final String transactionId, final PaymentType paymentType) throws FlowClientException {
-        String paymentTokenAddress;
-        String paymentTokenName;
-        if (paymentType == PaymentType.FUSD) {
-            paymentTokenAddress = this.clientConfig.getFusdAddress();
-            paymentTokenName = "FUSD";
-        } else if (paymentType == PaymentType.FLOW) {
-            paymentTokenAddress = this.clientConfig.getFlowTokenAddress();
-            paymentTokenName = "FlowToken";
-        } else {
-            throw new FlowClientException("Unknown payment type");
-        }
+    static void verifyPayment(final VoucherClientConfig clientConfig, final FlowTransactionResult txResult,
+            final String payerAddress, final BigDecimal targetAmount, final PaymentType paymentType)
+            throws FlowClientException {
+        verifyPayment(clientConfig, PaymentCache.decode(EventDecoder.forConfig(clientConfig), txResult),
+                payerAddress, targetAmount, paymentType);
+    }
 
-        if (targetAmount.scale() != 8) {
-            throw new FlowClientException(
-                    "FUSD amount must have exactly 8 decimal places of precision (e.g. 10.00000000)");
+    static void verifyPayment(final VoucherClientConfig clientConfig,
+            final List<PaymentCache.Transfer> transfers, final String payerAddress,
+            final BigDecimal targetAmount, final PaymentType paymentType) throws FlowClientException {
+        final PaymentVerification verification = evaluatePayment(clientConfig, transfers, null,
+                payerAddress, targetAmount, paymentType);
+        if (!verification.isVerified()) {
+            throw new FlowClientException(verification.getFailureReason());
         }
+    }
 
-        final FlowTransactionResult txResult = this.waitForSeal((new FlowId(transactionId)));
+    /**
+     * Resolve the transfer and check the payment in one pass over the token transfers
+     */
+    static PaymentVerification evaluatePayment(final VoucherClientConfig clientConfig,
+            final List<PaymentCache.Transfer> transfers, final String transactionId,
+            final String payerAddress, final BigDecimal targetAmount, final PaymentType paymentType)
+            throws FlowClientException {
+        checkPaymentType(paymentType);
+        final String adminAddress = new FlowAddress(clientConfig.getAdminAccountAddress()).getBase16Value();
 
-        final List<FlowEvent> events = txResult.getEvents();
+        PaymentCache.Transfer withdrawn = null;
+        PaymentCache.Transfer deposited = null;
 
         BigDecimal payerWithdrawnAmount = BigDecimal.ZERO;
 
         BigDecimal funderDepositedAmount = BigDecimal.ZERO;
 
-        for (FlowEvent flowEvent : events) {
-            if (flowEvent.getType().equals("A." + paymentTokenAddress + "." + paymentTokenName + ".TokensWithdrawn")) {
-                final AddressField from = (AddressField) flowEvent.getField("from").getValue();
-                if (from.getValue().substring(2).equals(payerAddress)) {
-                    payerWithdrawnAmount = payerWithdrawnAmount
-                            .add(((UFix64NumberField) flowEvent.getField("amount")).toBigDecimal());
+        for (final PaymentCache.Transfer transfer : transfers) {
+            if (transfer.paymentType != paymentType) {
+                continue;
+            }
+            if (transfer.kind == EventDecoder.Kind.TOKENS_WITHDRAWN) {
+                if (withdrawn == null) withdrawn = transfer;
+                if (payerAddress.equals(transfer.address)) {
+                    payerWithdrawnAmount = payerWithdrawnAmount.add(transfer.amount);
                 }
-            } else if (flowEvent.getType()
-                    .equals("A." + paymentTokenAddress + "." + paymentTokenName + ".TokensDeposited")) {
-                final AddressField to = (AddressField) flowEvent.getField("to").getValue();
-                if (to.getValue().substring(2).equals(this.accountAddress.getBase16Value())) {
-                    funderDepositedAmount = funderDepositedAmount
-                            .add(((UFix64NumberField) flowEvent.getField("amount")).toBigDecimal());
+            } else {
+                if (deposited == null) deposited = transfer;
+                if (adminAddress.equals(transfer.address)) {
+                    funderDepositedAmount = funderDepositedAmount.add(transfer.amount);
                 }
             }
         }
@@ -333,22 +446,161 @@ public final class VoucherClient extends FlowSimpleClient {
         log.info(String.format("Target: %s, payerW: %s, funderDep: %s", targetAmount.toString(),
                 payerWithdrawnAmount.toString(), funderDepositedAmount.toString()));
 
+        String failureReason = null;
         // verify payment
         if (funderDepositedAmount.compareTo(targetAmount) < 0) {
             log.error(String.format("Insufficient payment to funder address with target Amount: %s, received: %s",
                     targetAmount.toString(), funderDepositedAmount.toString()));
-            throw new FlowClientException("Insufficient payment");
+            failureReason = "Insufficient payment";
+        } else if (funderDepositedAmount.compareTo(payerWithdrawnAmount) > 0) {
+            log.error(String.format("Miss matched payment payer pay %s less than funder received %s",
+                    payerWithdrawnAmount.toString(), funderDepositedAmount.toString()));
+            failureReason = "Miss matched payment";
         }
 
-        if (funderDepositedAmount.compareTo(payerWithdrawnAmount) > 0) {
-            log.error(String.format("Miss matched payment payer pay %s less than funder received %s",
-                    paymentTokenAddress.toString(), funderDepositedAmount.toString()));
-            throw new FlowClientException("Miss matched payment");
+        final TransferEvent transferEvent = withdrawn == null || deposited == null ? null
+                : TransferEvent.builder().from(withdrawn.address).amountFrom(withdrawn.amount)
+                        .to(deposited.address).amountTo(deposited.amount).transactionId(transactionId)
+                        .paymentType(paymentType).build();
+
+        return PaymentVerification.builder().transactionId(transactionId).paymentType(paymentType)
+                .transferEvent(transferEvent).verified(failureReason == null).failureReason(failureReason)
+                .targetAmount(targetAmount).payerWithdrawnAmount(payerWithdrawnAmount)
+                .funderDepositedAmount(funderDepositedAmount).build();
+    }
+
+    /**
+     * @return event type prefix of the payment token, e.g. A.f8d6e0586b0a20c7.FUSD
+     */
+    static String paymentTokenPrefix(final VoucherClientConfig clientConfig, final PaymentType paymentType)
+            throws FlowClientException {
+        if (paymentType == PaymentType.FUSD) {
+            return "A." + clientConfig.getFusdAddress() + ".FUSD";
+        } else if (paymentType == PaymentType.FLOW) {
+            return "A." + clientConfig.getFlowTokenAddress() + ".FlowToken";
         }
+        throw new FlowClientException("Unknown payment type");
     }
 
-    public int getAccountKeyIndex() {
-        return this.clientConfig.getKeyIndex();
+    /**
+     * @throws FlowClientException for a payment type without a token address in the config
+     */
+    static void checkPaymentType(final PaymentType paymentType) throws FlowClientException {
+        if (paymentType != PaymentType.FUSD && paymentType != PaymentType.FLOW) {
+            throw new FlowClientException("Unknown payment type");
+        }
+    }
+
+    static void checkPaymentAmountScale(final BigDecimal targetAmount) throws FlowClientException {
+        if (targetAmount.scale() != 8) {
+            throw new FlowClientException(
+                    "FUSD amount must have exactly 8 decimal places of precision (e.g. 10.00000000)");
+        }
+    }
+
+    /**
+     * Sign and send a transaction proposed, paid and authorized by the sender. Transactions of
+     * this client's own account use the locally tracked sequence number of its key.
+     *
+     * @param signed receives the signed transaction before it is sent, e.g. to journal its id
+     */
+    private Submission sendTransaction(final FlowAddress senderAddress,
+            final FlowScript cadenceScript, final List<FlowArgument> arguments,
+            final long gasLimit, final Consumer<FlowTransaction> signed)
+            throws FlowClientException {
+        final Tracer.Span span = this.tracer.startSpan(VoucherSpans.TRANSACTION, TraceContext.current());
+        span.setAttribute(VoucherSpans.KEY_INDEX, this.clientConfig.getKeyIndex());
+        try {
+            return this.sendTransaction(senderAddress, cadenceScript, arguments, gasLimit, signed,
+                    span);
+        } catch (final RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    private Submission sendTransaction(final FlowAddress senderAddress,
+            final FlowScript cadenceScript, final List<FlowArgument> arguments,
+            final long gasLimit, final Consumer<FlowTransaction> signed, final Tracer.Span span) {
+        final int keyIndex = this.clientConfig.getKeyIndex();
+        final boolean tracked = senderAddress.getBase16Value().equals(this.accountAddress.getBase16Value());
+        final ProposalKeySequence.Reservation proposalKey = tracked
+                ? this.keySequence.reserve(() -> this.traced(VoucherSpans.GET_ACCOUNT_KEY, span,
+                        () -> this.getAccountKey(this.accountAddress, keyIndex)))
+                : ProposalKeySequence.Reservation.of(this.traced(VoucherSpans.GET_ACCOUNT_KEY, span,
+                        () -> this.getAccountKey(senderAddress, keyIndex)));
+        final FlowId referenceBlockId =
+                this.traced(VoucherSpans.GET_LATEST_BLOCK_ID, span, this::getLatestBlockID);
+
+        final FlowTransaction tx = this.traced(VoucherSpans.SIGN, span, () -> {
+            final FlowTransaction unsigned = new FlowTransaction(cadenceScript, arguments, referenceBlockId, gasLimit,
+                    new FlowTransactionProposalKey(senderAddress, proposalKey.getKeyId(),
+                            proposalKey.getSequenceNumber()),
+                    senderAddress, Arrays.asList(senderAddress), new ArrayList<>(), new ArrayList<>());
+            final Signer signer = Crypto.getSigner(this.privateKey, proposalKey.getHashAlgo());
+            return unsigned.addEnvelopeSignature(senderAddress, proposalKey.getKeyId(), signer);
+        });
+        // A journaled mint has to know its transaction before it can reach the chain
+        signed.accept(tx);
+
+        final FlowId txID;
+        final Tracer.Span sendSpan = this.tracer.startSpan(VoucherSpans.SEND_TRANSACTION, span);
+        final long start = System.nanoTime();
+        try {
+            txID = this.accessAPI.sendTransaction(tx);
+        } catch (final RuntimeException e) {
+            sendSpan.recordException(e);
+            if (tracked) {
+                this.keySequence.invalidate();
+            }
+            throw e;
+        } finally {
+            this.sendTimer.record(System.nanoTime() - start);
+            sendSpan.end();
+        }
+        span.setAttribute(VoucherSpans.TRANSACTION_ID, txID.getBase16Value());
+        if (!tracked) {
+            return new Submission(txID, this.sealTracker.track(txID));
+        }
+        this.keySequence.submitted(proposalKey.getSequenceNumber());
+        final Tracer.Span sealSpan = this.tracer.startSpan(VoucherSpans.WAIT_FOR_SEAL, span)
+                .setAttribute(VoucherSpans.TRANSACTION_ID, txID.getBase16Value());
+        // A transaction failing in execution used its sequence number too, only an expired or
+        // mismatched one leaves the on-chain sequence number behind the local one
+        return new Submission(txID,
+                this.sealTracker.track(txID, sealSpan).whenComplete((result, e) -> {
+                    if (e != null ? SealTracker.isExpired(e)
+                            : SealTracker.isSequenceMismatch(result.getErrorMessage())) {
+                        log.warn(String.format("Resync sequence number of key index %d after "
+                                + "transaction %s failed", keyIndex, txID.getBase16Value()));
+                        this.keySequence.invalidate();
+                    }
+                    this.keySequence.settled();
+                    if (e != null) {
+                        sealSpan.recordException(e);
+                    } else {
+                        sealSpan.setAttribute(VoucherSpans.TRANSACTION_STATUS,
+                                result.getStatus().name());
+                    }
+                    sealSpan.end();
+                }));
+    }
+
+    /**
+     * Run a stage of a transaction in a child span
+     */
+    private <T> T traced(final String name, final Tracer.Span parent, final Supplier<T> stage) {
+        final Tracer.Span span = this.tracer.startSpan(name, parent);
+        try {
+            return stage.get();
+        } catch (final RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            span.end();
+        }
     }
 
     // ============================ Only for test
@@ -360,23 +612,11 @@ public final class VoucherClient extends FlowSimpleClient {
                     "FUSD amount must have exactly 8 decimal places of precision (e.g. 10.00000000)");
         }
 
-        final FlowAccountKey senderAccountKey = this.getAccountKey(senderAddress, this.clientConfig.getKeyIndex());
-        String cadenceScript = readScript("transfer_fusd.cdc.temp");
-        cadenceScript = cadenceScript.replaceAll(VoucherClient.FUNGIBLE_TOKEN_ADDRESS_TEMP,
-                this.clientConfig.getFungibleTokenAddress());
-        cadenceScript = cadenceScript.replaceAll(VoucherClient.FUSD_ADDRESS_TEMP, this.clientConfig.getFusdAddress());
-        FlowTransaction tx = new FlowTransaction(new FlowScript(cadenceScript.getBytes()),
+        final FlowScript cadenceScript = this.templates.getScript(CadenceTemplateRegistry.TRANSFER_FUSD);
+        final FlowId txID = this.sendTransaction(senderAddress, cadenceScript,
                 Arrays.asList(new FlowArgument(new UFix64NumberField(amount.toPlainString())),
                         new FlowArgument(new AddressField(recipientAddress.getBase16Value()))),
-                this.getLatestBlockID(), 100L,
-                new FlowTransactionProposalKey(senderAddress, senderAccountKey.getId(),
-                        senderAccountKey.getSequenceNumber()),
-                senderAddress, Arrays.asList(senderAddress), new ArrayList<>(), new ArrayList<>());
-
-        final Signer signer = Crypto.getSigner(this.privateKey, senderAccountKey.getHashAlgo());
-        tx = tx.addEnvelopeSignature(senderAddress, senderAccountKey.getId(), signer);
-
-        final FlowId txID = this.accessAPI.sendTransaction(tx);
+                100L, NOT_JOURNALED).getTransactionId();
         this.waitForSeal(txID);
         return txID;
 
@@ -390,26 +630,51 @@ public final class VoucherClient extends FlowSimpleClient {
                     "Flow amount must have exactly 8 decimal places of precision (e.g. 10.00000000)");
         }
 
-        final FlowAccountKey senderAccountKey = this.getAccountKey(senderAddress, this.clientConfig.getKeyIndex());
-        String cadenceScript = readScript("transfer_flow_token.cdc.temp");
-        cadenceScript = cadenceScript.replaceAll(VoucherClient.FUNGIBLE_TOKEN_ADDRESS_TEMP,
-                this.clientConfig.getFungibleTokenAddress());
-        cadenceScript = cadenceScript.replaceAll(VoucherClient.FLOW_TOKEN_ADDRESS_TEMP,
-                this.clientConfig.getFlowTokenAddress());
-        FlowTransaction tx = new FlowTransaction(new FlowScript(cadenceScript.getBytes()),
+        final FlowScript cadenceScript = this.templates.getScript(CadenceTemplateRegistry.TRANSFER_FLOW_TOKEN);
+        final FlowId txID = this.sendTransaction(senderAddress, cadenceScript,
                 Arrays.asList(new FlowArgument(new UFix64NumberField(amount.toPlainString())),
                         new FlowArgument(new AddressField(recipientAddress.getBase16Value()))),
-                this.getLatestBlockID(), 100L,
-                new FlowTransactionProposalKey(senderAddress, senderAccountKey.getId(),
-                        senderAccountKey.getSequenceNumber()),
-                senderAddress, Arrays.asList(senderAddress), new ArrayList<>(), new ArrayList<>());
-
-        final Signer signer = Crypto.getSigner(this.privateKey, senderAccountKey.getHashAlgo());
-        tx = tx.addEnvelopeSignature(senderAddress, senderAccountKey.getId(), signer);
-
-        final FlowId txID = this.accessAPI.sendTransaction(tx);
+                100L, NOT_JOURNALED).getTransactionId();
         this.waitForSeal(txID);
         return txID;
     }
 
+    /**
+     * A transaction the access node accepted
+     */
+    static final class Submission {
+        private final FlowId transactionId;
+        private final CompletableFuture<FlowTransactionResult> settled;
+
+        Submission(final FlowId transactionId,
+                final CompletableFuture<FlowTransactionResult> settled) {
+            this.transactionId = transactionId;
+            this.settled = settled;
+        }
+
+        FlowId getTransactionId() {
+            return this.transactionId;
+        }
+
+        /**
+         * @return future of the sealed result, completed once the client advanced or invalidated
+         *         the sequence number of its key, so the key can be handed to the next sender
+         */
+        CompletableFuture<FlowTransactionResult> getSettled() {
+            return this.settled;
+        }
+    }
+
+    /**
+     * Close the connection, seal tracker and payment cache of a client created with
+     * {@link #VoucherClient(VoucherClientConfig)}, the clients of a pool are closed with the pool
+     */
+    public void close() {
+        if (this.standalone) {
+            this.sealTracker.close();
+            this.paymentCache.close();
+            BalancedFlowAccessApi.close(this.accessAPI);
+        }
+    }
+
 }
@@ -1,24 +1,78 @@
 package matrix.flow.sdk;
 
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import com.nftco.flow.sdk.impl.FlowAccessApiImpl;
-import org.apache.commons.pool2.BasePooledObjectFactory;
-import org.apache.commons.pool2.PooledObject;
-import org.apache.commons.pool2.impl.DefaultPooledObject;
+import com.nftco.flow.sdk.FlowAccessApi;
 
 import lombok.extern.log4j.Log4j2;
 import matrix.flow.sdk.model.VoucherClientConfig;
 
 @Log4j2
-public final class VoucherClientPoolFactory extends BasePooledObjectFactory<VoucherClient> {
+public final class VoucherClientPoolFactory {
     private final ConcurrentLinkedQueue<Integer> keyIndexQueue =
             new ConcurrentLinkedQueue<Integer>();
 
     private final VoucherClientConfig clientConfig;
+    private final List<FlowAccessApi> accessAPIs;
+    private final SealTracker sealTracker;
+    private final ReferenceBlockProvider referenceBlocks;
+    private final AccountKeyCache accountKeys;
+    private final PaymentCache paymentCache;
+    private final MetricsRegistry metrics;
+    private final Tracer tracer;
 
     public VoucherClientPoolFactory(final VoucherClientConfig clientConfig, final int keyStartIndex,
             final int keyCapacity) {
+        this(clientConfig, keyStartIndex, keyCapacity, null, null, null, null, null);
+    }
+
+    /**
+     * @param accessAPIs connections shared by all created clients, assigned by key index, or null
+     *        for one connection per client
+     * @param sealTracker tracker shared by all created clients, or null for one per client
+     * @param referenceBlocks reference block shared by all created clients, or null for one per
+     *        client
+     * @param accountKeys account keys shared by all created clients, or null for a cache per
+     *        client
+     * @param paymentCache verified payments shared by all created clients, or null for a cache
+     *        per client
+     */
+    public VoucherClientPoolFactory(final VoucherClientConfig clientConfig, final int keyStartIndex,
+            final int keyCapacity, final List<FlowAccessApi> accessAPIs,
+            final SealTracker sealTracker, final ReferenceBlockProvider referenceBlocks,
+            final AccountKeyCache accountKeys, final PaymentCache paymentCache) {
+        this(clientConfig, keyStartIndex, keyCapacity, accessAPIs, sealTracker, referenceBlocks,
+                accountKeys, paymentCache, MetricsRegistry.NOOP);
+    }
+
+    /**
+     * @param metrics receives the latencies of the created clients
+     */
+    public VoucherClientPoolFactory(final VoucherClientConfig clientConfig, final int keyStartIndex,
+            final int keyCapacity, final List<FlowAccessApi> accessAPIs,
+            final SealTracker sealTracker, final ReferenceBlockProvider referenceBlocks,
+            final AccountKeyCache accountKeys, final PaymentCache paymentCache,
+            final MetricsRegistry metrics) {
+        this(clientConfig, keyStartIndex, keyCapacity, accessAPIs, sealTracker, referenceBlocks,
+                accountKeys, paymentCache, metrics, Tracer.NOOP);
+    }
+
+    /**
+     * @param tracer opens the spans of the created clients
+     */
+    public VoucherClientPoolFactory(final VoucherClientConfig clientConfig, final int keyStartIndex,
+            final int keyCapacity, final List<FlowAccessApi> accessAPIs,
+            final SealTracker sealTracker, final ReferenceBlockProvider referenceBlocks,
+            final AccountKeyCache accountKeys, final PaymentCache paymentCache,
+            final MetricsRegistry metrics, final Tracer tracer) {
         this.clientConfig = clientConfig;
+        this.accessAPIs = accessAPIs;
+        this.sealTracker = sealTracker;
+        this.referenceBlocks = referenceBlocks;
+        this.accountKeys = accountKeys;
+        this.paymentCache = paymentCache;
+        this.metrics = metrics;
+        this.tracer = tracer;
 
         // Fulfill keyIndex
         final int keyEndIndex = keyStartIndex + keyCapacity;
@@ -29,7 +83,10 @@ public final class VoucherClientPoolFactory extends BasePooledObjectFactory<Vouc
         }
     }
 
-    public VoucherClient create() throws Exception {
+    /**
+     * @return client of the next unused key index
+     */
+    public VoucherClient create() {
         final Integer key = this.keyIndexQueue.poll();
         if (key == null){
             throw new RuntimeException("Key pool exhausted");
@@ -37,34 +94,12 @@ public final class VoucherClientPoolFactory extends BasePooledObjectFactory<Vouc
         log.info(String.format("Create object with key %d", key));
         final VoucherClientConfig localConfig =
                 this.clientConfig.toBuilder().keyIndex(key).build();
-        return new VoucherClient(localConfig);
-    }
-
-    public PooledObject<VoucherClient> wrap(final VoucherClient client) {
-        return new DefaultPooledObject<>(client);
-    }
-
-    @Override
-    public void destroyObject(final PooledObject<VoucherClient> client) throws Exception {
-        log.info(String.format("Destroy object with key %d", client.getObject().getAccountKeyIndex()));
-        ((FlowAccessApiImpl) client.getObject().accessAPI).close();
-        client.getObject().accessAPI.wait();
-        final int keyIndex = client.getObject().getAccountKeyIndex();
-        super.destroyObject(client);
-        this.keyIndexQueue.add(keyIndex);
-    }
-
-    @Override
-    public boolean validateObject(PooledObject<VoucherClient> client) {
-        try {
-            log.info(String.format("Validate client with key %d", client.getObject().getAccountKeyIndex()));
-            client.getObject().accessAPI.ping();
-            return true;
-        } catch (Exception e) {
-            System.out.println(e);
-            log.warn("Validate failed", e);
-            return false;
-        }
+        final FlowAccessApi accessAPI = this.accessAPIs != null
+                ? this.accessAPIs.get(key % this.accessAPIs.size())
+                : BalancedFlowAccessApi.connect(localConfig, this.metrics);
+        return new VoucherClient(localConfig, accessAPI, this.sealTracker, this.referenceBlocks,
+                this.accountKeys, this.paymentCache != null ? this.paymentCache
+                        : PaymentCache.forConfig(localConfig), this.metrics, this.tracer);
     }
 
 }
@@ -0,0 +1,110 @@
+package matrix.flow.sdk;
+
+/**
+ * Names and tags of the meters the clients register with a {@link MetricsRegistry}
+ */
+public final class VoucherMetrics {
+
+    /**
+     * Timer of accepted and rejected transaction submissions
+     */
+    public static final String TRANSACTION_SEND = "flow.transaction.send";
+
+    /**
+     * Timer from tracking a transaction until it sealed, expired or timed out
+     */
+    public static final String TRANSACTION_SEAL_WAIT = "flow.transaction.seal.wait";
+
+    /**
+     * Counter of transactions sealed without error
+     */
+    public static final String TRANSACTION_SEALED = "flow.transaction.sealed";
+
+    /**
+     * Counter of transactions sealed with an error or timed out
+     */
+    public static final String TRANSACTION_FAILED = "flow.transaction.failed";
+
+    /**
+     * Counter of transactions expired before they were sealed
+     */
+    public static final String TRANSACTION_EXPIRED = "flow.transaction.expired";
+
+    /**
+     * Counter of transactions rejected for the sequence number of their proposal key, also counted
+     * as failed
+     */
+    public static final String TRANSACTION_SEQUENCE_MISMATCH = "flow.transaction.sequence.mismatch";
+
+    /**
+     * Timer of script executions
+     */
+    public static final String SCRIPT_EXECUTE = "flow.script.execute";
+
+    /**
+     * Timer of proposal key reads from chain
+     */
+    public static final String KEY_FETCH = "flow.key.fetch";
+
+    /**
+     * Timer of waiting for a key of the pool
+     */
+    public static final String POOL_BORROW_WAIT = "voucher.pool.borrow.wait";
+
+    /**
+     * Gauges of the keys of the pool in use and idle, tagged like the per key gauges with the
+     * account and access node of the pool
+     */
+    public static final String POOL_KEYS_ACTIVE = "voucher.pool.keys.active";
+    public static final String POOL_KEYS_IDLE = "voucher.pool.keys.idle";
+
+    /**
+     * Gauge per key, 1 while the key is in use and 0 while it is idle
+     */
+    public static final String POOL_KEY_ACTIVE = "voucher.pool.key.active";
+
+    /**
+     * Gauge per key of its unsealed transactions
+     */
+    public static final String POOL_KEY_IN_FLIGHT = "voucher.pool.key.in.flight";
+
+    /**
+     * Timer of the public operations of the pool, its count over time is the throughput
+     */
+    public static final String POOL_OPERATION = "voucher.pool.operation";
+
+    /**
+     * Timer per access node of its calls, failed calls included
+     */
+    public static final String ACCESS_NODE_CALL = "flow.access.call";
+
+    /**
+     * Counter per access node of its failed calls
+     */
+    public static final String ACCESS_NODE_ERROR = "flow.access.error";
+
+    /**
+     * Gauge per access node, 1 while it is ejected and 0 while it takes calls
+     */
+    public static final String ACCESS_NODE_EJECTED = "flow.access.ejected";
+
+    /**
+     * Counter of reads sent to a second access node because the first was slow
+     */
+    public static final String ACCESS_NODE_HEDGE = "flow.access.hedge";
+
+    /**
+     * Counter of reads retried on another access node because the first failed
+     */
+    public static final String ACCESS_NODE_FAILOVER = "flow.access.failover";
+
+    public static final String TAG_KEY_INDEX = "keyIndex";
+    public static final String TAG_OPERATION = "operation";
+    public static final String TAG_ENDPOINT = "endpoint";
+    public static final String TAG_ACCOUNT = "account";
+    public static final String TAG_ACCESS_NODE = "accessNode";
+
+    private VoucherMetrics() {
+    }
+
+}
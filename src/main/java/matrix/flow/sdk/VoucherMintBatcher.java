@@ -0,0 +1,207 @@
+package matrix.flow.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nftco.flow.sdk.FlowId;
+import com.nftco.flow.sdk.FlowTransactionResult;
+
+import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.VoucherClientConfig;
+import matrix.flow.sdk.model.VoucherMetadataModel;
+
+/**
+ * Coalesces single mints into {@code batch_mint_voucher} transactions of a
+ * {@link VoucherMinterClientPool}. A batch is sent once it holds {@code maxBatchSize} mints or its
+ * first mint waited {@code maxDelayMillis}, the Minted events are handed back in request order.
+ * Mints of one batch succeed or fail together.
+ */
+@Log4j2
+public class VoucherMintBatcher {
+
+    static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    private final VoucherMinterClientPool pool;
+    private final SealTracker sealTracker;
+    private final VoucherClientConfig clientConfig;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final ScheduledThreadPoolExecutor timer;
+    private final ThreadPoolExecutor submitExecutor;
+
+    private List<PendingMint> pending = new ArrayList<>();
+    private ScheduledFuture<?> flushTimer;
+    private boolean closed;
+
+    /**
+     * @param pool pool providing the proposal keys
+     * @param maxBatchSize mints per transaction
+     * @param maxDelayMillis longest time a mint waits for its batch to fill
+     * @param submitThreads threads sending batches, there is no use in more threads than keys in
+     *        the pool
+     */
+    public VoucherMintBatcher(final VoucherMinterClientPool pool, final int maxBatchSize,
+            final long maxDelayMillis, final int submitThreads) {
+        this.pool = pool;
+        this.sealTracker = pool.getSealTracker();
+        this.clientConfig = pool.getClientConfig();
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelayMillis = maxDelayMillis;
+        this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("voucher-mint-batcher-timer-%d").build());
+        this.timer.setRemoveOnCancelPolicy(true);
+        this.submitExecutor = new ThreadPoolExecutor(submitThreads, submitThreads, 60,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<>(DEFAULT_QUEUE_CAPACITY),
+                new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("voucher-mint-batcher-submit-%d").build());
+        this.submitExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Mint a Voucher NFT in the next batch
+     *
+     * @param recipientAddressString recipient account address
+     * @param landInfoHashString flow type landInfoHashString in hex
+     *
+     * @return future of the minted Voucher
+     */
+    public CompletableFuture<VoucherMetadataModel> mintVoucher(final String recipientAddressString,
+            final String landInfoHashString) {
+        final PendingMint mint = new PendingMint(recipientAddressString, landInfoHashString);
+        List<PendingMint> batch = null;
+        synchronized (this) {
+            if (this.closed) {
+                mint.future.completeExceptionally(new FlowClientException("Batcher closed"));
+                return mint.future;
+            }
+            this.pending.add(mint);
+            // The pool may have learned that smaller batches fit the computation limit
+            if (this.pending.size() >= Math.min(this.maxBatchSize, this.pool.getMaxBatchSize())) {
+                batch = this.takePending();
+            } else if (this.flushTimer == null) {
+                this.flushTimer = this.timer.schedule(this::flush, this.maxDelayMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        if (batch != null) {
+            this.submit(batch);
+        }
+        return mint.future;
+    }
+
+    /**
+     * Send the waiting mints without waiting for the batch to fill
+     */
+    public void flush() {
+        final List<PendingMint> batch;
+        synchronized (this) {
+            batch = this.takePending();
+        }
+        if (!batch.isEmpty()) {
+            this.submit(batch);
+        }
+    }
+
+    /**
+     * Send the waiting mints and stop accepting new ones, the pool is left open
+     */
+    public void close() {
+        synchronized (this) {
+            this.closed = true;
+        }
+        this.flush();
+        this.timer.shutdownNow();
+        this.submitExecutor.shutdown();
+    }
+
+    private List<PendingMint> takePending() {
+        if (this.flushTimer != null) {
+            this.flushTimer.cancel(false);
+            this.flushTimer = null;
+        }
+        final List<PendingMint> batch = this.pending;
+        this.pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void submit(final List<PendingMint> batch) {
+        try {
+            this.submitExecutor.execute(() -> this.send(batch));
+        } catch (final RejectedExecutionException e) {
+            log.warn("[VoucherMintBatcher.submit] rejected, too many pending batches");
+            failAll(batch, new FlowClientException("Too many pending submissions"));
+        }
+    }
+
+    private void send(final List<PendingMint> batch) {
+        final List<String> recipients = new ArrayList<>(batch.size());
+        final List<String> hashes = new ArrayList<>(batch.size());
+        for (final PendingMint mint : batch) {
+            recipients.add(mint.recipient);
+            hashes.add(mint.landInfoHash);
+        }
+
+        final String transactionId;
+        try {
+            transactionId = this.pool.batchMintVoucher(recipients, hashes);
+        } catch (final Exception e) {
+            log.error("[VoucherMintBatcher.send] failed with", e);
+            failAll(batch, e);
+            return;
+        }
+        log.info(String.format("[VoucherMintBatcher.send] sent %d mints in transaction %s",
+                batch.size(), transactionId));
+        this.sealTracker.track(new FlowId(transactionId)).whenComplete((result, e) -> {
+            if (e != null) {
+                failAll(batch, e);
+                return;
+            }
+            this.fanOut(batch, result);
+        });
+    }
+
+    private void fanOut(final List<PendingMint> batch, final FlowTransactionResult result) {
+        final List<VoucherMetadataModel> mintedTokens;
+        try {
+            mintedTokens = VoucherClient.decodeMintedVouchers(this.clientConfig, result);
+        } catch (final RuntimeException e) {
+            failAll(batch, e);
+            return;
+        }
+        if (mintedTokens.size() != batch.size()) {
+            failAll(batch, new FlowClientException("Number of mintedTokens not match with input size"));
+            return;
+        }
+        // The batch transaction mints in input order
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(mintedTokens.get(i));
+        }
+    }
+
+    private static void failAll(final List<PendingMint> batch, final Throwable e) {
+        for (final PendingMint mint : batch) {
+            mint.future.completeExceptionally(e);
+        }
+    }
+
+    private static final class PendingMint {
+        private final String recipient;
+        private final String landInfoHash;
+        private final CompletableFuture<VoucherMetadataModel> future = new CompletableFuture<>();
+
+        private PendingMint(final String recipient, final String landInfoHash) {
+            this.recipient = recipient;
+            this.landInfoHash = landInfoHash;
+        }
+    }
+
+}
@@ -1,38 +1,160 @@
 package matrix.flow.sdk;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
-import org.apache.commons.pool2.impl.GenericObjectPool;
-import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import com.nftco.flow.sdk.FlowAccessApi;
+import com.nftco.flow.sdk.FlowId;
+import com.nftco.flow.sdk.FlowTransaction;
+import com.nftco.flow.sdk.FlowTransactionResult;
 
 import lombok.extern.log4j.Log4j2;
+import matrix.flow.sdk.model.AccessNode;
+import matrix.flow.sdk.model.AccountKeyCacheStats;
 import matrix.flow.sdk.model.BatchMintVoucherResult;
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.SignatureVerificationRequest;
 import matrix.flow.sdk.model.VoucherClientConfig;
 import matrix.flow.sdk.model.VoucherMetadataModel;
 
 @Log4j2
 public class VoucherMinterClientPool {
-    private final GenericObjectPool<VoucherClient> objectPool;
+    private final KeyScheduler<VoucherClient> keyScheduler;
+    private final Map<Integer, KeyScheduler.Lease<VoucherClient>> leases = new HashMap<>();
+    private final List<FlowAccessApi> accessAPIs;
+    private final SealTracker sealTracker;
+    private final ReferenceBlockProvider referenceBlocks;
+    private final AccountKeyCache accountKeys;
+    private final FlowSimpleClient reader;
+    private final PaymentCache paymentCache;
+    private final MintJournal journal;
+    private final CompletableFuture<List<BatchMintVoucherResult>> recoveredMints;
+    private final VoucherClientConfig clientConfig;
+    private final ConcurrentMap<Integer, KeyPipeline> pipelines = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int keyCapacity;
+    private final BatchMintPlanner batchPlanner;
+    private final MetricsRegistry metrics;
+    private final Tracer tracer;
+    private final MetricsRegistry.Timer borrowWait;
+    private final MetricsRegistry.Timer verifySignatureTimer;
+    private final MetricsRegistry.Timer verifySignaturesTimer;
+    private final MetricsRegistry.Timer mintTimer;
+    private final MetricsRegistry.Timer batchMintTimer;
+    private final MetricsRegistry.Timer batchMintAndResolveTimer;
+    private final MetricsRegistry.Timer resolveBatchMintTimer;
 
 
     public VoucherMinterClientPool(final int keyStartIndex, final int keyCapacity,
             final VoucherClientConfig minterClientBaseConfig) {
+        this(keyStartIndex, keyCapacity, minterClientBaseConfig, MetricsRegistry.NOOP);
+    }
+
+    /**
+     * @param metrics receives the latencies and counts of the pool and all its keys, see
+     *        {@link VoucherMetrics}
+     */
+    public VoucherMinterClientPool(final int keyStartIndex, final int keyCapacity,
+            final VoucherClientConfig minterClientBaseConfig, final MetricsRegistry metrics) {
+        this(keyStartIndex, keyCapacity, minterClientBaseConfig, metrics, Tracer.NOOP);
+    }
 
-        final VoucherClientPoolFactory voucherClientPoolFactory =
-                new VoucherClientPoolFactory(minterClientBaseConfig, keyStartIndex, keyCapacity);
-        final GenericObjectPoolConfig<VoucherClient> objectPoolConfig =
-                new GenericObjectPoolConfig<>();
-        log.info("Init VoucherMinterClientPool with global key index", keyStartIndex, "keyCapacity",
-                keyCapacity);
-        objectPoolConfig.setMaxTotal(keyCapacity);
-        objectPoolConfig.setMaxIdle(keyCapacity);
-        objectPoolConfig.setMaxWaitMillis(120000); // FIXME: how to proper configure this from
-                                                   // external
-        objectPoolConfig.setBlockWhenExhausted(true);
-        objectPoolConfig.setTestOnBorrow(true);
-        objectPoolConfig.setTestOnCreate(true);
-        // Build pool
-        this.objectPool = new GenericObjectPool<>(voucherClientPoolFactory, objectPoolConfig);
+    /**
+     * @param tracer opens a span per mint and per stage of its transactions, see
+     *        {@link VoucherSpans}
+     */
+    public VoucherMinterClientPool(final int keyStartIndex, final int keyCapacity,
+            final VoucherClientConfig minterClientBaseConfig, final MetricsRegistry metrics,
+            final Tracer tracer) {
+        this(keyStartIndex, keyCapacity, minterClientBaseConfig,
+                BalancedFlowAccessApi.connectChannels(minterClientBaseConfig, metrics), metrics,
+                tracer);
+    }
+
+    /**
+     * @param accessAPIs connections all keys multiplex their calls over, the first one also
+     *        tracks seals and reference blocks
+     */
+    VoucherMinterClientPool(final int keyStartIndex, final int keyCapacity,
+            final VoucherClientConfig minterClientBaseConfig, final List<FlowAccessApi> accessAPIs,
+            final MetricsRegistry metrics, final Tracer tracer) {
+
+        this.clientConfig = minterClientBaseConfig;
+        this.keyCapacity = keyCapacity;
+        this.metrics = metrics;
+        this.tracer = tracer;
+        this.borrowWait = metrics.timer(VoucherMetrics.POOL_BORROW_WAIT);
+        this.verifySignatureTimer = this.operationTimer("verifyUserSignatureCadence");
+        this.verifySignaturesTimer = this.operationTimer("verifyUserSignatures");
+        this.mintTimer = this.operationTimer("mintVoucher");
+        this.batchMintTimer = this.operationTimer("batchMintVoucher");
+        this.batchMintAndResolveTimer = this.operationTimer("batchMintAndResolveVoucher");
+        this.resolveBatchMintTimer = this.operationTimer("resolveBatchMintVoucher");
+        this.batchPlanner = new BatchMintPlanner(
+                minterClientBaseConfig.getBatchMintComputationLimit(),
+                minterClientBaseConfig.getBatchMintInitialSize(),
+                minterClientBaseConfig.getBatchMintMaxSize());
+        this.accessAPIs = accessAPIs;
+        final FlowAccessApi sharedAccessAPI = this.accessAPIs.get(0);
+        // One tracker polls the seal status for the transactions of all keys
+        this.sealTracker = new SealTracker(sharedAccessAPI,
+                minterClientBaseConfig.getWaitForSealTries(), metrics);
+        // Transactions of all keys reference the same periodically refreshed block
+        this.referenceBlocks = new ReferenceBlockProvider(
+                () -> sharedAccessAPI.getLatestBlockHeader().getId(),
+                minterClientBaseConfig.getReferenceBlockRefreshMillis(),
+                minterClientBaseConfig.getReferenceBlockMaxAgeMillis());
+        this.referenceBlocks.start();
+        // Users signing in repeatedly are verified against the same cached keys on every key
+        this.accountKeys = AccountKeyCache.forAccessApi(sharedAccessAPI,
+                minterClientBaseConfig.getAccountKeyCacheTtlMillis(),
+                minterClientBaseConfig.getAccountKeyCacheMaxSize());
+        // Scripts need no proposal key, so reads leave the keys to the transactions
+        this.reader = new FlowSimpleClient(sharedAccessAPI,
+                minterClientBaseConfig.getWaitForSealTries(),
+                CadenceTemplateRegistry.forConfig(minterClientBaseConfig), this.sealTracker,
+                this.referenceBlocks, this.accountKeys,
+                minterClientBaseConfig.isVerifySignaturesOnChain(), metrics);
+        // A payment retried on another key is answered from the same cache
+        this.paymentCache = PaymentCache.forConfig(minterClientBaseConfig);
+        // Mints a crash left unresolved are resolved in the background
+        this.journal = MintJournal.forConfig(minterClientBaseConfig);
+        this.recoveredMints = this.journal.recover(this.sealTracker, minterClientBaseConfig);
+        final VoucherClientPoolFactory voucherClientPoolFactory = new VoucherClientPoolFactory(
+                minterClientBaseConfig, keyStartIndex, keyCapacity, this.accessAPIs,
+                this.sealTracker, this.referenceBlocks, this.accountKeys, this.paymentCache,
+                metrics, tracer);
+        log.info(String.format(
+                "Init VoucherMinterClientPool with global key index %d keyCapacity %d",
+                keyStartIndex, keyCapacity));
+        // Clients share their connections, so creating all of them up front is cheap
+        final List<VoucherClient> clients = new ArrayList<>(keyCapacity);
+        for (int i = 0; i < keyCapacity; i++) {
+            clients.add(voucherClientPoolFactory.create());
+        }
+        // Connections are pinged in the background instead of on every borrow
+        this.keyScheduler = new KeyScheduler<>(clients, client -> {
+            client.accessAPI.ping();
+            return true;
+        }, minterClientBaseConfig.getKeyHealthCheckMillis());
+        for (final KeyScheduler.Lease<VoucherClient> lease : this.keyScheduler.getLeases()) {
+            this.leases.put(lease.getKey().getAccountKeyIndex(), lease);
+        }
+        metrics.gauge(VoucherMetrics.POOL_KEYS_ACTIVE, this.keyScheduler::getActiveCount,
+                this.gaugeTags());
+        metrics.gauge(VoucherMetrics.POOL_KEYS_IDLE, this.keyScheduler::getIdleCount,
+                this.gaugeTags());
     }
 
     /**
@@ -47,112 +169,556 @@ public class VoucherMinterClientPool {
      */
     public boolean verifyUserSignatureCadence(final String message, final String accountAddress,
             final List<Integer> keyIds, final List<String> signatures) {
-        VoucherClient client = null;
+        final long start = System.nanoTime();
         try {
-            client = objectPool.borrowObject();
-            log.info(String.format(
-                    "[VoucherMinterClientPool.batchMint] use key index %d to send mint transaction",
-                    client.getAccountKeyIndex()));
-            return client.verifyUserSignatureCadence(message, accountAddress, keyIds, signatures);
-        } catch (final Exception e) {
-            log.error("[VoucherMinterClientPool.batchMintVoucher] failed with", e);
-            throw new RuntimeException(e);
+            return this.reader.verifyUserSignatureCadence(message, accountAddress, keyIds,
+                    signatures);
+        } catch (final RuntimeException e) {
+            log.error("[VoucherMinterClientPool.verifyUserSignatureCadence] failed with", e);
+            throw e;
         } finally {
-            if (client != null) {
-                objectPool.returnObject(client);
-            }
+            this.verifySignatureTimer.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Verify many user signatures at once
+     *
+     * @param requests arguments of each verifyUserSignature call
+     *
+     * @return verification results in input order
+     */
+    public boolean[] verifyUserSignatures(final List<SignatureVerificationRequest> requests) {
+        final long start = System.nanoTime();
+        try {
+            return this.reader.verifyUserSignatures(requests);
+        } catch (final RuntimeException e) {
+            log.error("[VoucherMinterClientPool.verifyUserSignatures] failed with", e);
+            throw e;
+        } finally {
+            this.verifySignaturesTimer.record(System.nanoTime() - start);
         }
     }
 
+    /**
+     * Mint a list of Vouchers in as many transactions as the learned batch size requires, all sent
+     * before the first one seals. A batch that ran out of computation is sent once more in smaller
+     * batches.
+     *
+     * @param recipientList list of recipient account address
+     * @param landInfoHashStringList list of landInfoHash
+     *
+     * @return ids of all sent transactions and the result of each, tokens in input order or null
+     *         if a batch failed, and the input positions of the mints never sent
+     */
     public BatchMintVoucherResult batchMintAndResolveVoucher(final List<String> recipientList,
             final List<String> landInfoHashStringList) {
 
-        VoucherClient client = null;
-        String transactionId = "";
-        List<VoucherMetadataModel> tokens = null;
+        final long start = System.nanoTime();
+        final Tracer.Span span = this.tracer
+                .startSpan(VoucherSpans.BATCH_MINT_AND_RESOLVE, TraceContext.current())
+                .setAttribute(VoucherSpans.BATCH_SIZE, recipientList.size());
+        final Tracer.Span previous = TraceContext.attach(span);
+        final List<BatchMintVoucherResult> batches = new ArrayList<>();
+        final List<Integer> unsent = new ArrayList<>();
+        boolean minted = false;
         try {
-            client = objectPool.borrowObject();
-            log.info(String.format(
-                    "[VoucherMinterClientPool.batchMint] use key index %d to send mint transaction",
-                    client.getAccountKeyIndex()));
-            transactionId = client.batchMintVoucher(recipientList, landInfoHashStringList);
-            tokens = client.resolveBatchMintVoucherTransaction(transactionId);
-            return BatchMintVoucherResult.builder().transactionId(transactionId).tokens(tokens)
-                    .build();
+            minted = this.mintAll(recipientList, landInfoHashStringList, 0, batches, unsent, true);
         } catch (final Exception e) {
             log.error("[VoucherMinterClientPool.batchMintVoucher] failed with", e);
-            if (transactionId.equals("")) {
-                throw new RuntimeException(e);
+            span.recordException(e);
+            if (batches.isEmpty()) {
+                throw e instanceof RuntimeException ? (RuntimeException) e
+                        : new RuntimeException(e);
             }
-            return BatchMintVoucherResult.builder().transactionId(transactionId).tokens(tokens)
-                    .build();
         } finally {
-            if (client != null) {
-                objectPool.returnObject(client);
+            TraceContext.restore(previous);
+            span.end();
+            this.batchMintAndResolveTimer.record(System.nanoTime() - start);
+        }
+        final List<String> transactionIds = new ArrayList<>(batches.size());
+        final List<VoucherMetadataModel> tokens = new ArrayList<>(recipientList.size());
+        for (final BatchMintVoucherResult batch : batches) {
+            transactionIds.add(batch.getTransactionId());
+            if (batch.getTokens() != null) {
+                tokens.addAll(batch.getTokens());
             }
         }
+        return BatchMintVoucherResult.builder()
+                .transactionId(transactionIds.isEmpty() ? "" : transactionIds.get(0))
+                .transactionIds(transactionIds).tokens(minted ? tokens : null).batches(batches)
+                .unsentIndexes(unsent).build();
     }
 
     public String batchMintVoucher(final List<String> recipientList,
             final List<String> landInfoHashStringList) {
-
-        VoucherClient client = null;
+        final long start = System.nanoTime();
         try {
-            client = objectPool.borrowObject();
-            log.info(String.format(
-                    "[VoucherMinterClientPool.batchMint] use key index %d to send mint transaction",
-                    client.getAccountKeyIndex()));
-            return client.batchMintVoucher(recipientList, landInfoHashStringList);
-        } catch (final Exception e) {
-            log.error("[VoucherMinterClientPool.batchMintVoucher] failed with", e);
-            throw new RuntimeException(e);
+            final List<String> transactionIds = new ArrayList<>(1);
+            this.sendBatchMint(recipientList, landInfoHashStringList, transactionIds);
+            return transactionIds.get(0);
         } finally {
-            if (client != null) {
-                objectPool.returnObject(client);
-            }
+            this.batchMintTimer.record(System.nanoTime() - start);
         }
     }
 
-    public List<VoucherMetadataModel> resolveBatchMintVoucher(final String transactionId) {
+    /**
+     * @return hit rate, evictions and staleness of the account keys shared by all keys
+     */
+    public AccountKeyCacheStats getAccountKeyCacheStats() {
+        return this.accountKeys.getStats();
+    }
 
-        VoucherClient client = null;
+    /**
+     * @return mints per batch learned from the sealed batches so far
+     */
+    public int getMaxBatchSize() {
+        return this.batchPlanner.getMaxBatchSize();
+    }
+
+    /**
+     * @return completes once the mints a previous run left unresolved in the journal are resolved,
+     *         with their transaction ids and minted tokens, null tokens if nothing was minted
+     */
+    public CompletableFuture<List<BatchMintVoucherResult>> getRecoveredMints() {
+        return this.recoveredMints;
+    }
+
+    public List<VoucherMetadataModel> resolveBatchMintVoucher(final String transactionId) {
+        final long start = System.nanoTime();
         try {
-            client = objectPool.borrowObject();
             log.info(String.format(
-                    "[VoucherMinterClientPool.resolveBatchMintVoucher] use key index %d to resolve transactionId %s",
-                    client.getAccountKeyIndex(), transactionId));
-            return client.resolveBatchMintVoucherTransaction(transactionId);
+                    "[VoucherMinterClientPool.resolveBatchMintVoucher] resolve transactionId %s",
+                    transactionId));
+            return VoucherClient.decodeMintedVouchers(this.clientConfig,
+                    this.sealTracker.awaitSealed(new FlowId(transactionId)));
         } catch (final Exception e) {
             log.error("[VoucherMinterClientPool.resolveBatchMintVoucher] failed", e);
             throw new RuntimeException(e);
         } finally {
-            if (client != null) {
-                objectPool.returnObject(client);
-            }
+            this.resolveBatchMintTimer.record(System.nanoTime() - start);
         }
     }
 
     public VoucherMetadataModel mintVoucher(final String recipient,
             final String landInfoHashString) {
 
+        final long start = System.nanoTime();
+        final Tracer.Span span = this.tracer.startSpan(VoucherSpans.MINT, TraceContext.current())
+                .setAttribute(VoucherSpans.BATCH_SIZE, 1L);
+        final Tracer.Span previous = TraceContext.attach(span);
         VoucherClient client = null;
+        MintJournal.Mint mint = null;
+        FlowId txID = null;
         try {
-            client = objectPool.borrowObject();
+            mint = this.journal.begin(Collections.singletonList(recipient),
+                    Collections.singletonList(landInfoHashString));
+            client = this.borrowClient();
             log.info(String.format("[VoucherMinterClientPool.mintVoucher] use key index %d to mint",
                     client.getAccountKeyIndex()));
-            return client.mintVoucher(recipient, landInfoHashString);
+            span.setAttribute(VoucherSpans.KEY_INDEX, client.getAccountKeyIndex());
+            final VoucherClient sender = client;
+            final VoucherClient.Submission submission = this.sendJournaled(mint,
+                    signed -> sender.submitMintVoucher(recipient, landInfoHashString, signed));
+            txID = submission.getTransactionId();
+            span.setAttribute(VoucherSpans.TRANSACTION_ID, txID.getBase16Value());
+            this.releaseAfterSubmit(client, submission);
+            client = null;
+            final MintJournal.Mint sent = mint;
+            return VoucherClient.resolveMintedVoucher(this.clientConfig, SealTracker.await(
+                    submission.getSettled().whenComplete(
+                            (result, e) -> sent.resolved(result, e, false))));
         } catch (final Exception e) {
             log.error("[VoucherMinterClientPool.mintVoucher] failed with", e);
+            span.recordException(e);
+            if (mint != null && txID == null) {
+                mint.sendFailed(this.sealTracker);
+            }
+            throw new RuntimeException(e);
+        } finally {
+            if (client != null) {
+                this.returnClient(client);
+            }
+            TraceContext.restore(previous);
+            span.end();
+            this.mintTimer.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Send a batch with a computation limit sized by the planner
+     *
+     * @param transactionIds receives the id of the sent transaction
+     *
+     * @return future of the sealed result, completed after the planner learned from it
+     */
+    private CompletableFuture<FlowTransactionResult> sendBatchMint(final List<String> recipients,
+            final List<String> hashes, final List<String> transactionIds) {
+        final Tracer.Span span = this.tracer
+                .startSpan(VoucherSpans.BATCH_MINT, TraceContext.current())
+                .setAttribute(VoucherSpans.BATCH_SIZE, recipients.size());
+        final Tracer.Span previous = TraceContext.attach(span);
+        VoucherClient client = null;
+        MintJournal.Mint mint = null;
+        FlowId txID = null;
+        try {
+            mint = this.journal.begin(recipients, hashes);
+            client = this.borrowClient();
+            log.info(String.format(
+                    "[VoucherMinterClientPool.batchMint] use key index %d to send mint transaction",
+                    client.getAccountKeyIndex()));
+            span.setAttribute(VoucherSpans.KEY_INDEX, client.getAccountKeyIndex());
+            final int items = recipients.size();
+            final VoucherClient sender = client;
+            final VoucherClient.Submission submission = this.sendJournaled(mint,
+                    signed -> sender.submitBatchMintVoucher(recipients, hashes,
+                            this.batchPlanner.computationLimit(items), signed));
+            txID = submission.getTransactionId();
+            final String transactionId = txID.getBase16Value();
+            span.setAttribute(VoucherSpans.TRANSACTION_ID, transactionId);
+            transactionIds.add(transactionId);
+            final MintJournal.Mint sent = mint;
+            // The journal releases the lands of a failed batch before it is sent again
+            final CompletableFuture<FlowTransactionResult> sealed =
+                    submission.getSettled().thenApply(result -> {
+                        this.batchPlanner.sealed(items, result);
+                        return result;
+                    }).whenComplete((result, e) -> sent.resolved(result, e, false));
+            this.releaseAfterSubmit(client, submission);
+            client = null;
+            return sealed;
+        } catch (final Exception e) {
+            log.error("[VoucherMinterClientPool.batchMintVoucher] failed with", e);
+            span.recordException(e);
+            if (mint != null && txID == null) {
+                mint.sendFailed(this.sealTracker);
+            }
             throw new RuntimeException(e);
         } finally {
             if (client != null) {
-                objectPool.returnObject(client);
+                this.returnClient(client);
             }
+            TraceContext.restore(previous);
+            span.end();
+        }
+    }
+
+    /**
+     * Send every planned batch before waiting for the first seal, so the batches seal in parallel.
+     * Batches sent before a batch failed to send are still awaited.
+     *
+     * @param first input position of the first mint
+     * @param results receives the transaction id and tokens of each sent batch in input order,
+     *        null tokens for a batch that failed
+     * @param unsent receives the input positions of the mints of batches that failed to send and
+     *        of all batches planned after them
+     *
+     * @return true if every mint was minted
+     *
+     * @throws RuntimeException if not even the first batch could be sent
+     */
+    private boolean mintAll(final List<String> recipients, final List<String> hashes,
+            final int first, final List<BatchMintVoucherResult> results,
+            final List<Integer> unsent, final boolean retry) {
+        final List<Integer> sizes = this.batchPlanner.plan(recipients.size());
+        final List<String> transactionIds = new ArrayList<>(sizes.size());
+        final List<CompletableFuture<FlowTransactionResult>> batches = new ArrayList<>();
+        boolean minted = true;
+        int offset = 0;
+        for (final int size : sizes) {
+            try {
+                batches.add(this.sendBatchMint(recipients.subList(offset, offset + size),
+                        hashes.subList(offset, offset + size), transactionIds));
+            } catch (final RuntimeException e) {
+                if (batches.isEmpty()) {
+                    throw e;
+                }
+                log.error("[VoucherMinterClientPool.batchMintVoucher] send failed with", e);
+                minted = false;
+                addRange(unsent, first + offset, first + recipients.size());
+                break;
+            }
+            offset += size;
+        }
+
+        offset = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            final int size = sizes.get(i);
+            final String transactionId = transactionIds.get(i);
+            final FlowTransactionResult result = awaitBatch(transactionId, batches.get(i));
+            if (retry && result != null && BatchMintPlanner.isComputationLimitExceeded(result)) {
+                // Nothing of the failed batch was minted, send it again with the reduced size
+                results.add(new BatchMintVoucherResult(transactionId, null));
+                try {
+                    minted &= this.mintAll(recipients.subList(offset, offset + size),
+                            hashes.subList(offset, offset + size), first + offset, results, unsent,
+                            false);
+                } catch (final RuntimeException e) {
+                    log.error("[VoucherMinterClientPool.batchMintVoucher] resend failed with", e);
+                    addRange(unsent, first + offset, first + offset + size);
+                    minted = false;
+                }
+            } else {
+                final List<VoucherMetadataModel> tokens = this.decodeBatch(transactionId, result);
+                results.add(new BatchMintVoucherResult(transactionId, tokens));
+                minted &= tokens != null;
+            }
+            offset += size;
+        }
+        return minted;
+    }
+
+    private static void addRange(final List<Integer> indexes, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            indexes.add(i);
+        }
+    }
+
+    /**
+     * @return sealed result of a batch, null if it expired or timed out
+     */
+    private static FlowTransactionResult awaitBatch(final String transactionId,
+            final CompletableFuture<FlowTransactionResult> batch) {
+        try {
+            return SealTracker.await(batch);
+        } catch (final FlowClientException e) {
+            log.error(String.format("[VoucherMinterClientPool.batchMintVoucher] batch %s failed "
+                    + "with %s", transactionId, e));
+            return null;
+        }
+    }
+
+    /**
+     * @return tokens minted by a batch, null if it did not seal or failed
+     */
+    private List<VoucherMetadataModel> decodeBatch(final String transactionId,
+            final FlowTransactionResult result) {
+        if (result == null) {
+            return null;
+        }
+        try {
+            return VoucherClient.decodeMintedVouchers(this.clientConfig, result);
+        } catch (final FlowClientException e) {
+            log.error(String.format("[VoucherMinterClientPool.batchMintVoucher] batch %s failed "
+                    + "with %s", transactionId, e));
+            return null;
+        }
+    }
+
+    /**
+     * Send a mint transaction, the journal records the transaction once it is signed
+     *
+     * @param send sends the mint and hands the signed transaction to its argument before sending
+     */
+    VoucherClient.Submission sendJournaled(final MintJournal.Mint mint,
+            final Function<Consumer<FlowTransaction>, VoucherClient.Submission> send) {
+        final VoucherClient.Submission submission =
+                send.apply(tx -> mint.signed(tx.getId().getBase16Value()));
+        mint.submitted(submission.getTransactionId());
+        return submission;
+    }
+
+    VoucherClient borrowClient() throws Exception {
+        final Tracer.Span span =
+                this.tracer.startSpan(VoucherSpans.POOL_BORROW, TraceContext.current());
+        final long start = System.nanoTime();
+        final VoucherClient client;
+        final long deadline = start
+                + TimeUnit.MILLISECONDS.toNanos(this.clientConfig.getKeyAcquireTimeoutMillis());
+        try {
+            while (true) {
+                final KeyScheduler.Lease<VoucherClient> lease = this.keyScheduler.tryAcquire(
+                        deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (lease == null) {
+                    throw new FlowClientException("Timed out waiting for an idle key");
+                }
+                // A key to be read from chain again sits out until its unsealed transactions
+                // settled, its last seal returns it to the pool
+                if (lease.getKey().isSequenceSynced()
+                        || !this.pipeline(lease.getKey().getAccountKeyIndex()).drain()) {
+                    client = lease.getKey();
+                    break;
+                }
+            }
+            span.setAttribute(VoucherSpans.KEY_INDEX, client.getAccountKeyIndex());
+        } catch (final RuntimeException e) {
+            span.recordException(e);
+            throw e;
+        } finally {
+            this.borrowWait.record(System.nanoTime() - start);
+            span.end();
+        }
+        this.pipeline(client.getAccountKeyIndex()).active = true;
+        return client;
+    }
+
+    /**
+     * Return a client, it is leased before keys with unsealed transactions once all its
+     * transactions sealed
+     */
+    void returnClient(final VoucherClient client) {
+        final KeyPipeline pipeline = this.pipeline(client.getAccountKeyIndex());
+        final KeyScheduler.Lease<VoucherClient> lease =
+                this.leases.get(client.getAccountKeyIndex());
+        pipeline.active = false;
+        this.keyScheduler.release(lease, pipeline.getInFlight() == 0);
+        // The last seal may have come before the key was queued
+        if (pipeline.getInFlight() == 0) {
+            this.keyScheduler.promote(lease);
+        }
+    }
+
+    /**
+     * Return a client whose transaction the access node accepted. The next transaction of the key
+     * proposes the locally advanced sequence number, so the key goes back right away unless
+     * {@code maxInFlightPerKey} of its transactions are unsealed, then once one of them seals.
+     * A seal counts once the client settled it, so a key to be read from chain again is never
+     * handed out as synced.
+     */
+    void releaseAfterSubmit(final VoucherClient client,
+            final VoucherClient.Submission submission) {
+        final KeyPipeline pipeline = this.pipeline(client.getAccountKeyIndex());
+        final boolean releaseNow = pipeline.submitted(this.clientConfig.getMaxInFlightPerKey());
+        this.inFlight.incrementAndGet();
+        submission.getSettled().whenComplete((result, e) -> {
+            this.inFlight.decrementAndGet();
+            if (pipeline.settled()) {
+                this.returnClient(client);
+            } else if (pipeline.getInFlight() == 0) {
+                // Released right after submit, the key is idle among the keys in flight
+                this.keyScheduler.promote(this.leases.get(client.getAccountKeyIndex()));
+            }
+        });
+        if (releaseNow) {
+            this.returnClient(client);
+        }
+    }
+
+    /**
+     * Unsealed transactions of a key, its gauges are registered when the key is first used
+     */
+    private KeyPipeline pipeline(final int keyIndex) {
+        return this.pipelines.computeIfAbsent(keyIndex, key -> {
+            final KeyPipeline pipeline = new KeyPipeline();
+            final String tag = Integer.toString(key);
+            this.metrics.gauge(VoucherMetrics.POOL_KEY_ACTIVE, () -> pipeline.active ? 1L : 0L,
+                    this.gaugeTags(VoucherMetrics.TAG_KEY_INDEX, tag));
+            this.metrics.gauge(VoucherMetrics.POOL_KEY_IN_FLIGHT, pipeline::getInFlight,
+                    this.gaugeTags(VoucherMetrics.TAG_KEY_INDEX, tag));
+            return pipeline;
+        });
+    }
+
+    /**
+     * Pools of several accounts and access nodes share a registry, a gauge of one pool is told
+     * apart by its account and access nodes
+     */
+    private String[] gaugeTags(final String... tags) {
+        final List<String> accessNodes = new ArrayList<>();
+        if (this.clientConfig.getAccessNodes() == null
+                || this.clientConfig.getAccessNodes().isEmpty()) {
+            accessNodes.add(String.format("%s:%d", this.clientConfig.getHost(),
+                    this.clientConfig.getPort()));
+        } else {
+            for (final AccessNode accessNode : this.clientConfig.getAccessNodes()) {
+                accessNodes.add(String.format("%s:%d", accessNode.getHost(), accessNode.getPort()));
+            }
+        }
+        final List<String> poolTags = new ArrayList<>(Arrays.asList(VoucherMetrics.TAG_ACCOUNT,
+                this.clientConfig.getAdminAccountAddress(), VoucherMetrics.TAG_ACCESS_NODE,
+                String.join(",", accessNodes)));
+        poolTags.addAll(Arrays.asList(tags));
+        return poolTags.toArray(new String[0]);
+    }
+
+    private MetricsRegistry.Timer operationTimer(final String operation) {
+        return this.metrics.timer(VoucherMetrics.POOL_OPERATION, VoucherMetrics.TAG_OPERATION,
+                operation);
+    }
+
+    SealTracker getSealTracker() {
+        return this.sealTracker;
+    }
+
+    MintJournal getJournal() {
+        return this.journal;
+    }
+
+    PaymentCache getPaymentCache() {
+        return this.paymentCache;
+    }
+
+    VoucherClientConfig getClientConfig() {
+        return this.clientConfig;
+    }
+
+    /**
+     * @return leased keys plus unsealed transactions per key of the pool, read without locking
+     */
+    double getLoad() {
+        final int leased = this.keyCapacity - this.keyScheduler.getIdleCount();
+        return (double) (leased + this.inFlight.get()) / Math.max(1, this.keyCapacity);
+    }
+
+    /**
+     * Unsealed transactions of one key
+     */
+    static final class KeyPipeline {
+        private int inFlight;
+        private boolean parked;
+        private boolean draining;
+        private volatile boolean active;
+
+        /**
+         * @return true if the key can take another transaction right away
+         */
+        synchronized boolean submitted(final int maxInFlight) {
+            this.inFlight++;
+            this.parked = this.inFlight >= Math.max(1, maxInFlight);
+            return !this.parked;
+        }
+
+        /**
+         * Park a key whose sequence number is out of sync until all its transactions settled
+         *
+         * @return false if none is unsealed and the key can be read from chain right away
+         */
+        synchronized boolean drain() {
+            if (this.inFlight == 0) {
+                return false;
+            }
+            this.parked = true;
+            this.draining = true;
+            return true;
+        }
+
+        /**
+         * @return true if the key was parked and has to go back to the pool now
+         */
+        synchronized boolean settled() {
+            this.inFlight--;
+            if (this.parked && (!this.draining || this.inFlight == 0)) {
+                this.parked = false;
+                this.draining = false;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized long getInFlight() {
+            return this.inFlight;
         }
     }
 
     public void close() {
-        this.objectPool.close();
+        this.keyScheduler.close();
+        this.sealTracker.close();
+        this.referenceBlocks.close();
+        this.paymentCache.close();
+        this.journal.close();
+        for (final FlowAccessApi accessAPI : this.accessAPIs) {
+            BalancedFlowAccessApi.close(accessAPI);
+        }
     }
 
 }
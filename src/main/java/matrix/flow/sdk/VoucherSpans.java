@@ -0,0 +1,46 @@
+package matrix.flow.sdk;
+
+/**
+ * Names and attributes of the spans the clients open with a {@link Tracer}
+ */
+public final class VoucherSpans {
+
+    /**
+     * Pool operations, from borrowing a key until the result is returned
+     */
+    public static final String MINT = "voucher.mint";
+    public static final String BATCH_MINT = "voucher.batchMint";
+    public static final String BATCH_MINT_AND_RESOLVE = "voucher.batchMintAndResolve";
+
+    /**
+     * Waiting for a key of the pool
+     */
+    public static final String POOL_BORROW = "voucher.pool.borrow";
+
+    /**
+     * One transaction from reading its proposal key until the access node accepted it, parent of
+     * the stages below
+     */
+    public static final String TRANSACTION = "flow.transaction";
+    public static final String GET_ACCOUNT_KEY = "flow.getAccountKey";
+    public static final String GET_LATEST_BLOCK_ID = "flow.getLatestBlockID";
+    public static final String SIGN = "flow.sign";
+    public static final String SEND_TRANSACTION = "flow.sendTransaction";
+
+    /**
+     * From sending a transaction until it sealed, expired or timed out, with a
+     * {@link #SEAL_POLL} event per poll
+     */
+    public static final String WAIT_FOR_SEAL = "flow.waitForSeal";
+    public static final String SEAL_POLL = "seal.poll";
+
+    public static final String KEY_INDEX = "flow.key_index";
+    public static final String TRANSACTION_ID = "flow.transaction_id";
+    public static final String TRANSACTION_STATUS = "flow.transaction_status";
+    public static final String BATCH_SIZE = "voucher.batch_size";
+    public static final String ERROR = "error";
+
+    private VoucherSpans() {
+    }
+
+}
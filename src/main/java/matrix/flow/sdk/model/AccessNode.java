@@ -0,0 +1,16 @@
+package matrix.flow.sdk.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccessNode {
+    private String host;
+
+    private int port;
+}
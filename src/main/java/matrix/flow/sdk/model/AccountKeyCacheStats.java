@@ -0,0 +1,24 @@
+package matrix.flow.sdk.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class AccountKeyCacheStats {
+    private long hitCount;
+
+    private long missCount;
+
+    private double hitRate;
+
+    private long evictionCount;
+
+    private long refreshCount;
+
+    private long staleCount;
+
+    private long size;
+}
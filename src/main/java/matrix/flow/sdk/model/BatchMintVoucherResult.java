@@ -1,14 +1,27 @@
 package matrix.flow.sdk.model;
 
+import java.util.Collections;
 import java.util.List;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
 @Data
 @Builder(toBuilder = true)
-@AllArgsConstructor
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
 public class BatchMintVoucherResult {
     private String transactionId;
+    // Every transaction sent for the mints, transactionId is the first one
+    private List<String> transactionIds;
     private List<VoucherMetadataModel> tokens;
+    // One result per transaction in input order, null tokens for a transaction that failed
+    private List<BatchMintVoucherResult> batches;
+    // Input positions of the mints never sent because a batch failed to send, nothing is minted
+    private List<Integer> unsentIndexes;
+
+    public BatchMintVoucherResult(final String transactionId,
+            final List<VoucherMetadataModel> tokens) {
+        this(transactionId, Collections.singletonList(transactionId), tokens, null, null);
+    }
 }
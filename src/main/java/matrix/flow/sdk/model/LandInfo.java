@@ -0,0 +1,22 @@
+package matrix.flow.sdk.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LandInfo {
+    private String hash;
+
+    private int topLeftX;
+
+    private int topLeftY;
+
+    private int height;
+
+    private int width;
+}
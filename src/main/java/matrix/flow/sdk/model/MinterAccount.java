@@ -0,0 +1,25 @@
+package matrix.flow.sdk.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Admin account minting vouchers and the range of its keys usable as proposal keys
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MinterAccount {
+    private String adminAccountAddress;
+
+    private String privateKeyHex;
+
+    @Default
+    private int keyStartIndex = 0;
+
+    private int keyCount;
+}
@@ -0,0 +1,34 @@
+package matrix.flow.sdk.model;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+public class PaymentVerification {
+    private String transactionId;
+
+    private PaymentType paymentType;
+
+    /**
+     * First withdrawal and deposit of the payment token, null if either is missing
+     */
+    private TransferEvent transferEvent;
+
+    private boolean verified;
+
+    /**
+     * Why the payment failed verification, null if verified
+     */
+    private String failureReason;
+
+    private BigDecimal targetAmount;
+
+    private BigDecimal payerWithdrawnAmount;
+
+    private BigDecimal funderDepositedAmount;
+}
@@ -0,0 +1,25 @@
+package matrix.flow.sdk.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Arguments of one {@code verifyUserSignature} call
+ */
+@Data
+@Builder
+@AllArgsConstructor
+public class SignatureVerificationRequest {
+    private String message;
+
+    private String[] publicKeysHex;
+
+    private double[] weights;
+
+    private int[] signAlgos;
+
+    private int[] hashAlgos;
+
+    private String[] signatures;
+}
@@ -0,0 +1,19 @@
+package matrix.flow.sdk.model;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.nftco.flow.sdk.FlowTransactionResult;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class TransactionStages<T> {
+    // Completes with the transactionId once the access node accepted the transaction
+    private final CompletableFuture<String> submitted;
+
+    private final CompletableFuture<FlowTransactionResult> executed;
+
+    private final CompletableFuture<T> sealed;
+}
@@ -1,5 +1,7 @@
 package matrix.flow.sdk.model;
 
+import java.util.List;
+
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -16,6 +18,23 @@ public class VoucherClientConfig {
 
     private int port;
 
+    /**
+     * Access nodes to balance over instead of host and port, null for host and port only
+     */
+    private List<AccessNode> accessNodes;
+
+    @Default
+    private boolean hedgeReads = true;
+
+    @Default
+    private long accessNodeHedgeMinMillis = 50L;
+
+    @Default
+    private long accessNodeEjectMillis = 30000L;
+
+    @Default
+    private double accessNodeMaxErrorRate = 0.5;
+
     @Default
     private int waitForSealTries = 30;
 
@@ -36,5 +55,51 @@ public class VoucherClientConfig {
 
     private String voucherAddress;
 
+    @Default
+    private boolean verifySignaturesOnChain = false;
+
+    @Default
+    private long accountKeyCacheTtlMillis = 60000L;
+
+    @Default
+    private long accountKeyCacheMaxSize = 10000L;
+
+    @Default
+    private int accessApiChannels = 1;
+
+    @Default
+    private int maxInFlightPerKey = 4;
+
+    @Default
+    private long keyAcquireTimeoutMillis = 120000L;
+
+    @Default
+    private long keyHealthCheckMillis = 30000L;
+
+    @Default
+    private long batchMintComputationLimit = 9999L;
+
+    @Default
+    private int batchMintInitialSize = 50;
+
+    @Default
+    private int batchMintMaxSize = 250;
+
+    @Default
+    private long referenceBlockRefreshMillis = 5000L;
+
+    @Default
+    private long referenceBlockMaxAgeMillis = 60000L;
+
+    @Default
+    private long paymentCacheMaxSize = 100000L;
+
+    private String paymentCacheFile;
+
+    /**
+     * Write-ahead journal of the mints of a pool, null to mint without journal
+     */
+    private String mintJournalFile;
+
 }
 
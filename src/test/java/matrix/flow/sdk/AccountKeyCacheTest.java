@@ -0,0 +1,91 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.nftco.flow.sdk.FlowAccountKey;
+import com.nftco.flow.sdk.FlowAddress;
+import com.nftco.flow.sdk.FlowPublicKey;
+import com.nftco.flow.sdk.HashAlgorithm;
+import com.nftco.flow.sdk.SignatureAlgorithm;
+
+import org.junit.Test;
+
+import matrix.flow.sdk.model.AccountKeyCacheStats;
+
+public class AccountKeyCacheTest {
+
+    private static final FlowAddress USER = new FlowAddress("f8d6e0586b0a20c7");
+
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicBoolean revoked = new AtomicBoolean(false);
+
+    private final Function<FlowAddress, List<FlowAccountKey>> fetchKeys = address -> {
+        fetches.incrementAndGet();
+        return Arrays.asList(new FlowAccountKey(0, new FlowPublicKey("00"),
+                SignatureAlgorithm.ECDSA_P256, HashAlgorithm.SHA3_256, 1000, fetches.get(),
+                revoked.get()));
+    };
+
+    @Test
+    public void keysShouldBeServedFromCache() {
+        final AccountKeyCache cache = new AccountKeyCache(fetchKeys, 60000L, 10L);
+        for (int i = 0; i < 10; i++) {
+            cache.getKeys(USER);
+        }
+        final AccountKeyCacheStats stats = cache.getStats();
+        assertEquals(1, fetches.get());
+        assertEquals(9, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(0.9, stats.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void expiredKeysShouldBeReadAgain() throws InterruptedException {
+        final AccountKeyCache cache = new AccountKeyCache(fetchKeys, 20L, 10L);
+        cache.getKeys(USER);
+        Thread.sleep(50L);
+        cache.getKeys(USER);
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void accountsBeyondMaxSizeShouldBeEvicted() {
+        final AccountKeyCache cache = new AccountKeyCache(fetchKeys, 60000L, 1L);
+        cache.getKeys(USER);
+        cache.getKeys(new FlowAddress("01cf0e2f2f715450"));
+        // Guava may evict before the limit is reached, never after
+        assertTrue(cache.getStats().getEvictionCount() >= 1);
+        assertTrue(cache.getStats().getSize() <= 1);
+    }
+
+    @Test
+    public void refreshShouldReportChangedKeys() throws InterruptedException {
+        final AccountKeyCache cache = new AccountKeyCache(fetchKeys, 60000L, 10L);
+        cache.getKeys(USER);
+        // Too soon after the keys were read
+        assertFalse(cache.refresh(USER));
+        assertEquals(1, fetches.get());
+
+        Thread.sleep(AccountKeyCache.MIN_REFRESH_INTERVAL_MILLIS + 50L);
+        // Only the sequence number moved
+        assertFalse(cache.refresh(USER));
+
+        Thread.sleep(AccountKeyCache.MIN_REFRESH_INTERVAL_MILLIS + 50L);
+        revoked.set(true);
+        assertTrue(cache.refresh(USER));
+        assertTrue(cache.getKeys(USER).get(0).getRevoked());
+
+        final AccountKeyCacheStats stats = cache.getStats();
+        assertEquals(2, stats.getRefreshCount());
+        assertEquals(1, stats.getStaleCount());
+    }
+
+}
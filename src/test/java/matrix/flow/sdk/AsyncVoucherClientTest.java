@@ -0,0 +1,100 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.nftco.flow.sdk.FlowAddress;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.TransactionStages;
+import matrix.flow.sdk.model.VoucherClientConfig;
+import matrix.flow.sdk.model.VoucherMetadataModel;
+
+/**
+ * Runs against the local emulator like {@link VoucherMinterClientPoolTest}, the offline tests
+ * against a {@link TestAccessNode}.
+ */
+public class AsyncVoucherClientTest {
+    public static final String TEST_ADMIN_PRIVATE_KEY_HEX =
+            "a996c6d610d93faf82ad5b15407b66d3a2b72a284b5c2fd4097b5a3e735a79e1";
+    public static final String FUNGIBLE_TOKEN_ADDRESS = "ee82856bf20e2aa6";
+    public static final String FUSD_ADDRESS = "f8d6e0586b0a20c7";
+    public static final String FLOW_TOKEN_ADDRESS = "0ae53cb6e3f42a79";
+    public static final String NON_FUNGIBLE_TOKEN_ADDRESS = "f8d6e0586b0a20c7";
+    public static final String VOUCHER_ADDRESS = "01cf0e2f2f715450";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FlowAddress testAdminAccountAddress = new FlowAddress("01cf0e2f2f715450");
+    private final FlowAddress userAccountAddress = new FlowAddress("f8d6e0586b0a20c7");
+
+    final VoucherClientConfig adminClientConfig = VoucherClientConfig.builder().host("localhost")
+            .port(3569).privateKeyHex(TEST_ADMIN_PRIVATE_KEY_HEX).keyIndex(0)
+            .nonFungibleTokenAddress(NON_FUNGIBLE_TOKEN_ADDRESS)
+            .fungibleTokenAddress(FUNGIBLE_TOKEN_ADDRESS)
+            .adminAccountAddress(testAdminAccountAddress.getBase16Value())
+            .voucherAddress(VOUCHER_ADDRESS).waitForSealTries(20).fusdAddress(FUSD_ADDRESS)
+            .flowTokenAddress(FLOW_TOKEN_ADDRESS).build();
+
+    @Test(timeout = 10000000)
+    public void asyncMintsShouldPipelineOnFewThreads() throws Exception {
+        final int simTransactionCount = 30;
+        final VoucherMinterClientPool pool = new VoucherMinterClientPool(0, 10, adminClientConfig);
+        final AsyncVoucherClient asyncClient = new AsyncVoucherClient(pool, 2);
+
+        final String timeStamp = new SimpleDateFormat("yyyy.MM.dd.HH.mm.ss").format(new Date());
+        final List<TransactionStages<VoucherMetadataModel>> mints = new ArrayList<>();
+        for (int i = 0; i < simTransactionCount; ++i) {
+            mints.add(asyncClient.mintVoucher(userAccountAddress.getBase16Value(),
+                    "TEST_HASH_ASYNC" + i + timeStamp));
+        }
+
+        for (int i = 0; i < simTransactionCount; ++i) {
+            final TransactionStages<VoucherMetadataModel> stages = mints.get(i);
+            final String transactionId = stages.getSubmitted().get(120, TimeUnit.SECONDS);
+            assertTrue(!transactionId.isEmpty());
+            stages.getExecuted().get(120, TimeUnit.SECONDS);
+            final VoucherMetadataModel token = stages.getSealed().get(120, TimeUnit.SECONDS);
+            assertEquals("TEST_HASH_ASYNC" + i + timeStamp, token.getHash());
+        }
+        asyncClient.close();
+        pool.close();
+    }
+
+    @Test(timeout = 20000)
+    public void asyncMintsShouldBeJournaled() throws Exception {
+        final TestAccessNode node = new TestAccessNode(2);
+        final VoucherMinterClientPool pool = node.pool(TestAccessNode.config().toBuilder()
+                .mintJournalFile(folder.newFile().toString()).build(), MetricsRegistry.NOOP,
+                Tracer.NOOP);
+        final AsyncVoucherClient asyncClient = new AsyncVoucherClient(pool, 1);
+
+        asyncClient.batchMintVoucher(Arrays.asList(userAccountAddress.getBase16Value()),
+                Arrays.asList("hash0")).getSealed().get(10, TimeUnit.SECONDS);
+        try {
+            asyncClient.mintVoucher(userAccountAddress.getBase16Value(), "hash0").getSubmitted()
+                    .get(10, TimeUnit.SECONDS);
+            fail("Land minted twice to the same recipient");
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof FlowClientException);
+        }
+        assertEquals(1, node.sent().size());
+        assertEquals(0, pool.getJournal().getPendingCount());
+        asyncClient.close();
+        pool.close();
+    }
+}
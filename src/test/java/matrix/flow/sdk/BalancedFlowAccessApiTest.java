@@ -0,0 +1,247 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.nftco.flow.sdk.FlowAccessApi;
+import com.nftco.flow.sdk.FlowId;
+import com.nftco.flow.sdk.FlowTransactionResult;
+import com.nftco.flow.sdk.FlowTransactionStatus;
+
+import org.junit.Test;
+
+import matrix.flow.sdk.model.AccessNode;
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+public class BalancedFlowAccessApiTest {
+
+    private static final FlowId TX_ID = new FlowId(
+            "0000000000000000000000000000000000000000000000000000000000000001");
+
+    private static FlowTransactionResult answer(final String node) {
+        return new FlowTransactionResult(FlowTransactionStatus.SEALED, 0, node,
+                Collections.emptyList());
+    }
+
+    private static Object sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        return null;
+    }
+
+    private static BalancedFlowAccessApi balance(final VoucherClientConfig config,
+            final MetricsRegistry metrics, final FakeFlowAccessApi... nodes) {
+        return new BalancedFlowAccessApi(Arrays.asList("a", "b"),
+                Arrays.asList(Collections.singletonList(nodes[0].api()),
+                        Collections.singletonList(nodes[1].api())),
+                config, 0L, metrics);
+    }
+
+    @Test
+    public void readsShouldGoToTheFasterNode() {
+        final FakeFlowAccessApi a = new FakeFlowAccessApi().on("ping", args -> sleep(5));
+        final FakeFlowAccessApi b = new FakeFlowAccessApi().on("ping", args -> null);
+        final BalancedFlowAccessApi balanced = balance(
+                VoucherClientConfig.builder().hedgeReads(false).build(), MetricsRegistry.NOOP, a,
+                b);
+        final FlowAccessApi api = balanced.api();
+        for (int i = 0; i < 2 * BalancedFlowAccessApi.MIN_SAMPLES; i++) {
+            api.ping();
+        }
+        balanced.refresh();
+        assertTrue(balanced.getEndpoints().get(0).getP50Nanos()
+                > balanced.getEndpoints().get(1).getP50Nanos());
+
+        final int slowCalls = a.calls("ping");
+        for (int i = 0; i < 10; i++) {
+            api.ping();
+        }
+        assertEquals(slowCalls, a.calls("ping"));
+        balanced.close();
+    }
+
+    @Test
+    public void failingNodeShouldBeEjectedAndReadmitted() {
+        final AtomicBoolean aDown = new AtomicBoolean(true);
+        final FakeFlowAccessApi a = new FakeFlowAccessApi().on("ping", args -> {
+            if (aDown.get()) {
+                throw new IllegalStateException("UNAVAILABLE");
+            }
+            return null;
+        });
+        final FakeFlowAccessApi b = new FakeFlowAccessApi().on("ping", args -> null);
+        final InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        final BalancedFlowAccessApi balanced = balance(
+                VoucherClientConfig.builder().accessNodeEjectMillis(0L).build(), metrics, a, b);
+        final FlowAccessApi api = balanced.api();
+        // Every failed read is answered by the other node
+        for (int i = 0; i < 20; i++) {
+            api.ping();
+        }
+        final BalancedFlowAccessApi.Endpoint endpoint = balanced.getEndpoints().get(0);
+        assertTrue(endpoint.isEjected());
+        assertEquals(BalancedFlowAccessApi.EJECT_AFTER_FAILURES, a.calls("ping"));
+        assertEquals(1L, (long) metrics.getGauge(VoucherMetrics.ACCESS_NODE_EJECTED,
+                VoucherMetrics.TAG_ENDPOINT, "a"));
+
+        balanced.refresh();
+        assertTrue(endpoint.isEjected());
+        aDown.set(false);
+        balanced.refresh();
+        assertFalse(endpoint.isEjected());
+        assertEquals(BalancedFlowAccessApi.EJECT_AFTER_FAILURES,
+                metrics.getCount(VoucherMetrics.ACCESS_NODE_FAILOVER));
+        balanced.close();
+    }
+
+    @Test(timeout = 20000)
+    public void slowReadShouldBeHedged() {
+        final FakeFlowAccessApi a = new FakeFlowAccessApi().on("getTransactionResultById",
+                args -> {
+                    sleep(5000);
+                    return answer("a");
+                });
+        final FakeFlowAccessApi b = new FakeFlowAccessApi().on("getTransactionResultById",
+                args -> answer("b"));
+        final InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        final BalancedFlowAccessApi balanced = balance(
+                VoucherClientConfig.builder().accessNodeHedgeMinMillis(10L).build(), metrics, a,
+                b);
+
+        final long start = System.nanoTime();
+        // Nodes start equally fast, so the first read goes to the first node
+        assertEquals("b", balanced.api().getTransactionResultById(TX_ID).getErrorMessage());
+        assertTrue(System.nanoTime() - start < 4000000000L);
+        assertEquals(1, a.calls("getTransactionResultById"));
+        assertEquals(1L, metrics.getCount(VoucherMetrics.ACCESS_NODE_HEDGE));
+        balanced.close();
+    }
+
+    @Test
+    public void errorsAnsweredByANodeShouldNotFailItOver() {
+        final FakeFlowAccessApi a = new FakeFlowAccessApi().on("getAccountAtLatestBlock",
+                args -> {
+                    throw new IllegalStateException("NOT_FOUND: account not found");
+                });
+        final FakeFlowAccessApi b = new FakeFlowAccessApi().on("getAccountAtLatestBlock",
+                args -> {
+                    throw new IllegalStateException("NOT_FOUND: account not found");
+                });
+        final InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        final BalancedFlowAccessApi balanced =
+                balance(VoucherClientConfig.builder().build(), metrics, a, b);
+        for (int i = 0; i < 2 * BalancedFlowAccessApi.EJECT_AFTER_FAILURES; i++) {
+            try {
+                balanced.api().getAccountAtLatestBlock(null);
+                fail("Expected the answer of the node");
+            } catch (final IllegalStateException e) {
+                assertTrue(e.getMessage().startsWith("NOT_FOUND"));
+            }
+        }
+        // Each read went to one node only and neither node failed
+        assertEquals(2 * BalancedFlowAccessApi.EJECT_AFTER_FAILURES,
+                a.calls("getAccountAtLatestBlock") + b.calls("getAccountAtLatestBlock"));
+        assertFalse(balanced.getEndpoints().get(0).isEjected());
+        assertFalse(balanced.getEndpoints().get(1).isEjected());
+        assertEquals(0L, metrics.getCount(VoucherMetrics.ACCESS_NODE_ERROR,
+                VoucherMetrics.TAG_ENDPOINT, "a"));
+        assertEquals(0L, metrics.getCount(VoucherMetrics.ACCESS_NODE_FAILOVER));
+        assertEquals(0L, metrics.getCount(VoucherMetrics.ACCESS_NODE_HEDGE));
+        balanced.close();
+    }
+
+    @Test
+    public void nodeFailuresShouldBeToldFromAnswers() {
+        assertTrue(BalancedFlowAccessApi.isNodeFailure(
+                new IllegalStateException("UNAVAILABLE: io exception")));
+        assertTrue(BalancedFlowAccessApi.isNodeFailure(new RuntimeException(
+                new IllegalStateException("DEADLINE_EXCEEDED: deadline exceeded after 9s"))));
+        assertTrue(BalancedFlowAccessApi.isNodeFailure(
+                new RuntimeException(new IOException("Connection reset"))));
+        assertFalse(BalancedFlowAccessApi.isNodeFailure(
+                new IllegalStateException("INVALID_ARGUMENT: invalid proposal key")));
+        assertFalse(BalancedFlowAccessApi.isNodeFailure(new IllegalStateException()));
+    }
+
+    @Test
+    public void transactionResultsShouldBeReadFromTheAcceptingNode() {
+        final FakeFlowAccessApi a = new FakeFlowAccessApi();
+        final FakeFlowAccessApi b = new FakeFlowAccessApi();
+        for (final FakeFlowAccessApi node : Arrays.asList(a, b)) {
+            final String name = node == a ? "a" : "b";
+            node.on("sendTransaction", args -> TX_ID).on("getTransactionResultById", args -> {
+                if (node.calls("sendTransaction") == 0) {
+                    throw new IllegalStateException("NOT_FOUND: transaction not found");
+                }
+                return answer(name);
+            });
+        }
+        final BalancedFlowAccessApi balanced = balance(
+                VoucherClientConfig.builder().accessNodeHedgeMinMillis(0L).build(),
+                MetricsRegistry.NOOP, a, b);
+
+        balanced.api().sendTransaction(null);
+        final String accepting = a.calls("sendTransaction") == 1 ? "a" : "b";
+        for (int i = 0; i < 10; i++) {
+            assertEquals(accepting,
+                    balanced.api().getTransactionResultById(TX_ID).getErrorMessage());
+        }
+        assertEquals(0, (accepting.equals("a") ? b : a).calls("getTransactionResultById"));
+        balanced.close();
+    }
+
+    @Test
+    public void channelsOfANodeShouldShareOneBalancer() {
+        final List<AccessNode> accessNodes = Arrays.asList(
+                AccessNode.builder().host("a").port(9000).build(),
+                AccessNode.builder().host("b").port(9000).build());
+        final List<FlowAccessApi> balanced = BalancedFlowAccessApi.connectChannels(
+                VoucherClientConfig.builder().accessNodes(accessNodes).accessApiChannels(3)
+                        .build(),
+                MetricsRegistry.NOOP);
+        assertEquals(1, balanced.size());
+        final BalancedFlowAccessApi handler =
+                (BalancedFlowAccessApi) Proxy.getInvocationHandler(balanced.get(0));
+        assertEquals(2, handler.getEndpoints().size());
+        assertEquals(3, handler.getEndpoints().get(0).getChannels().size());
+        assertEquals(3, handler.getEndpoints().get(1).getChannels().size());
+        BalancedFlowAccessApi.close(balanced.get(0));
+
+        assertEquals(3, BalancedFlowAccessApi.connectChannels(VoucherClientConfig.builder()
+                .host("a").port(9000).accessApiChannels(3).build(), MetricsRegistry.NOOP)
+                .size());
+    }
+
+    @Test
+    public void transactionsShouldBeSentOnce() {
+        final FakeFlowAccessApi a = new FakeFlowAccessApi().on("sendTransaction", args -> {
+            throw new IllegalStateException("UNAVAILABLE");
+        });
+        final FakeFlowAccessApi b = new FakeFlowAccessApi().on("sendTransaction",
+                args -> TX_ID);
+        final BalancedFlowAccessApi balanced =
+                balance(VoucherClientConfig.builder().build(), MetricsRegistry.NOOP, a, b);
+        try {
+            balanced.api().sendTransaction(null);
+            fail("Expected the failure of the first node");
+        } catch (final IllegalStateException e) {
+            assertEquals("UNAVAILABLE", e.getMessage());
+        }
+        assertEquals(0, b.calls("sendTransaction"));
+        balanced.close();
+    }
+
+}
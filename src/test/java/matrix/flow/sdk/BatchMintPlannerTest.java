@@ -0,0 +1,69 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.nftco.flow.sdk.FlowTransactionResult;
+import com.nftco.flow.sdk.FlowTransactionStatus;
+
+import org.junit.Test;
+
+public class BatchMintPlannerTest {
+
+    private static FlowTransactionResult sealed(final String errorMessage) {
+        return new FlowTransactionResult(FlowTransactionStatus.SEALED, 0, errorMessage,
+                Collections.emptyList());
+    }
+
+    private static final FlowTransactionResult LIMIT_EXCEEDED = sealed(
+            "[Error Code: 1110] computation exceeds limit (9999)");
+
+    @Test
+    public void planShouldSplitEvenlyInInputOrder() {
+        final BatchMintPlanner planner = new BatchMintPlanner(9999L, 40, 250);
+        assertEquals(Arrays.asList(34, 33, 33), planner.plan(100));
+        assertEquals(Arrays.asList(40), planner.plan(40));
+        assertTrue(planner.plan(0).isEmpty());
+    }
+
+    @Test
+    public void exceededLimitShouldHalveBatchSize() {
+        final BatchMintPlanner planner = new BatchMintPlanner(9999L, 40, 250);
+        planner.sealed(40, LIMIT_EXCEEDED);
+        assertEquals(20, planner.getMaxBatchSize());
+        assertEquals(Arrays.asList(20, 20), planner.plan(40));
+        // A short remainder batch halves the learned size, not its own
+        planner.sealed(3, LIMIT_EXCEEDED);
+        assertEquals(10, planner.getMaxBatchSize());
+    }
+
+    @Test
+    public void sealedFullBatchShouldGrowBatchSizeUpToCap() {
+        final BatchMintPlanner planner = new BatchMintPlanner(9999L, 40, 41);
+        planner.sealed(10, sealed(""));
+        assertEquals(40, planner.getMaxBatchSize());
+        planner.sealed(40, sealed(""));
+        planner.sealed(41, sealed(""));
+        assertEquals(41, planner.getMaxBatchSize());
+    }
+
+    @Test
+    public void computationLimitShouldScaleWithBatch() {
+        final BatchMintPlanner planner = new BatchMintPlanner(10000L, 100, 250);
+        assertEquals(10000L, planner.computationLimit(100));
+        assertEquals(1500L, planner.computationLimit(10));
+        assertEquals(BatchMintPlanner.MIN_COMPUTATION_LIMIT, planner.computationLimit(0));
+    }
+
+    @Test
+    public void onlyComputationErrorsShouldCountAsLimitExceeded() {
+        assertTrue(BatchMintPlanner.isComputationLimitExceeded(LIMIT_EXCEEDED));
+        assertFalse(BatchMintPlanner.isComputationLimitExceeded(sealed("panic: no receiver")));
+        assertFalse(BatchMintPlanner.isComputationLimitExceeded(sealed("")));
+    }
+
+}
@@ -0,0 +1,62 @@
+package matrix.flow.sdk;
+
+import java.util.concurrent.TimeUnit;
+
+import com.nftco.flow.sdk.FlowScript;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+/**
+ * Per-call readScript + replaceAll (pre registry) against the cached registry lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CadenceTemplateBenchmark {
+
+    private VoucherClientConfig clientConfig;
+    private CadenceTemplateRegistry registry;
+
+    @Setup
+    public void setup() {
+        this.clientConfig = VoucherClientConfig.builder().nonFungibleTokenAddress("f8d6e0586b0a20c7")
+                .voucherAddress("01cf0e2f2f715450").build();
+        this.registry = CadenceTemplateRegistry.forConfig(this.clientConfig);
+    }
+
+    @Benchmark
+    public FlowScript readScriptAndReplaceAll() {
+        String cadenceScript = FlowSimpleClient.readScript(CadenceTemplateRegistry.MINT_VOUCHER);
+        cadenceScript = cadenceScript.replaceAll("%NON_FUNGIBLE_TOKEN_ADDRESS",
+                this.clientConfig.getNonFungibleTokenAddress());
+        cadenceScript = cadenceScript.replaceAll("%VOUCHER_ADDRESS", this.clientConfig.getVoucherAddress());
+        return new FlowScript(cadenceScript.getBytes());
+    }
+
+    @Benchmark
+    public FlowScript registryLookup() {
+        return this.registry.getScript(CadenceTemplateRegistry.MINT_VOUCHER);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CadenceTemplateBenchmark.class.getSimpleName()).build())
+                .run();
+    }
+}
@@ -0,0 +1,90 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+public class CadenceTemplateRegistryTest {
+    public static final String FUNGIBLE_TOKEN_ADDRESS = "ee82856bf20e2aa6";
+    public static final String FUSD_ADDRESS = "f8d6e0586b0a20c7";
+    public static final String FLOW_TOKEN_ADDRESS = "0ae53cb6e3f42a79";
+    public static final String NON_FUNGIBLE_TOKEN_ADDRESS = "f8d6e0586b0a20c7";
+    public static final String VOUCHER_ADDRESS = "01cf0e2f2f715450";
+
+    final VoucherClientConfig clientConfig = VoucherClientConfig.builder().host("localhost")
+            .port(3569).keyIndex(0).nonFungibleTokenAddress(NON_FUNGIBLE_TOKEN_ADDRESS)
+            .fungibleTokenAddress(FUNGIBLE_TOKEN_ADDRESS).voucherAddress(VOUCHER_ADDRESS)
+            .fusdAddress(FUSD_ADDRESS).flowTokenAddress(FLOW_TOKEN_ADDRESS).build();
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void allTemplatesShouldResolveForFullConfig() {
+        final CadenceTemplateRegistry registry = CadenceTemplateRegistry.forConfig(clientConfig);
+        for (final String name : CadenceTemplateRegistry.TEMPLATE_NAMES) {
+            final String script = new String(registry.getScript(name).getBytes());
+            assertFalse(name + " should not contain placeholders", script.contains("%"));
+        }
+        final String mint =
+                new String(registry.getScript(CadenceTemplateRegistry.MINT_VOUCHER).getBytes());
+        assertTrue(mint.contains("from 0x" + VOUCHER_ADDRESS));
+        assertTrue(mint.contains("from 0x" + NON_FUNGIBLE_TOKEN_ADDRESS));
+    }
+
+    @Test
+    public void resolvedTemplateShouldMatchReplaceAll() {
+        final CadenceTemplateRegistry registry = CadenceTemplateRegistry.forConfig(clientConfig);
+        final String expected = FlowSimpleClient.readScript(CadenceTemplateRegistry.TRANSFER_FUSD)
+                .replaceAll("%FUNGIBLE_TOKEN_ADDRESS", FUNGIBLE_TOKEN_ADDRESS)
+                .replaceAll("%FUSD_ADDRESS", FUSD_ADDRESS);
+        assertTrue(expected.equals(new String(
+                registry.getScript(CadenceTemplateRegistry.TRANSFER_FUSD).getBytes())));
+    }
+
+    @Test
+    public void configsDifferingByKeyShouldShareRegistry() {
+        final CadenceTemplateRegistry first = CadenceTemplateRegistry.forConfig(clientConfig);
+        final CadenceTemplateRegistry second = CadenceTemplateRegistry
+                .forConfig(clientConfig.toBuilder().keyIndex(7).privateKeyHex("00").build());
+        assertSame(first, second);
+    }
+
+    @Test
+    public void missingAddressShouldFailOnUse() {
+        exceptionRule.expect(FlowClientException.class);
+        exceptionRule.expectMessage("%FLOW_TOKEN_ADDRESS");
+        final CadenceTemplateRegistry registry = CadenceTemplateRegistry
+                .forConfig(clientConfig.toBuilder().flowTokenAddress(null).build());
+        registry.getScript(CadenceTemplateRegistry.MINT_VOUCHER);
+        registry.getScript(CadenceTemplateRegistry.TRANSFER_FLOW_TOKEN);
+    }
+
+    @Test
+    public void plainRegistryShouldResolveScriptsWithoutPlaceholders() {
+        final CadenceTemplateRegistry registry = CadenceTemplateRegistry.plain();
+        registry.getScript(CadenceTemplateRegistry.VERIFY_SIG);
+        registry.getScript(CadenceTemplateRegistry.VERIFY_COMP_SIG);
+        registry.getScript(CadenceTemplateRegistry.GENERATE_LAND_HASH);
+    }
+
+    @Test
+    public void unknownPlaceholderShouldFailFast() {
+        exceptionRule.expect(FlowClientException.class);
+        exceptionRule.expectMessage("Unknown placeholder %CONTRACT_ADDRESS");
+        final Map<String, String> sources = new HashMap<>();
+        sources.put("broken.cdc.temp", "import Contract from 0x%CONTRACT_ADDRESS");
+        new CadenceTemplateRegistry(sources, Collections.<String, String>emptyMap());
+    }
+}
@@ -0,0 +1,90 @@
+package matrix.flow.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.nftco.flow.sdk.FlowEvent;
+import com.nftco.flow.sdk.FlowTransactionResult;
+import com.nftco.flow.sdk.FlowTransactionStatus;
+import com.nftco.flow.sdk.cadence.StringField;
+import com.nftco.flow.sdk.cadence.UInt64NumberField;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import matrix.flow.sdk.model.VoucherClientConfig;
+import matrix.flow.sdk.model.VoucherMetadataModel;
+
+/**
+ * Per-event type concatenation + contains and named field lookups (pre decoder) against
+ * {@link EventDecoder} over a batch mint result of 1000 events, a deposit of the fee in every 10.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDecoderBenchmark {
+
+    static final int EVENTS = 1000;
+
+    private VoucherClientConfig clientConfig;
+    private FlowTransactionResult result;
+
+    @Setup
+    public void setup() {
+        this.clientConfig = VoucherClientConfig.builder().voucherAddress(TestEvents.VOUCHER_ADDRESS)
+                .fusdAddress(TestEvents.FUSD_ADDRESS).flowTokenAddress(TestEvents.FLOW_TOKEN_ADDRESS)
+                .build();
+        final List<FlowEvent> events = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            events.add(i % 10 == 9
+                    ? TestEvents.deposited("A." + TestEvents.FLOW_TOKEN_ADDRESS + ".FlowToken",
+                            EventDecoderTest.TX_ID, i, "0.00100000", EventDecoderTest.ADMIN)
+                    : TestEvents.minted(EventDecoderTest.TX_ID, i, i,
+                            LandHasher.generateLandInfoHash(i, i, 1, 1)));
+        }
+        this.result = new FlowTransactionResult(FlowTransactionStatus.SEALED, 0, "", events);
+    }
+
+    @Benchmark
+    public List<VoucherMetadataModel> containsAndGetField() {
+        final List<VoucherMetadataModel> mintedTokens = new ArrayList<>();
+        for (final FlowEvent event : this.result.getEvents()) {
+            if (event.getType().contains(this.clientConfig.getVoucherAddress() + ".MatrixWorldVoucher.Minted")) {
+                final VoucherMetadataModel mintedToken = new VoucherMetadataModel();
+                mintedToken.setId(((UInt64NumberField) event.getField("id")).toInt());
+                mintedToken.setName(((StringField) event.getField("name")).getValue());
+                mintedToken.setDescription(((StringField) event.getField("description")).getValue());
+                mintedToken.setAnimationUrl(((StringField) event.getField("animationUrl")).getValue());
+                mintedToken.setHash(((StringField) event.getField("hash")).getValue());
+                mintedToken.setType(((StringField) event.getField("type")).getValue());
+                mintedTokens.add(mintedToken);
+            }
+        }
+        return mintedTokens;
+    }
+
+    @Benchmark
+    public List<VoucherMetadataModel> eventDecoder() {
+        return VoucherClient.decodeMintedVouchers(this.clientConfig, this.result);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EventDecoderBenchmark.class.getSimpleName()).build())
+                .run();
+    }
+}
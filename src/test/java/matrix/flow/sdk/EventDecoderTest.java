@@ -0,0 +1,91 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import com.nftco.flow.sdk.FlowEvent;
+import com.nftco.flow.sdk.FlowTransactionResult;
+import com.nftco.flow.sdk.FlowTransactionStatus;
+
+import org.junit.Test;
+
+import matrix.flow.sdk.model.PaymentType;
+import matrix.flow.sdk.model.TransferEvent;
+import matrix.flow.sdk.model.VoucherClientConfig;
+import matrix.flow.sdk.model.VoucherMetadataModel;
+
+public class EventDecoderTest {
+
+    static final String TX_ID = "0000000000000000000000000000000000000000000000000000000000000001";
+    static final String PAYER = "179b6b1cb6755e31";
+    static final String ADMIN = "e03daebed8ca0615";
+
+    private final VoucherClientConfig clientConfig = VoucherClientConfig.builder()
+            .voucherAddress(TestEvents.VOUCHER_ADDRESS).fusdAddress(TestEvents.FUSD_ADDRESS)
+            .flowTokenAddress(TestEvents.FLOW_TOKEN_ADDRESS).adminAccountAddress(ADMIN).build();
+
+    private final String fusd = "A." + TestEvents.FUSD_ADDRESS + ".FUSD";
+    private final String flowToken = "A." + TestEvents.FLOW_TOKEN_ADDRESS + ".FlowToken";
+
+    @Test
+    public void decodersShouldBeSharedPerAddresses() {
+        assertSame(EventDecoder.forConfig(clientConfig), EventDecoder.forConfig(
+                clientConfig.toBuilder().adminAccountAddress("01cf0e2f2f715450").build()));
+    }
+
+    @Test
+    public void mintedEventsShouldDecodeInOrder() {
+        final List<FlowEvent> events = Arrays.asList(TestEvents.minted(TX_ID, 0, 7, "aa"),
+                TestEvents.deposited(fusd, TX_ID, 1, "1.00000000", ADMIN),
+                TestEvents.minted(TX_ID, 2, 8, "bb"));
+        final List<VoucherMetadataModel> minted = VoucherClient.decodeMintedVouchers(clientConfig,
+                new FlowTransactionResult(FlowTransactionStatus.SEALED, 0, "", events));
+
+        assertEquals(2, minted.size());
+        assertEquals(7, minted.get(0).getId());
+        assertEquals("aa", minted.get(0).getHash());
+        assertEquals("LandVoucher", minted.get(0).getName());
+        assertEquals("Voucher", minted.get(0).getType());
+        assertEquals(8, minted.get(1).getId());
+        assertEquals("bb", minted.get(1).getHash());
+    }
+
+    @Test
+    public void paymentEventsShouldBeMatchedByToken() {
+        final EventDecoder decoder = EventDecoder.forConfig(clientConfig);
+        final FlowEvent flowDeposit = TestEvents.deposited(flowToken, TX_ID, 0, "2.50000000", ADMIN);
+        final FlowEvent fusdWithdrawal = TestEvents.withdrawn(fusd, TX_ID, 1, "2.50000000", PAYER);
+
+        assertEquals(EventDecoder.Kind.TOKENS_DEPOSITED, decoder.kindOf(flowDeposit));
+        assertEquals(PaymentType.FLOW, decoder.paymentTypeOf(flowDeposit));
+        assertEquals(EventDecoder.Kind.TOKENS_WITHDRAWN, decoder.kindOf(fusdWithdrawal));
+        assertEquals(PaymentType.FUSD, decoder.paymentTypeOf(fusdWithdrawal));
+        assertEquals(PAYER, EventDecoder.address(fusdWithdrawal));
+        assertEquals(0, new BigDecimal("2.50000000").compareTo(EventDecoder.amount(fusdWithdrawal)));
+        assertNull(decoder.kindOf(TestEvents.deposited("A.0000000000000001.FUSD", TX_ID, 2,
+                "1.00000000", ADMIN)));
+    }
+
+    @Test
+    public void transferShouldResolveFromEventsOfThePaymentToken() {
+        final FlowTransactionResult result = new FlowTransactionResult(
+                FlowTransactionStatus.SEALED, 0, "",
+                Arrays.asList(TestEvents.withdrawn(flowToken, TX_ID, 0, "0.00100000", PAYER),
+                        TestEvents.withdrawn(fusd, TX_ID, 1, "3.00000000", PAYER),
+                        TestEvents.deposited(fusd, TX_ID, 2, "3.00000000", ADMIN)));
+
+        final TransferEvent transfer =
+                VoucherClient.resolveTransferEvent(clientConfig, result, TX_ID, PaymentType.FUSD);
+        assertEquals(PAYER, transfer.getFrom());
+        assertEquals(ADMIN, transfer.getTo());
+        assertEquals(new BigDecimal("3.00000000"), transfer.getAmountTo());
+
+        VoucherClient.verifyPayment(clientConfig, result, PAYER, new BigDecimal("3.00000000"),
+                PaymentType.FUSD);
+    }
+}
@@ -0,0 +1,58 @@
+package matrix.flow.sdk;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.nftco.flow.sdk.FlowAccessApi;
+
+/**
+ * Local stand-in for the access node. Only the methods registered with {@link #on} answer, every
+ * other call fails with {@link UnsupportedOperationException}.
+ */
+final class FakeFlowAccessApi implements InvocationHandler {
+
+    private final Map<String, Function<Object[], Object>> handlers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final FlowAccessApi api = (FlowAccessApi) Proxy.newProxyInstance(
+            FlowAccessApi.class.getClassLoader(), new Class<?>[] {FlowAccessApi.class}, this);
+
+    FakeFlowAccessApi on(final String method, final Function<Object[], Object> handler) {
+        this.handlers.put(method, handler);
+        return this;
+    }
+
+    FlowAccessApi api() {
+        return this.api;
+    }
+
+    int calls(final String method) {
+        final AtomicInteger count = this.calls.get(method);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+            throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "FakeFlowAccessApi";
+            }
+        }
+        this.calls.computeIfAbsent(method.getName(), key -> new AtomicInteger()).incrementAndGet();
+        final Function<Object[], Object> handler = this.handlers.get(method.getName());
+        if (handler == null) {
+            throw new UnsupportedOperationException(method.getName());
+        }
+        return handler.apply(args);
+    }
+}
@@ -0,0 +1,72 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class InMemoryMetricsRegistryTest {
+
+    @Test
+    public void percentilesShouldBeWithinABucket() {
+        final InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        final InMemoryMetricsRegistry.InMemoryTimer timer =
+                metrics.timer(VoucherMetrics.TRANSACTION_SEND);
+        for (long millis = 1; millis <= 1000; millis++) {
+            timer.record(millis * 1000000L);
+        }
+
+        assertEquals(1000, timer.count());
+        assertEquals(1000000000L, timer.maxNanos());
+        assertEquals(500.5e6, timer.meanNanos(), 1.0);
+        final long p50 = timer.percentileNanos(0.5);
+        final long p99 = timer.percentileNanos(0.99);
+        assertTrue(p50 >= 500000000L && p50 <= 625000000L);
+        assertTrue(p99 >= 990000000L && p99 <= 1000000000L);
+        assertEquals(0L, metrics.timer("other").percentileNanos(0.99));
+    }
+
+    @Test
+    public void bucketsShouldCoverEveryValue() {
+        for (final long value : new long[] {0L, 1L, 3L, 4L, 7L, 8L, 1000L, Long.MAX_VALUE}) {
+            final int bucket = InMemoryMetricsRegistry.InMemoryTimer.bucket(value);
+            assertTrue(bucket < InMemoryMetricsRegistry.InMemoryTimer.BUCKETS);
+            assertTrue(InMemoryMetricsRegistry.InMemoryTimer.upperBound(bucket) >= value);
+            if (bucket > 0) {
+                assertTrue(InMemoryMetricsRegistry.InMemoryTimer.upperBound(bucket - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void metersShouldBeKeyedByNameAndTags() {
+        final InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        assertSame(metrics.counter(VoucherMetrics.TRANSACTION_SEALED),
+                metrics.counter(VoucherMetrics.TRANSACTION_SEALED));
+        metrics.counter(VoucherMetrics.TRANSACTION_SEALED).increment();
+        metrics.counter(VoucherMetrics.TRANSACTION_SEALED).increment(2);
+        assertEquals(3, metrics.getCount(VoucherMetrics.TRANSACTION_SEALED));
+        assertEquals(0, metrics.getCount(VoucherMetrics.TRANSACTION_FAILED));
+
+        final AtomicLong inFlight = new AtomicLong(2);
+        metrics.gauge(VoucherMetrics.POOL_KEY_IN_FLIGHT, inFlight::get,
+                VoucherMetrics.TAG_KEY_INDEX, "3");
+        inFlight.incrementAndGet();
+        assertEquals(Long.valueOf(3), metrics.getGauge(VoucherMetrics.POOL_KEY_IN_FLIGHT,
+                VoucherMetrics.TAG_KEY_INDEX, "3"));
+        assertNull(metrics.getGauge(VoucherMetrics.POOL_KEY_IN_FLIGHT,
+                VoucherMetrics.TAG_KEY_INDEX, "4"));
+        assertTrue(metrics.report().contains("voucher.pool.key.in.flight{keyIndex=3} value=3"));
+    }
+
+    @Test
+    public void noopRegistryShouldShareMeters() {
+        assertSame(MetricsRegistry.Timer.NOOP, MetricsRegistry.NOOP.timer("a"));
+        assertSame(MetricsRegistry.Counter.NOOP, MetricsRegistry.NOOP.counter("a", "b", "c"));
+    }
+
+}
@@ -0,0 +1,106 @@
+package matrix.flow.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Borrow and return of 16 keys by 64 threads through the previous {@link GenericObjectPool}, with
+ * its validation on every borrow reduced to a no-op instead of a ping, against
+ * {@link KeyScheduler}. Each lease holds the key for a short burst of work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(64)
+@Fork(1)
+public class KeySchedulerBenchmark {
+
+    static final int KEYS = 16;
+    static final long WORK_TOKENS = 100L;
+
+    private GenericObjectPool<Integer> objectPool;
+    private KeyScheduler<Integer> keyScheduler;
+
+    @Setup
+    public void setup() {
+        final AtomicInteger nextKey = new AtomicInteger();
+        final GenericObjectPoolConfig<Integer> config = new GenericObjectPoolConfig<>();
+        config.setMaxTotal(KEYS);
+        config.setMaxIdle(KEYS);
+        config.setBlockWhenExhausted(true);
+        config.setTestOnBorrow(true);
+        this.objectPool = new GenericObjectPool<>(new BasePooledObjectFactory<Integer>() {
+            @Override
+            public Integer create() {
+                return nextKey.getAndIncrement();
+            }
+
+            @Override
+            public PooledObject<Integer> wrap(final Integer key) {
+                return new DefaultPooledObject<>(key);
+            }
+
+            @Override
+            public boolean validateObject(final PooledObject<Integer> key) {
+                return true;
+            }
+        }, config);
+
+        final List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < KEYS; i++) {
+            keys.add(i);
+        }
+        this.keyScheduler = new KeyScheduler<>(keys, key -> true, 0L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.objectPool.close();
+        this.keyScheduler.close();
+    }
+
+    @Benchmark
+    public void genericObjectPool() throws Exception {
+        final Integer key = this.objectPool.borrowObject();
+        Blackhole.consumeCPU(WORK_TOKENS);
+        this.objectPool.returnObject(key);
+    }
+
+    @Benchmark
+    public void keyScheduler() {
+        final KeyScheduler.Lease<Integer> lease = this.keyScheduler.tryAcquire(1, TimeUnit.MINUTES);
+        Blackhole.consumeCPU(WORK_TOKENS);
+        this.keyScheduler.release(lease, true);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(KeySchedulerBenchmark.class.getSimpleName()).build())
+                .run();
+    }
+}
@@ -0,0 +1,168 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class KeySchedulerTest {
+
+    @Test
+    public void settledKeysShouldBeLeasedFirst() {
+        final KeyScheduler<String> scheduler =
+                new KeyScheduler<>(Arrays.asList("a", "b", "c"), key -> true, 0L);
+        final List<KeyScheduler.Lease<String>> leased = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            leased.add(scheduler.tryAcquire());
+        }
+        assertNull(scheduler.tryAcquire());
+        assertEquals(3, scheduler.getActiveCount());
+
+        scheduler.release(leased.get(0), false);
+        scheduler.release(leased.get(1), true);
+        scheduler.release(leased.get(2), false);
+        assertEquals(3, scheduler.getIdleCount());
+        assertSame(leased.get(1), scheduler.tryAcquire());
+        // Keys with unsealed transactions go out oldest first once no settled key is left
+        assertSame(leased.get(0), scheduler.tryAcquire());
+        assertSame(leased.get(2), scheduler.tryAcquire());
+        scheduler.close();
+    }
+
+    @Test
+    public void promotedKeyShouldBeLeasedBeforeOlderKeysInFlight() {
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            keys.add("k" + i);
+        }
+        final KeyScheduler<String> scheduler = new KeyScheduler<>(keys, key -> true, 0L);
+        final List<KeyScheduler.Lease<String>> leased = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            leased.add(scheduler.tryAcquire());
+        }
+        for (final KeyScheduler.Lease<String> lease : leased) {
+            scheduler.release(lease, false);
+        }
+
+        scheduler.promote(leased.get(9));
+        assertSame(leased.get(9), scheduler.tryAcquire());
+        // A leased key is not queued twice
+        scheduler.promote(leased.get(9));
+        for (int i = 0; i < keys.size(); i++) {
+            if (i != 9) {
+                assertSame(leased.get(i), scheduler.tryAcquire());
+            }
+        }
+        assertNull(scheduler.tryAcquire());
+        scheduler.close();
+    }
+
+    @Test
+    public void secondReleaseShouldBeIgnored() {
+        final KeyScheduler<String> scheduler =
+                new KeyScheduler<>(Arrays.asList("a", "b"), key -> true, 0L);
+        final KeyScheduler.Lease<String> a = scheduler.tryAcquire();
+        final KeyScheduler.Lease<String> b = scheduler.tryAcquire();
+
+        scheduler.release(a, true);
+        scheduler.release(a, false);
+        assertEquals(1, scheduler.getIdleCount());
+        assertEquals(1, scheduler.getActiveCount());
+        assertSame(a, scheduler.tryAcquire());
+        assertNull(scheduler.tryAcquire());
+        scheduler.release(b, true);
+        scheduler.close();
+    }
+
+    @Test(timeout = 20000)
+    public void tryAcquireShouldWaitForARelease() throws Exception {
+        final KeyScheduler<String> scheduler =
+                new KeyScheduler<>(Collections.singletonList("a"), key -> true, 0L);
+        final KeyScheduler.Lease<String> lease = scheduler.tryAcquire();
+        assertNull(scheduler.tryAcquire(20, TimeUnit.MILLISECONDS));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.execute(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scheduler.release(lease, true);
+        });
+        assertSame(lease, scheduler.tryAcquire(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        scheduler.close();
+    }
+
+    @Test
+    public void unhealthyKeyShouldBeHeldBackUntilItPasses() {
+        final AtomicBoolean bHealthy = new AtomicBoolean(false);
+        final KeyScheduler<String> scheduler = new KeyScheduler<>(Arrays.asList("a", "b"),
+                key -> !"b".equals(key) || bHealthy.get(), 0L);
+        scheduler.checkHealth();
+
+        final KeyScheduler.Lease<String> a = scheduler.tryAcquire();
+        assertEquals("a", a.getKey());
+        assertNull(scheduler.tryAcquire());
+        assertEquals(0, scheduler.getIdleCount());
+
+        bHealthy.set(true);
+        scheduler.checkHealth();
+        final KeyScheduler.Lease<String> b = scheduler.tryAcquire();
+        assertNotNull(b);
+        assertEquals("b", b.getKey());
+        scheduler.close();
+    }
+
+    @Test(timeout = 60000)
+    public void keyShouldNeverBeLeasedTwice() throws Exception {
+        final List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            keys.add(i);
+        }
+        final KeyScheduler<Integer> scheduler = new KeyScheduler<>(keys, key -> true, 0L);
+        final Set<Integer> leased = ConcurrentHashMap.newKeySet();
+        final AtomicInteger doubleLeases = new AtomicInteger();
+        final int threads = 64;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    final KeyScheduler.Lease<Integer> lease =
+                            scheduler.tryAcquire(10, TimeUnit.SECONDS);
+                    if (!leased.add(lease.getKey())) {
+                        doubleLeases.incrementAndGet();
+                    }
+                    leased.remove(lease.getKey());
+                    scheduler.release(lease, i % 2 == 0);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(50, TimeUnit.SECONDS));
+        assertEquals(0, doubleLeases.get());
+        assertEquals(8, scheduler.getIdleCount());
+        assertEquals(0, scheduler.getActiveCount());
+        executor.shutdown();
+        scheduler.close();
+    }
+
+}
@@ -0,0 +1,136 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.LandInfo;
+
+public class LandHashIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void lookupShouldSurviveGrowAndReopen() throws Exception {
+        final Path path = folder.getRoot().toPath().resolve("land.idx");
+        final List<String> hashes = new ArrayList<>();
+        try (LandHashIndex index = LandHashIndex.open(path, 16)) {
+            for (int i = 0; i < 100; i++) {
+                hashes.add(index.put(i, i * 2, 1, 3));
+            }
+            // Recording a square twice keeps one record
+            index.put(0, 0, 1, 3);
+            assertEquals(100, index.size());
+        }
+
+        try (LandHashIndex index = LandHashIndex.open(path)) {
+            assertEquals(100, index.size());
+            for (int i = 0; i < 100; i++) {
+                final LandInfo info = index.get(hashes.get(i));
+                assertEquals(hashes.get(i), info.getHash());
+                assertEquals(i, info.getTopLeftX());
+                assertEquals(i * 2, info.getTopLeftY());
+                assertEquals(1, info.getHeight());
+                assertEquals(3, info.getWidth());
+            }
+            assertNull(index.get(LandHasher.generateLandInfoHash(1000, 0, 1, 1)));
+            assertNull(index.get("not a hash"));
+        }
+    }
+
+    @Test
+    public void bulkPutShouldMatchSingleHashes() {
+        final Path path = folder.getRoot().toPath().resolve("land.idx");
+        final int[] x = {5, 6, 7};
+        final int[] y = {1, 1, 1};
+        final int[] h = {2, 2, 2};
+        final int[] w = {4, 4, 4};
+        try (LandHashIndex index = LandHashIndex.open(path)) {
+            index.putAll(x, y, h, w, new byte[3 * LandHasher.HASH_LENGTH]);
+            for (int i = 0; i < x.length; i++) {
+                assertEquals(x[i],
+                        index.get(LandHasher.generateLandInfoHash(x[i], y[i], h[i], w[i]))
+                                .getTopLeftX());
+            }
+        }
+    }
+
+    @Test
+    public void scanShouldVisitSquaresWithinBounds() {
+        final Path path = folder.getRoot().toPath().resolve("land.idx");
+        try (LandHashIndex index = LandHashIndex.open(path)) {
+            for (int x = 0; x < 10; x++) {
+                for (int y = 0; y < 10; y++) {
+                    index.put(x, y, 1, 1);
+                }
+            }
+            final List<LandInfo> found = new ArrayList<>();
+            index.scan(2, 4, 7, 8, found::add);
+            assertEquals(6, found.size());
+            for (final LandInfo info : found) {
+                assertEquals(true, info.getTopLeftX() >= 2 && info.getTopLeftX() <= 4);
+                assertEquals(true, info.getTopLeftY() >= 7 && info.getTopLeftY() <= 8);
+            }
+        }
+    }
+
+    @Test
+    public void scanShouldVisitCornersInOrderAndSeePutsAfterIt() {
+        final Path path = folder.getRoot().toPath().resolve("land.idx");
+        try (LandHashIndex index = LandHashIndex.open(path)) {
+            for (int x = -5; x <= 5; x++) {
+                for (int y = -5; y <= 5; y++) {
+                    index.put(x, y, 1, 1);
+                }
+            }
+            final List<String> found = new ArrayList<>();
+            index.scan(-2, 1, -1, 0,
+                    info -> found.add(info.getTopLeftX() + "," + info.getTopLeftY()));
+            assertEquals(Arrays.asList("-2,-1", "-2,0", "-1,-1", "-1,0", "0,-1", "0,0", "1,-1",
+                    "1,0"), found);
+
+            // Another square at a scanned corner
+            index.put(1, -1, 2, 2);
+            found.clear();
+            index.scan(1, 1, -1, -1,
+                    info -> found.add(info.getTopLeftX() + "," + info.getTopLeftY()));
+            assertEquals(2, found.size());
+            found.clear();
+            index.scan(Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                    Integer.MAX_VALUE, info -> found.add(info.getHash()));
+            assertEquals(122, found.size());
+        }
+    }
+
+    @Test
+    public void openShouldRejectForeignFile() throws Exception {
+        final Path path = folder.getRoot().toPath().resolve("foreign.idx");
+        Files.write(path, new byte[LandHashIndex.HEADER_LENGTH * 2]);
+        exceptionRule.expect(FlowClientException.class);
+        LandHashIndex.open(path);
+    }
+
+    @Test
+    public void openShouldRejectFileShorterThanHeader() throws Exception {
+        final Path path = folder.getRoot().toPath().resolve("short.idx");
+        Files.write(path, new byte[] {0x4C, 0x48, 0x49, 0x58});
+        exceptionRule.expect(FlowClientException.class);
+        LandHashIndex.open(path);
+    }
+
+}
@@ -0,0 +1,82 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Longs;
+import com.nftco.flow.sdk.HashAlgorithm;
+import com.nftco.flow.sdk.crypto.HasherImpl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import matrix.flow.sdk.model.FlowClientException;
+
+/**
+ * {@link HasherImpl} over the concatenated UInt64 coordinates is the reference that
+ * {@code SDKTest.generateLandInfoHashEqualsCadenceVersion} checks against the Cadence script.
+ */
+public class LandHasherTest {
+
+    private final HasherImpl reference = new HasherImpl(HashAlgorithm.SHA3_256);
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private byte[] referenceHash(final int x, final int y, final int h, final int w) {
+        return reference.hash(Bytes.concat(Longs.toByteArray(Integer.toUnsignedLong(x)),
+                Longs.toByteArray(Integer.toUnsignedLong(y)),
+                Longs.toByteArray(Integer.toUnsignedLong(h)),
+                Longs.toByteArray(Integer.toUnsignedLong(w))));
+    }
+
+    @Test
+    public void singleHashShouldMatchReference() {
+        final int[][] squares = {{111, 1, 1, 1}, {0, 0, 0, 0}, {-1, Integer.MAX_VALUE, 7, 3}};
+        for (final int[] square : squares) {
+            assertEquals(
+                    reference.hashAsHexString(Bytes.concat(
+                            Longs.toByteArray(Integer.toUnsignedLong(square[0])),
+                            Longs.toByteArray(Integer.toUnsignedLong(square[1])),
+                            Longs.toByteArray(Integer.toUnsignedLong(square[2])),
+                            Longs.toByteArray(Integer.toUnsignedLong(square[3])))),
+                    LandHasher.generateLandInfoHash(square[0], square[1], square[2], square[3]));
+        }
+    }
+
+    @Test
+    public void bulkHashesShouldMatchReferenceInOrder() {
+        final int count = 3 * LandHasher.PARALLEL_CHUNK + 17;
+        final Random random = new Random(42);
+        final int[] x = new int[count];
+        final int[] y = new int[count];
+        final int[] h = new int[count];
+        final int[] w = new int[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = random.nextInt();
+            y[i] = random.nextInt();
+            h[i] = random.nextInt(64);
+            w[i] = random.nextInt(64);
+        }
+
+        final byte[] out = new byte[count * LandHasher.HASH_LENGTH];
+        LandHasher.generateLandInfoHashes(x, y, h, w, out);
+        for (int i = 0; i < count; i++) {
+            assertArrayEquals(referenceHash(x[i], y[i], h[i], w[i]), Arrays.copyOfRange(out,
+                    i * LandHasher.HASH_LENGTH, (i + 1) * LandHasher.HASH_LENGTH));
+        }
+    }
+
+    @Test
+    public void tooSmallOutputShouldBeRejected() {
+        exceptionRule.expect(FlowClientException.class);
+        LandHasher.generateLandInfoHashes(new int[2], new int[2], new int[2], new int[2],
+                new byte[LandHasher.HASH_LENGTH]);
+    }
+
+}
@@ -0,0 +1,225 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.nftco.flow.sdk.FlowId;
+import com.nftco.flow.sdk.FlowTransactionResult;
+import com.nftco.flow.sdk.FlowTransactionStatus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import matrix.flow.sdk.model.BatchMintVoucherResult;
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+public class MintJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String TX_ID =
+            "0000000000000000000000000000000000000000000000000000000000000001";
+
+    private static FlowTransactionResult sealed(final String errorMessage) {
+        return new FlowTransactionResult(FlowTransactionStatus.SEALED, 0, errorMessage,
+                Collections.emptyList());
+    }
+
+    private static MintJournal.Mint begin(final MintJournal journal, final String recipient,
+            final String landHash) {
+        return journal.begin(Collections.singletonList(recipient),
+                Collections.singletonList(landHash));
+    }
+
+    @Test
+    public void duplicateMintShouldBeRejected() throws Exception {
+        final MintJournal journal = new MintJournal(this.folder.newFile().toPath());
+        begin(journal, "0x01", "hash1");
+
+        try {
+            journal.begin(Arrays.asList("0x02", "0x01"), Arrays.asList("hash2", "hash1"));
+            throw new AssertionError("Expected the duplicate to be rejected");
+        } catch (final FlowClientException e) {
+            assertTrue(e.getMessage().contains("hash1"));
+        }
+        // Lands of a rejected mint stay free
+        assertFalse(journal.isClaimed("0x02", "hash2"));
+        assertTrue(journal.isClaimed("0x01", "hash1"));
+        begin(journal, "0x02", "hash1");
+        journal.close();
+    }
+
+    @Test
+    public void unsealedMintsShouldSurviveARestart() throws Exception {
+        final Path file = this.folder.newFile().toPath();
+        final MintJournal journal = new MintJournal(file);
+        final MintJournal.Mint submitted = begin(journal, "0x01", "hash1");
+        submitted.signed(TX_ID);
+        submitted.submitted(new FlowId(TX_ID));
+        begin(journal, "0x02", "hash2");
+        final MintJournal.Mint minted = begin(journal, "0x03", "hash3");
+        minted.signed(TX_ID);
+        assertTrue(minted.resolved(sealed(""), null, false));
+        journal.close();
+
+        final MintJournal reopened = new MintJournal(file);
+        assertEquals(1, reopened.getPendingCount());
+        assertTrue(reopened.isClaimed("0x01", "hash1"));
+        assertTrue(reopened.isClaimed("0x03", "hash3"));
+        // Never signed, so never sent
+        assertFalse(reopened.isClaimed("0x02", "hash2"));
+        reopened.close();
+    }
+
+    @Test
+    public void failedMintShouldReleaseItsLands() throws Exception {
+        final MintJournal journal = new MintJournal(this.folder.newFile().toPath());
+        final MintJournal.Mint reverted = begin(journal, "0x01", "hash1");
+        reverted.signed(TX_ID);
+        assertFalse(reverted.resolved(sealed("[Error Code: 1110] computation exceeds limit"),
+                null, false));
+        assertFalse(journal.isClaimed("0x01", "hash1"));
+
+        final MintJournal.Mint expired = begin(journal, "0x01", "hash1");
+        expired.signed(TX_ID);
+        assertFalse(expired.resolved(null,
+                new FlowClientException(SealTracker.EXPIRED_MESSAGE), false));
+        assertFalse(journal.isClaimed("0x01", "hash1"));
+
+        // A timeout says nothing about the transaction, its lands stay claimed
+        final MintJournal.Mint unresolved = begin(journal, "0x01", "hash1");
+        unresolved.signed(TX_ID);
+        assertFalse(unresolved.resolved(null,
+                new FlowClientException("Timed out waiting for sealed transaction"), false));
+        assertTrue(journal.isClaimed("0x01", "hash1"));
+        journal.close();
+    }
+
+    @Test
+    public void tornLineShouldBeSkipped() throws Exception {
+        final Path file = this.folder.newFile().toPath();
+        final MintJournal journal = new MintJournal(file);
+        begin(journal, "0x01", "hash1").signed(TX_ID);
+        journal.close();
+        Files.write(file, "INTENT\t7\t0x02,ha".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        final MintJournal reopened = new MintJournal(file);
+        assertTrue(reopened.isClaimed("0x01", "hash1"));
+        assertFalse(reopened.isClaimed("0x02", "hash2"));
+        begin(reopened, "0x02", "hash2").signed(TX_ID);
+        reopened.close();
+
+        final MintJournal again = new MintJournal(file);
+        assertEquals(2, again.getPendingCount());
+        assertTrue(again.isClaimed("0x02", "hash2"));
+        again.close();
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentMintsShouldAllBeDurable() throws Exception {
+        final Path file = this.folder.newFile().toPath();
+        final MintJournal journal = new MintJournal(file);
+        final ExecutorService executor = Executors.newFixedThreadPool(16);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    begin(journal, "0x" + thread, "hash" + i).signed(TX_ID);
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        journal.close();
+
+        final MintJournal reopened = new MintJournal(file);
+        assertEquals(1600, reopened.getPendingCount());
+        assertTrue(reopened.isClaimed("0x15", "hash99"));
+        reopened.close();
+    }
+
+    @Test(timeout = 20000)
+    public void journalOfOneFileShouldBeSharedAndRecoveredOnce() throws Exception {
+        final Path file = this.folder.newFile().toPath();
+        final MintJournal journal = new MintJournal(file);
+        begin(journal, "0x01", "hash1").signed(TX_ID);
+        journal.close();
+
+        final VoucherClientConfig config = VoucherClientConfig.builder()
+                .adminAccountAddress(EventDecoderTest.ADMIN)
+                .voucherAddress(TestEvents.VOUCHER_ADDRESS).fusdAddress(TestEvents.FUSD_ADDRESS)
+                .flowTokenAddress(TestEvents.FLOW_TOKEN_ADDRESS).mintJournalFile(file.toString())
+                .build();
+        final FakeFlowAccessApi fake = new FakeFlowAccessApi().on("getTransactionResultById",
+                args -> sealed(""));
+        final SealTracker sealTracker = new SealTracker(fake.api(), 1);
+        final MintJournal first = MintJournal.forConfig(config);
+        final MintJournal second = MintJournal.forConfig(config);
+        assertSame(first, second);
+        assertSame(first.recover(sealTracker, config), second.recover(sealTracker, config));
+        assertEquals(1, first.recover(sealTracker, config).get().size());
+        assertEquals(1, fake.calls("getTransactionResultById"));
+
+        // Still open for the second caller
+        first.close();
+        assertTrue(second.isClaimed("0x01", "hash1"));
+        begin(second, "0x02", "hash2").signed(TX_ID);
+        second.close();
+        final MintJournal reopened = MintJournal.forConfig(config);
+        assertNotSame(first, reopened);
+        assertEquals(1, reopened.getPendingCount());
+        assertTrue(reopened.isClaimed("0x02", "hash2"));
+        reopened.close();
+        sealTracker.close();
+    }
+
+    @Test(timeout = 20000)
+    public void recoverShouldResolveUnsealedMints() throws Exception {
+        final Path file = this.folder.newFile().toPath();
+        final MintJournal journal = new MintJournal(file);
+        begin(journal, "0x01", "hash1").signed(TX_ID);
+        journal.close();
+
+        final FakeFlowAccessApi fake = new FakeFlowAccessApi().on("getTransactionResultById",
+                args -> sealed(""));
+        final SealTracker sealTracker = new SealTracker(fake.api(), 1);
+        final MintJournal reopened = new MintJournal(file);
+        final List<BatchMintVoucherResult> recovered = reopened.recover(sealTracker,
+                VoucherClientConfig.builder().adminAccountAddress(EventDecoderTest.ADMIN)
+                        .voucherAddress(TestEvents.VOUCHER_ADDRESS)
+                        .fusdAddress(TestEvents.FUSD_ADDRESS)
+                        .flowTokenAddress(TestEvents.FLOW_TOKEN_ADDRESS).build())
+                .get();
+        assertEquals(1, recovered.size());
+        assertEquals(TX_ID, recovered.get(0).getTransactionId());
+        assertNotNull(recovered.get(0).getTokens());
+        assertEquals(0, reopened.getPendingCount());
+        assertTrue(reopened.isClaimed("0x01", "hash1"));
+        reopened.close();
+        sealTracker.close();
+    }
+
+}
@@ -0,0 +1,156 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import com.nftco.flow.sdk.FlowTransactionResult;
+import com.nftco.flow.sdk.FlowTransactionStatus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.PaymentType;
+import matrix.flow.sdk.model.TransferEvent;
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+public class PaymentCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    private final VoucherClientConfig clientConfig = VoucherClientConfig.builder()
+            .host("localhost").port(3569)
+            .privateKeyHex(VoucherMinterClientPoolTest.TEST_ADMIN_PRIVATE_KEY_HEX)
+            .adminAccountAddress(EventDecoderTest.ADMIN).voucherAddress(TestEvents.VOUCHER_ADDRESS)
+            .fusdAddress(TestEvents.FUSD_ADDRESS).flowTokenAddress(TestEvents.FLOW_TOKEN_ADDRESS)
+            .build();
+
+    private final String fusd = "A." + TestEvents.FUSD_ADDRESS + ".FUSD";
+
+    private FlowTransactionResult payment(final String transactionId, final String amount) {
+        return new FlowTransactionResult(FlowTransactionStatus.SEALED, 0, "",
+                Arrays.asList(TestEvents.withdrawn(fusd, transactionId, 0, amount,
+                        EventDecoderTest.PAYER),
+                        TestEvents.deposited(fusd, transactionId, 1, amount,
+                                EventDecoderTest.ADMIN)));
+    }
+
+    @Test(timeout = 20000)
+    public void repeatedVerificationsShouldFetchTheResultOnce() {
+        final FakeFlowAccessApi fake = new FakeFlowAccessApi().on("getTransactionResultById",
+                args -> payment(EventDecoderTest.TX_ID, "5.00000000"));
+        final SealTracker sealTracker = new SealTracker(fake.api(), 1);
+        final PaymentCache cache = new PaymentCache(10);
+        final VoucherClient client =
+                new VoucherClient(clientConfig, fake.api(), sealTracker, null, null, cache);
+
+        final TransferEvent transfer = client.resolveTransferEventFromTransactionId(
+                EventDecoderTest.TX_ID, PaymentType.FUSD);
+        for (int i = 0; i < 3; i++) {
+            client.verifyPaymentTransaction(EventDecoderTest.PAYER, new BigDecimal("5.00000000"),
+                    EventDecoderTest.TX_ID, PaymentType.FUSD);
+        }
+
+        assertEquals(EventDecoderTest.PAYER, transfer.getFrom());
+        assertEquals(1, fake.calls("getTransactionResultById"));
+        assertEquals(3, cache.hitCount());
+        sealTracker.close();
+
+        // A cached payment is still checked against every target amount
+        exceptionRule.expect(FlowClientException.class);
+        exceptionRule.expectMessage("Insufficient payment");
+        client.verifyPaymentTransaction(EventDecoderTest.PAYER, new BigDecimal("6.00000000"),
+                EventDecoderTest.TX_ID, PaymentType.FUSD);
+    }
+
+    @Test
+    public void paymentsShouldSurviveRestartAndSkipTornLines() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("payments.cache");
+        final EventDecoder decoder = EventDecoder.forConfig(clientConfig);
+        final PaymentCache cache = new PaymentCache(10, file);
+        cache.put(SealTrackerTest.txId(1).getBase16Value(), decoder,
+                payment(SealTrackerTest.txId(1).getBase16Value(), "1.00000000"));
+        cache.close();
+        // Crashed in the middle of the next line
+        Files.write(file, (SealTrackerTest.txId(2).getBase16Value() + "\tTOKENS_DEPOSITED,FUSD,")
+                .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        final PaymentCache restarted = new PaymentCache(10, file);
+        assertEquals(1, restarted.size());
+        assertNull(restarted.getIfPresent(SealTrackerTest.txId(2).getBase16Value()));
+        restarted.put(SealTrackerTest.txId(3).getBase16Value(), decoder,
+                payment(SealTrackerTest.txId(3).getBase16Value(), "3.00000000"));
+        restarted.close();
+
+        final PaymentCache reopened = new PaymentCache(10, file);
+        assertEquals(2, reopened.size());
+        final List<PaymentCache.Transfer> transfers =
+                reopened.getIfPresent(SealTrackerTest.txId(3).getBase16Value());
+        assertEquals(2, transfers.size());
+        assertEquals(EventDecoder.Kind.TOKENS_DEPOSITED, transfers.get(1).kind);
+        assertEquals(EventDecoderTest.ADMIN, transfers.get(1).address);
+        assertEquals(new BigDecimal("3.00000000"), transfers.get(1).amount);
+        VoucherClient.verifyPayment(clientConfig,
+                reopened.getIfPresent(SealTrackerTest.txId(1).getBase16Value()),
+                EventDecoderTest.PAYER, new BigDecimal("1.00000000"), PaymentType.FUSD);
+        reopened.close();
+    }
+
+    @Test
+    public void clientsOfOneFileShouldShareTheCacheUntilTheLastCloses() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("payments.cache");
+        final VoucherClientConfig fileConfig =
+                clientConfig.toBuilder().paymentCacheFile(file.toString()).build();
+        final EventDecoder decoder = EventDecoder.forConfig(clientConfig);
+
+        final PaymentCache first = PaymentCache.forConfig(fileConfig);
+        final PaymentCache second = PaymentCache.forConfig(clientConfig.toBuilder()
+                .paymentCacheFile(file.getParent().resolve(".").resolve("payments.cache")
+                        .toString())
+                .build());
+        assertSame(first, second);
+        first.put(SealTrackerTest.txId(1).getBase16Value(), decoder,
+                payment(SealTrackerTest.txId(1).getBase16Value(), "1.00000000"));
+        first.close();
+
+        // Still open for the second caller
+        assertSame(second, PaymentCache.forConfig(fileConfig));
+        second.put(SealTrackerTest.txId(2).getBase16Value(), decoder,
+                payment(SealTrackerTest.txId(2).getBase16Value(), "2.00000000"));
+        // Once for the second caller, once for the check above
+        second.close();
+        second.close();
+
+        final PaymentCache reopened = PaymentCache.forConfig(fileConfig);
+        assertNotSame(first, reopened);
+        assertEquals(2, reopened.size());
+        reopened.close();
+        assertNotSame(PaymentCache.forConfig(clientConfig), PaymentCache.forConfig(clientConfig));
+    }
+
+    @Test
+    public void unsealedResultsShouldNotBeCached() {
+        final PaymentCache cache = new PaymentCache(10);
+        cache.put(EventDecoderTest.TX_ID, EventDecoder.forConfig(clientConfig),
+                new FlowTransactionResult(FlowTransactionStatus.EXECUTED, 0, "",
+                        payment(EventDecoderTest.TX_ID, "1.00000000").getEvents()));
+        assertEquals(0, cache.size());
+    }
+
+}
@@ -0,0 +1,150 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.nftco.flow.sdk.FlowEvent;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import kotlin.ranges.LongRange;
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.PaymentType;
+import matrix.flow.sdk.model.TransferEvent;
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+public class PaymentScannerTest {
+
+    static final String OTHER = "0000000000000009";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final VoucherClientConfig clientConfig = VoucherClientConfig.builder()
+            .voucherAddress(TestEvents.VOUCHER_ADDRESS).fusdAddress(TestEvents.FUSD_ADDRESS)
+            .flowTokenAddress(TestEvents.FLOW_TOKEN_ADDRESS)
+            .adminAccountAddress(EventDecoderTest.ADMIN).build();
+
+    private final String fusd = "A." + TestEvents.FUSD_ADDRESS + ".FUSD";
+    private final String flowToken = "A." + TestEvents.FLOW_TOKEN_ADDRESS + ".FlowToken";
+
+    private final TestChain chain = new TestChain();
+
+    private final FakeFlowAccessApi fake = chain.fake();
+
+    private static String txId(final int i) {
+        return String.format("%064x", i);
+    }
+
+    private void pay(final long height, final String token, final int tx, final String amount,
+            final String payer, final String recipient) {
+        this.chain.pay(height, token, txId(tx), amount, payer, recipient);
+    }
+
+    private void add(final long height, final FlowEvent event) {
+        this.chain.add(height, event);
+    }
+
+    @Test
+    public void paymentsToAdminShouldBeJoinedWithPayersInHeightOrder() {
+        pay(420L, flowToken, 2, "2.00000000", EventDecoderTest.PAYER, EventDecoderTest.ADMIN);
+        pay(5L, fusd, 1, "10.00000000", EventDecoderTest.PAYER, EventDecoderTest.ADMIN);
+        pay(600L, fusd, 3, "1.00000000", EventDecoderTest.PAYER, OTHER);
+        // Fee split over two deposits of one transaction
+        add(999L, TestEvents.withdrawn(fusd, txId(4), 0, "3.00000000", OTHER));
+        add(999L, TestEvents.deposited(fusd, txId(4), 1, "1.00000000", EventDecoderTest.ADMIN));
+        add(999L, TestEvents.deposited(fusd, txId(4), 2, "2.00000000", EventDecoderTest.ADMIN));
+
+        final PaymentScanner scanner = new PaymentScanner(fake.api(), clientConfig,
+                folder.getRoot().toPath().resolve("payments.checkpoint"), 100, 3);
+        final List<TransferEvent> transfers = new ArrayList<>();
+        assertEquals(999L, scanner.scan(0L, 999L, transfers::add));
+
+        assertEquals(3, transfers.size());
+        assertEquals(txId(1), transfers.get(0).getTransactionId());
+        assertEquals(PaymentType.FUSD, transfers.get(0).getPaymentType());
+        assertEquals(EventDecoderTest.PAYER, transfers.get(0).getFrom());
+        assertEquals(new BigDecimal("10.00000000"), transfers.get(0).getAmountFrom());
+        assertEquals(txId(2), transfers.get(1).getTransactionId());
+        assertEquals(PaymentType.FLOW, transfers.get(1).getPaymentType());
+        assertEquals(EventDecoderTest.ADMIN, transfers.get(1).getTo());
+        assertEquals(txId(4), transfers.get(2).getTransactionId());
+        assertEquals(OTHER, transfers.get(2).getFrom());
+        assertEquals(new BigDecimal("3.00000000"), transfers.get(2).getAmountTo());
+        assertEquals(999L, scanner.getCheckpoint());
+    }
+
+    @Test
+    public void scanShouldResumeAfterTheLastCompleteChunk() {
+        for (int i = 0; i < 10; i++) {
+            pay(i * 100L + 50L, fusd, i, "1.00000000", EventDecoderTest.PAYER,
+                    EventDecoderTest.ADMIN);
+        }
+        final Path checkpoint = folder.getRoot().toPath().resolve("payments.checkpoint");
+        final FakeFlowAccessApi failing = new FakeFlowAccessApi().on("getEventsForHeightRange",
+                args -> {
+                    if (((LongRange) args[1]).contains(500L)) {
+                        throw new IllegalStateException("access node unavailable");
+                    }
+                    return this.chain.eventsInRange((String) args[0], (LongRange) args[1]);
+                });
+        final List<TransferEvent> transfers = new ArrayList<>();
+        try {
+            new PaymentScanner(failing.api(), clientConfig, checkpoint, 100, 2).scan(0L, 999L,
+                    transfers::add);
+            fail("scan should fail");
+        } catch (final FlowClientException e) {
+            assertEquals(5, transfers.size());
+        }
+
+        final PaymentScanner scanner = new PaymentScanner(fake.api(), clientConfig, checkpoint, 100, 2);
+        assertEquals(499L, scanner.getCheckpoint());
+        assertEquals(999L, scanner.resume(0L, 999L, transfers::add));
+        assertEquals(10, transfers.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(txId(i), transfers.get(i).getTransactionId());
+        }
+        // Nothing left to scan
+        assertEquals(999L, scanner.resume(0L, 999L, transfers::add));
+        assertEquals(10, transfers.size());
+    }
+
+    @Test
+    public void transfersShouldJoinExpectedPaymentsInOnePass() {
+        pay(7L, fusd, 1, "5.00000000", EventDecoderTest.PAYER, EventDecoderTest.ADMIN);
+        pay(8L, fusd, 2, "1.00000000", EventDecoderTest.PAYER, EventDecoderTest.ADMIN);
+        final Map<String, BigDecimal> expected = new HashMap<>();
+        expected.put(txId(1), new BigDecimal("5.00000000"));
+        expected.put(txId(2), new BigDecimal("2.00000000"));
+        expected.put(txId(3), new BigDecimal("1.00000000"));
+
+        final Map<String, Boolean> settled = new HashMap<>();
+        new PaymentScanner(fake.api(), clientConfig,
+                folder.getRoot().toPath().resolve("payments.checkpoint")).scan(0L, 10L,
+                        transfer -> {
+                            final BigDecimal amount = expected.get(transfer.getTransactionId());
+                            if (amount != null) {
+                                settled.put(transfer.getTransactionId(),
+                                        transfer.getAmountTo().compareTo(amount) >= 0);
+                            }
+                        });
+
+        assertEquals(Boolean.TRUE, settled.get(txId(1)));
+        assertEquals(Boolean.FALSE, settled.get(txId(2)));
+        assertNull(settled.get(txId(3)));
+        assertEquals(Collections.emptyList(), new PaymentScanner(fake.api(), clientConfig,
+                folder.getRoot().toPath().resolve("empty.checkpoint")).fetch(11L, 20L));
+    }
+
+}
@@ -0,0 +1,71 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import com.nftco.flow.sdk.FlowTransactionResult;
+import com.nftco.flow.sdk.FlowTransactionStatus;
+
+import org.junit.Test;
+
+import matrix.flow.sdk.model.PaymentType;
+import matrix.flow.sdk.model.PaymentVerification;
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+public class PaymentVerificationTest {
+
+    private final VoucherClientConfig clientConfig = VoucherClientConfig.builder()
+            .host("localhost").port(3569)
+            .privateKeyHex(VoucherMinterClientPoolTest.TEST_ADMIN_PRIVATE_KEY_HEX)
+            .adminAccountAddress(EventDecoderTest.ADMIN).voucherAddress(TestEvents.VOUCHER_ADDRESS)
+            .fusdAddress(TestEvents.FUSD_ADDRESS).flowTokenAddress(TestEvents.FLOW_TOKEN_ADDRESS)
+            .build();
+
+    private final String flowToken = "A." + TestEvents.FLOW_TOKEN_ADDRESS + ".FlowToken";
+
+    @Test(timeout = 20000)
+    public void resolveAndVerifyShouldWaitForTheSealOnce() {
+        final FakeFlowAccessApi fake = new FakeFlowAccessApi().on("getTransactionResultById",
+                args -> new FlowTransactionResult(FlowTransactionStatus.SEALED, 0, "",
+                        Arrays.asList(TestEvents.withdrawn(flowToken, EventDecoderTest.TX_ID, 0,
+                                "2.00000000", EventDecoderTest.PAYER),
+                                TestEvents.deposited(flowToken, EventDecoderTest.TX_ID, 1,
+                                        "2.00000000", EventDecoderTest.ADMIN))));
+        final SealTracker sealTracker = new SealTracker(fake.api(), 1);
+        final VoucherClient client = new VoucherClient(clientConfig, fake.api(), sealTracker, null,
+                null, new PaymentCache(10));
+
+        final PaymentVerification verified = client.resolveAndVerifyPaymentTransaction(
+                EventDecoderTest.PAYER, new BigDecimal("2.00000000"), EventDecoderTest.TX_ID,
+                PaymentType.FLOW);
+        assertEquals(1, fake.calls("getTransactionResultById"));
+        assertTrue(verified.isVerified());
+        assertNull(verified.getFailureReason());
+        assertEquals(EventDecoderTest.PAYER, verified.getTransferEvent().getFrom());
+        assertEquals(EventDecoderTest.ADMIN, verified.getTransferEvent().getTo());
+        assertEquals(EventDecoderTest.TX_ID, verified.getTransferEvent().getTransactionId());
+        assertEquals(new BigDecimal("2.00000000"), verified.getFunderDepositedAmount());
+
+        final PaymentVerification insufficient = client.resolveAndVerifyPaymentTransaction(
+                EventDecoderTest.PAYER, new BigDecimal("3.00000000"), EventDecoderTest.TX_ID,
+                PaymentType.FLOW);
+        assertFalse(insufficient.isVerified());
+        assertEquals("Insufficient payment", insufficient.getFailureReason());
+        assertEquals(1, fake.calls("getTransactionResultById"));
+
+        // The transaction moved no FUSD
+        final PaymentVerification otherToken = client.resolveAndVerifyPaymentTransaction(
+                EventDecoderTest.PAYER, new BigDecimal("1.00000000"), EventDecoderTest.TX_ID,
+                PaymentType.FUSD);
+        assertFalse(otherToken.isVerified());
+        assertNull(otherToken.getTransferEvent());
+        assertEquals(BigDecimal.ZERO, otherToken.getPayerWithdrawnAmount());
+        sealTracker.close();
+    }
+
+}
@@ -0,0 +1,156 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.nftco.flow.sdk.FlowBlock;
+import com.nftco.flow.sdk.FlowBlockHeader;
+import com.nftco.flow.sdk.FlowId;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import matrix.flow.sdk.model.TransferEvent;
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+public class PaymentWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final VoucherClientConfig clientConfig = VoucherClientConfig.builder()
+            .voucherAddress(TestEvents.VOUCHER_ADDRESS).fusdAddress(TestEvents.FUSD_ADDRESS)
+            .flowTokenAddress(TestEvents.FLOW_TOKEN_ADDRESS)
+            .adminAccountAddress(EventDecoderTest.ADMIN).build();
+
+    private final String fusd = "A." + TestEvents.FUSD_ADDRESS + ".FUSD";
+
+    private final TestChain chain = new TestChain();
+    private final AtomicLong latestHeight = new AtomicLong(100L);
+    // Finalized blocks run a few heights ahead of the latest sealed one
+    private final FakeFlowAccessApi fake = chain.fake()
+            .on("getLatestBlockHeader", args -> new FlowBlockHeader(block(latestHeight.get() + 3),
+                    block(latestHeight.get() + 2), latestHeight.get() + 3))
+            .on("getLatestBlock", args -> {
+                assertTrue((Boolean) args[0]);
+                return new FlowBlock(block(latestHeight.get()), block(latestHeight.get() - 1),
+                        latestHeight.get(), LocalDateTime.now(), Collections.emptyList(),
+                        Collections.emptyList(), Collections.emptyList());
+            });
+
+    private static FlowId block(final long height) {
+        return new FlowId(String.format("%064x", height));
+    }
+
+    private static String txId(final int i) {
+        return String.format("%064x", i);
+    }
+
+    private PaymentWatcher watcher(final SealTracker sealTracker, final Path cursor) {
+        final FlowSimpleClient client = new FlowSimpleClient(fake.api(), 1,
+                CadenceTemplateRegistry.plain(), sealTracker, null, null, false);
+        return new PaymentWatcher(client, clientConfig, cursor, -1L, 10L);
+    }
+
+    @Test
+    public void failedListenerShouldSeePaymentsAgain() {
+        final SealTracker sealTracker = new SealTracker(fake.api(), 1);
+        final Path cursor = folder.getRoot().toPath().resolve("watcher.cursor");
+        final PaymentWatcher watcher = watcher(sealTracker, cursor);
+        final List<TransferEvent> received = new CopyOnWriteArrayList<>();
+        final AtomicBoolean failOnce = new AtomicBoolean(true);
+        watcher.addListener(received::add);
+        watcher.addListener(transfer -> {
+            if (failOnce.getAndSet(false)) {
+                throw new IllegalStateException("listener down");
+            }
+        });
+
+        // Payments sealed before the first poll are not watched
+        chain.pay(50L, fusd, txId(1), "1.00000000", EventDecoderTest.PAYER, EventDecoderTest.ADMIN);
+        assertEquals(100L, watcher.poll());
+
+        chain.pay(101L, fusd, txId(2), "2.00000000", EventDecoderTest.PAYER,
+                EventDecoderTest.ADMIN);
+        latestHeight.set(105L);
+        try {
+            watcher.poll();
+            fail("listener failure should surface");
+        } catch (final IllegalStateException e) {
+            assertEquals(100L, watcher.getCursor());
+        }
+        assertEquals(105L, watcher.poll());
+        assertEquals(2, received.size());
+        assertEquals(txId(2), received.get(0).getTransactionId());
+        assertEquals(txId(2), received.get(1).getTransactionId());
+
+        // Restarted watchers continue at the cursor
+        chain.pay(106L, fusd, txId(3), "3.00000000", EventDecoderTest.PAYER,
+                EventDecoderTest.ADMIN);
+        latestHeight.set(110L);
+        final PaymentWatcher restarted = watcher(sealTracker, cursor);
+        restarted.addListener(received::add);
+        assertEquals(110L, restarted.poll());
+        assertEquals(3, received.size());
+        assertEquals(txId(3), received.get(2).getTransactionId());
+        sealTracker.close();
+    }
+
+    @Test
+    public void watcherShouldNotPassTheLatestSealedBlock() {
+        final SealTracker sealTracker = new SealTracker(fake.api(), 1);
+        final PaymentWatcher watcher = new PaymentWatcher(
+                new FlowSimpleClient(fake.api(), 1, CadenceTemplateRegistry.plain(), sealTracker,
+                        null, null, false),
+                clientConfig, folder.getRoot().toPath().resolve("watcher.cursor"), 90L, 10L);
+        final List<TransferEvent> received = new CopyOnWriteArrayList<>();
+        watcher.addListener(received::add);
+
+        chain.pay(102L, fusd, txId(4), "4.00000000", EventDecoderTest.PAYER,
+                EventDecoderTest.ADMIN);
+        assertEquals(100L, watcher.poll());
+        assertTrue(received.isEmpty());
+        latestHeight.set(102L);
+        assertEquals(102L, watcher.poll());
+        assertEquals(1, received.size());
+        watcher.close();
+        sealTracker.close();
+    }
+
+    @Test(timeout = 20000)
+    public void startedWatcherShouldPushNewPayments() throws InterruptedException {
+        final SealTracker sealTracker = new SealTracker(fake.api(), 1);
+        final PaymentWatcher watcher =
+                watcher(sealTracker, folder.getRoot().toPath().resolve("watcher.cursor"));
+        final List<TransferEvent> received = new CopyOnWriteArrayList<>();
+        watcher.addListener(received::add);
+        watcher.start();
+        try {
+            while (watcher.getCursor() < 100L) {
+                Thread.sleep(10L);
+            }
+            chain.pay(101L, fusd, txId(7), "7.00000000", EventDecoderTest.PAYER,
+                    EventDecoderTest.ADMIN);
+            latestHeight.set(101L);
+            while (received.isEmpty()) {
+                Thread.sleep(10L);
+            }
+            assertEquals(txId(7), received.get(0).getTransactionId());
+            assertTrue(watcher.getCursor() >= 101L);
+        } finally {
+            watcher.close();
+            sealTracker.close();
+        }
+    }
+
+}
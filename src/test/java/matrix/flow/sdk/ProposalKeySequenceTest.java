@@ -0,0 +1,112 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.nftco.flow.sdk.FlowAccountKey;
+import com.nftco.flow.sdk.FlowPublicKey;
+import com.nftco.flow.sdk.HashAlgorithm;
+import com.nftco.flow.sdk.SignatureAlgorithm;
+
+import org.junit.Test;
+
+public class ProposalKeySequenceTest {
+
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicInteger chainSequenceNumber = new AtomicInteger(5);
+
+    private final Supplier<FlowAccountKey> fetch = () -> {
+        fetches.incrementAndGet();
+        return new FlowAccountKey(3, new FlowPublicKey("00"), SignatureAlgorithm.ECDSA_P256,
+                HashAlgorithm.SHA3_256, 1000, chainSequenceNumber.get(), false);
+    };
+
+    @Test
+    public void submissionsShouldAdvanceWithoutFetching() {
+        final ProposalKeySequence sequence = new ProposalKeySequence();
+        for (int i = 0; i < 10; i++) {
+            final ProposalKeySequence.Reservation reservation = sequence.reserve(fetch);
+            assertEquals(3, reservation.getKeyId());
+            assertEquals(5 + i, reservation.getSequenceNumber());
+            sequence.submitted(reservation.getSequenceNumber());
+        }
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void rejectedSubmissionShouldReuseSequenceNumber() {
+        final ProposalKeySequence sequence = new ProposalKeySequence();
+        final long first = sequence.reserve(fetch).getSequenceNumber();
+        assertEquals(first, sequence.reserve(fetch).getSequenceNumber());
+    }
+
+    @Test
+    public void invalidateShouldResyncFromChain() {
+        final ProposalKeySequence sequence = new ProposalKeySequence();
+        sequence.submitted(sequence.reserve(fetch).getSequenceNumber());
+        sequence.submitted(sequence.reserve(fetch).getSequenceNumber());
+        assertEquals(7, sequence.reserve(fetch).getSequenceNumber());
+
+        // Second transaction failed on chain
+        chainSequenceNumber.set(6);
+        sequence.invalidate();
+        sequence.settled();
+        sequence.settled();
+        assertFalse(sequence.isSynced());
+        assertEquals(6, sequence.reserve(fetch).getSequenceNumber());
+        assertTrue(sequence.isSynced());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void staleSubmissionShouldNotAdvance() {
+        final ProposalKeySequence sequence = new ProposalKeySequence();
+        final long stale = sequence.reserve(fetch).getSequenceNumber();
+        sequence.invalidate();
+        chainSequenceNumber.set(9);
+        sequence.reserve(fetch);
+        sequence.submitted(stale);
+        assertEquals(9, sequence.reserve(fetch).getSequenceNumber());
+    }
+
+    @Test(timeout = 5000)
+    public void invalidatedKeyShouldWaitForUnsealedTransactions() throws Exception {
+        final ProposalKeySequence sequence = new ProposalKeySequence();
+        sequence.submitted(sequence.reserve(fetch).getSequenceNumber());
+        sequence.submitted(sequence.reserve(fetch).getSequenceNumber());
+        sequence.invalidate();
+
+        final CompletableFuture<Long> reserved = CompletableFuture
+                .supplyAsync(() -> sequence.reserve(fetch).getSequenceNumber());
+        sequence.settled();
+        Thread.sleep(50L);
+        assertFalse(reserved.isDone());
+
+        // Both transactions sealed, the chain counts their sequence numbers now
+        chainSequenceNumber.set(7);
+        sequence.settled();
+        assertEquals(7L, (long) reserved.get());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test(timeout = 5000)
+    public void keyInvalidatedWhileReadShouldBeReadAgain() {
+        final ProposalKeySequence sequence = new ProposalKeySequence();
+        final Supplier<FlowAccountKey> invalidatedWhileRead = () -> {
+            final FlowAccountKey key = fetch.get();
+            if (fetches.get() == 1) {
+                // A seal callback invalidates the key without waiting for the read to finish
+                CompletableFuture.runAsync(sequence::invalidate).join();
+                chainSequenceNumber.set(8);
+            }
+            return key;
+        };
+        assertEquals(8, sequence.reserve(invalidatedWhileRead).getSequenceNumber());
+        assertEquals(2, fetches.get());
+    }
+}
@@ -0,0 +1,82 @@
+package matrix.flow.sdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps every started span in memory, in start order
+ */
+final class RecordingTracer implements Tracer {
+
+    private final List<RecordedSpan> spans = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public RecordedSpan startSpan(final String name, final Span parent) {
+        final RecordedSpan span = new RecordedSpan(name, (RecordedSpan) parent);
+        this.spans.add(span);
+        return span;
+    }
+
+    List<RecordedSpan> spans() {
+        synchronized (this.spans) {
+            return new ArrayList<>(this.spans);
+        }
+    }
+
+    /**
+     * @return first span of the name or null
+     */
+    RecordedSpan span(final String name) {
+        for (final RecordedSpan span : this.spans()) {
+            if (span.name.equals(name)) {
+                return span;
+            }
+        }
+        return null;
+    }
+
+    static final class RecordedSpan implements Span {
+        final String name;
+        final RecordedSpan parent;
+        final Map<String, Object> attributes = Collections.synchronizedMap(new HashMap<>());
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        volatile Throwable exception;
+        volatile boolean ended;
+
+        private RecordedSpan(final String name, final RecordedSpan parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        @Override
+        public Span setAttribute(final String key, final String value) {
+            this.attributes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Span setAttribute(final String key, final long value) {
+            this.attributes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public void addEvent(final String name, final String... attributes) {
+            this.events.add(name + (attributes.length > 1 ? " " + attributes[1] : ""));
+        }
+
+        @Override
+        public void recordException(final Throwable exception) {
+            this.exception = exception;
+        }
+
+        @Override
+        public void end() {
+            this.ended = true;
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.nftco.flow.sdk.FlowId;
+
+import org.junit.Test;
+
+public class ReferenceBlockProviderTest {
+
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    private final Supplier<FlowId> latestBlockId =
+            () -> new FlowId(String.format("%064x", fetches.incrementAndGet()));
+
+    @Test
+    public void blockShouldBeReusedWithinMaxAge() {
+        final ReferenceBlockProvider provider =
+                new ReferenceBlockProvider(latestBlockId, 60000L, 60000L);
+        final FlowId first = provider.getReferenceBlockId();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first.getBase16Value(), provider.getReferenceBlockId().getBase16Value());
+        }
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void staleBlockShouldBeRefreshedOnRead() throws InterruptedException {
+        final ReferenceBlockProvider provider =
+                new ReferenceBlockProvider(latestBlockId, 60000L, 20L);
+        final FlowId first = provider.getReferenceBlockId();
+        Thread.sleep(50L);
+        assertNotEquals(first.getBase16Value(), provider.getReferenceBlockId().getBase16Value());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void backgroundRefreshShouldKeepBlockFresh() throws InterruptedException {
+        final ReferenceBlockProvider provider =
+                new ReferenceBlockProvider(latestBlockId, 10L, 60000L);
+        provider.start();
+        try {
+            Thread.sleep(200L);
+            assertTrue(fetches.get() > 1);
+            final int before = fetches.get();
+            provider.getReferenceBlockId();
+            // Reads are served from the background refresh
+            assertTrue(fetches.get() - before <= 1);
+        } finally {
+            provider.close();
+        }
+    }
+
+}
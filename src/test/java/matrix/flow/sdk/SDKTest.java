@@ -21,6 +21,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import matrix.flow.sdk.model.PaymentType;
+import matrix.flow.sdk.model.SignatureVerificationRequest;
 import matrix.flow.sdk.model.VoucherClientConfig;
 import matrix.flow.sdk.model.VoucherMetadataModel;
 
@@ -332,6 +333,29 @@ public class SDKTest {
 
     }
 
+    @Test
+    public void onChainBatchSignatureVerificationShouldKeepInputOrder() throws Exception {
+        final KeyPair keyPair = Crypto.generateKeyPair(SignatureAlgorithm.ECDSA_P256);
+        final PrivateKey privateKey = Crypto.decodePrivateKey(keyPair.getPrivate().getHex());
+        final Signer signer = Crypto.getSigner(privateKey, HashAlgorithm.SHA3_256);
+
+        final List<SignatureVerificationRequest> requests = new ArrayList<>();
+        for (final String signed : new String[] { "TEST", "TEST2", "TEST" }) {
+            requests.add(SignatureVerificationRequest.builder().message(Hex.encodeHexString("TEST".getBytes()))
+                    .publicKeysHex(new String[] { keyPair.getPublic().getHex() }).weights(new double[] { 1.0 })
+                    .signAlgos(new int[] { 2 }).hashAlgos(new int[] { 3 })
+                    .signatures(new String[] { Hex.encodeHexString(signer.signAsUser(signed.getBytes())) }).build());
+        }
+
+        final VoucherClient adminClient = new VoucherClient(
+                adminClientConfig.toBuilder().verifySignaturesOnChain(true).build());
+        final boolean[] verified = adminClient.verifyUserSignatures(requests);
+
+        assertTrue("Signature over the message should verify", verified[0]);
+        assertTrue("Signature over another message should not verify", !verified[1]);
+        assertTrue("Signature over the message should verify", verified[2]);
+    }
+
     @Test
     public void generateLandInfoHashEqualsCadenceVersion() throws Exception {
 
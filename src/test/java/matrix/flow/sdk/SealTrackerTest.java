@@ -0,0 +1,174 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.nftco.flow.sdk.FlowId;
+import com.nftco.flow.sdk.FlowTransactionResult;
+import com.nftco.flow.sdk.FlowTransactionStatus;
+
+import org.junit.Test;
+
+import matrix.flow.sdk.model.FlowClientException;
+
+public class SealTrackerTest {
+
+    static FlowId txId(final int i) {
+        return new FlowId(String.format("%064x", i));
+    }
+
+    static FlowTransactionResult result(final FlowTransactionStatus status) {
+        return new FlowTransactionResult(status, 0, "", Collections.emptyList());
+    }
+
+    @Test(timeout = 20000)
+    public void manyTransactionsShouldSealOnFewThreads() throws Exception {
+        final Map<String, AtomicInteger> polls = new ConcurrentHashMap<>();
+        final FakeFlowAccessApi fake = new FakeFlowAccessApi().on("getTransactionResultById",
+                args -> {
+                    final String id = ((FlowId) args[0]).getBase16Value();
+                    final int count = polls.computeIfAbsent(id, key -> new AtomicInteger())
+                            .incrementAndGet();
+                    return result(count < 3 ? FlowTransactionStatus.PENDING
+                            : FlowTransactionStatus.SEALED);
+                });
+        final SealTracker tracker = new SealTracker(fake.api(), 10000L, 10L, 50L, 2);
+
+        final List<CompletableFuture<FlowTransactionResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(tracker.track(txId(i)));
+        }
+        for (final CompletableFuture<FlowTransactionResult> future : futures) {
+            assertEquals(FlowTransactionStatus.SEALED, future.get(10, TimeUnit.SECONDS).getStatus());
+        }
+        assertEquals(3000, fake.calls("getTransactionResultById"));
+        assertEquals(0, tracker.getPendingCount());
+        tracker.close();
+    }
+
+    @Test(timeout = 20000)
+    public void trackingTwiceShouldShareOnePoll() throws Exception {
+        final FakeFlowAccessApi fake = new FakeFlowAccessApi().on("getTransactionResultById",
+                args -> result(FlowTransactionStatus.SEALED));
+        final SealTracker tracker = new SealTracker(fake.api(), 10000L, 10L, 50L, 2);
+
+        final CompletableFuture<FlowTransactionResult> first = tracker.track(txId(1));
+        final CompletableFuture<FlowTransactionResult> second = tracker.track(txId(1));
+        assertSame(first, second);
+        first.get(10, TimeUnit.SECONDS);
+        tracker.close();
+    }
+
+    @Test(timeout = 20000)
+    public void expiredTransactionShouldFail() throws Exception {
+        final FakeFlowAccessApi fake = new FakeFlowAccessApi().on("getTransactionResultById",
+                args -> result(FlowTransactionStatus.EXPIRED));
+        final SealTracker tracker = new SealTracker(fake.api(), 10000L, 10L, 50L, 2);
+
+        assertFailsWith(tracker.track(txId(1)), "Transaction expired");
+        tracker.close();
+    }
+
+    @Test(timeout = 20000)
+    public void unsealedTransactionShouldTimeOut() throws Exception {
+        final FakeFlowAccessApi fake = new FakeFlowAccessApi().on("getTransactionResultById",
+                args -> result(FlowTransactionStatus.PENDING));
+        final SealTracker tracker = new SealTracker(fake.api(), 200L, 10L, 50L, 2);
+
+        assertFailsWith(tracker.track(txId(1)), "Timed out waiting for sealed transaction");
+        tracker.close();
+    }
+
+    @Test(timeout = 20000)
+    public void pollFailuresShouldBeRetried() throws Exception {
+        final AtomicInteger polls = new AtomicInteger();
+        final FakeFlowAccessApi fake = new FakeFlowAccessApi().on("getTransactionResultById",
+                args -> {
+                    if (polls.incrementAndGet() < 3) {
+                        throw new IllegalStateException("UNAVAILABLE");
+                    }
+                    return result(FlowTransactionStatus.SEALED);
+                });
+        final SealTracker tracker = new SealTracker(fake.api(), 10000L, 10L, 50L, 2);
+
+        assertEquals(FlowTransactionStatus.SEALED,
+                tracker.track(txId(1)).get(10, TimeUnit.SECONDS).getStatus());
+        tracker.close();
+    }
+
+    @Test(timeout = 20000)
+    public void outcomesShouldBeCounted() throws Exception {
+        final FakeFlowAccessApi fake = new FakeFlowAccessApi().on("getTransactionResultById",
+                args -> {
+                    final String id = ((FlowId) args[0]).getBase16Value();
+                    if (id.equals(txId(2).getBase16Value())) {
+                        return new FlowTransactionResult(FlowTransactionStatus.SEALED, 1007,
+                                "[Error Code: 1007] invalid proposal key: public key 0 on account "
+                                        + "f8d6e0586b0a20c7 has sequence number 7, but given 6",
+                                Collections.emptyList());
+                    }
+                    return result(id.equals(txId(3).getBase16Value())
+                            ? FlowTransactionStatus.EXPIRED : FlowTransactionStatus.SEALED);
+                });
+        final InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        final SealTracker tracker = new SealTracker(fake.api(), 10000L, 10L, 50L, 2, metrics);
+
+        tracker.track(txId(1)).get(10, TimeUnit.SECONDS);
+        tracker.track(txId(2)).get(10, TimeUnit.SECONDS);
+        assertFailsWith(tracker.track(txId(3)), "Transaction expired");
+
+        assertEquals(1, metrics.getCount(VoucherMetrics.TRANSACTION_SEALED));
+        assertEquals(1, metrics.getCount(VoucherMetrics.TRANSACTION_FAILED));
+        assertEquals(1, metrics.getCount(VoucherMetrics.TRANSACTION_SEQUENCE_MISMATCH));
+        assertEquals(1, metrics.getCount(VoucherMetrics.TRANSACTION_EXPIRED));
+        assertEquals(3, metrics.getTimer(VoucherMetrics.TRANSACTION_SEAL_WAIT).count());
+        tracker.close();
+    }
+
+    @Test(timeout = 20000)
+    public void pollsShouldBeRecordedAsSpanEvents() throws Exception {
+        final AtomicInteger polls = new AtomicInteger();
+        final FakeFlowAccessApi fake = new FakeFlowAccessApi().on("getTransactionResultById",
+                args -> {
+                    final int count = polls.incrementAndGet();
+                    if (count == 1) {
+                        throw new IllegalStateException("UNAVAILABLE");
+                    }
+                    return result(count < 3 ? FlowTransactionStatus.EXECUTED
+                            : FlowTransactionStatus.SEALED);
+                });
+        final SealTracker tracker = new SealTracker(fake.api(), 10000L, 10L, 50L, 2);
+        final RecordingTracer tracer = new RecordingTracer();
+        final RecordingTracer.RecordedSpan span =
+                tracer.startSpan(VoucherSpans.WAIT_FOR_SEAL, null);
+
+        tracker.track(txId(1), span).get(10, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("seal.poll java.lang.IllegalStateException: UNAVAILABLE",
+                "seal.poll EXECUTED", "seal.poll SEALED"), span.events);
+        tracker.close();
+    }
+
+    static void assertFailsWith(final CompletableFuture<?> future, final String message)
+            throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof FlowClientException);
+            assertEquals(message, e.getCause().getMessage());
+            return;
+        }
+        throw new AssertionError("Expected failure with " + message);
+    }
+}
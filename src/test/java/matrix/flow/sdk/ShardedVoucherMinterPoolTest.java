@@ -0,0 +1,66 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ShardedVoucherMinterPoolTest {
+
+    @Test
+    public void partitionShouldCoverRangeWithDisjointParts() {
+        final boolean[] taken = new boolean[103];
+        int next = 3;
+        for (int part = 0; part < 7; part++) {
+            final KeyRange range = KeyRange.partition(3, 100, part, 7);
+            assertEquals(next, range.getStart());
+            assertTrue(range.getCapacity() == 14 || range.getCapacity() == 15);
+            for (int key = range.getStart(); key < range.getStart() + range.getCapacity(); key++) {
+                assertTrue(!taken[key]);
+                taken[key] = true;
+            }
+            next += range.getCapacity();
+        }
+        assertEquals(103, next);
+    }
+
+    @Test
+    public void partitionShouldBeDeterministic() {
+        assertEquals(KeyRange.partition(0, 50, 2, 4), KeyRange.partition(0, 50, 2, 4));
+        assertEquals(new KeyRange(26, 12), KeyRange.partition(0, 50, 2, 4));
+    }
+
+    @Test
+    public void partsBeyondKeysShouldBeEmpty() {
+        assertEquals(new KeyRange(2, 1), KeyRange.partition(0, 3, 2, 5));
+        assertTrue(KeyRange.partition(0, 3, 4, 5).isEmpty());
+    }
+
+    @Test
+    public void leastLoadedShardShouldBeSelected() {
+        final Map<String, Double> loads = new HashMap<>();
+        loads.put("a", 0.75);
+        loads.put("b", 0.25);
+        loads.put("c", 0.5);
+        final List<String> shards = Arrays.asList("a", "b", "c");
+        for (int offset = 0; offset < 3; offset++) {
+            assertEquals("b", ShardedVoucherMinterPool.leastLoaded(shards, loads::get, offset));
+        }
+    }
+
+    @Test
+    public void equallyLoadedShardsShouldTakeTurns() {
+        final List<String> shards = Arrays.asList("a", "b", "c");
+        assertEquals("a", ShardedVoucherMinterPool.leastLoaded(shards, shard -> 0.0, 0));
+        assertEquals("b", ShardedVoucherMinterPool.leastLoaded(shards, shard -> 0.0, 1));
+        assertEquals("c", ShardedVoucherMinterPool.leastLoaded(shards, shard -> 0.0, 2));
+        assertEquals("a", ShardedVoucherMinterPool.leastLoaded(shards, shard -> 0.0, 3));
+        assertEquals("c", ShardedVoucherMinterPool.leastLoaded(shards, shard -> 0.0, -1));
+    }
+
+}
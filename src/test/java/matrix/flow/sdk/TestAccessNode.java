@@ -0,0 +1,197 @@
+package matrix.flow.sdk;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.nftco.flow.sdk.FlowAccount;
+import com.nftco.flow.sdk.FlowAccountKey;
+import com.nftco.flow.sdk.FlowAddress;
+import com.nftco.flow.sdk.FlowBlockHeader;
+import com.nftco.flow.sdk.FlowCode;
+import com.nftco.flow.sdk.FlowEvent;
+import com.nftco.flow.sdk.FlowId;
+import com.nftco.flow.sdk.FlowPublicKey;
+import com.nftco.flow.sdk.FlowTransaction;
+import com.nftco.flow.sdk.FlowTransactionResult;
+import com.nftco.flow.sdk.FlowTransactionStatus;
+import com.nftco.flow.sdk.HashAlgorithm;
+import com.nftco.flow.sdk.SignatureAlgorithm;
+import com.nftco.flow.sdk.cadence.ArrayField;
+import com.nftco.flow.sdk.cadence.Field;
+
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+/**
+ * Access node of a fake chain holding the keys of the admin account. A transaction proposed with
+ * the sequence number of its key executes right when it is sent and advances the number, any other
+ * seals with a sequence number error. Mint transactions mint one token per land hash. A transaction
+ * set to expire never executes and leaves its sequence number unused, one set to be rejected fails
+ * to send.
+ */
+final class TestAccessNode {
+
+    static final String ADMIN_PRIVATE_KEY_HEX =
+            "a996c6d610d93faf82ad5b15407b66d3a2b72a284b5c2fd4097b5a3e735a79e1";
+    static final FlowId BLOCK_ID = new FlowId(String.format("%064x", 1));
+
+    private final FakeFlowAccessApi fake = new FakeFlowAccessApi();
+    private final long[] sequenceNumbers;
+    private final List<FlowTransaction> sent = new CopyOnWriteArrayList<>();
+    private final Map<String, FlowTransactionResult> results = new ConcurrentHashMap<>();
+    private final AtomicInteger tokens = new AtomicInteger();
+    private volatile Function<FlowTransaction, String> execute = tx -> "";
+    private volatile Predicate<FlowTransaction> expire = tx -> false;
+    private volatile Predicate<FlowTransaction> reject = tx -> false;
+
+    TestAccessNode(final int keys) {
+        this.sequenceNumbers = new long[keys];
+        this.fake.on("ping", args -> null)
+                .on("getLatestBlockHeader", args -> new FlowBlockHeader(BLOCK_ID, BLOCK_ID, 1L))
+                .on("getAccountAtLatestBlock", args -> this.account((FlowAddress) args[0]))
+                .on("sendTransaction", args -> this.send((FlowTransaction) args[0]))
+                .on("getTransactionResultById", args -> {
+                    final FlowTransactionResult result =
+                            this.results.get(((FlowId) args[0]).getBase16Value());
+                    if (result == null) {
+                        throw new IllegalStateException("NOT_FOUND: transaction not found");
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * Config of a pool minting on this node with the emulator admin key
+     */
+    static VoucherClientConfig config() {
+        return VoucherClientConfig.builder().host("localhost").port(3569)
+                .privateKeyHex(ADMIN_PRIVATE_KEY_HEX)
+                .adminAccountAddress(EventDecoderTest.ADMIN)
+                .voucherAddress(TestEvents.VOUCHER_ADDRESS).fusdAddress(TestEvents.FUSD_ADDRESS)
+                .flowTokenAddress(TestEvents.FLOW_TOKEN_ADDRESS)
+                .fungibleTokenAddress("ee82856bf20e2aa6")
+                .nonFungibleTokenAddress(TestEvents.FUSD_ADDRESS).waitForSealTries(10)
+                .keyHealthCheckMillis(0L).build();
+    }
+
+    /**
+     * Pool of all keys of this node
+     */
+    VoucherMinterClientPool pool(final MetricsRegistry metrics, final Tracer tracer) {
+        return this.pool(config(), metrics, tracer);
+    }
+
+    VoucherMinterClientPool pool(final VoucherClientConfig config, final MetricsRegistry metrics,
+            final Tracer tracer) {
+        return new VoucherMinterClientPool(0, this.sequenceNumbers.length, config,
+                Collections.singletonList(this.fake.api()), metrics, tracer);
+    }
+
+    FakeFlowAccessApi fake() {
+        return this.fake;
+    }
+
+    /**
+     * @param execute error message of an executed transaction, empty if it succeeds
+     */
+    TestAccessNode executing(final Function<FlowTransaction, String> execute) {
+        this.execute = execute;
+        return this;
+    }
+
+    TestAccessNode expiring(final Predicate<FlowTransaction> expire) {
+        this.expire = expire;
+        return this;
+    }
+
+    TestAccessNode rejecting(final Predicate<FlowTransaction> reject) {
+        this.reject = reject;
+        return this;
+    }
+
+    List<FlowTransaction> sent() {
+        return this.sent;
+    }
+
+    synchronized long sequenceNumber(final int keyIndex) {
+        return this.sequenceNumbers[keyIndex];
+    }
+
+    /**
+     * Advance the sequence number of a key the way a transaction of another process does
+     */
+    synchronized void useKey(final int keyIndex) {
+        this.sequenceNumbers[keyIndex]++;
+    }
+
+    private synchronized FlowAccount account(final FlowAddress address) {
+        final List<FlowAccountKey> keys = new ArrayList<>(this.sequenceNumbers.length);
+        for (int i = 0; i < this.sequenceNumbers.length; i++) {
+            keys.add(new FlowAccountKey(i, new FlowPublicKey("00"), SignatureAlgorithm.ECDSA_P256,
+                    HashAlgorithm.SHA3_256, 1000, (int) this.sequenceNumbers[i], false));
+        }
+        return new FlowAccount(address, BigDecimal.ZERO, new FlowCode(new byte[0]), keys,
+                Collections.emptyMap());
+    }
+
+    private synchronized FlowId send(final FlowTransaction tx) {
+        if (this.reject.test(tx)) {
+            throw new IllegalStateException("INTERNAL: transaction rejected");
+        }
+        final FlowId txID = tx.getId();
+        this.sent.add(tx);
+        final int keyIndex = tx.getProposalKey().getKeyIndex();
+        final long expected = this.sequenceNumbers[keyIndex];
+        final String errorMessage;
+        final List<FlowEvent> events = new ArrayList<>();
+        if (this.expire.test(tx)) {
+            this.results.put(txID.getBase16Value(), new FlowTransactionResult(
+                    FlowTransactionStatus.EXPIRED, 0, "", events));
+            return txID;
+        }
+        if (tx.getProposalKey().getSequenceNumber() != expected) {
+            errorMessage = String.format("[Error Code: 1007] invalid proposal key: public key %d "
+                    + "on account has sequence number %d, but given %d", keyIndex, expected,
+                    tx.getProposalKey().getSequenceNumber());
+        } else {
+            this.sequenceNumbers[keyIndex]++;
+            errorMessage = this.execute.apply(tx);
+            if (errorMessage.isEmpty()) {
+                for (final String hash : landHashes(tx)) {
+                    events.add(TestEvents.minted(txID.getBase16Value(), events.size(),
+                            this.tokens.incrementAndGet(), hash));
+                }
+            }
+        }
+        this.results.put(txID.getBase16Value(), new FlowTransactionResult(
+                FlowTransactionStatus.SEALED, errorMessage.isEmpty() ? 0 : 1, errorMessage,
+                events));
+        return txID;
+    }
+
+    /**
+     * @return land hashes of a mint or batch mint, the fifth argument of both
+     */
+    static List<String> landHashes(final FlowTransaction tx) {
+        final List<String> hashes = new ArrayList<>();
+        if (tx.getArguments().size() < 5) {
+            return hashes;
+        }
+        final Field<?> hashField = tx.getArguments().get(4).getJsonCadence();
+        if (hashField instanceof ArrayField) {
+            for (final Field<?> hash : ((ArrayField) hashField).getValue()) {
+                hashes.add((String) hash.getValue());
+            }
+        } else {
+            hashes.add((String) hashField.getValue());
+        }
+        return hashes;
+    }
+}
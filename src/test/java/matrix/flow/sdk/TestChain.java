@@ -0,0 +1,54 @@
+package matrix.flow.sdk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.nftco.flow.sdk.FlowEvent;
+import com.nftco.flow.sdk.FlowEventResult;
+import com.nftco.flow.sdk.FlowId;
+
+import kotlin.ranges.LongRange;
+
+/**
+ * Events of a fake chain by type and height, served the way {@code getEventsForHeightRange} does.
+ */
+final class TestChain {
+
+    private final Map<String, TreeMap<Long, List<FlowEvent>>> events = new ConcurrentHashMap<>();
+
+    synchronized void add(final long height, final FlowEvent event) {
+        this.events.computeIfAbsent(event.getType(), type -> new TreeMap<>())
+                .computeIfAbsent(height, key -> new ArrayList<>()).add(event);
+    }
+
+    /**
+     * Withdraw from the payer and deposit to the recipient in one transaction
+     */
+    void pay(final long height, final String tokenPrefix, final String transactionId,
+            final String amount, final String payer, final String recipient) {
+        this.add(height, TestEvents.withdrawn(tokenPrefix, transactionId, 0, amount, payer));
+        this.add(height, TestEvents.deposited(tokenPrefix, transactionId, 1, amount, recipient));
+    }
+
+    synchronized List<FlowEventResult> eventsInRange(final String type, final LongRange range) {
+        final List<FlowEventResult> results = new ArrayList<>();
+        final TreeMap<Long, List<FlowEvent>> blocks = this.events.get(type);
+        if (blocks == null) {
+            return results;
+        }
+        for (final Map.Entry<Long, List<FlowEvent>> block
+                : blocks.subMap(range.getFirst(), true, range.getLast(), true).entrySet()) {
+            results.add(new FlowEventResult(new FlowId(String.format("%064x", block.getKey())),
+                    block.getKey(), new ArrayList<>(block.getValue())));
+        }
+        return results;
+    }
+
+    FakeFlowAccessApi fake() {
+        return new FakeFlowAccessApi().on("getEventsForHeightRange",
+                args -> this.eventsInRange((String) args[0], (LongRange) args[1]));
+    }
+}
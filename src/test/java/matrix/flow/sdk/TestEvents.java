@@ -0,0 +1,70 @@
+package matrix.flow.sdk;
+
+import java.nio.charset.StandardCharsets;
+
+import com.nftco.flow.sdk.FlowEvent;
+import com.nftco.flow.sdk.FlowEventPayload;
+import com.nftco.flow.sdk.FlowId;
+
+/**
+ * Synthetic contract events encoded as JSON-Cadence, the way the access node delivers them.
+ */
+final class TestEvents {
+
+    static final String VOUCHER_ADDRESS = "01cf0e2f2f715450";
+    static final String FUSD_ADDRESS = "f8d6e0586b0a20c7";
+    static final String FLOW_TOKEN_ADDRESS = "0ae53cb6e3f42a79";
+
+    private TestEvents() {
+    }
+
+    static FlowEvent minted(final String transactionId, final int eventIndex, final int id,
+            final String hash) {
+        final String type = "A." + VOUCHER_ADDRESS + ".MatrixWorldVoucher.Minted";
+        return event(type, transactionId, eventIndex, "{\"type\":\"Event\",\"value\":{\"id\":\""
+                + type + "\",\"fields\":[" + attribute("id", "UInt64", Integer.toString(id)) + ","
+                + attribute("name", "String", "LandVoucher") + ","
+                + attribute("description", "String", "Matrix World Land Voucher") + ","
+                + attribute("animationUrl", "String", "") + "," + attribute("hash", "String", hash)
+                + "," + attribute("type", "String", "Voucher") + "]}}");
+    }
+
+    /**
+     * @param tokenPrefix e.g. {@code A.f8d6e0586b0a20c7.FUSD}
+     * @param address payer without 0x
+     */
+    static FlowEvent withdrawn(final String tokenPrefix, final String transactionId,
+            final int eventIndex, final String amount, final String address) {
+        return transfer(tokenPrefix + ".TokensWithdrawn", "from", transactionId, eventIndex,
+                amount, address);
+    }
+
+    /**
+     * @param address recipient without 0x
+     */
+    static FlowEvent deposited(final String tokenPrefix, final String transactionId,
+            final int eventIndex, final String amount, final String address) {
+        return transfer(tokenPrefix + ".TokensDeposited", "to", transactionId, eventIndex,
+                amount, address);
+    }
+
+    private static FlowEvent transfer(final String type, final String addressName,
+            final String transactionId, final int eventIndex, final String amount,
+            final String address) {
+        return event(type, transactionId, eventIndex, "{\"type\":\"Event\",\"value\":{\"id\":\""
+                + type + "\",\"fields\":[" + attribute("amount", "UFix64", amount)
+                + ",{\"name\":\"" + addressName + "\",\"value\":{\"type\":\"Optional\",\"value\":"
+                + "{\"type\":\"Address\",\"value\":\"0x" + address + "\"}}}]}}");
+    }
+
+    private static String attribute(final String name, final String type, final String value) {
+        return "{\"name\":\"" + name + "\",\"value\":{\"type\":\"" + type + "\",\"value\":\""
+                + value + "\"}}";
+    }
+
+    private static FlowEvent event(final String type, final String transactionId,
+            final int eventIndex, final String json) {
+        return new FlowEvent(type, new FlowId(transactionId), 0, eventIndex,
+                new FlowEventPayload(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
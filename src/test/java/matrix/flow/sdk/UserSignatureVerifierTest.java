@@ -0,0 +1,144 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.nftco.flow.sdk.FlowAccountKey;
+import com.nftco.flow.sdk.FlowPublicKey;
+import com.nftco.flow.sdk.HashAlgorithm;
+import com.nftco.flow.sdk.SignatureAlgorithm;
+import com.nftco.flow.sdk.crypto.Crypto;
+import com.nftco.flow.sdk.crypto.KeyPair;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+import matrix.flow.sdk.model.SignatureVerificationRequest;
+
+/**
+ * Signatures are produced by the Flow SDK signer, so the local checks match what the access node
+ * accepts.
+ */
+public class UserSignatureVerifierTest {
+
+    private static final String MESSAGE = Hex.encodeHexString("TEST".getBytes());
+
+    private static String sign(final KeyPair keyPair, final HashAlgorithm hashAlgo,
+            final String message) {
+        return Hex.encodeHexString(Crypto.getSigner(keyPair.getPrivate(), hashAlgo)
+                .signAsUser(message.getBytes()));
+    }
+
+    @Test
+    public void validSignaturesShouldVerifyOnBothCurves() {
+        final KeyPair p256 = Crypto.generateKeyPair(SignatureAlgorithm.ECDSA_P256);
+        final KeyPair secp256k1 = Crypto.generateKeyPair(SignatureAlgorithm.ECDSA_SECP256k1);
+
+        assertTrue(UserSignatureVerifier.verifyKeyList(MESSAGE,
+                new String[] {p256.getPublic().getHex()}, new double[] {1.0}, new int[] {2},
+                new int[] {3}, new String[] {sign(p256, HashAlgorithm.SHA3_256, "TEST")}));
+        assertTrue(UserSignatureVerifier.verifyKeyList(MESSAGE,
+                new String[] {secp256k1.getPublic().getHex()}, new double[] {1.0}, new int[] {3},
+                new int[] {2}, new String[] {sign(secp256k1, HashAlgorithm.SHA2_256, "TEST")}));
+    }
+
+    @Test
+    public void wrongMessageOrHashShouldNotVerify() {
+        final KeyPair p256 = Crypto.generateKeyPair(SignatureAlgorithm.ECDSA_P256);
+        final String[] publicKeys = new String[] {p256.getPublic().getHex()};
+
+        assertFalse(UserSignatureVerifier.verifyKeyList(MESSAGE, publicKeys, new double[] {1.0},
+                new int[] {2}, new int[] {3},
+                new String[] {sign(p256, HashAlgorithm.SHA3_256, "TEST2")}));
+        assertFalse(UserSignatureVerifier.verifyKeyList(MESSAGE, publicKeys, new double[] {1.0},
+                new int[] {2}, new int[] {2},
+                new String[] {sign(p256, HashAlgorithm.SHA3_256, "TEST")}));
+        assertFalse(UserSignatureVerifier.verifyKeyList("not hex", publicKeys,
+                new double[] {1.0}, new int[] {2}, new int[] {3}, new String[] {"00"}));
+    }
+
+    @Test
+    public void keyListShouldRequireFullWeight() {
+        final KeyPair first = Crypto.generateKeyPair(SignatureAlgorithm.ECDSA_P256);
+        final KeyPair second = Crypto.generateKeyPair(SignatureAlgorithm.ECDSA_P256);
+        final String[] publicKeys =
+                new String[] {first.getPublic().getHex(), second.getPublic().getHex()};
+
+        assertTrue(UserSignatureVerifier.verifyKeyList(MESSAGE, publicKeys,
+                new double[] {0.5, 0.5}, new int[] {2, 2}, new int[] {3, 3},
+                new String[] {sign(first, HashAlgorithm.SHA3_256, "TEST"),
+                        sign(second, HashAlgorithm.SHA3_256, "TEST")}));
+        assertFalse(UserSignatureVerifier.verifyKeyList(MESSAGE, publicKeys,
+                new double[] {0.5, 0.5}, new int[] {2, 2}, new int[] {3, 3},
+                new String[] {sign(first, HashAlgorithm.SHA3_256, "TEST")}));
+    }
+
+    @Test
+    public void keyListWeightsShouldSumAsUFix64() {
+        final List<String> publicKeys = new ArrayList<>();
+        final List<String> signatures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final KeyPair keyPair = Crypto.generateKeyPair(SignatureAlgorithm.ECDSA_P256);
+            publicKeys.add(keyPair.getPublic().getHex());
+            signatures.add(sign(keyPair, HashAlgorithm.SHA3_256, "TEST"));
+        }
+
+        // 0.7 + 0.2 + 0.1 is 0.9999999999999999 in doubles but 1.0 in Cadence
+        assertTrue(UserSignatureVerifier.verifyKeyList(MESSAGE, publicKeys.toArray(new String[0]),
+                new double[] {0.7, 0.2, 0.1}, new int[] {2, 2, 2}, new int[] {3, 3, 3},
+                signatures.toArray(new String[0])));
+        assertEquals(100000000L, UserSignatureVerifier.toUFix64(0.7)
+                + UserSignatureVerifier.toUFix64(0.2) + UserSignatureVerifier.toUFix64(0.1));
+        assertEquals(12345678L, UserSignatureVerifier.toUFix64(0.123456789));
+    }
+
+    @Test
+    public void accountKeysShouldRejectRevokedAndUnknownKeys() {
+        final KeyPair keyPair = Crypto.generateKeyPair(SignatureAlgorithm.ECDSA_P256);
+        final FlowPublicKey publicKey = new FlowPublicKey(keyPair.getPublic().getHex());
+        final String signature = sign(keyPair, HashAlgorithm.SHA3_256, "TEST");
+        final FlowAccountKey active = new FlowAccountKey(0, publicKey,
+                SignatureAlgorithm.ECDSA_P256, HashAlgorithm.SHA3_256, 1000, 0, false);
+        final FlowAccountKey revoked = new FlowAccountKey(0, publicKey,
+                SignatureAlgorithm.ECDSA_P256, HashAlgorithm.SHA3_256, 1000, 0, true);
+
+        assertTrue(UserSignatureVerifier.verifyAccountKeys(MESSAGE, Arrays.asList(active),
+                Arrays.asList(0), Arrays.asList(signature)));
+        assertFalse(UserSignatureVerifier.verifyAccountKeys(MESSAGE, Arrays.asList(revoked),
+                Arrays.asList(0), Arrays.asList(signature)));
+        assertFalse(UserSignatureVerifier.verifyAccountKeys(MESSAGE, Arrays.asList(active),
+                Arrays.asList(1), Arrays.asList(signature)));
+        assertFalse(UserSignatureVerifier.verifyAccountKeys(MESSAGE,
+                Collections.<FlowAccountKey>emptyList(), Arrays.asList(0),
+                Arrays.asList(signature)));
+    }
+
+    @Test
+    public void batchVerificationShouldKeepInputOrder() {
+        final KeyPair keyPair = Crypto.generateKeyPair(SignatureAlgorithm.ECDSA_P256);
+        final List<SignatureVerificationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            // Every third request is signed over a different message
+            final String signed = i % 3 == 0 ? "OTHER" : "TEST";
+            requests.add(SignatureVerificationRequest.builder().message(MESSAGE)
+                    .publicKeysHex(new String[] {keyPair.getPublic().getHex()})
+                    .weights(new double[] {1.0}).signAlgos(new int[] {2}).hashAlgos(new int[] {3})
+                    .signatures(new String[] {sign(keyPair, HashAlgorithm.SHA3_256, signed)})
+                    .build());
+        }
+
+        final boolean[] results =
+                new FlowSimpleClient("localhost", 3569, 1).verifyUserSignatures(requests);
+        assertEquals(requests.size(), results.length);
+        for (int i = 0; i < results.length; i++) {
+            assertEquals(i % 3 != 0, results[i]);
+        }
+    }
+
+}
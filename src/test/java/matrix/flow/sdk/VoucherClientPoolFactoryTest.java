@@ -0,0 +1,38 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.nftco.flow.sdk.FlowAccessApi;
+
+import org.junit.Test;
+
+import matrix.flow.sdk.model.VoucherClientConfig;
+
+public class VoucherClientPoolFactoryTest {
+
+    private final VoucherClientConfig clientConfig = VoucherClientConfig.builder()
+            .host("localhost").port(3569)
+            .privateKeyHex(VoucherMinterClientPoolTest.TEST_ADMIN_PRIVATE_KEY_HEX)
+            .adminAccountAddress(VoucherMinterClientPoolTest.VOUCHER_ADDRESS)
+            .voucherAddress(VoucherMinterClientPoolTest.VOUCHER_ADDRESS).build();
+
+    @Test
+    public void clientsShouldShareChannelsByKeyIndex() throws Exception {
+        final List<FlowAccessApi> channels =
+                Arrays.asList(new FakeFlowAccessApi().api(), new FakeFlowAccessApi().api());
+        final SealTracker sealTracker = new SealTracker(channels.get(0), 1);
+        final VoucherClientPoolFactory factory =
+                new VoucherClientPoolFactory(clientConfig, 0, 4, channels, sealTracker, null, null,
+                        null);
+
+        for (int keyIndex = 0; keyIndex < 4; keyIndex++) {
+            final VoucherClient client = factory.create();
+            assertSame(channels.get(keyIndex % 2), client.accessAPI);
+        }
+        sealTracker.close();
+    }
+
+}
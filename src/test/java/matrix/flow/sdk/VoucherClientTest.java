@@ -1,5 +1,8 @@
 package matrix.flow.sdk;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.math.BigDecimal;
 
 import com.nftco.flow.sdk.FlowAddress;
@@ -74,4 +77,71 @@ public class VoucherClientTest {
         assert (resolved.getAmountTo().equals(targetAmount));
 
     }
+
+    private static VoucherClient offlineClient(final TestAccessNode node,
+            final RecordingTracer tracer) {
+        return new VoucherClient(TestAccessNode.config(), node.fake().api(),
+                new SealTracker(node.fake().api(), 10000L, 10L, 50L, 2), null, null,
+                new PaymentCache(10L), MetricsRegistry.NOOP, tracer);
+    }
+
+    /**
+     * Wait until the client handled the seal of its first transactions
+     */
+    private static void awaitSeals(final RecordingTracer tracer, final int count)
+            throws InterruptedException {
+        while (tracer.spans().stream().filter(
+                span -> span.name.equals(VoucherSpans.WAIT_FOR_SEAL) && span.ended).count() < count) {
+            Thread.sleep(5L);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void revertedTransactionShouldNotResyncSequenceNumber() throws Exception {
+        final TestAccessNode node = new TestAccessNode(1)
+                .executing(tx -> "[Error Code: 1101] cadence runtime error: pre-condition failed");
+        final RecordingTracer tracer = new RecordingTracer();
+        final VoucherClient client = offlineClient(node, tracer);
+
+        client.sendMintVoucher(ADMIN_ADDRESS, "hash1");
+        awaitSeals(tracer, 1);
+        node.executing(tx -> "");
+        final FlowId second = client.sendMintVoucher(ADMIN_ADDRESS, "hash2");
+
+        assertEquals("", client.waitForSeal(second).getErrorMessage());
+        assertEquals(1, node.fake().calls("getAccountAtLatestBlock"));
+        assertEquals(2L, node.sequenceNumber(0));
+    }
+
+    @Test(timeout = 20000)
+    public void sequenceMismatchShouldResyncFromChain() throws Exception {
+        final TestAccessNode node = new TestAccessNode(1);
+        final RecordingTracer tracer = new RecordingTracer();
+        final VoucherClient client = offlineClient(node, tracer);
+
+        client.waitForSeal(client.sendMintVoucher(ADMIN_ADDRESS, "hash1"));
+        // Another process proposed with the same key
+        node.useKey(0);
+        final FlowId mismatched = client.sendMintVoucher(ADMIN_ADDRESS, "hash2");
+        assertTrue(SealTracker.isSequenceMismatch(
+                client.waitForSeal(mismatched).getErrorMessage()));
+        awaitSeals(tracer, 2);
+        final FlowId resynced = client.sendMintVoucher(ADMIN_ADDRESS, "hash2");
+
+        assertEquals("", client.waitForSeal(resynced).getErrorMessage());
+        assertEquals(2, node.fake().calls("getAccountAtLatestBlock"));
+    }
+
+    @Test
+    public void standaloneClientShouldNotRefreshReferenceBlocksInTheBackground() {
+        final long before = referenceBlockThreads();
+        final VoucherClient client = new VoucherClient(TestAccessNode.config());
+        assertEquals(before, referenceBlockThreads());
+        client.close();
+    }
+
+    private static long referenceBlockThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("flow-reference-block")).count();
+    }
 }
@@ -0,0 +1,110 @@
+package matrix.flow.sdk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.nftco.flow.sdk.FlowAddress;
+
+import org.junit.Test;
+
+import matrix.flow.sdk.model.FlowClientException;
+import matrix.flow.sdk.model.VoucherClientConfig;
+import matrix.flow.sdk.model.VoucherMetadataModel;
+
+/**
+ * Runs against the local emulator like {@link VoucherMinterClientPoolTest}, the offline tests
+ * against a {@link TestAccessNode}.
+ */
+public class VoucherMintBatcherTest {
+
+    private final FlowAddress testAdminAccountAddress = new FlowAddress("01cf0e2f2f715450");
+    private final FlowAddress userAccountAddress = new FlowAddress("f8d6e0586b0a20c7");
+
+    final VoucherClientConfig adminClientConfig = VoucherClientConfig.builder().host("localhost")
+            .port(3569).privateKeyHex(AsyncVoucherClientTest.TEST_ADMIN_PRIVATE_KEY_HEX)
+            .keyIndex(0).nonFungibleTokenAddress(AsyncVoucherClientTest.NON_FUNGIBLE_TOKEN_ADDRESS)
+            .fungibleTokenAddress(AsyncVoucherClientTest.FUNGIBLE_TOKEN_ADDRESS)
+            .adminAccountAddress(testAdminAccountAddress.getBase16Value())
+            .voucherAddress(AsyncVoucherClientTest.VOUCHER_ADDRESS).waitForSealTries(20)
+            .fusdAddress(AsyncVoucherClientTest.FUSD_ADDRESS)
+            .flowTokenAddress(AsyncVoucherClientTest.FLOW_TOKEN_ADDRESS).build();
+
+    @Test(timeout = 10000000)
+    public void batchedMintsShouldResolveInRequestOrder() throws Exception {
+        final int simTransactionCount = 25;
+        final VoucherMinterClientPool pool = new VoucherMinterClientPool(0, 10, adminClientConfig);
+        final VoucherMintBatcher batcher = new VoucherMintBatcher(pool, 10, 200L, 2);
+
+        final String timeStamp = new SimpleDateFormat("yyyy.MM.dd.HH.mm.ss").format(new Date());
+        final List<CompletableFuture<VoucherMetadataModel>> mints = new ArrayList<>();
+        for (int i = 0; i < simTransactionCount; ++i) {
+            mints.add(batcher.mintVoucher(userAccountAddress.getBase16Value(),
+                    "TEST_HASH_BATCHED" + i + timeStamp));
+        }
+
+        for (int i = 0; i < simTransactionCount; ++i) {
+            final VoucherMetadataModel token = mints.get(i).get(120, TimeUnit.SECONDS);
+            assertEquals("TEST_HASH_BATCHED" + i + timeStamp, token.getHash());
+        }
+        batcher.close();
+        pool.close();
+    }
+
+    @Test(timeout = 20000)
+    public void batcherShouldCoalesceMintsOffline() throws Exception {
+        final TestAccessNode node = new TestAccessNode(2);
+        final VoucherMinterClientPool pool = node.pool(MetricsRegistry.NOOP, Tracer.NOOP);
+        final VoucherMintBatcher batcher = new VoucherMintBatcher(pool, 10, 50L, 1);
+
+        final List<CompletableFuture<VoucherMetadataModel>> mints = new ArrayList<>();
+        for (int i = 0; i < 25; ++i) {
+            mints.add(batcher.mintVoucher(userAccountAddress.getBase16Value(), "hash" + i));
+        }
+
+        for (int i = 0; i < 25; ++i) {
+            assertEquals("hash" + i, mints.get(i).get(10, TimeUnit.SECONDS).getHash());
+        }
+        // Two full batches, the rest once the first of them waited maxDelayMillis
+        assertEquals(3, node.sent().size());
+        assertEquals(10, TestAccessNode.landHashes(node.sent().get(0)).size());
+        assertEquals(10, TestAccessNode.landHashes(node.sent().get(1)).size());
+        assertEquals(5, TestAccessNode.landHashes(node.sent().get(2)).size());
+        batcher.close();
+        pool.close();
+    }
+
+    @Test(timeout = 20000)
+    public void batcherShouldFailAllMintsOfRevertedBatch() throws Exception {
+        final TestAccessNode node = new TestAccessNode(1)
+                .executing(tx -> "[Error Code: 1101] cadence runtime error: pre-condition failed");
+        final VoucherMinterClientPool pool = node.pool(MetricsRegistry.NOOP, Tracer.NOOP);
+        final VoucherMintBatcher batcher = new VoucherMintBatcher(pool, 2, 50L, 1);
+
+        final CompletableFuture<VoucherMetadataModel> first =
+                batcher.mintVoucher(userAccountAddress.getBase16Value(), "hash0");
+        final CompletableFuture<VoucherMetadataModel> second =
+                batcher.mintVoucher(userAccountAddress.getBase16Value(), "hash1");
+
+        for (final CompletableFuture<VoucherMetadataModel> mint : Arrays.asList(first, second)) {
+            try {
+                mint.get(10, TimeUnit.SECONDS);
+                fail("Mint of a reverted batch should fail");
+            } catch (final ExecutionException e) {
+                assertTrue(e.getCause() instanceof FlowClientException);
+            }
+        }
+        assertEquals(1, node.sent().size());
+        batcher.close();
+        pool.close();
+    }
+}
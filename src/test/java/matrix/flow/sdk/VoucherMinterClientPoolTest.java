@@ -1,7 +1,13 @@
 package matrix.flow.sdk;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -12,6 +18,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import com.nftco.flow.sdk.FlowAddress;
+import com.nftco.flow.sdk.FlowTransaction;
 import com.nftco.flow.sdk.HashAlgorithm;
 import com.nftco.flow.sdk.Signer;
 import com.nftco.flow.sdk.crypto.Crypto;
@@ -20,6 +27,7 @@ import org.apache.commons.codec.binary.Hex;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import matrix.flow.sdk.model.BatchMintVoucherResult;
 import matrix.flow.sdk.model.VoucherClientConfig;
 
@@ -62,6 +70,19 @@ public class VoucherMinterClientPoolTest {
             .voucherAddress(VOUCHER_ADDRESS).waitForSealTries(20).fusdAddress(FUSD_ADDRESS)
             .flowTokenAddress(FLOW_TOKEN_ADDRESS).build();
 
+    // Gauge tags of a pool of TestAccessNode.config()
+    private static final String[] POOL_TAGS = {VoucherMetrics.TAG_ACCOUNT, EventDecoderTest.ADMIN,
+            VoucherMetrics.TAG_ACCESS_NODE, "localhost:3569"};
+
+    private static String[] keyTags(final String keyIndex) {
+        return new String[] {VoucherMetrics.TAG_ACCOUNT, EventDecoderTest.ADMIN,
+                VoucherMetrics.TAG_ACCESS_NODE, "localhost:3569", VoucherMetrics.TAG_KEY_INDEX,
+                keyIndex};
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Rule
     public ExpectedException exceptionRule = ExpectedException.none();
 
@@ -147,4 +168,252 @@ public class VoucherMinterClientPoolTest {
         System.out.println(result.toString());
         assertFalse(result);
     }
+
+    @Test
+    public void keyPipelineShouldParkKeyAtMaxInFlight() {
+        final VoucherMinterClientPool.KeyPipeline pipeline =
+                new VoucherMinterClientPool.KeyPipeline();
+        assertTrue(pipeline.submitted(3));
+        assertTrue(pipeline.submitted(3));
+        // Third unsealed transaction keeps the key out of the pool
+        assertFalse(pipeline.submitted(3));
+        assertTrue(pipeline.settled());
+        assertFalse(pipeline.settled());
+        assertTrue(pipeline.submitted(3));
+    }
+
+    @Test
+    public void keyPipelineShouldParkDrainingKeyUntilAllSettled() {
+        final VoucherMinterClientPool.KeyPipeline pipeline =
+                new VoucherMinterClientPool.KeyPipeline();
+        assertFalse(pipeline.drain());
+        assertTrue(pipeline.submitted(3));
+        assertTrue(pipeline.submitted(3));
+        assertTrue(pipeline.drain());
+        assertFalse(pipeline.settled());
+        assertTrue(pipeline.settled());
+        assertTrue(pipeline.submitted(3));
+    }
+
+    @Test(timeout = 20000)
+    public void failedBatchShouldKeepTokensOfSealedBatches() {
+        final TestAccessNode node = new TestAccessNode(2).executing(
+                tx -> TestAccessNode.landHashes(tx).contains("hash3") ? "panic: land taken" : "");
+        final VoucherMinterClientPool pool = node.pool(
+                TestAccessNode.config().toBuilder().batchMintInitialSize(2).build(),
+                MetricsRegistry.NOOP, Tracer.NOOP);
+
+        final BatchMintVoucherResult result = pool.batchMintAndResolveVoucher(
+                Arrays.asList("f8d6e0586b0a20c7", "f8d6e0586b0a20c7", "f8d6e0586b0a20c7",
+                        "f8d6e0586b0a20c7"),
+                Arrays.asList("hash1", "hash2", "hash3", "hash4"));
+
+        assertNull(result.getTokens());
+        assertEquals(2, result.getTransactionIds().size());
+        assertEquals(result.getTransactionIds().get(0), result.getTransactionId());
+        assertEquals(2, result.getBatches().size());
+        assertEquals(result.getTransactionIds().get(0),
+                result.getBatches().get(0).getTransactionId());
+        assertEquals("hash2", result.getBatches().get(0).getTokens().get(1).getHash());
+        assertNull(result.getBatches().get(1).getTokens());
+        pool.close();
+    }
+
+    @Test(timeout = 20000)
+    public void expiredTransactionShouldResyncItsKeyBeforeTheNextBorrow() {
+        final TestAccessNode node = new TestAccessNode(1)
+                .expiring(tx -> TestAccessNode.landHashes(tx).contains("hash1"));
+        final VoucherMinterClientPool pool = node.pool(MetricsRegistry.NOOP, Tracer.NOOP);
+
+        try {
+            pool.mintVoucher("f8d6e0586b0a20c7", "hash1");
+            fail("Expired mint should fail");
+        } catch (final RuntimeException e) {
+            assertTrue(SealTracker.isExpired(e));
+        }
+        // The chain never counted the expired transaction, its sequence number is proposed again
+        assertEquals("hash2", pool.mintVoucher("f8d6e0586b0a20c7", "hash2").getHash());
+        assertEquals(2, node.fake().calls("getAccountAtLatestBlock"));
+        assertEquals(1L, node.sequenceNumber(0));
+        pool.close();
+    }
+
+    @Test(timeout = 20000)
+    public void mintsOfBatchesNeverSentShouldBeReported() {
+        final TestAccessNode node = new TestAccessNode(2)
+                .rejecting(tx -> TestAccessNode.landHashes(tx).contains("hash3"));
+        final VoucherMinterClientPool pool = node.pool(
+                TestAccessNode.config().toBuilder().batchMintInitialSize(2).build(),
+                MetricsRegistry.NOOP, Tracer.NOOP);
+
+        final BatchMintVoucherResult result = pool.batchMintAndResolveVoucher(
+                Arrays.asList("f8d6e0586b0a20c7", "f8d6e0586b0a20c7", "f8d6e0586b0a20c7",
+                        "f8d6e0586b0a20c7", "f8d6e0586b0a20c7"),
+                Arrays.asList("hash1", "hash2", "hash3", "hash4", "hash5"));
+
+        // The second batch failed to send, the third was never sent after it
+        assertNull(result.getTokens());
+        assertEquals(1, result.getBatches().size());
+        assertEquals("hash2", result.getBatches().get(0).getTokens().get(1).getHash());
+        assertEquals(Arrays.asList(2, 3, 4), result.getUnsentIndexes());
+        assertEquals(1, node.sent().size());
+        pool.close();
+    }
+
+    @Test(timeout = 20000)
+    public void poolShouldMeterEachOperationSeparately() {
+        final TestAccessNode node = new TestAccessNode(2);
+        final InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        final VoucherMinterClientPool pool = node.pool(metrics, Tracer.NOOP);
+
+        pool.mintVoucher("f8d6e0586b0a20c7", "hash1");
+        pool.batchMintAndResolveVoucher(Arrays.asList("f8d6e0586b0a20c7", "f8d6e0586b0a20c7"),
+                Arrays.asList("hash2", "hash3"));
+        pool.resolveBatchMintVoucher(pool.batchMintVoucher(
+                Arrays.asList("f8d6e0586b0a20c7"), Arrays.asList("hash4")));
+
+        for (final String operation : Arrays.asList("mintVoucher", "batchMintAndResolveVoucher",
+                "batchMintVoucher", "resolveBatchMintVoucher")) {
+            assertEquals(operation, 1L, metrics.getTimer(VoucherMetrics.POOL_OPERATION,
+                    VoucherMetrics.TAG_OPERATION, operation).count());
+        }
+        assertEquals(3L, metrics.getTimer(VoucherMetrics.POOL_BORROW_WAIT).count());
+        assertNotNull(metrics.getGauge(VoucherMetrics.POOL_KEYS_ACTIVE, POOL_TAGS));
+        assertNotNull(metrics.getGauge(VoucherMetrics.POOL_KEYS_IDLE, POOL_TAGS));
+        final String keyIndex =
+                Integer.toString(node.sent().get(0).getProposalKey().getKeyIndex());
+        assertNotNull(metrics.getGauge(VoucherMetrics.POOL_KEY_ACTIVE, keyTags(keyIndex)));
+        assertNotNull(metrics.getGauge(VoucherMetrics.POOL_KEY_IN_FLIGHT, keyTags(keyIndex)));
+        pool.close();
+    }
+
+    @Test(timeout = 20000)
+    public void poolsOfOtherAccountsShouldKeepTheirOwnGauges() {
+        final TestAccessNode node = new TestAccessNode(2);
+        final InMemoryMetricsRegistry metrics = new InMemoryMetricsRegistry();
+        final VoucherMinterClientPool pool = node.pool(metrics, Tracer.NOOP);
+        final VoucherMinterClientPool other = node.pool(TestAccessNode.config().toBuilder()
+                .adminAccountAddress(TestEvents.FUSD_ADDRESS).port(3570).build(), metrics,
+                Tracer.NOOP);
+
+        pool.mintVoucher("f8d6e0586b0a20c7", "hash1");
+        final String keyIndex =
+                Integer.toString(node.sent().get(0).getProposalKey().getKeyIndex());
+        final String[] otherKeyTags = {VoucherMetrics.TAG_ACCOUNT, TestEvents.FUSD_ADDRESS,
+                VoucherMetrics.TAG_ACCESS_NODE, "localhost:3570", VoucherMetrics.TAG_KEY_INDEX,
+                keyIndex};
+
+        assertEquals(2L, (long) metrics.getGauge(VoucherMetrics.POOL_KEYS_IDLE,
+                VoucherMetrics.TAG_ACCOUNT, TestEvents.FUSD_ADDRESS,
+                VoucherMetrics.TAG_ACCESS_NODE, "localhost:3570"));
+        assertNotNull(metrics.getGauge(VoucherMetrics.POOL_KEYS_IDLE, POOL_TAGS));
+        assertNotNull(metrics.getGauge(VoucherMetrics.POOL_KEY_IN_FLIGHT, keyTags(keyIndex)));
+        assertNull(metrics.getGauge(VoucherMetrics.POOL_KEY_IN_FLIGHT, otherKeyTags));
+        other.close();
+        pool.close();
+    }
+
+    @Test(timeout = 20000)
+    public void mintShouldTraceEveryStageOfItsTransaction() throws InterruptedException {
+        final TestAccessNode node = new TestAccessNode(2);
+        final RecordingTracer tracer = new RecordingTracer();
+        final VoucherMinterClientPool pool = node.pool(MetricsRegistry.NOOP, tracer);
+
+        pool.mintVoucher("f8d6e0586b0a20c7", "hash1");
+
+        final FlowTransaction sent = node.sent().get(0);
+        final Long keyIndex = (long) sent.getProposalKey().getKeyIndex();
+        final String transactionId = sent.getId().getBase16Value();
+        final RecordingTracer.RecordedSpan mint = tracer.span(VoucherSpans.MINT);
+        assertNull(mint.parent);
+        assertTrue(mint.ended);
+        assertEquals(1L, mint.attributes.get(VoucherSpans.BATCH_SIZE));
+        assertEquals(keyIndex, mint.attributes.get(VoucherSpans.KEY_INDEX));
+        assertEquals(transactionId, mint.attributes.get(VoucherSpans.TRANSACTION_ID));
+        assertSame(mint, tracer.span(VoucherSpans.POOL_BORROW).parent);
+        assertEquals(keyIndex,
+                tracer.span(VoucherSpans.POOL_BORROW).attributes.get(VoucherSpans.KEY_INDEX));
+
+        final RecordingTracer.RecordedSpan transaction = tracer.span(VoucherSpans.TRANSACTION);
+        assertSame(mint, transaction.parent);
+        assertEquals(keyIndex, transaction.attributes.get(VoucherSpans.KEY_INDEX));
+        assertEquals(transactionId, transaction.attributes.get(VoucherSpans.TRANSACTION_ID));
+        for (final String stage : Arrays.asList(VoucherSpans.GET_ACCOUNT_KEY,
+                VoucherSpans.GET_LATEST_BLOCK_ID, VoucherSpans.SIGN,
+                VoucherSpans.SEND_TRANSACTION, VoucherSpans.WAIT_FOR_SEAL)) {
+            assertSame(stage, transaction, tracer.span(stage).parent);
+        }
+        // The seal span ends on the seal callback, which may run after the mint returned
+        final RecordingTracer.RecordedSpan seal = tracer.span(VoucherSpans.WAIT_FOR_SEAL);
+        while (!seal.ended) {
+            Thread.sleep(10L);
+        }
+        assertEquals(transactionId, seal.attributes.get(VoucherSpans.TRANSACTION_ID));
+        assertEquals("SEALED", seal.attributes.get(VoucherSpans.TRANSACTION_STATUS));
+
+        pool.batchMintAndResolveVoucher(Arrays.asList("f8d6e0586b0a20c7", "f8d6e0586b0a20c7"),
+                Arrays.asList("hash2", "hash3"));
+        final RecordingTracer.RecordedSpan batch =
+                tracer.span(VoucherSpans.BATCH_MINT_AND_RESOLVE);
+        assertNull(batch.parent);
+        assertEquals(2L, batch.attributes.get(VoucherSpans.BATCH_SIZE));
+        assertSame(batch, tracer.span(VoucherSpans.BATCH_MINT).parent);
+        assertEquals(2L, tracer.span(VoucherSpans.BATCH_MINT).attributes
+                .get(VoucherSpans.BATCH_SIZE));
+        assertEquals(node.sent().get(1).getId().getBase16Value(), tracer
+                .span(VoucherSpans.BATCH_MINT).attributes.get(VoucherSpans.TRANSACTION_ID));
+        pool.close();
+    }
+
+    @Test(timeout = 20000)
+    public void poolsOfOneJournalShouldClaimLandsOnceAndRecoverOnce() throws Exception {
+        final TestAccessNode node = new TestAccessNode(2);
+        final VoucherMinterClientPool unjournaled = node.pool(MetricsRegistry.NOOP, Tracer.NOOP);
+        final String crashed = unjournaled.batchMintVoucher(Arrays.asList("f8d6e0586b0a20c7"),
+                Arrays.asList("hash0"));
+        unjournaled.close();
+        // A previous run crashed after sending the mint
+        final Path file = folder.newFile().toPath();
+        final MintJournal journal = new MintJournal(file);
+        journal.begin(Arrays.asList("f8d6e0586b0a20c7"), Arrays.asList("hash0")).signed(crashed);
+        journal.close();
+
+        final VoucherClientConfig config =
+                TestAccessNode.config().toBuilder().mintJournalFile(file.toString()).build();
+        final VoucherMinterClientPool pool = node.pool(config, MetricsRegistry.NOOP, Tracer.NOOP);
+        final VoucherMinterClientPool other = node.pool(config.toBuilder()
+                .adminAccountAddress(TestEvents.FUSD_ADDRESS).port(3570).build(),
+                MetricsRegistry.NOOP, Tracer.NOOP);
+
+        assertSame(pool.getRecoveredMints(), other.getRecoveredMints());
+        final List<BatchMintVoucherResult> recovered = pool.getRecoveredMints().get();
+        assertEquals(1, recovered.size());
+        assertEquals(crashed, recovered.get(0).getTransactionId());
+        assertEquals("hash0", recovered.get(0).getTokens().get(0).getHash());
+
+        pool.mintVoucher("f8d6e0586b0a20c7", "hash1");
+        exceptionRule.expect(RuntimeException.class);
+        exceptionRule.expectMessage("already minted");
+        try {
+            other.mintVoucher("f8d6e0586b0a20c7", "hash1");
+        } finally {
+            assertEquals(2, node.sent().size());
+            other.close();
+            pool.close();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void signatureVerificationShouldNotLeaseKey() {
+        final TestAccessNode node = new TestAccessNode(2);
+        final RecordingTracer tracer = new RecordingTracer();
+        final VoucherMinterClientPool pool = node.pool(MetricsRegistry.NOOP, tracer);
+
+        assertFalse(pool.verifyUserSignatureCadence("00", "0x" + VOUCHER_ADDRESS,
+                Arrays.asList(5), Arrays.asList("00")));
+        assertEquals(1, node.fake().calls("getAccountAtLatestBlock"));
+        assertTrue(tracer.spans().stream()
+                .noneMatch(span -> span.name.equals(VoucherSpans.POOL_BORROW)));
+        pool.close();
+    }
 }